@@ -1,7 +1,6 @@
 package com.example.fp2;
 
 import android.content.Intent;
-import android.media.MediaPlayer;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -22,20 +21,21 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
-import com.example.fp2.db.AppDatabase;
-import com.example.fp2.db.RiskRecordEntity;
+import com.example.fp2.audio.PreviewPlayer;
+import com.example.fp2.audio.WaveformProbe;
+import com.example.fp2.db.RiskRecordRepository;
 import com.example.fp2.model.ApiResponse;
 import com.example.fp2.model.ResultFormatter;
+import com.example.fp2.net.AnalysisJobClient;
 import com.example.fp2.net.BackendService;
+import com.example.fp2.net.OfflineQueue;
+import com.example.fp2.net.TranscriptionPolicy;
 
-import java.io.IOException;
-import java.util.Locale;
 
 public class AudioRecognitionActivity extends AppCompatActivity {
 
     private static final String TAG = "AUDIO_REC";
 
-    private final BackendService backend = new BackendService();
 
     // ✅ 兩段式 TextView
     private TextView detectedText;
@@ -48,10 +48,15 @@ public class AudioRecognitionActivity extends AppCompatActivity {
     private View audioSelectedGroup;
     private TextView selectedFileName;
     private ImageButton playPauseBtn;
+    private WaveformView waveform;
+    private TextView audioDuration;
 
     private Uri selectedAudioUri;
-    private MediaPlayer mediaPlayer;
-    private boolean isPrepared = false;
+    private PreviewPlayer player;
+
+    // 長音檔走後端背景工作：拿到 job_id 後「開始判別」變成「取消分析」
+    private String runningJobId;
+    private CharSequence startLabel;
 
     // ===== 選音檔 =====
     private final ActivityResultLauncher<Intent> pickAudioLocal =
@@ -68,7 +73,7 @@ public class AudioRecognitionActivity extends AppCompatActivity {
 
                         selectedAudioUri = uri;
                         showSelectedAudioUi(FileUtils.displayName(this, uri));
-                        preparePlayer(uri);
+                        loadPreview(uri);
 
                         // 選到檔案先清空/提示
                         detectedText.setText("（尚未開始辨識）");
@@ -86,7 +91,7 @@ public class AudioRecognitionActivity extends AppCompatActivity {
                 if (uri != null) {
                     selectedAudioUri = uri;
                     showSelectedAudioUi(FileUtils.displayName(this, uri));
-                    preparePlayer(uri);
+                    loadPreview(uri);
 
                     detectedText.setText("（尚未開始辨識）");
                     riskText.setText("結果會顯示在這裡");
@@ -116,11 +121,14 @@ public class AudioRecognitionActivity extends AppCompatActivity {
         backArrow = findViewById(R.id.backArrow);
         selectAudioButton = findViewById(R.id.selectAudioButton);
         startRecognitionButton = findViewById(R.id.startRecognitionButton);
+        startLabel = startRecognitionButton.getText();
 
         micIcon = findViewById(R.id.micIcon);
         audioSelectedGroup = findViewById(R.id.audioSelectedGroup);
         selectedFileName = findViewById(R.id.selectedFileName);
         playPauseBtn = findViewById(R.id.playPauseBtn);
+        waveform = findViewById(R.id.waveform);
+        audioDuration = findViewById(R.id.audioDuration);
 
         backArrow.setOnClickListener(v -> {
             startActivity(new Intent(this, MainActivity.class));
@@ -129,7 +137,26 @@ public class AudioRecognitionActivity extends AppCompatActivity {
 
         selectAudioButton.setOnClickListener(this::onPickAudioClicked);
         startRecognitionButton.setOnClickListener(this::onStartRecognitionClicked);
-        playPauseBtn.setOnClickListener(v -> togglePlay());
+        playPauseBtn.setOnClickListener(v -> player.toggle());
+
+        // ✅ 播放器等第一次按播放才建立
+        player = new PreviewPlayer(this, new PreviewPlayer.Listener() {
+            @Override
+            public void onPlayingChanged(boolean playing) {
+                playPauseBtn.setImageResource(playing
+                        ? android.R.drawable.ic_media_pause : android.R.drawable.ic_media_play);
+            }
+
+            @Override
+            public void onProgress(float fraction) {
+                waveform.setProgress(fraction);
+            }
+
+            @Override
+            public void onError(String message) {
+                toast(message);
+            }
+        });
 
         // 初始提示
         detectedText.setText("（尚未取得偵測文字）");
@@ -137,9 +164,9 @@ public class AudioRecognitionActivity extends AppCompatActivity {
     }
 
     @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        releasePlayer();
+    protected void onStop() {
+        super.onStop();
+        player.release();
     }
 
     // ===== 使用者操作 =====
@@ -163,6 +190,12 @@ public class AudioRecognitionActivity extends AppCompatActivity {
     }
 
     public void onStartRecognitionClicked(View v) {
+        if (runningJobId != null) {
+            AnalysisJobClient.get(this).cancel(runningJobId);
+            startRecognitionButton.setEnabled(false);
+            riskText.setText("取消中…");
+            return;
+        }
         if (selectedAudioUri == null) {
             toast("請先選擇錄音檔");
             return;
@@ -177,7 +210,8 @@ public class AudioRecognitionActivity extends AppCompatActivity {
         detectedText.setText("（語音辨識中…）");
         riskText.setText("分析中…");
 
-        backend.uploadAudio(this, uri, new BackendService.Callback() {
+        // ✅ 本機 / 後端辨識由 TranscriptionPolicy 依音檔長度、網路、實測速度決定
+        TranscriptionPolicy.get(this).transcribe(uri, new BackendService.Callback() {
             @Override
             public void onSuccess(ApiResponse data) {
                 runOnUiThread(() -> {
@@ -192,117 +226,115 @@ public class AudioRecognitionActivity extends AppCompatActivity {
                     }
                     detectedText.setText(TextUtils.isEmpty(detected) ? "（未取得文字）" : detected);
 
+                    // ✅ 離線語音辨識只跑了本機規則：逐字稿排進待補送，恢復連線後補做完整分析
+                    if (OfflineQueue.isProvisional(data) && !TextUtils.isEmpty(detected)) {
+                        queueOffline(uri, detected);
+                        return;
+                    }
+
                     // ✅ 2) 風險判斷結果
                     String pretty = ResultFormatter.format(data);
                     riskText.setText(pretty);
 
                     // ✅ 3) 存入 DB：把 detected 一起存進 detected_text 欄位
-                    saveAudioRiskIfNeeded(data, uri, pretty, detected);
+                    saveAudioRiskIfNeeded(data, uri, detected);
 
-                    setButtonsEnabled(true);
+                    finishAnalysis();
                 });
             }
 
             @Override
             public void onError(String message) {
+                if (OfflineQueue.shouldQueue(getApplicationContext(), message)) {
+                    queueOffline(uri, null);
+                    return;
+                }
                 runOnUiThread(() -> {
-                    riskText.setText("錯誤：" + message);
-                    setButtonsEnabled(true);
+                    riskText.setText(AnalysisJobClient.isCancelled(message) ? "已取消分析" : "錯誤：" + message);
+                    finishAnalysis();
+                });
+            }
+
+            @Override
+            public void onProgress(AnalysisJobClient.Progress progress) {
+                runOnUiThread(() -> {
+                    if (isFinishing()) return;
+                    riskText.setText(progress.label());
+                    if (runningJobId == null) {
+                        runningJobId = progress.jobId;
+                        startRecognitionButton.setText("取消分析");
+                        startRecognitionButton.setEnabled(true);
+                    }
                 });
             }
         });
     }
 
+    // ===== 連不上後端：存歷史（本機初判）+ 待補送，恢復連線後自動更新同一筆 =====
+    private void queueOffline(Uri uri, String transcript) {
+        new Thread(() -> {
+            ApiResponse provisional = OfflineQueue.get(getApplicationContext()).enqueueAudio(uri, transcript);
+            runOnUiThread(() -> {
+                riskText.setText(provisional == null
+                        ? "目前無法連線，且無法保留這個音檔，請恢復連線後再試一次"
+                        : OfflineQueue.notice(provisional));
+                finishAnalysis();
+            });
+        }).start();
+    }
+
     // ===== 寫入 Room（音檔）=====
-    private void saveAudioRiskIfNeeded(ApiResponse data, Uri audioUri, String summary, String detectedTextValue) {
+    private void saveAudioRiskIfNeeded(ApiResponse data, Uri audioUri, String detectedTextValue) {
         if (data == null || audioUri == null) return;
 
-        String riskLevel = normalizeRiskLevel(data.risk, data.is_scam);
+        String riskLevel = RiskRecordRepository.normalizeRiskLevel(data.risk, data.is_scam);
 
         // ✅ 只存中/高；你如果要 LOW 也存，把這段註解掉即可
         if (!"MEDIUM".equals(riskLevel) && !"HIGH".equals(riskLevel)) return;
 
-        int score = "HIGH".equals(riskLevel) ? 90 : 65;
-
         // ✅ detected_text 可能很長，保守切一下避免 DB 太肥
         String detected = (detectedTextValue == null) ? "" : detectedTextValue.trim();
         if (detected.length() > 2000) detected = detected.substring(0, 2000) + "…";
 
         // content 存音檔 uri（你歷史頁要顯示檔名可以用 FileUtils.displayName）
         String content = audioUri.toString();
-
-        // ✅ 這裡使用「含 detectedText」的 constructor（你要有那個 7 參數 @Ignore 或 8 參數正式版）
-        RiskRecordEntity record = new RiskRecordEntity(
-                "AUDIO",
-                content,
-                riskLevel,
-                score,
-                summary,
-                detected, // ✅ detected_text：語音轉出來的文字
-                System.currentTimeMillis()
-        );
+        final String detectedValue = detected; // ✅ detected_text：語音轉出來的文字
 
         // ✅ 保險起見，用背景執行緒寫入（避免不同裝置 Room 限制）
         new Thread(() -> {
             try {
-                AppDatabase.getInstance(getApplicationContext())
-                        .riskRecordDao()
-                        .insert(record);
+                RiskRecordRepository.get(getApplicationContext())
+                        .saveAnalysis("AUDIO", content, detectedValue, data);
             } catch (Exception ignored) {}
         }).start();
     }
 
     // ===== 工具 =====
-    private String normalizeRiskLevel(String risk, boolean isScam) {
-        if (risk == null) return isScam ? "HIGH" : "LOW";
-        String r = risk.trim().toUpperCase(Locale.ROOT);
-        if (r.contains("HIGH") || r.contains("高") || r.contains("DANGER")) return "HIGH";
-        if (r.contains("MED") || r.contains("中") || r.contains("SUSPIC")) return "MEDIUM";
-        if (r.contains("LOW") || r.contains("低") || r.contains("SAFE")) return "LOW";
-        return isScam ? "HIGH" : "LOW";
-    }
-
     private void showSelectedAudioUi(String name) {
         micIcon.setVisibility(View.GONE);
         audioSelectedGroup.setVisibility(View.VISIBLE);
         selectedFileName.setText(name == null ? "已選擇音檔" : name);
     }
 
-    private void preparePlayer(Uri uri) {
-        releasePlayer();
-        mediaPlayer = new MediaPlayer();
-        try {
-            mediaPlayer.setDataSource(this, uri);
-            mediaPlayer.setOnPreparedListener(mp -> {
-                isPrepared = true;
-                playPauseBtn.setImageResource(android.R.drawable.ic_media_play);
-            });
-            mediaPlayer.setOnCompletionListener(mp ->
-                    playPauseBtn.setImageResource(android.R.drawable.ic_media_play));
-            mediaPlayer.prepareAsync();
-        } catch (IOException e) {
-            toast("無法預覽音檔");
-        }
-    }
-
-    private void togglePlay() {
-        if (mediaPlayer == null || !isPrepared) return;
-        if (mediaPlayer.isPlaying()) {
-            mediaPlayer.pause();
-            playPauseBtn.setImageResource(android.R.drawable.ic_media_play);
-        } else {
-            mediaPlayer.start();
-            playPauseBtn.setImageResource(android.R.drawable.ic_media_pause);
-        }
+    /**
+     * 長度 + 波形（背景探測，不建播放器）
+     */
+    private void loadPreview(Uri uri) {
+        player.setSource(uri);
+        waveform.setPeaks(null);
+        waveform.setProgress(0f);
+        audioDuration.setText("");
+        WaveformProbe.get(this).probe(uri, w -> {
+            if (!uri.equals(selectedAudioUri)) return; // 已經換檔了
+            audioDuration.setText(WaveformProbe.formatDuration(w.durationMs));
+            if (w.peaks != null) waveform.setPeaks(w.peaks);
+        });
     }
 
-    private void releasePlayer() {
-        if (mediaPlayer != null) {
-            try { mediaPlayer.stop(); } catch (Exception ignored) {}
-            try { mediaPlayer.release(); } catch (Exception ignored) {}
-            mediaPlayer = null;
-            isPrepared = false;
-        }
+    private void finishAnalysis() {
+        runningJobId = null;
+        startRecognitionButton.setText(startLabel);
+        setButtonsEnabled(true);
     }
 
     private void setButtonsEnabled(boolean enabled) {
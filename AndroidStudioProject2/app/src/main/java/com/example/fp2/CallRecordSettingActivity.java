@@ -1,19 +1,38 @@
 package com.example.fp2;
 
+import android.Manifest;
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.text.method.LinkMovementMethod;
 import android.widget.Button;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import com.example.fp2.guard.LiveCallService;
+
 public class CallRecordSettingActivity extends AppCompatActivity {
 
+    private Button btnLiveCall;
+    private TextView tvLiveStatus;
+    private String shownAlert; // 已經跳過的警示（同一則不重複跳）
+
+    private final ActivityResultLauncher<String> requestMic =
+            registerForActivityResult(new ActivityResultContracts.RequestPermission(), granted -> {
+                if (granted) LiveCallService.start(this);
+                else Toast.makeText(this, "需要麥克風權限才能即時監聽", Toast.LENGTH_SHORT).show();
+            });
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -39,5 +58,39 @@ public class CallRecordSettingActivity extends AppCompatActivity {
             startActivity(intent);
             finish();
         });
+
+        // ✅ 通話即時監聽：開擴音後按開始，每 15～30 秒分析一次
+        btnLiveCall = findViewById(R.id.btnLiveCall);
+        tvLiveStatus = findViewById(R.id.tvLiveStatus);
+        btnLiveCall.setOnClickListener(v -> toggleLiveCall());
+        LiveCallService.state().observe(this, this::renderLiveState);
+    }
+
+    private void toggleLiveCall() {
+        LiveCallService.State st = LiveCallService.state().getValue();
+        if (st != null && st.running) {
+            LiveCallService.stop(this);
+            return;
+        }
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO)
+                == PackageManager.PERMISSION_GRANTED) {
+            LiveCallService.start(this);
+        } else {
+            requestMic.launch(Manifest.permission.RECORD_AUDIO);
+        }
+    }
+
+    private void renderLiveState(LiveCallService.State st) {
+        if (st == null) return;
+        btnLiveCall.setText(st.running ? "停止即時監聽" : "開始即時監聽");
+        tvLiveStatus.setText("即時監聽：" + st.status);
+        if (st.alert != null && !st.alert.equals(shownAlert)) {
+            shownAlert = st.alert;
+            new AlertDialog.Builder(this)
+                    .setTitle("⚠️ 這通電話疑似詐騙")
+                    .setMessage(st.alert)
+                    .setPositiveButton("我知道了", null)
+                    .show();
+        }
     }
 }
@@ -0,0 +1,54 @@
+package com.example.fp2;
+
+import android.app.Application;
+import android.util.Log;
+
+import com.example.fp2.image.BitmapLoader;
+import com.example.fp2.net.AnalysisJobClient;
+import com.example.fp2.net.OfflineQueue;
+import com.example.fp2.ocr.OcrEngine;
+import com.example.fp2.rules.RuleEngine;
+import com.example.fp2.work.RetentionWorker;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public class FP2Application extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // 歷史紀錄保留策略：每天背景清理一次
+        RetentionWorker.schedule(this);
+
+        // 上次被系統殺掉時還沒等完的後端分析工作：接著等，結果存進歷史
+        AnalysisJobClient.get(this).resumePending();
+
+        // 離線時存下的檢查：還有沒補送完的就排 worker（等有網路才跑）
+        OfflineQueue.get(this).resumeIfPending();
+
+        // 本機詐騙規則（文字分析的初判）：背景載入，沒載完前就只等後端結果
+        new Thread(() -> {
+            try (InputStream in = getAssets().open(RuleEngine.ASSET)) {
+                RuleEngine.install(RuleEngine.load(in));
+            } catch (IOException e) {
+                Log.e("RULES", "load rules failed", e);
+            }
+        }).start();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        // OCR 模型 / bitmap pool 吃不少記憶體：App 進背景或前景記憶體吃緊時釋放，
+        // 只是暫時切走（UI_HIDDEN）就留著，回來還是熱的
+        if (level >= TRIM_MEMORY_BACKGROUND
+                || level == TRIM_MEMORY_RUNNING_LOW
+                || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            OcrEngine.get().release();
+            BitmapLoader.get(this).trim();
+        }
+    }
+}
@@ -10,15 +10,20 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.fp2.db.RiskRecordEntity;
 import com.example.fp2.model.HistoryItem;
 
-import java.util.List;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Objects;
 
-public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHolder> {
+public class HistoryAdapter extends ListAdapter<HistoryItem, HistoryAdapter.ViewHolder> {
 
-    private final List<HistoryItem> dataList;
     private final Context context;
 
     // 風險顏色
@@ -27,9 +32,37 @@ public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHold
     private static final int COLOR_LOW  = Color.parseColor("#27AE60"); // 綠
     private static final int COLOR_ICON = Color.parseColor("#227D60"); // 主色綠
 
-    public HistoryAdapter(Context context, List<HistoryItem> dataList) {
+    // 日期格式器重複使用（只在主執行緒 bind 時使用）
+    private static final SimpleDateFormat DATE_FORMAT =
+            new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
+
+    // ✅ DiffUtil：id 相同視為同一列；內容有變才重綁
+    private static final DiffUtil.ItemCallback<HistoryItem> DIFF =
+            new DiffUtil.ItemCallback<HistoryItem>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull HistoryItem a, @NonNull HistoryItem b) {
+                    return a.getId() == b.getId();
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull HistoryItem a, @NonNull HistoryItem b) {
+                    return a.getType() == b.getType()
+                            && a.getRiskCode() == b.getRiskCode()
+                            && a.isPending() == b.isPending()
+                            && Objects.equals(a.getCreatedAt(), b.getCreatedAt())
+                            && Objects.equals(a.getContent(), b.getContent());
+                }
+            };
+
+    public HistoryAdapter(Context context) {
+        super(DIFF);
         this.context = context;
-        this.dataList = dataList;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     @NonNull
@@ -42,7 +75,7 @@ public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHold
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        HistoryItem item = dataList.get(position);
+        HistoryItem item = getItem(position);
 
         // ✅ 類型 icon
         setTypeIcon(holder, item);
@@ -50,22 +83,27 @@ public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHold
         // 標題
         holder.tvResultTitle.setText(item.getTitle());
 
-        // 日期
-        holder.tvDate.setText(item.getDate());
-
-        // 風險等級文字
-        String risk = item.getRiskLevel();
-        holder.tvRiskLevel.setText("風險程度-" + risk);
-
-        // 風險顏色（同時支援 中文 / 英文）
-        if ("高".equals(risk) || "HIGH".equalsIgnoreCase(risk)) {
-            holder.tvRiskLevel.setTextColor(COLOR_HIGH);
-        } else if ("中".equals(risk) || "MEDIUM".equalsIgnoreCase(risk)) {
-            holder.tvRiskLevel.setTextColor(COLOR_MID);
-        } else if ("低".equals(risk) || "LOW".equalsIgnoreCase(risk)) {
-            holder.tvRiskLevel.setTextColor(COLOR_LOW);
-        } else {
-            holder.tvRiskLevel.setTextColor(Color.GRAY);
+        // 日期（bind 時才格式化，只格式化看得到的列）
+        Long createdAt = item.getCreatedAt();
+        holder.tvDate.setText(createdAt == null ? "" : DATE_FORMAT.format(new Date(createdAt)));
+
+        // 風險等級文字（離線初判：恢復連線補送後會更新）
+        holder.tvRiskLevel.setText("風險程度-" + item.getRiskLevel() + (item.isPending() ? "（初判，待補分析）" : ""));
+
+        // 風險顏色（riskCode 寫入時已正規化）
+        switch (item.getRiskCode()) {
+            case RiskRecordEntity.RISK_HIGH:
+                holder.tvRiskLevel.setTextColor(COLOR_HIGH);
+                break;
+            case RiskRecordEntity.RISK_MEDIUM:
+                holder.tvRiskLevel.setTextColor(COLOR_MID);
+                break;
+            case RiskRecordEntity.RISK_LOW:
+                holder.tvRiskLevel.setTextColor(COLOR_LOW);
+                break;
+            default:
+                holder.tvRiskLevel.setTextColor(Color.GRAY);
+                break;
         }
 
         // 點整個 item 或「查看詳情」都可進詳情頁
@@ -102,11 +140,6 @@ public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHold
         holder.ivTypeIcon.setColorFilter(COLOR_ICON);
     }
 
-    @Override
-    public int getItemCount() {
-        return dataList == null ? 0 : dataList.size();
-    }
-
     static class ViewHolder extends RecyclerView.ViewHolder {
 
         ImageView ivTypeIcon;
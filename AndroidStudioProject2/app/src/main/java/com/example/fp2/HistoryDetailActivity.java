@@ -1,7 +1,6 @@
 package com.example.fp2;
 
 import android.content.Intent;
-import android.media.MediaPlayer;
 import android.net.Uri;
 import android.os.Bundle;
 import android.text.TextUtils;
@@ -13,10 +12,12 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.fp2.audio.PreviewPlayer;
+import com.example.fp2.audio.WaveformProbe;
 import com.example.fp2.db.AppDatabase;
 import com.example.fp2.db.RiskRecordEntity;
-
-import java.io.IOException;
+import com.example.fp2.db.RiskRecordRepository;
+import com.example.fp2.image.BitmapLoader;
 
 public class HistoryDetailActivity extends AppCompatActivity {
 
@@ -30,10 +31,11 @@ public class HistoryDetailActivity extends AppCompatActivity {
     private ImageView ivImage;
     private View audioLayout;
     private ImageButton btnPlayPause;
+    private WaveformView waveform;
+    private TextView tvAudioDuration;
 
     // ===== Audio =====
-    private MediaPlayer mediaPlayer;
-    private boolean isPrepared = false;
+    private PreviewPlayer player;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -48,6 +50,27 @@ public class HistoryDetailActivity extends AppCompatActivity {
         ivImage = findViewById(R.id.iv_image);
         audioLayout = findViewById(R.id.layout_audio);
         btnPlayPause = findViewById(R.id.btn_play_pause);
+        waveform = findViewById(R.id.waveform);
+        tvAudioDuration = findViewById(R.id.tv_audio_duration);
+
+        // ✅ 播放器等第一次按播放才建立，onStop 就放掉
+        player = new PreviewPlayer(this, new PreviewPlayer.Listener() {
+            @Override
+            public void onPlayingChanged(boolean playing) {
+                btnPlayPause.setImageResource(playing
+                        ? android.R.drawable.ic_media_pause : android.R.drawable.ic_media_play);
+            }
+
+            @Override
+            public void onProgress(float fraction) {
+                waveform.setProgress(fraction);
+            }
+
+            @Override
+            public void onError(String message) {
+                toast(message);
+            }
+        });
 
         findViewById(R.id.btn_back).setOnClickListener(v -> finish());
 
@@ -73,18 +96,23 @@ public class HistoryDetailActivity extends AppCompatActivity {
                             .riskRecordDao()
                             .getById(id);
 
+            // ✅ 分析結果由結構化欄位重繪（舊資料直接用 summary）
+            String rendered = record == null
+                    ? ""
+                    : RiskRecordRepository.get(this).render(record);
+
             runOnUiThread(() -> {
                 if (record == null) {
                     toast("找不到紀錄");
                     finish();
                     return;
                 }
-                bindRecord(record);
+                bindRecord(record, rendered);
             });
         }).start();
     }
 
-    private void bindRecord(RiskRecordEntity r) {
+    private void bindRecord(RiskRecordEntity r, String rendered) {
 
         // ===== 標題 =====
         switch (safeUpper(r.type)) {
@@ -105,10 +133,10 @@ public class HistoryDetailActivity extends AppCompatActivity {
         }
 
         // ===== 分析結果文字 =====
-        if (TextUtils.isEmpty(safeTrim(r.summary))) {
+        if (TextUtils.isEmpty(safeTrim(rendered))) {
             tvResultText.setText("(無分析結果)");
         } else {
-            tvResultText.setText(r.summary);
+            tvResultText.setText(rendered);
         }
 
         // ✅ 取「偵測到的文字」：有 detectedText 就用，沒有才退回 content
@@ -146,7 +174,9 @@ public class HistoryDetailActivity extends AppCompatActivity {
         audioLayout.setVisibility(View.GONE);
 
         try {
-            ivImage.setImageURI(Uri.parse(uriStr));
+            // 背景解縮圖，不在主執行緒 setImageURI 整張原圖
+            int maxSide = getResources().getDisplayMetrics().widthPixels;
+            BitmapLoader.get(this).loadThumbnail(ivImage, Uri.parse(uriStr), maxSide);
         } catch (Exception e) {
             toast("圖片讀取失敗");
         }
@@ -156,39 +186,26 @@ public class HistoryDetailActivity extends AppCompatActivity {
     // AUDIO
     // =========================
     private void showAudio(String uriStr) {
-        audioLayout.setVisibility(View.VISIBLE);
         ivImage.setVisibility(View.GONE);
 
-        Uri uri = Uri.parse(uriStr);
-        mediaPlayer = new MediaPlayer();
-
-        try {
-            mediaPlayer.setDataSource(this, uri);
-            mediaPlayer.setOnPreparedListener(mp -> {
-                isPrepared = true;
-                btnPlayPause.setImageResource(android.R.drawable.ic_media_play);
-            });
-            mediaPlayer.setOnCompletionListener(mp ->
-                    btnPlayPause.setImageResource(android.R.drawable.ic_media_play)
-            );
-            mediaPlayer.prepareAsync();
-        } catch (IOException e) {
-            toast("音檔載入失敗");
+        // 即時通話監聽的紀錄沒有音檔（content 不是 uri）
+        String u = safeTrim(uriStr);
+        if (!u.startsWith("content://") && !u.startsWith("file://")) {
+            audioLayout.setVisibility(View.GONE);
+            return;
         }
+        audioLayout.setVisibility(View.VISIBLE);
 
-        btnPlayPause.setOnClickListener(v -> togglePlay());
-    }
-
-    private void togglePlay() {
-        if (!isPrepared || mediaPlayer == null) return;
+        Uri uri = Uri.parse(u);
+        player.setSource(uri);
+        btnPlayPause.setOnClickListener(v -> player.toggle());
 
-        if (mediaPlayer.isPlaying()) {
-            mediaPlayer.pause();
-            btnPlayPause.setImageResource(android.R.drawable.ic_media_play);
-        } else {
-            mediaPlayer.start();
-            btnPlayPause.setImageResource(android.R.drawable.ic_media_pause);
-        }
+        // 長度 + 波形：背景探測，不用先準備播放器
+        WaveformProbe.get(this).probe(uri, w -> {
+            if (isFinishing()) return;
+            tvAudioDuration.setText(WaveformProbe.formatDuration(w.durationMs));
+            if (w.peaks != null) waveform.setPeaks(w.peaks);
+        });
     }
 
     // =========================
@@ -275,12 +292,9 @@ public class HistoryDetailActivity extends AppCompatActivity {
     }
 
     @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        if (mediaPlayer != null) {
-            try { mediaPlayer.release(); } catch (Exception ignored) {}
-            mediaPlayer = null;
-        }
+    protected void onStop() {
+        super.onStop();
+        player.release();
     }
 
     private void toast(String s) {
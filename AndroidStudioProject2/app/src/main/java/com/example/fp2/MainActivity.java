@@ -1,17 +1,27 @@
 package com.example.fp2;
 
+import android.Manifest;
 import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Bundle;
+import android.provider.Settings;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
+import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import com.example.fp2.guard.LinkGuardService;
+
 public class MainActivity extends AppCompatActivity {
 
     @Override
@@ -27,6 +37,13 @@ public class MainActivity extends AppCompatActivity {
             return insets;
         });
 
+        // Android 13+：分享進來的內容在背景分析完要發通知
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.POST_NOTIFICATIONS}, 1);
+        }
+
         // 歷史紀錄按鈕 (XML 用 LinearLayout 包起來)
         LinearLayout btnHistory = findViewById(R.id.btnHistory);
         if (btnHistory != null) {
@@ -36,6 +53,32 @@ public class MainActivity extends AppCompatActivity {
             });
         }
 
+        // 統計按鈕（歷史紀錄下方）
+        LinearLayout btnStats = findViewById(R.id.btnStats);
+        if (btnStats != null) {
+            btnStats.setOnClickListener(v -> {
+                Intent intent = new Intent(MainActivity.this, StatsActivity.class);
+                startActivity(intent);
+            });
+        }
+
+        // 連結守護按鈕（統計下方）：還沒授權通知存取就先帶去系統設定，有授權才切換開關
+        LinearLayout btnLinkGuard = findViewById(R.id.btnLinkGuard);
+        if (btnLinkGuard != null) {
+            btnLinkGuard.setOnClickListener(v -> {
+                if (!LinkGuardService.hasAccess(this)) {
+                    LinkGuardService.setEnabled(this, true);
+                    Toast.makeText(this, "請在清單中允許「連結守護」讀取通知", Toast.LENGTH_LONG).show();
+                    startActivity(new Intent(Settings.ACTION_NOTIFICATION_LISTENER_SETTINGS));
+                    return;
+                }
+                boolean on = !LinkGuardService.isEnabled(this);
+                LinkGuardService.setEnabled(this, on);
+                Toast.makeText(this, on ? "已開啟連結守護" : "已關閉連結守護", Toast.LENGTH_SHORT).show();
+                refreshLinkGuardLabel();
+            });
+        }
+
         // ✅ 新增：文字辨識按鈕
         Button btnText = findViewById(R.id.btnText);
         if (btnText != null) {
@@ -91,6 +134,19 @@ public class MainActivity extends AppCompatActivity {
             });
         }
     }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        refreshLinkGuardLabel(); // 從系統設定回來時更新
+    }
+
+    private void refreshLinkGuardLabel() {
+        TextView tv = findViewById(R.id.tvLinkGuard);
+        if (tv == null) return;
+        boolean on = LinkGuardService.hasAccess(this) && LinkGuardService.isEnabled(this);
+        tv.setText(on ? "連結守護：開" : "連結守護");
+    }
 }
 
 
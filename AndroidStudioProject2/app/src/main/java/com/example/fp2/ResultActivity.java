@@ -5,40 +5,55 @@ import android.net.Uri;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.Log;
+import android.view.View;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.activity.EdgeToEdge;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
-import com.example.fp2.db.AppDatabase;
-import com.example.fp2.db.RiskRecordEntity;
+import com.example.fp2.batch.ScreenshotBatchJob;
+import com.example.fp2.db.RiskRecordRepository;
 import com.example.fp2.model.ApiResponse;
 import com.example.fp2.model.ResultFormatter;
 import com.example.fp2.net.BackendService;
-import com.google.mlkit.vision.common.InputImage;
-import com.google.mlkit.vision.text.TextRecognition;
-import com.google.mlkit.vision.text.TextRecognizer;
-import com.google.mlkit.vision.text.chinese.ChineseTextRecognizerOptions;
-import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
+import com.example.fp2.net.OfflineQueue;
+import com.example.fp2.ocr.OcrEngine;
+import com.example.fp2.ocr.OcrPipeline;
+import com.example.fp2.rules.RuleEngine;
 
-import java.io.IOException;
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 
 public class ResultActivity extends AppCompatActivity {
 
     private static final String TAG = "RESULT";
 
+    // onSaveInstanceState 的 key
+    private static final String STATE_DONE = "result_done";
+    private static final String STATE_DETECTED = "result_detected";
+    private static final String STATE_RISK = "result_risk";
+    private static final String STATE_BATCH = "result_batch";
+
     private TextView detectedText; // 偵測到的文字（OCR / 使用者輸入）
     private TextView riskText;     // 風險判斷結果（pretty）
 
+    private TextView batchProgress; // 多張截圖的每張進度
+
     private Uri imageUri;
     private String inputText; // 文字模式用
 
+    private ScreenshotBatchJob batchJob; // 多張截圖模式
+
+    private boolean resultDone; // 最終結果已顯示（重建時直接還原）
+    private String[] batchStates;
+
     private final BackendService backend = new BackendService();
 
     @Override
@@ -58,6 +73,7 @@ public class ResultActivity extends AppCompatActivity {
 
         detectedText = findViewById(R.id.detectedText);
         riskText = findViewById(R.id.riskText);
+        batchProgress = findViewById(R.id.batchProgress);
 
         backArrow.setOnClickListener(v -> {
             startActivity(new Intent(this, MainActivity.class));
@@ -82,14 +98,28 @@ public class ResultActivity extends AppCompatActivity {
         );
         if (!TextUtils.isEmpty(detectedFromIntent)) setDetectedText(detectedFromIntent);
 
-        // ✅ 文字模式
         inputText = getIntent().getStringExtra("inputText");
+
+        // ✅ 旋轉 / 頁面重建：已經有結果就直接還原，不重跑 OCR 與分析
+        if (savedInstanceState != null && savedInstanceState.getBoolean(STATE_DONE)) {
+            restoreResult(savedInstanceState);
+            return;
+        }
+
+        // ✅ 文字模式
         if (!TextUtils.isEmpty(inputText)) {
             setDetectedText(inputText);
             analyzePlainText(inputText);
             return;
         }
 
+        // ✅ 多張截圖模式（批次）
+        ArrayList<String> imageUris = getIntent().getStringArrayListExtra("imageUris");
+        if (imageUris != null && !imageUris.isEmpty()) {
+            startBatch(imageUris);
+            return;
+        }
+
         // ✅ 圖片模式（OCR）
         String imageUriStr = getIntent().getStringExtra("imageUri");
         if (TextUtils.isEmpty(imageUriStr)) {
@@ -107,6 +137,35 @@ public class ResultActivity extends AppCompatActivity {
         runTextRecognition(imageUri);
     }
 
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (!resultDone) return;
+        outState.putBoolean(STATE_DONE, true);
+        outState.putString(STATE_DETECTED, detectedText.getText().toString());
+        outState.putString(STATE_RISK, riskText.getText().toString());
+        if (batchProgress.getVisibility() == View.VISIBLE) {
+            outState.putString(STATE_BATCH, batchProgress.getText().toString());
+        }
+    }
+
+    private void restoreResult(Bundle state) {
+        resultDone = true;
+        detectedText.setText(state.getString(STATE_DETECTED, ""));
+        riskText.setText(state.getString(STATE_RISK, ""));
+        String batch = state.getString(STATE_BATCH);
+        if (batch != null) {
+            batchProgress.setVisibility(View.VISIBLE);
+            batchProgress.setText(batch);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (batchJob != null) batchJob.cancel();
+    }
+
     // ===============================
     // 顯示偵測到的文字
     // ===============================
@@ -120,104 +179,206 @@ public class ResultActivity extends AppCompatActivity {
     // 文字模式：送後端分析
     // ===============================
     private void analyzePlainText(String text) {
-        riskText.setText("分析中…");
+        ApiResponse provisional = showProvisional(text);
 
-        backend.analyzeText(text, new BackendService.Callback() {
+        backend.analyzeTextStream(text, new BackendService.Callback() {
             @Override
             public void onSuccess(ApiResponse data) {
                 runOnUiThread(() -> {
                     String pretty = ResultFormatter.format(data);
                     riskText.setText(pretty);
+                    resultDone = true;
 
                     // ✅ 存歷史：TEXT 的 detected_text 就存使用者輸入文字
-                    saveTextRiskIfNeeded(data, text, pretty);
+                    saveTextRiskIfNeeded(data, text);
                 });
             }
 
             @Override
             public void onError(String message) {
-                runOnUiThread(() -> riskText.setText("分析失敗：" + message));
+                if (OfflineQueue.shouldQueue(getApplicationContext(), message)) {
+                    queueOffline(() -> OfflineQueue.get(getApplicationContext()).enqueueText(text));
+                    return;
+                }
+                runOnUiThread(() -> riskText.setText(failureText(message, provisional)));
+            }
+
+            @Override
+            public void onPartial(ApiResponse partial) {
+                runOnUiThread(() -> showPartial(partial));
             }
         });
     }
 
     // ===============================
-    // OCR：中文優先，失敗再英文
+    // 本機規則初判：後端回來前先顯示（沒命中就只顯示「分析中…」）
     // ===============================
-    private void runTextRecognition(Uri uri) {
-        try {
-            InputImage image = InputImage.fromFilePath(this, uri);
-
-            TextRecognizer zh = TextRecognition.getClient(
-                    new ChineseTextRecognizerOptions.Builder().build()
-            );
-
-            zh.process(image)
-                    .addOnSuccessListener(t -> {
-                        String text = t.getText();
-                        if (!TextUtils.isEmpty(text)) {
-                            setDetectedText(text);
-                            analyzeOcrText(text);
-                        } else {
-                            runEnglishRecognition(image);
-                        }
-                    })
-                    .addOnFailureListener(e -> runEnglishRecognition(image));
-
-        } catch (IOException e) {
-            riskText.setText("讀取圖片失敗");
-            setDetectedText("");
-        }
+    private ApiResponse showProvisional(String text) {
+        ApiResponse provisional = RuleEngine.provisional(text);
+        riskText.setText(provisional == null
+                ? "分析中…"
+                : "（本機初判，完整分析中…）\n\n" + ResultFormatter.format(provisional));
+        return provisional;
+    }
+
+    /**
+     * 串流中：後端規則結果 + LLM 已生成的段落，邊收邊畫
+     */
+    private void showPartial(ApiResponse partial) {
+        if (resultDone) return;
+        riskText.setText("（AI 分析中，內容會陸續更新…）\n\n" + ResultFormatter.format(partial));
+    }
+
+    /**
+     * 連不上後端：存進歷史（本機初判）+ 待補送，恢復連線後自動更新同一筆
+     */
+    private void queueOffline(Supplier<ApiResponse> enqueue) {
+        new Thread(() -> {
+            ApiResponse provisional = enqueue.get();
+            runOnUiThread(() -> {
+                riskText.setText(OfflineQueue.notice(provisional));
+                resultDone = true;
+            });
+        }).start();
+    }
+
+    private static String failureText(String message, ApiResponse provisional) {
+        if (provisional == null) return "分析失敗：" + message;
+        return "分析失敗：" + message + "\n\n（以下為本機規則初判）\n\n" + ResultFormatter.format(provisional);
     }
 
-    private void runEnglishRecognition(InputImage image) {
-        TextRecognizer en = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
-        en.process(image)
-                .addOnSuccessListener(t -> {
-                    String text = t.getText();
-                    if (TextUtils.isEmpty(text)) {
-                        riskText.setText("未偵測到文字");
-                        setDetectedText("");
-                    } else {
-                        setDetectedText(text);
-                        analyzeOcrText(text);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    riskText.setText("辨識失敗：" + e.getMessage());
+    // ===============================
+    // OCR：中英文同時跑再合併（共用 OcrEngine，不每次建 recognizer）
+    // ===============================
+    private void runTextRecognition(Uri uri) {
+        // ✅ 同一張圖（內容雜湊相同）看過就直接用快取；沒看過才縮圖解碼 + 區塊 OCR
+        OcrPipeline.recognize(this, uri, new OcrEngine.Callback() {
+            @Override
+            public void onSuccess(String text) {
+                if (TextUtils.isEmpty(text)) {
+                    riskText.setText("未偵測到文字");
                     setDetectedText("");
-                });
+                } else {
+                    setDetectedText(text);
+                    analyzeOcrText(text);
+                }
+            }
+
+            @Override
+            public void onError(String message) {
+                riskText.setText("辨識失敗：" + message);
+                setDetectedText("");
+            }
+        });
     }
 
     // ===============================
     // 後端分析（OCR 文字）
     // ===============================
     private void analyzeOcrText(String ocrText) {
-        riskText.setText("分析中…");
+        ApiResponse provisional = showProvisional(ocrText);
 
-        backend.analyzeText(ocrText, new BackendService.Callback() {
+        backend.analyzeTextStream(ocrText, new BackendService.Callback() {
             @Override
             public void onSuccess(ApiResponse data) {
                 runOnUiThread(() -> {
                     String pretty = ResultFormatter.format(data);
                     riskText.setText(pretty);
+                    resultDone = true;
 
                     // ✅ 存歷史：IMAGE 的 detected_text 就存 OCR 文字
-                    saveImageRiskIfNeeded(data, imageUri, ocrText, pretty);
+                    saveImageRiskIfNeeded(data, imageUri, ocrText);
                 });
             }
 
             @Override
             public void onError(String message) {
-                runOnUiThread(() -> riskText.setText("分析失敗：" + message));
+                if (OfflineQueue.shouldQueue(getApplicationContext(), message)) {
+                    queueOffline(() -> OfflineQueue.get(getApplicationContext()).enqueueOcrText(imageUri, ocrText));
+                    return;
+                }
+                runOnUiThread(() -> riskText.setText(failureText(message, provisional)));
+            }
+
+            @Override
+            public void onPartial(ApiResponse partial) {
+                runOnUiThread(() -> showPartial(partial));
+            }
+        });
+    }
+
+    // ===============================
+    // 多張截圖：OCR 第 N+1 張時同時分析前 N 張接好的對話
+    // ===============================
+    private void startBatch(List<String> uriStrings) {
+        List<Uri> uris = new ArrayList<>(uriStrings.size());
+        for (String u : uriStrings) uris.add(Uri.parse(u));
+
+        batchStates = new String[uris.size()];
+        batchProgress.setVisibility(View.VISIBLE);
+        setDetectedText("（OCR 辨識中…）");
+        riskText.setText("等待第一張辨識完成…");
+
+        batchJob = new ScreenshotBatchJob(this, uris, new ScreenshotBatchJob.Listener() {
+            @Override
+            public void onImageState(int index, int state, int addedLines) {
+                switch (state) {
+                    case ScreenshotBatchJob.STATE_OCR:
+                        batchStates[index] = "辨識中…";
+                        break;
+                    case ScreenshotBatchJob.STATE_DONE:
+                        batchStates[index] = addedLines > 0 ? "完成（新增 " + addedLines + " 行）" : "完成（與前一張重複）";
+                        break;
+                    case ScreenshotBatchJob.STATE_FAILED:
+                        batchStates[index] = "失敗";
+                        break;
+                    default:
+                        batchStates[index] = "等待中";
+                        break;
+                }
+                renderBatchProgress();
+            }
+
+            @Override
+            public void onConversation(String conversation) {
+                setDetectedText(conversation);
+            }
+
+            @Override
+            public void onProvisional(ApiResponse data) {
+                riskText.setText("（仍在辨識其他截圖，結果可能更新）\n\n" + ResultFormatter.format(data));
+            }
+
+            @Override
+            public void onComplete(ApiResponse data, String conversation) {
+                riskText.setText(ResultFormatter.format(data));
+                resultDone = true;
+                // ✅ 存歷史：content 用第一張截圖，detected_text 存整段接好的對話
+                saveImageRiskIfNeeded(data, uris.get(0), conversation);
+            }
+
+            @Override
+            public void onError(String message) {
+                riskText.setText("分析失敗：" + message);
             }
         });
+        batchJob.start();
+    }
+
+    private void renderBatchProgress() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < batchStates.length; i++) {
+            if (i > 0) sb.append('\n');
+            sb.append("第 ").append(i + 1).append(" 張：")
+                    .append(batchStates[i] == null ? "等待中" : batchStates[i]);
+        }
+        batchProgress.setText(sb.toString());
     }
 
     // ===============================
     // 寫入 Room（文字）— 中/高才存
     // ===============================
-    private void saveTextRiskIfNeeded(ApiResponse data, String text, String prettySummary) {
+    private void saveTextRiskIfNeeded(ApiResponse data, String text) {
         Log.d(TAG, "===== SAVE TEXT CALLED =====");
 
         if (data == null || TextUtils.isEmpty(text)) {
@@ -225,7 +386,7 @@ public class ResultActivity extends AppCompatActivity {
             return;
         }
 
-        String riskLevel = normalizeRiskLevel(data.risk, data.is_scam);
+        String riskLevel = RiskRecordRepository.normalizeRiskLevel(data.risk, data.is_scam);
         Log.d(TAG, "risk = " + riskLevel);
 
         if (!"MEDIUM".equals(riskLevel) && !"HIGH".equals(riskLevel)) {
@@ -233,8 +394,6 @@ public class ResultActivity extends AppCompatActivity {
             return;
         }
 
-        int score = "HIGH".equals(riskLevel) ? 90 : 65;
-
         // content：截斷一點避免 DB 太肥
         String storeText = text.trim();
         if (storeText.length() > 500) storeText = storeText.substring(0, 500) + "…";
@@ -243,21 +402,14 @@ public class ResultActivity extends AppCompatActivity {
         String detected = text.trim();
         if (detected.length() > 2000) detected = detected.substring(0, 2000) + "…";
 
-        RiskRecordEntity record = new RiskRecordEntity(
-                "TEXT",
-                storeText,
-                riskLevel,
-                score,
-                prettySummary,
-                detected,
-                System.currentTimeMillis()
-        );
+        final String content = storeText;
+        final String detectedValue = detected;
 
         new Thread(() -> {
             try {
-                AppDatabase.getInstance(getApplicationContext())
-                        .riskRecordDao()
-                        .insert(record);
+                // ✅ 結構化結果一起存（詳情頁再 render）
+                RiskRecordRepository.get(getApplicationContext())
+                        .saveAnalysis("TEXT", content, detectedValue, data);
                 Log.d(TAG, "✅ TEXT SAVED TO DB");
             } catch (Exception e) {
                 Log.e(TAG, "❌ TEXT insert failed", e);
@@ -268,7 +420,7 @@ public class ResultActivity extends AppCompatActivity {
     // ===============================
     // 寫入 Room（圖片）— 中/高才存
     // ===============================
-    private void saveImageRiskIfNeeded(ApiResponse data, Uri imageUri, String ocrText, String prettySummary) {
+    private void saveImageRiskIfNeeded(ApiResponse data, Uri imageUri, String ocrText) {
         Log.d(TAG, "===== SAVE IMAGE CALLED =====");
 
         if (data == null || imageUri == null) {
@@ -276,7 +428,7 @@ public class ResultActivity extends AppCompatActivity {
             return;
         }
 
-        String riskLevel = normalizeRiskLevel(data.risk, data.is_scam);
+        String riskLevel = RiskRecordRepository.normalizeRiskLevel(data.risk, data.is_scam);
         Log.d(TAG, "risk = " + riskLevel);
 
         if (!"MEDIUM".equals(riskLevel) && !"HIGH".equals(riskLevel)) {
@@ -284,26 +436,20 @@ public class ResultActivity extends AppCompatActivity {
             return;
         }
 
-        int score = "HIGH".equals(riskLevel) ? 90 : 65;
-
         String detected = (ocrText == null) ? "" : ocrText.trim();
         if (detected.length() > 2000) detected = detected.substring(0, 2000) + "…";
 
-        RiskRecordEntity record = new RiskRecordEntity(
-                "IMAGE",
-                imageUri.toString(),      // content: 圖片 uri
-                riskLevel,
-                score,
-                prettySummary,
-                detected,                 // ✅ detected_text：OCR 的文字
-                System.currentTimeMillis()
-        );
+        final String detectedValue = detected;
 
         new Thread(() -> {
             try {
-                AppDatabase.getInstance(getApplicationContext())
-                        .riskRecordDao()
-                        .insert(record);
+                RiskRecordRepository.get(getApplicationContext())
+                        .saveAnalysis(
+                                "IMAGE",
+                                imageUri.toString(),  // content: 圖片 uri
+                                detectedValue,        // ✅ detected_text：OCR 的文字
+                                data
+                        );
                 Log.d(TAG, "✅ IMAGE SAVED TO DB");
             } catch (Exception e) {
                 Log.e(TAG, "❌ IMAGE insert failed", e);
@@ -314,16 +460,6 @@ public class ResultActivity extends AppCompatActivity {
     // ===============================
     // 工具方法
     // ===============================
-    private String normalizeRiskLevel(String risk, boolean isScam) {
-        if (risk == null) return isScam ? "HIGH" : "LOW";
-
-        String r = risk.trim().toUpperCase(Locale.ROOT);
-        if (r.contains("HIGH") || r.contains("高") || r.contains("DANGER")) return "HIGH";
-        if (r.contains("MED") || r.contains("中") || r.contains("SUSPIC")) return "MEDIUM";
-        if (r.contains("LOW") || r.contains("低") || r.contains("SAFE")) return "LOW";
-        return isScam ? "HIGH" : "LOW";
-    }
-
     private String firstNonEmpty(String a, String b) {
         if (!TextUtils.isEmpty(a)) return a;
         if (!TextUtils.isEmpty(b)) return b;
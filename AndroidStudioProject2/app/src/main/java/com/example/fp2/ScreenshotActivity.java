@@ -1,5 +1,6 @@
 package com.example.fp2;
 
+import android.content.ClipData;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Build;
@@ -8,6 +9,7 @@ import android.provider.DocumentsContract;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ImageView;
+import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
 import androidx.activity.result.ActivityResultLauncher;
@@ -19,17 +21,30 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import com.example.fp2.image.BitmapLoader;
+import com.example.fp2.ocr.OcrEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+
 public class ScreenshotActivity extends AppCompatActivity {
 
     private ImageView imagePreview;
-    @Nullable private Uri selectedImageUri; // 使用者選的圖片
+    private final ArrayList<Uri> selectedImageUris = new ArrayList<>(); // 使用者選的圖片（可多張）
 
-    /** 方式一：首選 — ACTION_OPEN_DOCUMENT（嘗試預設到 Downloads，保留持久讀取權限） */
+    /** 方式一：首選 — ACTION_OPEN_DOCUMENT（嘗試預設到 Downloads，保留持久讀取權限，可多選） */
     private final ActivityResultLauncher<Intent> pickImageLocal =
             registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), result -> {
                 if (result.getResultCode() == RESULT_OK && result.getData() != null) {
-                    Uri uri = result.getData().getData();
-                    if (uri != null) {
+                    List<Uri> picked = new ArrayList<>();
+                    ClipData clip = result.getData().getClipData();
+                    if (clip != null) {
+                        for (int i = 0; i < clip.getItemCount(); i++) picked.add(clip.getItemAt(i).getUri());
+                    } else if (result.getData().getData() != null) {
+                        picked.add(result.getData().getData());
+                    }
+
+                    for (Uri uri : picked) {
                         // 保留讀取權限（有些裝置 flags 會是 0，保守直接給 READ）
                         try {
                             getContentResolver().takePersistableUriPermission(
@@ -37,20 +52,14 @@ public class ScreenshotActivity extends AppCompatActivity {
                                     Intent.FLAG_GRANT_READ_URI_PERMISSION
                             );
                         } catch (Exception ignored) {}
-                        selectedImageUri = uri;
-                        imagePreview.setImageURI(uri);
                     }
+                    setSelected(picked);
                 }
             });
 
-    /** 方式二：備援 — GetContent（不指定初始目錄） */
+    /** 方式二：備援 — GetMultipleContents（不指定初始目錄） */
     private final ActivityResultLauncher<String> pickImageSimple =
-            registerForActivityResult(new ActivityResultContracts.GetContent(), uri -> {
-                if (uri != null) {
-                    selectedImageUri = uri;
-                    imagePreview.setImageURI(uri);
-                }
-            });
+            registerForActivityResult(new ActivityResultContracts.GetMultipleContents(), this::setSelected);
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -65,16 +74,20 @@ public class ScreenshotActivity extends AppCompatActivity {
             return insets;
         });
 
+        // ✅ 使用者挑圖的同時先把 OCR 模型載好，按「辨識」時就是熱的
+        OcrEngine.get().warmUp();
+
         imagePreview = findViewById(R.id.imagePreview);
         ImageView backArrow = findViewById(R.id.backArrow);
         Button uploadButton = findViewById(R.id.uploadButton);
         Button recognizeButton = findViewById(R.id.recognizeButton);
 
         if (savedInstanceState != null) {
-            String saved = savedInstanceState.getString("selectedImageUri");
+            ArrayList<String> saved = savedInstanceState.getStringArrayList("selectedImageUris");
             if (saved != null) {
-                selectedImageUri = Uri.parse(saved);
-                imagePreview.setImageURI(selectedImageUri);
+                List<Uri> restored = new ArrayList<>();
+                for (String u : saved) restored.add(Uri.parse(u));
+                setSelected(restored);
             }
         }
 
@@ -88,23 +101,50 @@ public class ScreenshotActivity extends AppCompatActivity {
         uploadButton.setOnClickListener(this::onPickImageClicked);
 
         // 🟠 跳到 ResultActivity（保持原本行為）
+        // ✅ 多張截圖：交給 ResultActivity 跑批次（OCR 與後端分析管線化）
         recognizeButton.setOnClickListener(v -> {
-            if (selectedImageUri != null) {
-                Intent intent = new Intent(ScreenshotActivity.this, ResultActivity.class);
-                intent.putExtra("imageUri", selectedImageUri.toString());
-                startActivity(intent);
+            if (selectedImageUris.isEmpty()) return;
+            Intent intent = new Intent(ScreenshotActivity.this, ResultActivity.class);
+            if (selectedImageUris.size() == 1) {
+                intent.putExtra("imageUri", selectedImageUris.get(0).toString());
+            } else {
+                intent.putStringArrayListExtra("imageUris", toStrings(selectedImageUris));
             }
+            startActivity(intent);
         });
     }
 
     @Override
     protected void onSaveInstanceState(@NonNull Bundle outState) {
         super.onSaveInstanceState(outState);
-        if (selectedImageUri != null) {
-            outState.putString("selectedImageUri", selectedImageUri.toString());
+        if (!selectedImageUris.isEmpty()) {
+            outState.putStringArrayList("selectedImageUris", toStrings(selectedImageUris));
         }
     }
 
+    /** 更新選取；預覽第一張，多張時提示張數 */
+    private void setSelected(List<Uri> uris) {
+        if (uris == null || uris.isEmpty()) return;
+        selectedImageUris.clear();
+        selectedImageUris.addAll(uris);
+        showPreview(uris.get(0));
+        if (uris.size() > 1) {
+            Toast.makeText(this, "已選擇 " + uris.size() + " 張截圖，會依選取順序接成一段對話", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private static ArrayList<String> toStrings(List<Uri> uris) {
+        ArrayList<String> out = new ArrayList<>(uris.size());
+        for (Uri u : uris) out.add(u.toString());
+        return out;
+    }
+
+    /** 預覽只解螢幕寬度的縮圖（背景解碼，不在主執行緒讀整張原圖） */
+    private void showPreview(Uri uri) {
+        int maxSide = getResources().getDisplayMetrics().widthPixels;
+        BitmapLoader.get(this).loadThumbnail(imagePreview, uri, maxSide);
+    }
+
     /** 按「選擇圖片」：優先打開 Downloads，失敗就退回簡單挑檔 */
     public void onPickImageClicked(View v) {
         try {
@@ -112,6 +152,7 @@ public class ScreenshotActivity extends AppCompatActivity {
             Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT)
                     .addCategory(Intent.CATEGORY_OPENABLE)
                     .setType("image/*")
+                    .putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true)
                     .addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION
                             | Intent.FLAG_GRANT_PERSISTABLE_URI_PERMISSION);
 
@@ -0,0 +1,186 @@
+package com.example.fp2;
+
+import android.graphics.Color;
+import android.os.Bundle;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.fp2.db.AppDatabase;
+import com.example.fp2.db.RiskDailyStatEntity;
+import com.example.fp2.db.RiskStatsDao;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 統計頁：只查 risk_daily_stats 摘要表，
+ * 歷史紀錄再多也是幾十列的聚合，開頁即時。
+ */
+public class StatsActivity extends AppCompatActivity {
+
+    private static final int DAYS_PER_DAY_CHART = 14;
+    private static final int DAYS_SUMMARY = 30;
+    private static final int TOP_TYPES = 5;
+
+    private static final int COLOR_BAR  = Color.parseColor("#227D60"); // 主色綠
+    private static final int COLOR_TEXT = Color.parseColor("#666666");
+
+    private LinearLayout layoutPerDay;
+    private LinearLayout layoutTopTypes;
+    private LinearLayout layoutSourceMix;
+    private TextView tvTotal;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_stats);
+
+        ImageView btnBack = findViewById(R.id.btn_back);
+        if (btnBack != null) btnBack.setOnClickListener(v -> finish());
+
+        layoutPerDay = findViewById(R.id.layout_per_day);
+        layoutTopTypes = findViewById(R.id.layout_top_types);
+        layoutSourceMix = findViewById(R.id.layout_source_mix);
+        tvTotal = findViewById(R.id.tv_stats_total);
+
+        loadStats();
+    }
+
+    private void loadStats() {
+        new Thread(() -> {
+            RiskStatsDao dao = AppDatabase.getInstance(this).riskStatsDao();
+
+            int today = RiskDailyStatEntity.dayOf(System.currentTimeMillis());
+            int chartSince = today - (DAYS_PER_DAY_CHART - 1);
+            int summarySince = today - (DAYS_SUMMARY - 1);
+
+            List<RiskStatsDao.DayCount> perDay = dao.scamsPerDay(chartSince);
+            List<RiskStatsDao.LabelCount> topTypes = dao.topScamTypes(summarySince, TOP_TYPES);
+            List<RiskStatsDao.LabelCount> sources = dao.sourceMix(summarySince);
+            List<RiskStatsDao.LabelCount> risks = dao.riskMix(summarySince);
+
+            runOnUiThread(() -> render(today, chartSince, perDay, topTypes, sources, risks));
+        }).start();
+    }
+
+    private void render(int today,
+                        int chartSince,
+                        List<RiskStatsDao.DayCount> perDay,
+                        List<RiskStatsDao.LabelCount> topTypes,
+                        List<RiskStatsDao.LabelCount> sources,
+                        List<RiskStatsDao.LabelCount> risks) {
+
+        // ===== 總覽 =====
+        int high = 0, mid = 0;
+        for (RiskStatsDao.LabelCount lc : risks) {
+            if ("HIGH".equals(lc.label)) high = lc.count;
+            else if ("MEDIUM".equals(lc.label)) mid = lc.count;
+        }
+        tvTotal.setText("近 " + DAYS_SUMMARY + " 天：高風險 " + high + " 件、中風險 " + mid + " 件");
+
+        // ===== 每日件數（沒資料的日子補 0）=====
+        SimpleDateFormat md = new SimpleDateFormat("MM/dd", Locale.getDefault());
+        int[] counts = new int[today - chartSince + 1];
+        for (RiskStatsDao.DayCount dc : perDay) {
+            int idx = dc.day - chartSince;
+            if (idx >= 0 && idx < counts.length) counts[idx] = dc.count;
+        }
+        int maxDay = 0;
+        for (int c : counts) maxDay = Math.max(maxDay, c);
+
+        layoutPerDay.removeAllViews();
+        for (int i = 0; i < counts.length; i++) {
+            String label = md.format(new Date(RiskDailyStatEntity.startOfDay(chartSince + i)));
+            layoutPerDay.addView(buildBarRow(label, counts[i], maxDay));
+        }
+
+        // ===== 常見類型 =====
+        fillLabelRows(layoutTopTypes, topTypes, "目前沒有分類資料");
+
+        // ===== 來源分布 =====
+        List<RiskStatsDao.LabelCount> sourceZh = new ArrayList<>();
+        for (RiskStatsDao.LabelCount lc : sources) {
+            RiskStatsDao.LabelCount x = new RiskStatsDao.LabelCount();
+            x.label = sourceName(lc.label);
+            x.count = lc.count;
+            sourceZh.add(x);
+        }
+        fillLabelRows(layoutSourceMix, sourceZh, "目前沒有紀錄");
+    }
+
+    private void fillLabelRows(LinearLayout container, List<RiskStatsDao.LabelCount> rows, String emptyText) {
+        container.removeAllViews();
+        if (rows.isEmpty()) {
+            TextView tv = new TextView(this);
+            tv.setText(emptyText);
+            tv.setTextColor(COLOR_TEXT);
+            tv.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
+            container.addView(tv);
+            return;
+        }
+        int max = 0;
+        for (RiskStatsDao.LabelCount lc : rows) max = Math.max(max, lc.count);
+        for (RiskStatsDao.LabelCount lc : rows) {
+            container.addView(buildBarRow(lc.label, lc.count, max));
+        }
+    }
+
+    /**
+     * 一列：標籤 | 長條 | 數字
+     */
+    private View buildBarRow(String label, int count, int max) {
+        LinearLayout row = new LinearLayout(this);
+        row.setOrientation(LinearLayout.HORIZONTAL);
+        row.setGravity(Gravity.CENTER_VERTICAL);
+        row.setPadding(0, dp(4), 0, dp(4));
+
+        TextView tvLabel = new TextView(this);
+        tvLabel.setText(label);
+        tvLabel.setTextColor(COLOR_TEXT);
+        tvLabel.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
+        tvLabel.setMaxLines(1);
+        row.addView(tvLabel, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 4f));
+
+        // 長條：用 weight 比例表示數量
+        LinearLayout track = new LinearLayout(this);
+        track.setOrientation(LinearLayout.HORIZONTAL);
+        float filled = max <= 0 ? 0f : (float) count / max;
+
+        View bar = new View(this);
+        bar.setBackgroundColor(COLOR_BAR);
+        track.addView(bar, new LinearLayout.LayoutParams(0, dp(14), filled));
+        View rest = new View(this);
+        track.addView(rest, new LinearLayout.LayoutParams(0, dp(14), 1f - filled));
+        row.addView(track, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 5f));
+
+        TextView tvCount = new TextView(this);
+        tvCount.setText(String.valueOf(count));
+        tvCount.setTextColor(COLOR_TEXT);
+        tvCount.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
+        tvCount.setGravity(Gravity.END);
+        row.addView(tvCount, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 1f));
+
+        return row;
+    }
+
+    private String sourceName(String source) {
+        if ("URL".equals(source)) return "網址";
+        if ("AUDIO".equals(source)) return "錄音";
+        if ("IMAGE".equals(source)) return "截圖";
+        if ("TEXT".equals(source)) return "文字";
+        return source;
+    }
+
+    private int dp(int v) {
+        return Math.round(v * getResources().getDisplayMetrics().density);
+    }
+}
@@ -15,13 +15,14 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
-import com.example.fp2.db.AppDatabase;
-import com.example.fp2.db.RiskRecordEntity;
+import com.example.fp2.db.RiskRecordRepository;
 import com.example.fp2.model.ApiResponse;
 import com.example.fp2.model.ResultFormatter;
+import com.example.fp2.net.AnalysisJobClient;
 import com.example.fp2.net.BackendService;
+import com.example.fp2.net.OfflineQueue;
+import com.example.fp2.rules.RuleEngine;
 
-import java.util.Locale;
 
 public class   TextCheckActivity extends AppCompatActivity {
 
@@ -34,6 +35,10 @@ public class   TextCheckActivity extends AppCompatActivity {
 
     private final BackendService backend = new BackendService();
 
+    // 後端背景工作進行中：「開始辨識」變成「取消分析」
+    private String runningJobId;
+    private CharSequence startLabel;
+
     // 你可調整：避免貼超長造成 UI/網路負擔
     private static final int MAX_LEN = 3000;
 
@@ -53,6 +58,7 @@ public class   TextCheckActivity extends AppCompatActivity {
         textInput = findViewById(R.id.textInput);
         startCheckButton = findViewById(R.id.startCheckButton);
         resultText = findViewById(R.id.resultText);
+        startLabel = startCheckButton.getText();
 
         backArrow.setOnClickListener(v -> finish());
 
@@ -60,6 +66,12 @@ public class   TextCheckActivity extends AppCompatActivity {
         resultText.setText("（結果出來後會顯示在這裡）");
 
         startCheckButton.setOnClickListener(v -> {
+            if (runningJobId != null) {
+                AnalysisJobClient.get(this).cancel(runningJobId);
+                startCheckButton.setEnabled(false);
+                return;
+            }
+
             String text = textInput.getText() == null ? "" : textInput.getText().toString().trim();
 
             if (TextUtils.isEmpty(text)) {
@@ -77,9 +89,14 @@ public class   TextCheckActivity extends AppCompatActivity {
     }
 
     private void analyzeTextAndRender(String text) {
-        resultText.setText("分析中…");
-
-        backend.analyzeText(text, new BackendService.Callback() {
+        // 本機規則先給初判（< 5ms），後端結果回來再覆蓋
+        ApiResponse provisional = RuleEngine.provisional(text);
+        resultText.setText(provisional == null
+                ? "分析中…"
+                : "（本機初判，完整分析中…）\n\n" + ResultFormatter.format(provisional));
+        startCheckButton.setEnabled(false);
+
+        backend.analyzeTextStream(text, new BackendService.Callback() {
             @Override
             public void onSuccess(ApiResponse data) {
                 runOnUiThread(() -> {
@@ -87,60 +104,93 @@ public class   TextCheckActivity extends AppCompatActivity {
                     resultText.setText(pretty);
 
                     // ✅ 中/高風險才存歷史（TEXT）
-                    saveTextRiskIfNeeded(data, text, pretty);
+                    saveTextRiskIfNeeded(data, text);
+                    finishAnalysis();
                 });
             }
 
             @Override
             public void onError(String message) {
-                runOnUiThread(() -> resultText.setText("分析失敗：" + message));
+                if (OfflineQueue.shouldQueue(getApplicationContext(), message)) {
+                    queueOffline(text);
+                    return;
+                }
+                String head = AnalysisJobClient.isCancelled(message) ? "已取消分析" : "分析失敗：" + message;
+                runOnUiThread(() -> {
+                    resultText.setText(provisional == null
+                            ? head
+                            : head + "\n\n（以下為本機規則初判）\n\n" + ResultFormatter.format(provisional));
+                    finishAnalysis();
+                });
+            }
+
+            @Override
+            public void onPartial(ApiResponse partial) {
+                runOnUiThread(() -> resultText.setText(
+                        "（AI 分析中，內容會陸續更新…）\n\n" + ResultFormatter.format(partial)));
+            }
+
+            @Override
+            public void onProgress(AnalysisJobClient.Progress progress) {
+                runOnUiThread(() -> {
+                    if (isFinishing()) return;
+                    resultText.setText(provisional == null
+                            ? progress.label()
+                            : "（本機初判，" + progress.label() + "）\n\n" + ResultFormatter.format(provisional));
+                    if (runningJobId == null) {
+                        runningJobId = progress.jobId;
+                        startCheckButton.setText("取消分析");
+                        startCheckButton.setEnabled(true);
+                    }
+                });
             }
         });
     }
 
+    // ✅ 連不上後端：存進歷史（本機初判）+ 待補送，恢復連線後自動更新同一筆
+    private void queueOffline(String text) {
+        new Thread(() -> {
+            ApiResponse provisional = OfflineQueue.get(getApplicationContext()).enqueueText(text);
+            runOnUiThread(() -> {
+                resultText.setText(OfflineQueue.notice(provisional));
+                finishAnalysis();
+            });
+        }).start();
+    }
+
+    private void finishAnalysis() {
+        runningJobId = null;
+        startCheckButton.setText(startLabel);
+        startCheckButton.setEnabled(true);
+    }
+
     // ✅ 寫入 Room（文字）— 中/高才存
-    private void saveTextRiskIfNeeded(ApiResponse data, String text, String prettySummary) {
+    private void saveTextRiskIfNeeded(ApiResponse data, String text) {
         if (data == null || TextUtils.isEmpty(text)) return;
 
-        String riskLevel = normalizeRiskLevel(data.risk, data.is_scam);
+        String riskLevel = RiskRecordRepository.normalizeRiskLevel(data.risk, data.is_scam);
 
         if (!"MEDIUM".equals(riskLevel) && !"HIGH".equals(riskLevel)) {
             Log.d(TAG, "risk is LOW, skip save");
             return;
         }
 
-        int score = "HIGH".equals(riskLevel) ? 90 : 65;
-
         // 避免內容過長塞爆 DB（可自行調整/移除）
         String storeText = text.trim();
         if (storeText.length() > 500) storeText = storeText.substring(0, 500) + "…";
 
-        RiskRecordEntity record = new RiskRecordEntity(
-                "TEXT",
-                storeText,               // content 存原文（歷史詳細頁可顯示）
-                riskLevel,
-                score,
-                prettySummary,           // summary 存格式化結果（🔴🟠🟢 那段）
-                System.currentTimeMillis()
-        );
-
-        AppDatabase.getInstance(this)
-                .riskRecordDao()
-                .insert(record);
+        final String content = storeText; // content 存原文（歷史詳細頁可顯示）
 
-        Log.d(TAG, "✅ TEXT SAVED TO DB");
-    }
-
-    private String normalizeRiskLevel(String risk, boolean isScam) {
-        if (risk == null) return isScam ? "HIGH" : "LOW";
-
-        String r = risk.trim().toUpperCase(Locale.ROOT);
-
-        if (r.contains("HIGH") || r.contains("高") || r.contains("DANGER")) return "HIGH";
-        if (r.contains("MED") || r.contains("中") || r.contains("SUSPIC")) return "MEDIUM";
-        if (r.contains("LOW") || r.contains("低") || r.contains("SAFE")) return "LOW";
-
-        return isScam ? "HIGH" : "LOW";
+        new Thread(() -> {
+            try {
+                // ✅ 存結構化結果（summary 由詳情頁 render）
+                RiskRecordRepository.get(getApplicationContext())
+                        .saveAnalysis("TEXT", content, "", data);
+                Log.d(TAG, "✅ TEXT SAVED TO DB");
+            } catch (Exception e) {
+                Log.e(TAG, "❌ TEXT insert failed", e);
+            }
+        }).start();
     }
 
     private void toast(String s) {
@@ -0,0 +1,72 @@
+package com.example.fp2;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+/**
+ * 音檔波形（WaveformProbe 算好的峰值，一條一條畫），已播放的部分用深色
+ * 還沒有波形時畫一條中線。
+ */
+public class WaveformView extends View {
+
+    private static final int COLOR_PLAYED = Color.parseColor("#227D60");
+    private static final int COLOR_REST = Color.parseColor("#A8D5C4");
+
+    private final Paint played = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint rest = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private float[] peaks;
+    private float progress;
+
+    public WaveformView(Context context) {
+        this(context, null);
+    }
+
+    public WaveformView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        played.setColor(COLOR_PLAYED);
+        rest.setColor(COLOR_REST);
+    }
+
+    public void setPeaks(@Nullable float[] peaks) {
+        this.peaks = peaks;
+        invalidate();
+    }
+
+    public void setProgress(float progress) {
+        this.progress = Math.max(0f, Math.min(1f, progress));
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        float left = getPaddingLeft();
+        float top = getPaddingTop();
+        float w = getWidth() - left - getPaddingRight();
+        float h = getHeight() - top - getPaddingBottom();
+        if (w <= 0 || h <= 0) return;
+        float mid = top + h / 2;
+        float minBar = getResources().getDisplayMetrics().density * 2;
+
+        if (peaks == null || peaks.length == 0) {
+            canvas.drawRect(left, mid - minBar / 4, left + w, mid + minBar / 4, rest);
+            return;
+        }
+
+        int n = peaks.length;
+        float slot = w / n;
+        float bar = Math.max(1f, slot * 0.6f);
+        for (int i = 0; i < n; i++) {
+            float x = left + i * slot + (slot - bar) / 2;
+            float half = Math.max(minBar, peaks[i] * h) / 2;
+            Paint p = (i + 0.5f) / n <= progress ? played : rest;
+            canvas.drawRect(x, mid - half, x + bar, mid + half, p);
+        }
+    }
+}
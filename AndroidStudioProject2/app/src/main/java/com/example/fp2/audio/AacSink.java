@@ -0,0 +1,115 @@
+package com.example.fp2.audio;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 單聲道 16-bit PCM → AAC-LC（.m4a）
+ * 語音 32kbps 就夠 Whisper 用，比 WAV 小約 8 倍。
+ */
+final class AacSink implements SpeechCompactor.Sink {
+
+    private static final long TIMEOUT_US = 10_000;
+    private static final int BIT_RATE = 32_000;
+
+    private final int sampleRate;
+    private final MediaCodec codec;
+    private final MediaMuxer muxer;
+    private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    private int track = -1;
+    private boolean muxerStarted;
+    private boolean released;
+    private long samplesIn;
+
+    AacSink(File out, int sampleRate) throws IOException {
+        this.sampleRate = sampleRate;
+        MediaFormat format = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC, sampleRate, 1);
+        format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, BIT_RATE);
+        format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, 16 * 1024);
+        codec = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC);
+        codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+        codec.start();
+        muxer = new MediaMuxer(out.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    }
+
+    @Override
+    public void write(short[] frame, int n) throws IOException {
+        int off = 0;
+        while (off < n) {
+            int in = codec.dequeueInputBuffer(TIMEOUT_US);
+            if (in < 0) {
+                drain(false);
+                continue;
+            }
+            ByteBuffer buf = codec.getInputBuffer(in);
+            if (buf == null) throw new IOException("encoder input null");
+            buf.clear();
+            int count = Math.min(n - off, buf.remaining() / 2);
+            for (int i = 0; i < count; i++) {
+                short s = frame[off + i];
+                buf.put((byte) s).put((byte) (s >> 8)); // little-endian
+            }
+            codec.queueInputBuffer(in, 0, count * 2, samplesIn * 1_000_000L / sampleRate, 0);
+            samplesIn += count;
+            off += count;
+            drain(false);
+        }
+    }
+
+    /**
+     * 送 EOS、寫完所有資料並關檔
+     */
+    void close() throws IOException {
+        try {
+            int in;
+            while ((in = codec.dequeueInputBuffer(TIMEOUT_US)) < 0) drain(false);
+            codec.queueInputBuffer(in, 0, 0, samplesIn * 1_000_000L / sampleRate,
+                    MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            drain(true);
+        } finally {
+            release();
+        }
+    }
+
+    void release() {
+        if (released) return;
+        released = true;
+        try { codec.stop(); } catch (Exception ignored) {}
+        codec.release();
+        try {
+            if (muxerStarted) muxer.stop();
+        } catch (Exception ignored) {
+        }
+        muxer.release();
+    }
+
+    private void drain(boolean untilEos) throws IOException {
+        while (true) {
+            int out = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+            if (out == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                if (!untilEos) return;
+            } else if (out == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                if (muxerStarted) throw new IOException("format changed twice");
+                track = muxer.addTrack(codec.getOutputFormat());
+                muxer.start();
+                muxerStarted = true;
+            } else if (out >= 0) {
+                ByteBuffer buf = codec.getOutputBuffer(out);
+                boolean config = (info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+                if (buf != null && info.size > 0 && !config && muxerStarted) {
+                    buf.position(info.offset).limit(info.offset + info.size);
+                    muxer.writeSampleData(track, buf, info);
+                }
+                codec.releaseOutputBuffer(out, false);
+                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) return;
+            }
+        }
+    }
+}
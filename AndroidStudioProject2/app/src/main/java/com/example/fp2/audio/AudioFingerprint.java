@@ -0,0 +1,20 @@
+package com.example.fp2.audio;
+
+/**
+ * 音檔指紋：一串 landmark hash 和它在音檔裡的時間（frame 序號，一個 frame 32ms）
+ * hash 由「兩個頻譜峰值的頻率 + 時間差」組成，跟音量、開始位置無關。
+ */
+public final class AudioFingerprint {
+
+    public static final int FRAME_MS = 32;
+
+    public final int[] hashes;
+    public final int[] times;
+    public final int size;
+
+    AudioFingerprint(int[] hashes, int[] times, int size) {
+        this.hashes = hashes;
+        this.times = times;
+        this.size = size;
+    }
+}
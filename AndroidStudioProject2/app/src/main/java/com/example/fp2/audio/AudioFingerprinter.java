@@ -0,0 +1,189 @@
+package com.example.fp2.audio;
+
+import java.util.Arrays;
+
+/**
+ * 頻譜峰值 landmark 指紋（Shazam 式）
+ * - 輸入任意整數倍於 8kHz 的單聲道 PCM（平均降取樣到 8kHz）
+ * - 512 點 FFT、每 256 點一個 frame；每個頻帶挑最大的 bin，超過該頻帶「會衰減的門檻」才算峰值
+ *   （只留突出的起音點，持續的音不會每個 frame 都算）
+ * - 每個峰值和之後 1.5 秒內最近的幾個峰值配對：hash = f1 | Δf | Δt
+ *
+ * 只處理前 MAX_SECONDS 秒；純 Java，緩衝配置一次，可直接當 PcmDecoder.FrameSink 用。
+ */
+public final class AudioFingerprinter {
+
+    private static final int RATE = 8_000;
+    private static final int FFT_SIZE = 512;
+    private static final int HOP = 256;
+    private static final int MAX_SECONDS = 180;
+    private static final int MAX_FRAMES = MAX_SECONDS * RATE / HOP;
+
+    // 頻帶邊界（bin；一個 bin 15.6Hz）：約 94Hz ～ 3.5kHz
+    private static final int[] BANDS = {6, 12, 20, 32, 48, 72, 104, 150, 224};
+    private static final double DECAY_DB = 0.5;     // 門檻每個 frame 往下掉多少
+    private static final double MIN_FRAME_DB = -55; // frame 太小聲（靜音）不找峰值
+
+    private static final int FAN_OUT = 4;
+    private static final int MAX_DT = 48;           // 約 1.5 秒
+    private static final int MAX_DF = 63;
+
+    private final int decim;
+    private final double[] window = new double[FFT_SIZE];
+    private final double[] pcm = new double[FFT_SIZE];
+    private final double[] re = new double[FFT_SIZE];
+    private final double[] im = new double[FFT_SIZE];
+    private final double[] threshold = new double[BANDS.length - 1];
+
+    private int fill;        // pcm 已填的樣本數
+    private double acc;      // 降取樣累加
+    private int accN;
+    private int frameIndex;
+
+    // 峰值（時間序）
+    private int[] peakT = new int[1024];
+    private int[] peakF = new int[1024];
+    private int peaks;
+
+    public AudioFingerprinter(int inputRate) {
+        if (inputRate % RATE != 0) throw new IllegalArgumentException("rate " + inputRate);
+        decim = inputRate / RATE;
+        for (int i = 0; i < FFT_SIZE; i++) {
+            window[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / (FFT_SIZE - 1));
+        }
+        Arrays.fill(threshold, -1e9);
+    }
+
+    public void accept(short[] frame, int n) {
+        for (int i = 0; i < n; i++) {
+            if (frameIndex >= MAX_FRAMES) return;
+            acc += frame[i];
+            if (++accN < decim) continue;
+            pcm[fill++] = acc / accN / 32768.0;
+            acc = 0;
+            accN = 0;
+            if (fill == FFT_SIZE) {
+                analyzeFrame();
+                // 往前滑 HOP
+                System.arraycopy(pcm, HOP, pcm, 0, FFT_SIZE - HOP);
+                fill = FFT_SIZE - HOP;
+            }
+        }
+    }
+
+    public AudioFingerprint finish() {
+        int cap = peaks * FAN_OUT;
+        int[] hashes = new int[cap];
+        int[] times = new int[cap];
+        int size = 0;
+        for (int i = 0; i < peaks; i++) {
+            int t1 = peakT[i];
+            int f1 = peakF[i];
+            int paired = 0;
+            for (int j = i + 1; j < peaks && paired < FAN_OUT; j++) {
+                int dt = peakT[j] - t1;
+                if (dt <= 0) continue;
+                if (dt > MAX_DT) break;
+                int df = peakF[j] - f1;
+                if (df < -MAX_DF || df > MAX_DF) continue;
+                hashes[size] = hash(f1, df, dt);
+                times[size] = t1;
+                size++;
+                paired++;
+            }
+        }
+        return new AudioFingerprint(hashes, times, size);
+    }
+
+    /**
+     * f1：8 bits、Δf：7 bits、Δt：6 bits
+     */
+    static int hash(int f1, int df, int dt) {
+        return (f1 & 0xFF) << 13 | ((df + 64) & 0x7F) << 6 | (dt & 0x3F);
+    }
+
+    // ===============================
+    // 單一 frame：FFT → 各頻帶峰值
+    // ===============================
+    private void analyzeFrame() {
+        int t = frameIndex++;
+        double energy = 0;
+        for (int i = 0; i < FFT_SIZE; i++) {
+            double s = pcm[i];
+            energy += s * s;
+            re[i] = s * window[i];
+            im[i] = 0;
+        }
+        double frameDb = 10 * Math.log10(energy / FFT_SIZE + 1e-12);
+
+        fft(re, im);
+
+        for (int b = 0; b < BANDS.length - 1; b++) {
+            threshold[b] -= DECAY_DB;
+            if (frameDb < MIN_FRAME_DB) continue;
+            int best = -1;
+            double bestMag = 0;
+            for (int k = BANDS[b]; k < BANDS[b + 1]; k++) {
+                double m = re[k] * re[k] + im[k] * im[k];
+                if (m > bestMag) {
+                    bestMag = m;
+                    best = k;
+                }
+            }
+            if (best < 0) continue;
+            double db = 10 * Math.log10(bestMag + 1e-12);
+            if (db > threshold[b]) {
+                threshold[b] = db;
+                addPeak(t, best);
+            }
+        }
+    }
+
+    private void addPeak(int t, int f) {
+        if (peaks == peakT.length) {
+            peakT = Arrays.copyOf(peakT, peaks * 2);
+            peakF = Arrays.copyOf(peakF, peaks * 2);
+        }
+        peakT[peaks] = t;
+        peakF[peaks] = f;
+        peaks++;
+    }
+
+    /**
+     * 原地 radix-2 FFT（長度必須是 2 的次方）
+     */
+    private static void fft(double[] re, double[] im) {
+        int n = re.length;
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) j ^= bit;
+            j ^= bit;
+            if (i < j) {
+                double tr = re[i]; re[i] = re[j]; re[j] = tr;
+                double ti = im[i]; im[i] = im[j]; im[j] = ti;
+            }
+        }
+        for (int len = 2; len <= n; len <<= 1) {
+            double ang = -2 * Math.PI / len;
+            double wr = Math.cos(ang);
+            double wi = Math.sin(ang);
+            for (int i = 0; i < n; i += len) {
+                double cr = 1;
+                double ci = 0;
+                for (int k = 0; k < len / 2; k++) {
+                    int a = i + k;
+                    int b = a + len / 2;
+                    double xr = re[b] * cr - im[b] * ci;
+                    double xi = re[b] * ci + im[b] * cr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                    double nr = cr * wr - ci * wi;
+                    ci = cr * wi + ci * wr;
+                    cr = nr;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.fp2.audio;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import com.google.gson.JsonArray;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 上傳前先去掉靜音 / 空白段（通話錄音常有大段等待、鈴聲）
+ * 解碼成 16kHz 單聲道 → EnergyVad 逐 30ms 判斷 → 只把語音段（含前後 padding）重新編碼成 AAC。
+ * 同時回傳每段在原始音檔的時間，後端用來把逐字稿對回原時間軸。
+ *
+ * 阻塞執行，請在背景執行緒呼叫；失敗或省不了多少就回 null（照舊上傳原檔）。
+ */
+public final class AudioTrimmer {
+
+    private static final String TAG = "AUDIO_TRIM";
+
+    public static final int SAMPLE_RATE = 16_000;   // Whisper 原生取樣率
+    private static final int FRAME_MS = 30;
+    private static final double MAX_KEEP_RATIO = 0.85; // 留下超過 85% 就不值得重新編碼
+    private static final long MIN_ORIGINAL_MS = 10_000; // 太短的檔案不處理
+
+    public static final class Result {
+        public final File file;                              // 第一段（只有一段時就是整個檔案）
+        public final List<File> parts;                       // 壓縮後的 .m4a（用完請刪）
+        public final long[] partStartMs;                     // 每段在壓縮後串流的起點
+        public final List<SpeechCompactor.Segment> segments;
+        public final long originalMs;
+        public final long keptMs;
+
+        Result(List<File> parts, long[] partStartMs, List<SpeechCompactor.Segment> segments,
+               long originalMs, long keptMs) {
+            this.file = parts.get(0);
+            this.parts = parts;
+            this.partStartMs = partStartMs;
+            this.segments = segments;
+            this.originalMs = originalMs;
+            this.keptMs = keptMs;
+        }
+
+        /**
+         * 上傳用的時間對照表：[[原始起點ms, 原始終點ms, 壓縮後起點ms], ...]
+         */
+        public String segmentsJson() {
+            JsonArray arr = new JsonArray();
+            for (SpeechCompactor.Segment s : segments) {
+                JsonArray row = new JsonArray();
+                row.add(s.startMs);
+                row.add(s.endMs);
+                row.add(s.compactStartMs);
+                arr.add(row);
+            }
+            return arr.toString();
+        }
+
+        public void delete() {
+            for (File f : parts) f.delete();
+        }
+    }
+
+    private AudioTrimmer() {}
+
+    public static Result trim(Context context, Uri uri, File outDir) {
+        return trim(context, uri, outDir, null);
+    }
+
+    /**
+     * 去靜音；省不了多少就回 null（照舊上傳原檔）
+     *
+     * @param tap 每個解碼後的 16kHz frame 也交給它一份（例如算指紋，省一次解碼）；可為 null
+     */
+    public static Result trim(Context context, Uri uri, File outDir, PcmDecoder.FrameSink tap) {
+        return run(context, uri, outDir, Long.MAX_VALUE, false, tap);
+    }
+
+    /**
+     * 一定重新編碼成 32kbps AAC（高位元率 / 很長的檔案用），同時去靜音；
+     * 壓縮後每 partMs 切成一個檔（分段上傳）。失敗或沒有語音回 null。
+     */
+    public static Result compress(Context context, Uri uri, File outDir, long partMs, PcmDecoder.FrameSink tap) {
+        return run(context, uri, outDir, partMs, true, tap);
+    }
+
+    private static Result run(Context context, Uri uri, File outDir, long partMs, boolean force,
+                              PcmDecoder.FrameSink tap) {
+        long partSamples = partMs == Long.MAX_VALUE ? Long.MAX_VALUE : partMs * SAMPLE_RATE / 1000;
+        PartSink sink = new PartSink(outDir, "speech_" + System.currentTimeMillis(), partSamples);
+        try {
+            long t0 = System.currentTimeMillis();
+            int frameSamples = SAMPLE_RATE * FRAME_MS / 1000;
+            SpeechCompactor compactor = new SpeechCompactor(SAMPLE_RATE, frameSamples, sink);
+            new PcmDecoder(SAMPLE_RATE, frameSamples).decode(context, uri, (frame, n) -> {
+                if (tap != null) tap.onFrame(frame, n);
+                compactor.accept(frame, n);
+            });
+            compactor.finish();
+            sink.close();
+
+            long original = compactor.originalMs();
+            long kept = compactor.keptMs();
+            Log.d(TAG, "original=" + original + "ms kept=" + kept + "ms segments="
+                    + compactor.segments().size() + " parts=" + sink.files.size()
+                    + " in " + (System.currentTimeMillis() - t0) + "ms");
+
+            // 沒抓到語音（可能 VAD 誤判）或省不了多少：用原檔
+            boolean worthIt = original >= MIN_ORIGINAL_MS && kept <= original * MAX_KEEP_RATIO;
+            if (compactor.segments().isEmpty() || sink.files.isEmpty() || (!force && !worthIt)) {
+                sink.delete();
+                return null;
+            }
+            return new Result(sink.files, sink.startsMs(), compactor.segments(), original, kept);
+        } catch (Exception e) {
+            Log.w(TAG, "trim failed, upload original", e);
+            sink.release();
+            sink.delete();
+            return null;
+        }
+    }
+
+    /**
+     * 寫滿 partSamples 就換下一個檔（在 frame 邊界切）
+     */
+    private static final class PartSink implements SpeechCompactor.Sink {
+        final List<File> files = new ArrayList<>();
+        private final List<Long> starts = new ArrayList<>();
+        private final File dir;
+        private final String prefix;
+        private final long partSamples;
+        private AacSink current;
+        private long written;
+        private long inPart;
+
+        PartSink(File dir, String prefix, long partSamples) {
+            this.dir = dir;
+            this.prefix = prefix;
+            this.partSamples = partSamples;
+        }
+
+        @Override
+        public void write(short[] frame, int n) throws IOException {
+            if (current != null && inPart >= partSamples) {
+                current.close();
+                current = null;
+            }
+            if (current == null) {
+                File f = new File(dir, prefix + "_" + files.size() + ".m4a");
+                files.add(f);
+                starts.add(written);
+                current = new AacSink(f, SAMPLE_RATE);
+                inPart = 0;
+            }
+            current.write(frame, n);
+            written += n;
+            inPart += n;
+        }
+
+        void close() throws IOException {
+            if (current != null) current.close();
+            current = null;
+        }
+
+        void release() {
+            if (current != null) current.release();
+            current = null;
+        }
+
+        void delete() {
+            for (File f : files) f.delete();
+        }
+
+        long[] startsMs() {
+            long[] out = new long[starts.size()];
+            for (int i = 0; i < out.length; i++) out[i] = starts.get(i) * 1000 / SAMPLE_RATE;
+            return out;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.fp2.audio;
+
+/**
+ * 能量式語音偵測（逐 frame 判斷）
+ * - 以 dBFS 計算每個 frame 的能量，背景噪音底噪自動追蹤（往下快、往上慢，語音中幾乎不動）
+ * - 高於「底噪 + MARGIN_DB」且高於絕對下限才算語音
+ * - 過零率太高（嘶聲 / 雜訊）的 frame 不算
+ *
+ * 純 Java，不配置記憶體。
+ */
+public final class EnergyVad {
+
+    private static final double MARGIN_DB = 9.0;
+    private static final double ABS_MIN_DB = -50.0;     // 再小聲就當靜音
+    private static final double FLOOR_RISE = 0.05;      // 非語音 frame：底噪往上追的速度
+    private static final double FLOOR_RISE_SPEECH = 0.001; // 語音中幾乎不動（長句不會被自己的音量吃掉）
+    private static final double MAX_ZCR = 0.35;         // 過零率上限（語音通常 < 0.3）
+
+    private double floorDb = Double.NaN;
+
+    public boolean isSpeech(short[] frame, int n) {
+        if (n <= 0) return false;
+        long sumSq = 0;
+        int crossings = 0;
+        short prev = frame[0];
+        for (int i = 0; i < n; i++) {
+            short s = frame[i];
+            sumSq += (long) s * s;
+            if ((s >= 0) != (prev >= 0)) crossings++;
+            prev = s;
+        }
+        double rms = Math.sqrt((double) sumSq / n);
+        double db = rms < 1 ? -96.0 : 20 * Math.log10(rms / 32768.0);
+
+        if (Double.isNaN(floorDb)) floorDb = db;
+        double zcr = (double) crossings / n;
+        boolean speech = db > ABS_MIN_DB && db > floorDb + MARGIN_DB && zcr < MAX_ZCR;
+
+        if (db < floorDb) floorDb = db;
+        else floorDb += (db - floorDb) * (speech ? FLOOR_RISE_SPEECH : FLOOR_RISE);
+        return speech;
+    }
+}
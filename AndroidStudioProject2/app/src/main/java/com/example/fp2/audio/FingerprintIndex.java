@@ -0,0 +1,314 @@
+package com.example.fp2.audio;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.fp2.model.ApiResponse;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 已知詐騙錄音的指紋索引（本機檔案，只存 hash + 判斷結果，不存聲音也不存逐字稿）
+ * - 全部 landmark 放在一個排序好的 long[]：hash(32) | 錄音 id(16) | 時間(16)，查詢用二分搜尋
+ * - 比對：同 hash 的項目依「錄音 id + 時間差」投票，同一個時間差票數夠多 = 同一段錄音
+ *   （可以從中間開始、音量不同、有雜訊）
+ * - 後端判定高風險的錄音加進來；滿了淘汰最舊的
+ * - 判斷結果只留 is_scam / risk / scam_type / reasons（verdictOnly）：歷史保留期限管不到這個檔，不能留通話內容
+ *
+ * 第一次使用會讀檔（阻塞），請在背景執行緒呼叫。
+ */
+public final class FingerprintIndex {
+
+    private static final String TAG = "FP_INDEX";
+    private static final String FILE = "fingerprints.bin";
+    private static final int FORMAT = 2;             // 1 = 舊版（存整個回應），讀進來時只留判斷欄位
+
+    private static final int MAX_RECORDINGS = 256;
+    private static final int MAX_HASHES_PER_RECORDING = 4_000;
+    private static final int MIN_QUERY_HASHES = 50;
+    private static final int MIN_VOTES = 20;
+    private static final double MIN_MATCH_RATIO = 0.10; // 票數 / 可能對上的 hash 數（雜訊碰撞通常 < 3%）
+
+    private static final Gson gson = new Gson();
+
+    public static final class Match {
+        public final ApiResponse response;
+        public final int votes;
+
+        Match(ApiResponse response, int votes) {
+            this.response = response;
+            this.votes = votes;
+        }
+    }
+
+    private static final class Recording {
+        final int id;
+        final long addedAt;
+        final int step;         // 存的時候每幾個 hash 留一個
+        final String responseJson;
+        final long[] entries;
+
+        Recording(int id, long addedAt, int step, String responseJson, long[] entries) {
+            this.id = id;
+            this.addedAt = addedAt;
+            this.step = step;
+            this.responseJson = responseJson;
+            this.entries = entries;
+        }
+    }
+
+    private static volatile FingerprintIndex INSTANCE;
+
+    public static FingerprintIndex get(Context context) {
+        if (INSTANCE == null) {
+            synchronized (FingerprintIndex.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new FingerprintIndex(new File(context.getFilesDir(), FILE));
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private final File file;
+    private final Map<Integer, Recording> recordings = new LinkedHashMap<>(); // 加入順序 = 舊到新
+    private long[] index = new long[0];
+    private boolean loaded;
+    private int nextId;
+
+    private FingerprintIndex(File file) {
+        this.file = file;
+    }
+
+    // ===============================
+    // 比對
+    // ===============================
+    /**
+     * @return 命中的已知詐騙錄音（當時的判斷結果），沒有回 null
+     */
+    public synchronized Match match(AudioFingerprint query) {
+        ensureLoaded();
+        if (query == null || query.size < MIN_QUERY_HASHES || index.length == 0) return null;
+
+        // 每個命中記成 key = 錄音 id << 32 | (時間差 + 偏移)，排序後數連續相同的 key
+        long[] hits = new long[Math.max(16, query.size)];
+        int n = 0;
+        for (int i = 0; i < query.size; i++) {
+            long h = query.hashes[i] & 0xFFFFFFFFL;
+            int pos = lowerBound(index, h << 32);
+            for (; pos < index.length && (index[pos] >>> 32) == h; pos++) {
+                int id = (int) (index[pos] >>> 16) & 0xFFFF;
+                int t = (int) index[pos] & 0xFFFF;
+                if (n == hits.length) hits = Arrays.copyOf(hits, n * 2);
+                hits[n++] = (long) id << 32 | ((t - query.times[i]) + 0x10000);
+            }
+        }
+        Arrays.sort(hits, 0, n);
+
+        // frame 邊界對不齊時票會分到相鄰的時間差：前後一格一起算
+        long bestKey = -1;
+        int best = 0;
+        long prevKey = Long.MIN_VALUE, prev2Key = Long.MIN_VALUE;
+        int prevCount = 0, prev2Count = 0;
+        for (int i = 0; i < n; ) {
+            long k = hits[i];
+            int j = i;
+            while (j < n && hits[j] == k) j++;
+            int count = j - i;
+            // 以 prevKey 為中心：prev2Key / k 若剛好相鄰就加進來
+            int v = count + (prevKey == k - 1 ? prevCount : 0) + (prev2Key == k - 2 ? prev2Count : 0);
+            if (v > best) {
+                best = v;
+                bestKey = k;
+            }
+            prev2Key = prevKey;
+            prev2Count = prevCount;
+            prevKey = k;
+            prevCount = count;
+            i = j;
+        }
+        if (best < MIN_VOTES) return null;
+
+        Recording r = recordings.get((int) (bestKey >>> 32));
+        if (r == null) return null;
+        // 索引有抽樣：查詢的 hash 最多只有 1/step 對得上
+        if (best < MIN_MATCH_RATIO * query.size / r.step) return null;
+        ApiResponse resp = gson.fromJson(r.responseJson, ApiResponse.class);
+        markMatched(resp, best);
+        Log.d(TAG, "match id=" + r.id + " votes=" + best + " / " + query.size);
+        return new Match(resp, best);
+    }
+
+    // ===============================
+    // 新增
+    // ===============================
+    public synchronized void add(AudioFingerprint fp, ApiResponse response) {
+        ensureLoaded();
+        if (fp == null || fp.size < MIN_QUERY_HASHES || response == null) return;
+        if (match(fp) != null) return; // 已經有了
+
+        while (recordings.size() >= MAX_RECORDINGS) {
+            recordings.remove(recordings.keySet().iterator().next());
+        }
+        int id = allocateId();
+
+        // 太長的錄音平均抽樣
+        int step = (fp.size + MAX_HASHES_PER_RECORDING - 1) / MAX_HASHES_PER_RECORDING;
+        long[] entries = new long[(fp.size + step - 1) / step];
+        int n = 0;
+        for (int i = 0; i < fp.size; i += step) {
+            entries[n++] = entry(fp.hashes[i], id, fp.times[i]);
+        }
+        recordings.put(id, new Recording(id, System.currentTimeMillis(), step, verdictOnly(response), entries));
+        rebuild();
+        save();
+    }
+
+    private int allocateId() {
+        for (int i = 0; i <= 0xFFFF; i++) {
+            int id = (nextId + i) & 0xFFFF;
+            if (!recordings.containsKey(id)) {
+                nextId = id + 1;
+                return id;
+            }
+        }
+        throw new IllegalStateException("no free id");
+    }
+
+    private void rebuild() {
+        int total = 0;
+        for (Recording r : recordings.values()) total += r.entries.length;
+        long[] all = new long[total];
+        int n = 0;
+        for (Recording r : recordings.values()) {
+            System.arraycopy(r.entries, 0, all, n, r.entries.length);
+            n += r.entries.length;
+        }
+        Arrays.sort(all);
+        index = all;
+    }
+
+    // ===============================
+    // 檔案
+    // ===============================
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        if (!file.exists()) return;
+        boolean legacy;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int format = in.readInt();
+            if (format != FORMAT && format != 1) return;
+            legacy = format == 1;
+            nextId = in.readInt();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int id = in.readInt();
+                long addedAt = in.readLong();
+                int step = in.readInt();
+                byte[] json = new byte[in.readInt()];
+                in.readFully(json);
+                long[] entries = new long[in.readInt()];
+                for (int j = 0; j < entries.length; j++) entries[j] = in.readLong();
+                String response = new String(json, StandardCharsets.UTF_8);
+                if (legacy) response = verdictOnly(gson.fromJson(response, ApiResponse.class));
+                recordings.put(id, new Recording(id, addedAt, step, response, entries));
+            }
+            rebuild();
+        } catch (IOException e) {
+            Log.w(TAG, "load failed, start empty", e);
+            recordings.clear();
+            index = new long[0];
+            return;
+        }
+        // 舊版檔案裡有逐字稿：馬上用新格式覆寫
+        if (legacy) save();
+    }
+
+    private void save() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FORMAT);
+            out.writeInt(nextId);
+            out.writeInt(recordings.size());
+            for (Recording r : recordings.values()) {
+                out.writeInt(r.id);
+                out.writeLong(r.addedAt);
+                out.writeInt(r.step);
+                byte[] json = r.responseJson.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(json.length);
+                out.write(json);
+                out.writeInt(r.entries.length);
+                for (long e : r.entries) out.writeLong(e);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "save failed", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) tmp.delete();
+    }
+
+    // ===============================
+    // 工具方法
+    // ===============================
+    private static long entry(int hash, int id, int time) {
+        return (hash & 0xFFFFFFFFL) << 32 | (long) (id & 0xFFFF) << 16 | (time & 0xFFFF);
+    }
+
+    /**
+     * 只留判斷結果（不含 detected_text / text / timeline 等通話內容）
+     */
+    private static String verdictOnly(ApiResponse response) {
+        ApiResponse v = new ApiResponse();
+        v.is_scam = response.is_scam;
+        v.risk = response.risk;
+        v.scam_type = response.scam_type;
+        v.reasons = response.reasons;
+        return gson.toJson(v);
+    }
+
+    private static int lowerBound(long[] a, long key) {
+        int lo = 0;
+        int hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * 標記這是指紋比對的結果（沒有重新轉文字 / 跑模型）
+     */
+    private static void markMatched(ApiResponse r, int votes) {
+        JsonObject a = r.analysis != null && r.analysis.isJsonObject()
+                ? r.analysis.getAsJsonObject() : new JsonObject();
+        JsonObject fp = new JsonObject();
+        fp.addProperty("matched", true);
+        fp.addProperty("votes", votes);
+        a.add("fingerprint", fp);
+        r.analysis = a;
+
+        List<String> reasons = new ArrayList<>();
+        reasons.add("與已知詐騙錄音相符（語音指紋比對）");
+        if (r.reasons != null) reasons.addAll(r.reasons);
+        r.reasons = reasons;
+    }
+}
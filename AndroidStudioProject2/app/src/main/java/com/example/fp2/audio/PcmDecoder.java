@@ -0,0 +1,168 @@
+package com.example.fp2.audio;
+
+import android.content.Context;
+import android.media.AudioFormat;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.Build;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * 任意音檔 → 單聲道 16-bit PCM（指定取樣率），切成固定長度 frame 串流輸出
+ * MediaExtractor + MediaCodec 解碼，邊解邊降混 / 重取樣，不把整段 PCM 放在記憶體。
+ *
+ * 阻塞執行，請在背景執行緒呼叫。
+ */
+public final class PcmDecoder {
+
+    private static final long TIMEOUT_US = 10_000;
+
+    public interface FrameSink {
+        void onFrame(short[] frame, int n) throws IOException;
+    }
+
+    private final int outRate;
+    private final short[] frame;
+    private int frameFill;
+
+    // 重取樣狀態（線性內插）
+    private double step;
+    private double t;
+    private int prev;
+
+    public PcmDecoder(int outRate, int frameSamples) {
+        this.outRate = outRate;
+        this.frame = new short[frameSamples];
+    }
+
+    /**
+     * @return 原始音檔長度（微秒，取不到回 -1）
+     */
+    public long decode(Context context, Uri uri, FrameSink sink) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            extractor.setDataSource(context, uri, null);
+            int track = -1;
+            MediaFormat format = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat f = extractor.getTrackFormat(i);
+                String mime = f.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    track = i;
+                    format = f;
+                    break;
+                }
+            }
+            if (track < 0) throw new IOException("找不到音軌");
+            extractor.selectTrack(track);
+            long durationUs = format.containsKey(MediaFormat.KEY_DURATION)
+                    ? format.getLong(MediaFormat.KEY_DURATION) : -1;
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+
+            int inRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            boolean isFloat = false;
+            resetResampler(inRate);
+
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            boolean inputDone = false;
+            boolean outputDone = false;
+            while (!outputDone) {
+                if (!inputDone) {
+                    int in = codec.dequeueInputBuffer(TIMEOUT_US);
+                    if (in >= 0) {
+                        ByteBuffer buf = codec.getInputBuffer(in);
+                        int size = buf == null ? -1 : extractor.readSampleData(buf, 0);
+                        if (size < 0) {
+                            codec.queueInputBuffer(in, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(in, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int out = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (out == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat of = codec.getOutputFormat();
+                    channels = of.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                    resetResampler(of.getInteger(MediaFormat.KEY_SAMPLE_RATE));
+                    isFloat = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                            && of.containsKey(MediaFormat.KEY_PCM_ENCODING)
+                            && of.getInteger(MediaFormat.KEY_PCM_ENCODING) == AudioFormat.ENCODING_PCM_FLOAT;
+                } else if (out >= 0) {
+                    ByteBuffer buf = codec.getOutputBuffer(out);
+                    if (buf != null && info.size > 0) {
+                        buf.position(info.offset).limit(info.offset + info.size);
+                        consume(buf.order(ByteOrder.nativeOrder()), channels, isFloat, sink);
+                    }
+                    codec.releaseOutputBuffer(out, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) outputDone = true;
+                }
+            }
+            if (frameFill > 0) sink.onFrame(frame, frameFill);
+            frameFill = 0;
+            return durationUs;
+        } finally {
+            if (codec != null) {
+                try { codec.stop(); } catch (Exception ignored) {}
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    // ===============================
+    // 降混 + 重取樣
+    // ===============================
+    private void resetResampler(int inRate) {
+        step = (double) inRate / outRate;
+    }
+
+    private void consume(ByteBuffer buf, int channels, boolean isFloat, FrameSink sink) throws IOException {
+        if (isFloat) {
+            int n = buf.remaining() / 4;
+            for (int i = 0; i + channels <= n; i += channels) {
+                float sum = 0;
+                for (int c = 0; c < channels; c++) sum += buf.getFloat();
+                int s = Math.round(sum / channels * 32767f);
+                resample(Math.max(-32768, Math.min(32767, s)), sink);
+            }
+        } else {
+            ShortBuffer sb = buf.asShortBuffer();
+            int n = sb.remaining();
+            for (int i = 0; i + channels <= n; i += channels) {
+                int sum = 0;
+                for (int c = 0; c < channels; c++) sum += sb.get();
+                resample(sum / channels, sink);
+            }
+        }
+    }
+
+    /**
+     * 輸入一個原始取樣，輸出 0~N 個目標取樣（t 是輸出點相對 prev 的位置）
+     */
+    private void resample(int s, FrameSink sink) throws IOException {
+        while (t <= 1.0) {
+            frame[frameFill++] = (short) (prev + (s - prev) * t);
+            if (frameFill == frame.length) {
+                sink.onFrame(frame, frameFill);
+                frameFill = 0;
+            }
+            t += step;
+        }
+        t -= 1.0;
+        prev = s;
+    }
+}
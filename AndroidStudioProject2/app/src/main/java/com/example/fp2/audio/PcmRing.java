@@ -0,0 +1,53 @@
+package com.example.fp2.audio;
+
+/**
+ * 固定大小的 PCM 環形緩衝（寫滿就覆蓋最舊的）
+ * 以「總寫入樣本數」當位置，讀的時候用絕對位置取，不用另外記讀取指標。
+ *
+ * 不做同步：寫入和讀取在同一個執行緒。
+ */
+final class PcmRing {
+
+    private final short[] buf;
+    private long written;
+
+    PcmRing(int capacity) {
+        buf = new short[capacity];
+    }
+
+    int capacity() {
+        return buf.length;
+    }
+
+    /**
+     * 目前為止總共寫入的樣本數
+     */
+    long written() {
+        return written;
+    }
+
+    /**
+     * 還留在緩衝裡、最舊那個樣本的位置
+     */
+    long oldest() {
+        return Math.max(0, written - buf.length);
+    }
+
+    void write(short[] src, int n) {
+        int pos = (int) (written % buf.length);
+        int first = Math.min(n, buf.length - pos);
+        System.arraycopy(src, 0, buf, pos, first);
+        if (first < n) System.arraycopy(src, first, buf, 0, n - first);
+        written += n;
+    }
+
+    /**
+     * 從絕對位置 from 複製 len 個樣本到 dst（from 必須 >= oldest()）
+     */
+    void copy(long from, short[] dst, int len) {
+        int pos = (int) (from % buf.length);
+        int first = Math.min(len, buf.length - pos);
+        System.arraycopy(buf, pos, dst, 0, first);
+        if (first < len) System.arraycopy(buf, 0, dst, first, len - first);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.fp2.audio;
+
+import android.content.Context;
+import android.media.MediaPlayer;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.IOException;
+
+/**
+ * 音檔試聽（預覽頁 / 歷史詳情共用）
+ * - 第一次按播放才建 MediaPlayer 並 prepareAsync，沒按就不佔解碼器
+ * - 頁面 onStop 呼叫 release()，下次再按會重新建立
+ * 全部在主執行緒使用。
+ */
+public final class PreviewPlayer {
+
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
+    public interface Listener {
+        void onPlayingChanged(boolean playing);
+
+        /**
+         * @param fraction 0～1
+         */
+        void onProgress(float fraction);
+
+        void onError(String message);
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final Runnable ticker = this::tick;
+
+    private Uri uri;
+    private MediaPlayer player;
+    private boolean prepared;
+
+    public PreviewPlayer(Context context, Listener listener) {
+        this.context = context;
+        this.listener = listener;
+    }
+
+    /**
+     * 換檔案（舊的播放器直接放掉）
+     */
+    public void setSource(Uri uri) {
+        release();
+        this.uri = uri;
+    }
+
+    public void toggle() {
+        if (uri == null) return;
+        if (player == null) {
+            start();
+            return;
+        }
+        if (!prepared) return; // 準備中，好了會自己開始
+        if (player.isPlaying()) {
+            player.pause();
+            main.removeCallbacks(ticker);
+            listener.onPlayingChanged(false);
+        } else {
+            player.start();
+            tick();
+            listener.onPlayingChanged(true);
+        }
+    }
+
+    public void release() {
+        main.removeCallbacks(ticker);
+        if (player == null) return;
+        boolean wasPlaying = prepared && player.isPlaying();
+        try { player.stop(); } catch (Exception ignored) {}
+        try { player.release(); } catch (Exception ignored) {}
+        player = null;
+        prepared = false;
+        if (wasPlaying) listener.onPlayingChanged(false);
+    }
+
+    private void start() {
+        player = new MediaPlayer();
+        try {
+            player.setDataSource(context, uri);
+        } catch (IOException | RuntimeException e) {
+            release();
+            listener.onError("無法播放音檔");
+            return;
+        }
+        player.setOnPreparedListener(mp -> {
+            prepared = true;
+            mp.start();
+            tick();
+            listener.onPlayingChanged(true);
+        });
+        player.setOnCompletionListener(mp -> {
+            main.removeCallbacks(ticker);
+            listener.onProgress(0f);
+            listener.onPlayingChanged(false);
+        });
+        player.setOnErrorListener((mp, what, extra) -> {
+            release();
+            listener.onError("播放失敗");
+            return true;
+        });
+        player.prepareAsync();
+    }
+
+    private void tick() {
+        if (player == null || !prepared) return;
+        int duration = player.getDuration();
+        if (duration > 0) listener.onProgress(player.getCurrentPosition() / (float) duration);
+        if (player.isPlaying()) main.postDelayed(ticker, PROGRESS_INTERVAL_MS);
+    }
+}
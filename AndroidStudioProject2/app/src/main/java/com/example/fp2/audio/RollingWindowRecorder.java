@@ -0,0 +1,176 @@
+package com.example.fp2.audio;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 即時錄音 → 滾動視窗（給通話即時監聽用）
+ * - 麥克風 16kHz 單聲道，100ms 一個 frame 寫進 30 秒的環形緩衝
+ * - 累積滿 15 秒就切一段送出；上一段還在分析就繼續累積（最多 30 秒，再久最舊的會被覆蓋）
+ * - 整段幾乎沒人講話就不送
+ * - 視窗編成 AAC 寫到同一個暫存檔；listener 處理完呼叫 windowDone() 才會送下一段
+ *
+ * 所有緩衝（環形緩衝 / 視窗 / frame）只配置一次，錄一小時記憶體也不會長。
+ */
+public final class RollingWindowRecorder {
+
+    private static final String TAG = "LIVE_REC";
+
+    public interface Listener {
+        /**
+         * 一段視窗編好了（encoder 執行緒）；用完 file 一定要呼叫 windowDone()
+         *
+         * @param startMs 從開始錄音算起的時間
+         */
+        void onWindow(File file, long startMs, long endMs);
+
+        void onError(String message);
+    }
+
+    public static final int SAMPLE_RATE = 16_000;
+    private static final int FRAME_SAMPLES = 1_600;   // 100ms
+    private static final int MIN_WINDOW_S = 15;
+    private static final int MAX_WINDOW_S = 30;
+    private static final int MIN_SPEECH_MS = 1_500;  // 視窗內語音少於這個就略過
+
+    private final File out;
+    private final Listener listener;
+    private final PcmRing ring = new PcmRing(SAMPLE_RATE * MAX_WINDOW_S);
+    private final short[] frame = new short[FRAME_SAMPLES];
+    private final short[] window = new short[SAMPLE_RATE * MAX_WINDOW_S];
+    private final EnergyVad vad = new EnergyVad();
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    private volatile boolean running;
+    private HandlerThread encoderThread;
+    private Handler encoder;
+
+    // 以下只在錄音執行緒使用
+    private long shipped;       // 已送出（或略過）到哪個樣本
+    private int speechSamples;  // shipped 之後的語音樣本數
+
+    public RollingWindowRecorder(File dir, Listener listener) {
+        this.out = new File(dir, "live_window.m4a");
+        this.listener = listener;
+    }
+
+    /**
+     * 需要 RECORD_AUDIO 權限
+     */
+    public void start() {
+        if (running) return;
+        running = true;
+        encoderThread = new HandlerThread("live-encoder");
+        encoderThread.start();
+        encoder = new Handler(encoderThread.getLooper());
+        new Thread(this::captureLoop, "live-capture").start();
+    }
+
+    /**
+     * 停止錄音；最後不滿一段的部分也會送出（上一段還在分析就不送）
+     */
+    public void stop() {
+        running = false;
+    }
+
+    public void windowDone() {
+        busy.set(false);
+    }
+
+    // ===============================
+    // 錄音執行緒
+    // ===============================
+    private void captureLoop() {
+        AudioRecord rec = null;
+        try {
+            int minBuf = AudioRecord.getMinBufferSize(SAMPLE_RATE,
+                    AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+            // 系統緩衝給 2 秒：偶爾卡頓也不掉音
+            rec = new AudioRecord(MediaRecorder.AudioSource.VOICE_RECOGNITION, SAMPLE_RATE,
+                    AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT,
+                    Math.max(minBuf, SAMPLE_RATE * 2 * 2));
+            if (rec.getState() != AudioRecord.STATE_INITIALIZED) {
+                listener.onError("無法開啟麥克風");
+                return;
+            }
+            rec.startRecording();
+
+            while (running) {
+                int n = rec.read(frame, 0, FRAME_SAMPLES);
+                if (n < 0) {
+                    listener.onError("錄音中斷（錯誤碼 " + n + "）");
+                    break;
+                }
+                if (n == 0) continue;
+                ring.write(frame, n);
+                if (vad.isSpeech(frame, n)) speechSamples += n;
+                maybeShip(false);
+            }
+            maybeShip(true);
+        } catch (SecurityException e) {
+            listener.onError("沒有麥克風權限");
+        } catch (Exception e) {
+            Log.e(TAG, "capture failed", e);
+            listener.onError("錄音失敗：" + e.getMessage());
+        } finally {
+            running = false;
+            if (rec != null) {
+                try { rec.stop(); } catch (Exception ignored) {}
+                rec.release();
+            }
+            encoderThread.quitSafely();
+        }
+    }
+
+    private void maybeShip(boolean flush) {
+        long now = ring.written();
+        if (shipped < ring.oldest()) {
+            // 分析跟不上：被覆蓋的部分只能放掉
+            Log.w(TAG, "dropped " + (ring.oldest() - shipped) * 1000 / SAMPLE_RATE + "ms");
+            shipped = ring.oldest();
+        }
+        long pending = now - shipped;
+        if (pending < (flush ? SAMPLE_RATE : (long) SAMPLE_RATE * MIN_WINDOW_S)) return;
+
+        if (speechSamples < SAMPLE_RATE / 1000 * MIN_SPEECH_MS) {
+            shipped = now;
+            speechSamples = 0;
+            return;
+        }
+        if (!busy.compareAndSet(false, true)) return;
+
+        int len = (int) pending;
+        ring.copy(shipped, window, len);
+        long startMs = shipped * 1000 / SAMPLE_RATE;
+        long endMs = now * 1000 / SAMPLE_RATE;
+        shipped = now;
+        speechSamples = 0;
+        encoder.post(() -> encode(len, startMs, endMs));
+    }
+
+    // ===============================
+    // encoder 執行緒
+    // ===============================
+    private void encode(int len, long startMs, long endMs) {
+        AacSink sink = null;
+        try {
+            sink = new AacSink(out, SAMPLE_RATE);
+            sink.write(window, len);
+            sink.close();
+        } catch (IOException e) {
+            Log.e(TAG, "encode failed", e);
+            if (sink != null) sink.release();
+            busy.set(false);
+            return;
+        }
+        listener.onWindow(out, startMs, endMs);
+    }
+}
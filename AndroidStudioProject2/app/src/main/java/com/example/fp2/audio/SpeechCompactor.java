@@ -0,0 +1,151 @@
+package com.example.fp2.audio;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 把逐 frame 的 PCM 壓成「只剩語音」的串流
+ * - 語音前保留 PRE_PAD、語音後保留 POST_PAD（中間靜音比 POST_PAD 短就不切開）
+ * - 連續 MIN_START 個語音 frame 才開始一段，避免單一爆音
+ * - 記錄每段在原始音檔的時間與在壓縮後串流的起點，讓逐字稿可以對回原時間軸
+ *
+ * 前置緩衝是固定大小的 frame 環（重用陣列），記憶體與音檔長度無關。
+ */
+public final class SpeechCompactor {
+
+    public interface Sink {
+        void write(short[] frame, int n) throws IOException;
+    }
+
+    public static final class Segment {
+        public final long startMs;         // 原始音檔時間
+        public final long endMs;
+        public final long compactStartMs;  // 壓縮後串流時間
+
+        Segment(long startMs, long endMs, long compactStartMs) {
+            this.startMs = startMs;
+            this.endMs = endMs;
+            this.compactStartMs = compactStartMs;
+        }
+    }
+
+    private static final int PRE_PAD_MS = 300;
+    private static final int POST_PAD_MS = 500;
+    private static final int MIN_START_FRAMES = 3;
+
+    private final int sampleRate;
+    private final int frameSamples;
+    private final int postPadFrames;
+    private final EnergyVad vad = new EnergyVad();
+    private final Sink sink;
+
+    // 前置環
+    private final short[][] ring;
+    private final int[] ringLen;
+    private int ringHead;   // 最舊的位置
+    private int ringSize;
+
+    private boolean inSpeech;
+    private int speechRun;
+    private int silenceRun;
+    private long frameIndex;        // 目前處理到第幾個 frame（原始）
+    private long keptSamples;
+    private long segStartSample;
+    private long segCompactStart;
+    private final List<Segment> segments = new ArrayList<>();
+
+    public SpeechCompactor(int sampleRate, int frameSamples, Sink sink) {
+        this.sampleRate = sampleRate;
+        this.frameSamples = frameSamples;
+        this.sink = sink;
+        int frameMs = frameSamples * 1000 / sampleRate;
+        int prePadFrames = Math.max(1, PRE_PAD_MS / frameMs);
+        this.postPadFrames = Math.max(1, POST_PAD_MS / frameMs);
+        int ringCap = prePadFrames + MIN_START_FRAMES;
+        this.ring = new short[ringCap][frameSamples];
+        this.ringLen = new int[ringCap];
+    }
+
+    public void accept(short[] frame, int n) throws IOException {
+        boolean speech = vad.isSpeech(frame, n);
+        if (inSpeech) {
+            emit(frame, n);
+            silenceRun = speech ? 0 : silenceRun + 1;
+            if (silenceRun >= postPadFrames) endSegment(frameIndex + 1);
+        } else {
+            push(frame, n);
+            speechRun = speech ? speechRun + 1 : 0;
+            if (speechRun >= MIN_START_FRAMES) startSegment();
+        }
+        frameIndex++;
+    }
+
+    /**
+     * 音檔結束：收尾最後一段
+     */
+    public void finish() {
+        if (inSpeech) endSegment(frameIndex);
+    }
+
+    public List<Segment> segments() {
+        return Collections.unmodifiableList(segments);
+    }
+
+    public long originalMs() {
+        return samplesToMs(frameIndex * frameSamples);
+    }
+
+    public long keptMs() {
+        return samplesToMs(keptSamples);
+    }
+
+    // ===============================
+    // 內部
+    // ===============================
+    private void startSegment() throws IOException {
+        inSpeech = true;
+        silenceRun = 0;
+        speechRun = 0;
+        segStartSample = (frameIndex + 1 - ringSize) * frameSamples;
+        segCompactStart = keptSamples;
+        // 前置環（含剛剛那幾個語音 frame）整段寫出
+        for (int i = 0; i < ringSize; i++) {
+            int idx = (ringHead + i) % ring.length;
+            emit(ring[idx], ringLen[idx]);
+        }
+        ringSize = 0;
+        ringHead = 0;
+    }
+
+    private void endSegment(long endFrameExclusive) {
+        inSpeech = false;
+        segments.add(new Segment(
+                samplesToMs(segStartSample),
+                samplesToMs(endFrameExclusive * frameSamples),
+                samplesToMs(segCompactStart)));
+    }
+
+    private void push(short[] frame, int n) {
+        int idx;
+        if (ringSize < ring.length) {
+            idx = (ringHead + ringSize) % ring.length;
+            ringSize++;
+        } else {
+            idx = ringHead; // 滿了就蓋掉最舊的
+            ringHead = (ringHead + 1) % ring.length;
+        }
+        System.arraycopy(frame, 0, ring[idx], 0, n);
+        ringLen[idx] = n;
+    }
+
+    private void emit(short[] frame, int n) throws IOException {
+        sink.write(frame, n);
+        keptSamples += n;
+    }
+
+    private long samplesToMs(long samples) {
+        return samples * 1000 / sampleRate;
+    }
+}
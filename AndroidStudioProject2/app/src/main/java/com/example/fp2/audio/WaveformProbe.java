@@ -0,0 +1,160 @@
+package com.example.fp2.audio;
+
+import android.content.Context;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 音檔預覽資訊（長度 + 波形），不建 MediaPlayer
+ * - 長度：MediaMetadataRetriever 只讀檔頭，很快，先回一次
+ * - 波形：MediaExtractor / MediaCodec 串流解碼成 4kHz，每 50ms 取峰值，最後縮成 BUCKETS 條
+ * - 結果依 uri 放 LruCache，同一個檔再開不用重算
+ *
+ * callback 在主執行緒；太長的檔案只回長度（peaks 為 null）。
+ */
+public final class WaveformProbe {
+
+    private static final String TAG = "WAVEFORM";
+
+    public static final int BUCKETS = 120;
+
+    private static final int PROBE_RATE = 4_000;
+    private static final int SLICE_SAMPLES = PROBE_RATE / 20;   // 50ms
+    private static final long MAX_WAVEFORM_MS = 20 * 60 * 1000L;
+    private static final int CACHE_SIZE = 32;
+
+    public static final class Waveform {
+        public final long durationMs;   // 取不到為 -1
+        public final float[] peaks;     // 0～1；還沒算好或不算為 null
+
+        Waveform(long durationMs, float[] peaks) {
+            this.durationMs = durationMs;
+            this.peaks = peaks;
+        }
+    }
+
+    public interface Callback {
+        /**
+         * 可能呼叫兩次：先只有長度，再來是含波形的完整結果
+         */
+        void onProbed(Waveform waveform);
+    }
+
+    private static volatile WaveformProbe INSTANCE;
+
+    public static WaveformProbe get(Context context) {
+        if (INSTANCE == null) {
+            synchronized (WaveformProbe.class) {
+                if (INSTANCE == null) INSTANCE = new WaveformProbe(context.getApplicationContext());
+            }
+        }
+        return INSTANCE;
+    }
+
+    private final Context app;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final LruCache<String, Waveform> cache = new LruCache<>(CACHE_SIZE);
+
+    private WaveformProbe(Context app) {
+        this.app = app;
+    }
+
+    public void probe(Uri uri, Callback cb) {
+        String key = uri.toString();
+        Waveform hit = cache.get(key);
+        if (hit != null) {
+            cb.onProbed(hit);
+            return;
+        }
+        worker.execute(() -> {
+            long durationMs = durationMs(uri);
+            Waveform partial = new Waveform(durationMs, null);
+            main.post(() -> cb.onProbed(partial));
+
+            if (durationMs > MAX_WAVEFORM_MS) {
+                cache.put(key, partial);
+                return;
+            }
+            float[] peaks = peaks(uri);
+            Waveform full = new Waveform(durationMs, peaks);
+            if (peaks != null) cache.put(key, full);
+            main.post(() -> cb.onProbed(full));
+        });
+    }
+
+    /**
+     * mm:ss（超過一小時 h:mm:ss）；取不到長度回空字串
+     */
+    public static String formatDuration(long ms) {
+        if (ms < 0) return "";
+        long s = ms / 1000;
+        if (s >= 3600) return String.format(Locale.ROOT, "%d:%02d:%02d", s / 3600, s / 60 % 60, s % 60);
+        return String.format(Locale.ROOT, "%02d:%02d", s / 60, s % 60);
+    }
+
+    private long durationMs(Uri uri) {
+        MediaMetadataRetriever mmr = new MediaMetadataRetriever();
+        try {
+            mmr.setDataSource(app, uri);
+            String d = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            return d == null ? -1 : Long.parseLong(d);
+        } catch (Exception e) {
+            return -1;
+        } finally {
+            try {
+                mmr.release();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    private float[] peaks(Uri uri) {
+        // 每 50ms 一個峰值（1 小時也才 72000 個 float）
+        float[][] slices = {new float[1024]};
+        int[] count = {0};
+        try {
+            new PcmDecoder(PROBE_RATE, SLICE_SAMPLES).decode(app, uri, (frame, n) -> {
+                int max = 0;
+                for (int i = 0; i < n; i++) {
+                    int a = Math.abs(frame[i]);
+                    if (a > max) max = a;
+                }
+                if (count[0] == slices[0].length) slices[0] = Arrays.copyOf(slices[0], count[0] * 2);
+                slices[0][count[0]++] = max / 32768f;
+            });
+        } catch (Exception e) {
+            Log.w(TAG, "decode failed: " + uri, e);
+            return null;
+        }
+        return downsample(slices[0], count[0]);
+    }
+
+    /**
+     * 縮成 BUCKETS 條（每條取區間最大值），再以最大的一條為 1 正規化
+     */
+    static float[] downsample(float[] slices, int n) {
+        float[] out = new float[BUCKETS];
+        if (n == 0) return out;
+        float top = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            int from = (int) ((long) b * n / BUCKETS);
+            int to = Math.max(from + 1, (int) ((long) (b + 1) * n / BUCKETS));
+            float max = 0;
+            for (int i = from; i < to && i < n; i++) max = Math.max(max, slices[i]);
+            out[b] = max;
+            top = Math.max(top, max);
+        }
+        if (top > 0) for (int b = 0; b < BUCKETS; b++) out[b] /= top;
+        return out;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.fp2.batch;
+
+import com.example.fp2.rules.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把連續捲動的截圖 OCR 文字接成一段不重複的對話
+ *
+ * 相鄰兩張截圖通常是「上一張的最後幾行 = 下一張的前幾行」，
+ * 而下一張最上面可能還多了重複的聊天標題（聯絡人名稱）。
+ * 做法：在新一張前 MAX_HEADER_SKIP 行內找起點，
+ * 找「已累積文字的結尾 k 行」和「新文字從起點開始的 k 行」相同的最大 k，
+ * 只把重疊之後的行接上去。比對時忽略空白 / 大小寫 / 簡繁 / 全形，並容忍少量 OCR 錯字。
+ */
+public final class ConversationStitcher {
+
+    private static final int MAX_HEADER_SKIP = 6;
+    private static final int MAX_OVERLAP = 40;
+    private static final int MIN_SINGLE_LINE = 10; // 只重疊一行時，這行至少要這麼長才算（避免時間戳誤判）
+
+    private final List<String> lines = new ArrayList<>();
+    private final List<String> keys = new ArrayList<>();
+
+    /**
+     * 接上一張截圖的文字，回傳這張實際新增的行數
+     */
+    public int append(String text) {
+        List<String> add = new ArrayList<>();
+        List<String> addKeys = new ArrayList<>();
+        if (text != null) {
+            for (String raw : text.split("\n")) {
+                String t = raw.trim();
+                if (t.isEmpty()) continue;
+                add.add(t);
+                addKeys.add(key(t));
+            }
+        }
+        if (add.isEmpty()) return 0;
+
+        int from = 0;
+        if (!keys.isEmpty()) {
+            int[] best = findOverlap(addKeys);
+            if (best != null) from = best[0] + best[1];
+        }
+
+        int added = 0;
+        for (int i = from; i < add.size(); i++) {
+            lines.add(add.get(i));
+            keys.add(addKeys.get(i));
+            added++;
+        }
+        return added;
+    }
+
+    public String text() {
+        StringBuilder sb = new StringBuilder();
+        for (String l : lines) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(l);
+        }
+        return sb.toString();
+    }
+
+    public int lineCount() {
+        return lines.size();
+    }
+
+    /**
+     * @return {起點 offset, 重疊行數}；找不到回 null
+     */
+    private int[] findOverlap(List<String> next) {
+        int[] best = null;
+        int maxSkip = Math.min(MAX_HEADER_SKIP, next.size() - 1);
+        for (int off = 0; off <= maxSkip; off++) {
+            int maxK = Math.min(Math.min(MAX_OVERLAP, keys.size()), next.size() - off);
+            for (int k = maxK; k >= 1; k--) {
+                if (best != null && k <= best[1]) break;
+                if (matches(next, off, k)) {
+                    if (k == 1 && next.get(off).length() < MIN_SINGLE_LINE) break;
+                    best = new int[]{off, k};
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    private boolean matches(List<String> next, int off, int k) {
+        int base = keys.size() - k;
+        for (int i = 0; i < k; i++) {
+            if (!similar(keys.get(base + i), next.get(off + i))) return false;
+        }
+        return true;
+    }
+
+    // ===============================
+    // 工具方法
+    // ===============================
+    private static String key(String line) {
+        // 去空白 + 小寫 + 簡繁 / 全形統一（中英 OCR 模型對同一行可能給出不同字形）
+        return TextNormalizer.key(line);
+    }
+
+    /**
+     * 完全相同，或（夠長時）編輯距離在長度 1/8 以內
+     */
+    static boolean similar(String a, String b) {
+        if (a.equals(b)) return true;
+        int len = Math.max(a.length(), b.length());
+        if (len < 6) return false;
+        int budget = Math.max(1, len / 8);
+        if (Math.abs(a.length() - b.length()) > budget) return false;
+        return editDistance(a, b, budget) <= budget;
+    }
+
+    /**
+     * Levenshtein，超過 budget 就提早結束
+     */
+    private static int editDistance(String a, String b, int budget) {
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (rowMin > budget) return rowMin;
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return prev[b.length()];
+    }
+}
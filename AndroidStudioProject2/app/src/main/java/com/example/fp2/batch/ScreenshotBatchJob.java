@@ -0,0 +1,205 @@
+package com.example.fp2.batch;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.fp2.model.ApiResponse;
+import com.example.fp2.net.BackendService;
+import com.example.fp2.net.RequestScheduler;
+import com.example.fp2.ocr.OcrEngine;
+import com.example.fp2.ocr.OcrPipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多張截圖的批次分析（管線化）
+ *
+ *   解碼 / OCR 第 N+1 張  ─┐
+ *                          ├─ 同時進行
+ *   後端分析第 1..N 張的對話 ─┘
+ *
+ * 1) 一次只 OCR 一張（ML Kit 本身就吃滿 CPU；看過的圖走 OcrCache），拿到文字就接進 ConversationStitcher
+ * 2) 對話有新內容就送 /analyze_text；上一個請求還沒回來時不排隊，
+ *    回來後若對話又變了，只送最新的一份（中間版本直接略過）
+ * 3) 最後一張 OCR 完、且送出的正是最終對話，該次回應就是最終結果
+ * 中間版本排 PREFETCH（結果可能被下一版取代），最終對話才用呼叫端給的 lane。
+ *
+ * 所有 Listener 回呼都在主執行緒。
+ */
+public class ScreenshotBatchJob {
+
+    private static final String TAG = "BATCH";
+
+    public static final int STATE_WAITING = 0;
+    public static final int STATE_OCR = 1;
+    public static final int STATE_DONE = 2;
+    public static final int STATE_FAILED = 3;
+
+    public interface Listener {
+        /** 第 index 張的狀態改變；addedLines 只有 STATE_DONE 有意義 */
+        void onImageState(int index, int state, int addedLines);
+
+        /** 接好的對話有新內容 */
+        void onConversation(String conversation);
+
+        /** 中途（還有截圖沒 OCR 完）的分析結果 */
+        void onProvisional(ApiResponse data);
+
+        void onComplete(ApiResponse data, String conversation);
+
+        void onError(String message);
+    }
+
+    private final Context app;
+    private final List<Uri> uris;
+    private final Listener listener;
+    private final RequestScheduler.Lane lane;
+    private final BackendService backend = new BackendService();
+    private final ConversationStitcher stitcher = new ConversationStitcher();
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    private int next;              // 下一張要 OCR 的 index
+    private boolean ocrDone;
+    private int version;           // 對話內容版本（每次有新增行 +1）
+    private int sentVersion = -1;  // 最近一次送出分析的版本
+    private boolean inFlight;
+    private boolean cancelled;
+
+    private ApiResponse lastData;  // 最近一次成功的分析結果
+    private int lastDataVersion = -1;
+
+    public ScreenshotBatchJob(Context context, List<Uri> uris, Listener listener) {
+        this(context, uris, RequestScheduler.Lane.INTERACTIVE, listener);
+    }
+
+    public ScreenshotBatchJob(Context context, List<Uri> uris, RequestScheduler.Lane lane, Listener listener) {
+        this.app = context.getApplicationContext();
+        this.uris = new ArrayList<>(uris);
+        this.lane = lane;
+        this.listener = listener;
+    }
+
+    public void start() {
+        for (int i = 0; i < uris.size(); i++) listener.onImageState(i, STATE_WAITING, 0);
+        ocrNext();
+    }
+
+    /**
+     * 頁面關掉時呼叫：之後的結果都不再回報
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public List<Uri> uris() {
+        return uris;
+    }
+
+    // ===============================
+    // OCR 階段
+    // ===============================
+    private void ocrNext() {
+        if (cancelled) return;
+        if (next >= uris.size()) {
+            ocrDone = true;
+            if (stitcher.lineCount() == 0) {
+                listener.onError("未偵測到文字");
+                return;
+            }
+            requestAnalysis();
+            return;
+        }
+
+        final int idx = next++;
+        listener.onImageState(idx, STATE_OCR, 0);
+
+        OcrPipeline.recognize(app, uris.get(idx), new OcrEngine.Callback() {
+            @Override
+            public void onSuccess(String text) {
+                onImageText(idx, text);
+            }
+
+            @Override
+            public void onError(String message) {
+                Log.w(TAG, "ocr failed #" + idx + ": " + message);
+                if (!cancelled) listener.onImageState(idx, STATE_FAILED, 0);
+            }
+
+            @Override
+            public void onFinished() {
+                // 這張的 recognizer 都跑完才開始下一張（不跟自己搶 CPU）
+                ocrNext();
+            }
+        });
+    }
+
+    private void onImageText(int idx, String text) {
+        if (cancelled) return;
+        int added = stitcher.append(text);
+        listener.onImageState(idx, STATE_DONE, added);
+        if (added > 0) {
+            version++;
+            listener.onConversation(stitcher.text());
+            requestAnalysis();
+        }
+    }
+
+    // ===============================
+    // 分析階段（同時最多一個請求，只送最新版本）
+    // ===============================
+    private void requestAnalysis() {
+        if (cancelled || inFlight) return;
+        if (sentVersion == version) {
+            // 最後幾張沒有新內容：手上的結果已經是最終對話的
+            if (ocrDone && lastDataVersion == version) {
+                listener.onComplete(lastData, stitcher.text());
+                return;
+            }
+            // OCR 還沒完：沒什麼新東西好送；已完成但這版上次失敗：重送一次
+            if (!ocrDone) return;
+        }
+
+        final int v = version;
+        final String conversation = stitcher.text();
+        sentVersion = v;
+        inFlight = true;
+
+        // 背景批次本來就排最後，中間版本不用再降
+        RequestScheduler.Lane l = ocrDone || lane == RequestScheduler.Lane.BACKGROUND ? lane : RequestScheduler.Lane.PREFETCH;
+        backend.analyzeText(conversation, l, new BackendService.Callback() {
+            @Override
+            public void onSuccess(ApiResponse data) {
+                main.post(() -> onAnalysis(v, conversation, data, null));
+            }
+
+            @Override
+            public void onError(String message) {
+                main.post(() -> onAnalysis(v, conversation, null, message));
+            }
+        });
+    }
+
+    private void onAnalysis(int v, String conversation, ApiResponse data, String error) {
+        inFlight = false;
+        if (cancelled) return;
+        if (data != null) {
+            lastData = data;
+            lastDataVersion = v;
+        }
+
+        boolean isFinal = ocrDone && v == version;
+        if (isFinal) {
+            if (data != null) listener.onComplete(data, conversation);
+            else listener.onError(error);
+            return;
+        }
+
+        if (data != null) listener.onProvisional(data);
+        // 對話在等待期間又變了（或 OCR 剛好全部完成）：送最新的
+        requestAnalysis();
+    }
+}
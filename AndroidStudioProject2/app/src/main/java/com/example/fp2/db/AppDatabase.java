@@ -2,13 +2,22 @@ package com.example.fp2.db;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 @Database(
-        entities = {RiskRecordEntity.class},
-        version = 4,
+        entities = {
+                RiskRecordEntity.class,
+                RiskRecordDetailEntity.class,
+                RiskRecordTagEntity.class,
+                RiskDailyStatEntity.class,
+                PendingCheckEntity.class
+        },
+        version = 9,
         exportSchema = false
 )
 public abstract class AppDatabase extends RoomDatabase {
@@ -17,6 +26,138 @@ public abstract class AppDatabase extends RoomDatabase {
 
     public abstract RiskRecordDao riskRecordDao();
 
+    public abstract RiskRecordDetailDao riskRecordDetailDao();
+
+    public abstract RiskStatsDao riskStatsDao();
+
+    public abstract PendingCheckDao pendingCheckDao();
+
+    /**
+     * 4 → 5：新增結構化結果表，並用舊 summary 盡量回填
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `risk_record_details` (" +
+                    "`recordId` INTEGER NOT NULL, " +
+                    "`isScam` INTEGER NOT NULL, " +
+                    "`risk` TEXT NOT NULL, " +
+                    "`source` TEXT NOT NULL, " +
+                    "`ruleFloor` TEXT NOT NULL, " +
+                    "`model` TEXT NOT NULL, " +
+                    "`asrBackend` TEXT NOT NULL, " +
+                    "`requestId` TEXT NOT NULL, " +
+                    "`payload` BLOB NOT NULL, " +
+                    "PRIMARY KEY(`recordId`), " +
+                    "FOREIGN KEY(`recordId`) REFERENCES `risk_records`(`id`) " +
+                    "ON UPDATE NO ACTION ON DELETE CASCADE )");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `risk_record_tags` (" +
+                    "`recordId` INTEGER NOT NULL, " +
+                    "`kind` INTEGER NOT NULL, " +
+                    "`ord` INTEGER NOT NULL, " +
+                    "`code` TEXT NOT NULL, " +
+                    "`label` TEXT NOT NULL, " +
+                    "PRIMARY KEY(`recordId`, `kind`, `ord`), " +
+                    "FOREIGN KEY(`recordId`) REFERENCES `risk_records`(`id`) " +
+                    "ON UPDATE NO ACTION ON DELETE CASCADE )");
+
+            RiskRecordRepository.backfillLegacy(db);
+        }
+    };
+
+    /**
+     * 5 → 6：每日統計摘要表，並由既有紀錄回填
+     * 等級分法同 bumpStats（normalizeRiskLevel），之後的遞增 / 遞減才會落在同一格
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `risk_daily_stats` (" +
+                    "`day` INTEGER NOT NULL, " +
+                    "`source` TEXT NOT NULL, " +
+                    "`riskLevel` TEXT NOT NULL, " +
+                    "`scamType` TEXT NOT NULL, " +
+                    "`count` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`day`, `source`, `riskLevel`, `scamType`))");
+
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_risk_records_createdAt` " +
+                    "ON `risk_records` (`createdAt`)");
+
+            // 時區用遷移當下的 offset（夏令時間差一小時可接受）
+            long offset = java.util.TimeZone.getDefault().getOffset(System.currentTimeMillis());
+            db.execSQL("INSERT OR REPLACE INTO risk_daily_stats (day, source, riskLevel, scamType, count) " +
+                    "SELECT (r.createdAt + " + offset + ") / 86400000 AS d, " +
+                    "UPPER(TRIM(r.type)) AS src, " +
+                    "CASE " + RiskRecordEntity.riskCodeSql("r.riskLevel") + " " +
+                    "WHEN 2 THEN 'HIGH' WHEN 1 THEN 'MEDIUM' ELSE 'LOW' END AS lvl, " +
+                    "IFNULL(t.label, '') AS st, " +
+                    "COUNT(*) " +
+                    "FROM risk_records r " +
+                    "LEFT JOIN risk_record_tags t " +
+                    "ON t.recordId = r.id AND t.kind = 0 AND t.ord = 0 " +
+                    "AND t.label NOT LIKE '未明確分類%' " +
+                    "WHERE r.createdAt IS NOT NULL " +
+                    "GROUP BY d, src, lvl, st");
+        }
+    };
+
+    /**
+     * 6 → 7：typeCode / riskCode 整數欄位（規則同 RiskRecordEntity.typeCodeOf / riskCodeOf）
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `risk_records` ADD COLUMN `typeCode` INTEGER NOT NULL DEFAULT -1");
+            db.execSQL("ALTER TABLE `risk_records` ADD COLUMN `riskCode` INTEGER NOT NULL DEFAULT 0");
+
+            db.execSQL("UPDATE risk_records SET typeCode = CASE UPPER(TRIM(type)) " +
+                    "WHEN 'URL' THEN 0 WHEN 'AUDIO' THEN 1 WHEN 'IMAGE' THEN 2 WHEN 'TEXT' THEN 3 " +
+                    "ELSE -1 END");
+
+            db.execSQL("UPDATE risk_records SET riskCode = " + RiskRecordEntity.riskCodeSql("riskLevel"));
+        }
+    };
+
+    /**
+     * 7 → 8：離線待補送佇列
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `pending_checks` (" +
+                    "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`recordId` INTEGER NOT NULL, " +
+                    "`kind` INTEGER NOT NULL, " +
+                    "`payload` TEXT NOT NULL, " +
+                    "`attempts` INTEGER NOT NULL, " +
+                    "`nextAttemptAt` INTEGER NOT NULL, " +
+                    "`createdAt` INTEGER NOT NULL, " +
+                    "`lastError` TEXT NOT NULL, " +
+                    "FOREIGN KEY(`recordId`) REFERENCES `risk_records`(`id`) " +
+                    "ON UPDATE NO ACTION ON DELETE CASCADE )");
+
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_pending_checks_recordId` " +
+                    "ON `pending_checks` (`recordId`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_pending_checks_nextAttemptAt` " +
+                    "ON `pending_checks` (`nextAttemptAt`)");
+        }
+    };
+
+    /**
+     * 8 → 9：拿掉沒人查的 covering index（統計頁只查 risk_daily_stats），
+     * risk_records 只留 createdAt（歷史列表 / 保留策略依時間排序）
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("DROP INDEX IF EXISTS `index_risk_record_tags_kind_code_recordId`");
+            db.execSQL("DROP INDEX IF EXISTS `index_risk_records_createdAt_type_riskLevel`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_risk_records_createdAt` " +
+                    "ON `risk_records` (`createdAt`)");
+        }
+    };
+
     public static AppDatabase getInstance(Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
@@ -26,7 +167,8 @@ public abstract class AppDatabase extends RoomDatabase {
                                     AppDatabase.class,
                                     "scam_siren_db"
                             )
-                            // ✅ 先求穩：schema 不一致就砍掉重建
+                            .addMigrations(MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9)
+                            // ✅ 先求穩：4 以前的舊 schema 不一致就砍掉重建
                             .fallbackToDestructiveMigration()
                             .allowMainThreadQueries()
                             .build();
@@ -35,4 +177,4 @@ public abstract class AppDatabase extends RoomDatabase {
         }
         return INSTANCE;
     }
-}
\ No newline at end of file
+}
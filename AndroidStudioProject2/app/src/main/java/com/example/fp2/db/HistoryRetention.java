@@ -0,0 +1,209 @@
+package com.example.fp2.db;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.UriPermission;
+import android.database.Cursor;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.example.fp2.ocr.OcrCache;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 歷史紀錄保留引擎
+ * 1) 依 年齡 → 筆數 → 佔用空間 的順序分批刪除最舊紀錄（離線待補送的不刪，補送完才照一般紀錄算）
+ * 2) 刪掉的 IMAGE / AUDIO 若沒有其他紀錄引用，就釋放 persistable uri 權限
+ * 3) 清掉沒有任何紀錄引用的殘留 uri 權限（低風險沒存檔的那些）
+ * 4) OCR 快取（截圖文字）不留得比歷史紀錄久
+ * 5) incremental_vacuum + PRAGMA optimize，控制 DB 檔案大小與查詢計畫
+ *
+ * 阻塞執行，由 RetentionWorker 在背景呼叫。
+ */
+public final class HistoryRetention {
+
+    private static final String TAG = "RETENTION";
+
+    public interface StopSignal {
+        boolean isStopped();
+    }
+
+    public static final class Report {
+        public int deleted;
+        public int releasedUris;
+        public long bytesBefore;
+        public long bytesAfter;
+
+        @Override
+        public String toString() {
+            return "deleted=" + deleted + ", releasedUris=" + releasedUris
+                    + ", bytes=" + bytesBefore + "->" + bytesAfter;
+        }
+    }
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private static final int BATCH = 200;                   // 每批刪除筆數（低於 SQLite 999 參數上限）
+    private static final int VACUUM_PAGES_PER_RUN = 512;    // 每次最多回收頁數
+    private static final long URI_GRACE_MS = DAY_MS;        // 剛拿到的 uri 權限先不動（可能正在分析）
+
+    private final Context context;
+    private final AppDatabase db;
+
+    public HistoryRetention(Context context) {
+        this.context = context.getApplicationContext();
+        this.db = AppDatabase.getInstance(this.context);
+    }
+
+    public Report run(RetentionPolicy policy, StopSignal stop, boolean allowFullVacuum) {
+        Report report = new Report();
+        report.bytesBefore = usedBytes();
+
+        RiskRecordDao dao = db.riskRecordDao();
+
+        // ===== 1) 年齡 =====
+        if (policy.maxAgeDays > 0) {
+            long cutoff = System.currentTimeMillis() - policy.maxAgeDays * DAY_MS;
+            while (!stop.isStopped()) {
+                List<RiskRecordDao.Victim> batch = dao.oldestBefore(cutoff, BATCH);
+                if (batch.isEmpty()) break;
+                report.deleted += deleteBatch(batch, report);
+            }
+        }
+
+        // ===== 2) 筆數 =====
+        if (policy.maxCount > 0) {
+            int over = dao.count() - policy.maxCount;
+            while (over > 0 && !stop.isStopped()) {
+                List<RiskRecordDao.Victim> batch = dao.oldest(Math.min(BATCH, over));
+                if (batch.isEmpty()) break;
+                int n = deleteBatch(batch, report);
+                report.deleted += n;
+                over -= n;
+            }
+        }
+
+        // ===== 3) 空間 =====
+        if (policy.maxBytes > 0) {
+            while (usedBytes() > policy.maxBytes && !stop.isStopped()) {
+                List<RiskRecordDao.Victim> batch = dao.oldest(BATCH);
+                if (batch.isEmpty()) break;
+                report.deleted += deleteBatch(batch, report);
+            }
+        }
+
+        if (!stop.isStopped()) report.releasedUris += releaseStaleUriGrants();
+
+        // ===== 4) OCR 快取：沒有保留天數時用快取自己的上限 =====
+        long ocrMaxAge = policy.maxAgeDays > 0
+                ? Math.min(policy.maxAgeDays * DAY_MS, OcrCache.MAX_AGE_MS)
+                : OcrCache.MAX_AGE_MS;
+        if (!stop.isStopped()) OcrCache.get(context).expire(ocrMaxAge);
+        if (!stop.isStopped()) compact(allowFullVacuum);
+
+        report.bytesAfter = usedBytes();
+        Log.d(TAG, report.toString());
+        return report;
+    }
+
+    // ===============================
+    // 刪除 + 釋放 uri 權限
+    // ===============================
+    private int deleteBatch(List<RiskRecordDao.Victim> batch, Report report) {
+        List<Integer> ids = new ArrayList<>(batch.size());
+        for (RiskRecordDao.Victim v : batch) ids.add(v.id);
+
+        // details / tags 由 FOREIGN KEY ON DELETE CASCADE 一起刪
+        int n = db.riskRecordDao().deleteByIds(ids);
+
+        for (RiskRecordDao.Victim v : batch) {
+            if (!isMedia(v.type) || v.content == null) continue;
+            if (db.riskRecordDao().countByContent(v.content) > 0) continue; // 還有別筆在用
+            if (releaseUri(v.content)) report.releasedUris++;
+        }
+        return n;
+    }
+
+    /**
+     * 沒有任何紀錄引用的 persistable 權限（例如低風險沒存檔的截圖）一併釋放
+     */
+    private int releaseStaleUriGrants() {
+        ContentResolver cr = context.getContentResolver();
+        Set<String> referenced = new HashSet<>(db.riskRecordDao().mediaUris());
+        long now = System.currentTimeMillis();
+
+        int released = 0;
+        for (UriPermission p : cr.getPersistedUriPermissions()) {
+            String u = p.getUri().toString();
+            if (referenced.contains(u)) continue;
+            if (now - p.getPersistedTime() < URI_GRACE_MS) continue;
+            if (releaseUri(u)) released++;
+        }
+        return released;
+    }
+
+    private boolean releaseUri(String uriStr) {
+        try {
+            context.getContentResolver().releasePersistableUriPermission(
+                    Uri.parse(uriStr),
+                    Intent.FLAG_GRANT_READ_URI_PERMISSION
+            );
+            return true;
+        } catch (Exception ignored) {
+            // 權限早就不在（或不是 persistable）就算了
+            return false;
+        }
+    }
+
+    // ===============================
+    // 壓縮
+    // ===============================
+    private void compact(boolean allowFullVacuum) {
+        SupportSQLiteDatabase sdb = db.getOpenHelper().getWritableDatabase();
+        try {
+            if (pragmaLong(sdb, "PRAGMA auto_vacuum") != 2) {
+                // 舊 DB 還不是 INCREMENTAL：要整個 VACUUM 一次才會生效，只在充電時做
+                if (!allowFullVacuum) return;
+                sdb.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+                sdb.execSQL("VACUUM");
+            } else {
+                // incremental_vacuum 每回收一頁回傳一列，要把 cursor 走完才會真的做完
+                try (Cursor c = sdb.query("PRAGMA incremental_vacuum(" + VACUUM_PAGES_PER_RUN + ")")) {
+                    while (c.moveToNext()) { /* drain */ }
+                }
+            }
+            try (Cursor c = sdb.query("PRAGMA optimize")) {
+                while (c.moveToNext()) { /* drain */ }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "compact failed", e);
+        }
+    }
+
+    /**
+     * 實際使用中的位元組（扣掉 freelist）
+     */
+    private long usedBytes() {
+        SupportSQLiteDatabase sdb = db.getOpenHelper().getWritableDatabase();
+        long pageSize = pragmaLong(sdb, "PRAGMA page_size");
+        long pages = pragmaLong(sdb, "PRAGMA page_count");
+        long free = pragmaLong(sdb, "PRAGMA freelist_count");
+        return Math.max(0, pages - free) * pageSize;
+    }
+
+    private static long pragmaLong(SupportSQLiteDatabase sdb, String sql) {
+        try (Cursor c = sdb.query(sql)) {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        }
+    }
+
+    private static boolean isMedia(String type) {
+        return "IMAGE".equalsIgnoreCase(type) || "AUDIO".equalsIgnoreCase(type);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.fp2.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * pending_checks 的資料存取介面（DAO）
+ */
+@Dao
+public interface PendingCheckDao {
+
+    @Insert
+    long insert(PendingCheckEntity pending);
+
+    /**
+     * 到期可以補送的（舊的先送）
+     */
+    @Query(
+            "SELECT * FROM pending_checks " +
+                    "WHERE nextAttemptAt <= :now " +
+                    "ORDER BY createdAt LIMIT :limit"
+    )
+    List<PendingCheckEntity> due(long now, int limit);
+
+    /**
+     * 最早的下次補送時間（沒有待補送回 null）
+     */
+    @Query("SELECT MIN(nextAttemptAt) FROM pending_checks")
+    Long nextAttemptAt();
+
+    @Query("SELECT COUNT(*) FROM pending_checks")
+    int count();
+
+    @Query(
+            "UPDATE pending_checks SET attempts = :attempts, nextAttemptAt = :nextAttemptAt, " +
+                    "lastError = :error WHERE id = :id"
+    )
+    void reschedule(long id, int attempts, long nextAttemptAt, String error);
+
+    @Query("DELETE FROM pending_checks WHERE id = :id")
+    void delete(long id);
+}
@@ -0,0 +1,63 @@
+package com.example.fp2.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * 離線時做的檢查：先存本機初判進歷史，這裡記下之後要補送的內容
+ * 恢復連線後由 OfflineReplayWorker 補送，結果直接更新 recordId 那筆歷史紀錄。
+ * 歷史紀錄被刪掉時一起刪（不必再補送）。
+ */
+@Entity(
+        tableName = "pending_checks",
+        foreignKeys = @ForeignKey(
+                entity = RiskRecordEntity.class,
+                parentColumns = "id",
+                childColumns = "recordId",
+                onDelete = ForeignKey.CASCADE
+        ),
+        indices = {
+                @Index(value = {"recordId"}),
+                @Index(value = {"nextAttemptAt"})
+        }
+)
+public class PendingCheckEntity {
+
+    public static final int KIND_TEXT = 0;   // 文字（含截圖 OCR / 離線語音轉好的逐字稿）→ 批次送 /analyze_batch
+    public static final int KIND_AUDIO = 1;  // 音檔 uri → 重新上傳
+    public static final int KIND_URL = 2;    // 網址 → UrlChecker 完整檢查
+
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    public long recordId;       // 對應 risk_records.id（初判那筆）
+
+    public int kind;
+
+    @NonNull
+    public String payload = ""; // 要補送的文字 / 音檔 uri / 網址
+
+    public int attempts;        // 後端回錯誤的次數（連不上不算）
+
+    public long nextAttemptAt;  // 指數退避：這個時間之後才再送
+
+    public long createdAt;
+
+    @NonNull
+    public String lastError = "";
+
+    public PendingCheckEntity() {}
+
+    @Ignore
+    public PendingCheckEntity(long recordId, int kind, @NonNull String payload) {
+        this.recordId = recordId;
+        this.kind = kind;
+        this.payload = payload;
+        this.createdAt = System.currentTimeMillis();
+        this.nextAttemptAt = this.createdAt;
+    }
+}
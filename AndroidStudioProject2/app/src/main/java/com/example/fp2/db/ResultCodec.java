@@ -0,0 +1,105 @@
+package com.example.fp2.db;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * risk_record_details.payload 的二進位編碼
+ *
+ * 格式（v1）：
+ *   [version:1 byte]
+ *   [reasons:  varint 數量, 每筆 varint 長度 + UTF-8]
+ *   [advices:  varint 數量, 每筆 varint 長度 + UTF-8]
+ *
+ * 比 JSON 小、解析不用 Gson，歷史頁重繪時只解這兩個清單。
+ */
+public final class ResultCodec {
+
+    private static final byte VERSION = 1;
+
+    private ResultCodec() {}
+
+    public static final class Payload {
+        public final List<String> reasons;
+        public final List<String> advices;
+
+        public Payload(List<String> reasons, List<String> advices) {
+            this.reasons = reasons == null ? Collections.emptyList() : reasons;
+            this.advices = advices == null ? Collections.emptyList() : advices;
+        }
+    }
+
+    public static byte[] encode(List<String> reasons, List<String> advices) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(VERSION);
+        writeList(out, reasons);
+        writeList(out, advices);
+        return out.toByteArray();
+    }
+
+    public static Payload decode(byte[] data) {
+        if (data == null || data.length == 0 || data[0] != VERSION) {
+            return new Payload(null, null);
+        }
+        int[] pos = {1};
+        List<String> reasons = readList(data, pos);
+        List<String> advices = readList(data, pos);
+        return new Payload(reasons, advices);
+    }
+
+    // ===============================
+    // 工具方法
+    // ===============================
+    private static void writeList(ByteArrayOutputStream out, List<String> xs) {
+        if (xs == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        int n = 0;
+        for (String x : xs) if (x != null) n++;
+        writeVarint(out, n);
+        for (String x : xs) {
+            if (x == null) continue;
+            byte[] b = x.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, b.length);
+            out.write(b, 0, b.length);
+        }
+    }
+
+    private static List<String> readList(byte[] data, int[] pos) {
+        if (pos[0] >= data.length) return Collections.emptyList();
+        int n = readVarint(data, pos);
+        if (n <= 0) return Collections.emptyList();
+        List<String> out = new ArrayList<>(Math.min(n, 16));
+        for (int i = 0; i < n && pos[0] < data.length; i++) {
+            int len = readVarint(data, pos);
+            if (len < 0 || pos[0] + len > data.length) break; // 壞資料就停，不拋例外
+            out.add(new String(data, pos[0], len, StandardCharsets.UTF_8));
+            pos[0] += len;
+        }
+        return out;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static int readVarint(byte[] data, int[] pos) {
+        int result = 0;
+        int shift = 0;
+        while (pos[0] < data.length && shift < 32) {
+            int b = data[pos[0]++] & 0xFF;
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+            shift += 7;
+        }
+        return -1;
+    }
+}
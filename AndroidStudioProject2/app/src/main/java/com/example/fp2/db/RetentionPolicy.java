@@ -0,0 +1,48 @@
+package com.example.fp2.db;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * 歷史紀錄保留策略（三個上限任一超過就從最舊的開始刪）
+ * 設定存在 SharedPreferences，之後要做設定頁直接改這裡即可。
+ */
+public final class RetentionPolicy {
+
+    private static final String PREFS = "retention_prefs";
+    private static final String KEY_MAX_AGE_DAYS = "max_age_days";
+    private static final String KEY_MAX_COUNT = "max_count";
+    private static final String KEY_MAX_BYTES = "max_bytes";
+
+    public static final int DEFAULT_MAX_AGE_DAYS = 365;
+    public static final int DEFAULT_MAX_COUNT = 2000;
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024; // 16 MB
+
+    public final int maxAgeDays;   // <= 0 表示不限
+    public final int maxCount;     // <= 0 表示不限
+    public final long maxBytes;    // <= 0 表示不限
+
+    public RetentionPolicy(int maxAgeDays, int maxCount, long maxBytes) {
+        this.maxAgeDays = maxAgeDays;
+        this.maxCount = maxCount;
+        this.maxBytes = maxBytes;
+    }
+
+    public static RetentionPolicy load(Context context) {
+        SharedPreferences sp = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        return new RetentionPolicy(
+                sp.getInt(KEY_MAX_AGE_DAYS, DEFAULT_MAX_AGE_DAYS),
+                sp.getInt(KEY_MAX_COUNT, DEFAULT_MAX_COUNT),
+                sp.getLong(KEY_MAX_BYTES, DEFAULT_MAX_BYTES)
+        );
+    }
+
+    public void save(Context context) {
+        context.getSharedPreferences(PREFS, Context.MODE_PRIVATE)
+                .edit()
+                .putInt(KEY_MAX_AGE_DAYS, maxAgeDays)
+                .putInt(KEY_MAX_COUNT, maxCount)
+                .putLong(KEY_MAX_BYTES, maxBytes)
+                .apply();
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.fp2.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+import java.util.TimeZone;
+
+/**
+ * 每日統計摘要（手機端版的 stats_db.analysis_stats）
+ * 每次新增紀錄時在同一個 transaction 內 +1，
+ * 統計頁只讀這張小表，不必掃 risk_records。
+ * 紀錄被保留策略刪掉後，統計仍然保留。
+ */
+@Entity(
+        tableName = "risk_daily_stats",
+        primaryKeys = {"day", "source", "riskLevel", "scamType"}
+)
+public class RiskDailyStatEntity {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    public int day;                 // 當地時區的 epoch day
+
+    @NonNull
+    public String source = "";      // TEXT / URL / AUDIO / IMAGE
+
+    @NonNull
+    public String riskLevel = "";   // HIGH / MEDIUM / LOW
+
+    @NonNull
+    public String scamType = "";    // 第一個 scam_type（沒有就空字串）
+
+    public int count;
+
+    /**
+     * 毫秒時間 → 當地時區 epoch day
+     */
+    public static int dayOf(long millis) {
+        long local = millis + TimeZone.getDefault().getOffset(millis);
+        return (int) Math.floorDiv(local, DAY_MS);
+    }
+
+    public static long startOfDay(int day) {
+        long utc = day * DAY_MS;
+        return utc - TimeZone.getDefault().getOffset(utc);
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.fp2.db;
 
+import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.Update;
+
+import com.example.fp2.model.HistoryItem;
 
 import java.util.List;
 
@@ -13,10 +17,16 @@ import java.util.List;
 public interface RiskRecordDao {
 
     /**
-     * 新增一筆風險紀錄
+     * 新增一筆風險紀錄（回傳 record id）
      */
     @Insert
-    void insert(RiskRecordEntity record);
+    long insert(RiskRecordEntity record);
+
+    /**
+     * 離線初判補送完成後，原地更新同一筆紀錄
+     */
+    @Update
+    int update(RiskRecordEntity record);
 
     /**
      * 取得所有歷史紀錄（最新的在前）
@@ -27,16 +37,96 @@ public interface RiskRecordDao {
     )
     List<RiskRecordEntity> getAll();
 
+    /**
+     * 歷史列表（可觀察：有新紀錄寫入就自動重新查詢）
+     * - 篩選同舊版 HistoryActivity.shouldShowInHistory：分數 >= 50，或 riskLevel 是高風險
+     *   （riskCode = 2：高 / HIGH / DANGER / MALICIOUS / PHISH / SCAM）或含 MEDIUM；「中風險」、低分不列
+     * - content 在 SQL 端就挑好：偵測文字（去頭尾空白）優先，截 120 字，沒有才用原始 content
+     * - 離線初判（待補送）不論風險都列出，補送完成後再依結果篩
+     */
+    @Query(
+            "SELECT id, typeCode AS type, riskCode, createdAt, " +
+                    "extra = 'pending' AS pending, " +
+                    "CASE WHEN trim(detected_text, char(32, 9, 10, 13)) != '' " +
+                    "THEN substr(trim(detected_text, char(32, 9, 10, 13)), 1, 120) || " +
+                    "CASE WHEN length(trim(detected_text, char(32, 9, 10, 13))) > 120 THEN '…' ELSE '' END " +
+                    "ELSE content END AS content " +
+                    "FROM risk_records " +
+                    "WHERE typeCode >= 0 " +
+                    "AND (riskCode = 2 OR riskLevel LIKE '%MEDIUM%' OR score >= 50 OR extra = 'pending') " +
+                    "ORDER BY createdAt DESC"
+    )
+    LiveData<List<HistoryItem>> observeHistory();
+
     /**
      * 只取得中 / 高風險紀錄
      */
     @Query(
             "SELECT * FROM risk_records " +
-                    "WHERE riskLevel IN ('MEDIUM', 'HIGH') " +
+                    "WHERE riskCode >= 1 " +
                     "ORDER BY createdAt DESC"
     )
     List<RiskRecordEntity> getMediumAndHighRisk();
 
     @Query("SELECT * FROM risk_records WHERE id = :id LIMIT 1")
     RiskRecordEntity getById(long id);
+
+    // ===============================
+    // 保留策略（HistoryRetention 使用）
+    // ===============================
+    class Victim {
+        public int id;
+        public String type;
+        public String content;
+    }
+
+    /**
+     * 離線待補送的紀錄不刪（pending_checks 會跟著 CASCADE 掉，補送的音檔複本也沒人清）
+     */
+    @Query(
+            "SELECT id, type, content FROM risk_records " +
+                    "WHERE createdAt < :cutoff AND (extra IS NULL OR extra != 'pending') " +
+                    "ORDER BY createdAt LIMIT :limit"
+    )
+    List<Victim> oldestBefore(long cutoff, int limit);
+
+    @Query(
+            "SELECT id, type, content FROM risk_records " +
+                    "WHERE extra IS NULL OR extra != 'pending' " +
+                    "ORDER BY createdAt LIMIT :limit"
+    )
+    List<Victim> oldest(int limit);
+
+    @Query("SELECT COUNT(*) FROM risk_records")
+    int count();
+
+    @Query("DELETE FROM risk_records WHERE id IN (:ids)")
+    int deleteByIds(List<Integer> ids);
+
+    @Query("SELECT COUNT(*) FROM risk_records WHERE content = :content")
+    int countByContent(String content);
+
+    /**
+     * 目前仍被紀錄引用的圖片 / 音檔 uri
+     */
+    @Query("SELECT DISTINCT content FROM risk_records WHERE type IN ('IMAGE', 'AUDIO')")
+    List<String> mediaUris();
+
+    // ===============================
+    // 網址信譽快取（UrlReputationCache 使用）
+    // ===============================
+    class UrlRisk {
+        public String url;
+        public int riskCode;
+    }
+
+    /**
+     * 檢查過的網址（新的在前，同一網址以最新一筆為準）
+     */
+    @Query(
+            "SELECT content AS url, riskCode FROM risk_records " +
+                    "WHERE typeCode = 0 " +
+                    "ORDER BY createdAt DESC LIMIT :limit"
+    )
+    List<UrlRisk> urlRisks(int limit);
 }
@@ -0,0 +1,37 @@
+package com.example.fp2.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * risk_record_details / risk_record_tags 的資料存取介面（DAO）
+ */
+@Dao
+public interface RiskRecordDetailDao {
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertDetail(RiskRecordDetailEntity detail);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertTags(List<RiskRecordTagEntity> tags);
+
+    @Query("SELECT * FROM risk_record_details WHERE recordId = :recordId LIMIT 1")
+    RiskRecordDetailEntity getDetail(long recordId);
+
+    /**
+     * 取得某筆紀錄的所有標籤（依 kind、ord 排序）
+     */
+    @Query(
+            "SELECT * FROM risk_record_tags " +
+                    "WHERE recordId = :recordId " +
+                    "ORDER BY kind, ord"
+    )
+    List<RiskRecordTagEntity> getTags(long recordId);
+
+    @Query("DELETE FROM risk_record_tags WHERE recordId = :recordId")
+    void deleteTags(long recordId);
+}
@@ -0,0 +1,49 @@
+package com.example.fp2.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.PrimaryKey;
+
+/**
+ * risk_records 的結構化結果（一筆紀錄對一筆）
+ * - 純量欄位直接成欄，方便 SQL 聚合
+ * - reasons / advices 等長文字清單用 ResultCodec 編成 payload
+ */
+@Entity(
+        tableName = "risk_record_details",
+        foreignKeys = @ForeignKey(
+                entity = RiskRecordEntity.class,
+                parentColumns = "id",
+                childColumns = "recordId",
+                onDelete = ForeignKey.CASCADE
+        )
+)
+public class RiskRecordDetailEntity {
+
+    @PrimaryKey
+    public long recordId;
+
+    public boolean isScam;
+
+    @NonNull
+    public String risk = "";        // 後端原始 risk（low / medium / high）
+
+    @NonNull
+    public String source = "";      // ocr / asr / url / legacy
+
+    @NonNull
+    public String ruleFloor = "";   // analysis.rule_floor
+
+    @NonNull
+    public String model = "";       // meta.ollama_model
+
+    @NonNull
+    public String asrBackend = "";  // meta.asr_backend
+
+    @NonNull
+    public String requestId = "";   // meta.request_id
+
+    @NonNull
+    public byte[] payload = new byte[0]; // ResultCodec：reasons / advices
+}
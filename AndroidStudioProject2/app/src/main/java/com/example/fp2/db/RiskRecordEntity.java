@@ -4,9 +4,18 @@ import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "risk_records")
+import com.example.fp2.model.HistoryItem;
+
+import java.util.Locale;
+
+@Entity(
+        tableName = "risk_records",
+        // ✅ 歷史列表 / 保留策略都依時間排序
+        indices = {@Index(value = {"createdAt"})}
+)
 public class RiskRecordEntity {
 
     @PrimaryKey(autoGenerate = true)
@@ -32,10 +41,23 @@ public class RiskRecordEntity {
     public String detectedText;
 
     @NonNull
-    public String extra;       // 其他擴充（可先留空）
+    public String extra;       // 其他擴充（可先留空）；EXTRA_PENDING = 離線初判、等待補送
 
     public Long createdAt;     // 建立時間（毫秒）
 
+    // ✅ 寫入時就正規化的整數欄位：列表直接 SQL WHERE，不必再做字串比對
+    @ColumnInfo(defaultValue = "-1")
+    public int typeCode;       // HistoryItem.TYPE_*（-1 = 未知類型）
+
+    @ColumnInfo(defaultValue = "0")
+    public int riskCode;       // RISK_LOW / RISK_MEDIUM / RISK_HIGH
+
+    public static final int RISK_LOW = 0;
+    public static final int RISK_MEDIUM = 1;
+    public static final int RISK_HIGH = 2;
+
+    public static final String EXTRA_PENDING = "pending";
+
     // ✅ Room 正式用（8 參數）
     public RiskRecordEntity(
             @NonNull String type,
@@ -55,6 +77,8 @@ public class RiskRecordEntity {
         this.detectedText = detectedText;
         this.extra = extra;
         this.createdAt = createdAt;
+        this.typeCode = typeCodeOf(type);
+        this.riskCode = riskCodeOf(riskLevel);
     }
 
     // ✅ 你原本 TEXT 用的 6 參數（自動補 detectedText/extra）
@@ -83,4 +107,65 @@ public class RiskRecordEntity {
     ) {
         this(type, content, riskLevel, score, summary, detectedText, "", createdAt);
     }
-}
\ No newline at end of file
+
+    // ===============================
+    // 正規化（Migration 5 → 6、6 → 7 的 SQL 也照這個規則）
+    // ===============================
+    public static int typeCodeOf(String type) {
+        if (type == null) return -1;
+        switch (type.trim().toUpperCase(Locale.ROOT)) {
+            case "URL":   return HistoryItem.TYPE_URL;
+            case "AUDIO": return HistoryItem.TYPE_AUDIO;
+            case "IMAGE": return HistoryItem.TYPE_IMAGE;
+            case "TEXT":  return HistoryItem.TYPE_TEXT;
+            default:      return -1;
+        }
+    }
+
+    // 風險字樣 → 等級：riskCodeOf、RiskRecordRepository.normalizeRiskLevel、遷移的 SQL（riskCodeSql）共用
+    private static final String[] HIGH_WORDS = {"HIGH", "高", "DANGER", "MALICIOUS", "PHISH", "SCAM"};
+    private static final String[] MEDIUM_WORDS = {"MED", "中", "SUSPIC"};
+    private static final String[] LOW_WORDS = {"LOW", "低", "SAFE"};
+
+    public static int riskCodeOf(String riskLevel) {
+        int code = riskCodeOrUnknown(riskLevel);
+        return code < 0 ? RISK_LOW : code;
+    }
+
+    /**
+     * @return RISK_*；沒有任何認得的字樣回 -1（由呼叫端決定，例如看 is_scam）
+     */
+    public static int riskCodeOrUnknown(String riskLevel) {
+        if (riskLevel == null) return -1;
+        String v = riskLevel.toUpperCase(Locale.ROOT);
+        if (containsAny(v, HIGH_WORDS)) return RISK_HIGH;
+        if (containsAny(v, MEDIUM_WORDS)) return RISK_MEDIUM;
+        if (containsAny(v, LOW_WORDS)) return RISK_LOW;
+        return -1;
+    }
+
+    /**
+     * 同 riskCodeOf 的 SQL CASE（結果 2 / 1 / 0），給遷移回填用
+     */
+    static String riskCodeSql(String column) {
+        return "CASE WHEN " + likeAny(column, HIGH_WORDS) + " THEN " + RISK_HIGH + " " +
+                "WHEN " + likeAny(column, MEDIUM_WORDS) + " THEN " + RISK_MEDIUM + " " +
+                "ELSE " + RISK_LOW + " END";
+    }
+
+    private static boolean containsAny(String v, String[] words) {
+        for (String w : words) {
+            if (v.contains(w)) return true;
+        }
+        return false;
+    }
+
+    private static String likeAny(String column, String[] words) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < words.length; i++) {
+            if (i > 0) sb.append(" OR ");
+            sb.append("UPPER(").append(column).append(") LIKE '%").append(words[i]).append("%'");
+        }
+        return sb.append(')').toString();
+    }
+}
@@ -0,0 +1,513 @@
+package com.example.fp2.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.LruCache;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.example.fp2.model.ApiResponse;
+import com.example.fp2.model.ResultFormatter;
+import com.example.fp2.security.RiskResult;
+import com.example.fp2.security.UrlReputationCache;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 歷史紀錄的唯一寫入口
+ * - risk_records：列表用的主表
+ * - risk_record_details / risk_record_tags：後端回傳的結構化結果
+ * - 詳情頁要顯示時才用 ResultFormatter 重繪（有快取）
+ *
+ * 所有方法都是阻塞呼叫，請在背景執行緒使用。
+ */
+public final class RiskRecordRepository {
+
+    private static volatile RiskRecordRepository INSTANCE;
+
+    private final AppDatabase db;
+
+    // 詳情頁重繪結果快取（key = record id）
+    private final LruCache<Long, String> renderCache = new LruCache<>(64);
+
+    private RiskRecordRepository(AppDatabase db) {
+        this.db = db;
+    }
+
+    public static RiskRecordRepository get(Context context) {
+        if (INSTANCE == null) {
+            synchronized (RiskRecordRepository.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new RiskRecordRepository(AppDatabase.getInstance(context));
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    // ===============================
+    // 寫入
+    // ===============================
+
+    /**
+     * 存一筆後端分析結果（TEXT / IMAGE / AUDIO），回傳 record id
+     */
+    public long saveAnalysis(String type, String content, String detectedText, ApiResponse data) {
+        RiskRecordEntity record = analysisRecord(type, content, detectedText, data, "");
+        return db.runInTransaction(() -> insertAnalysis(record, data));
+    }
+
+    /**
+     * 存一筆網址檢查結果，回傳 record id
+     * 網址檢查的顯示格式由 UrlCheckActivity 決定，所以 summary 照存
+     */
+    public long saveUrlCheck(String url, String verdictZh, int score, RiskResult rr, String summary) {
+        RiskRecordEntity record = urlRecord(url, verdictZh, score, summary, "");
+        return db.runInTransaction(() -> {
+            long id = insertUrlCheck(record, rr);
+            UrlReputationCache.remember(url, record.riskCode);
+            return id;
+        });
+    }
+
+    private RiskRecordEntity analysisRecord(String type, String content, String detectedText,
+                                            ApiResponse data, String extra) {
+        String riskLevel = normalizeRiskLevel(data.risk, data.is_scam);
+        return new RiskRecordEntity(
+                type,
+                content == null ? "" : content,
+                riskLevel,
+                scoreOf(riskLevel, data),
+                "",                       // summary 不再預先格式化，詳情頁再 render
+                detectedText == null ? "" : detectedText,
+                extra,
+                System.currentTimeMillis()
+        );
+    }
+
+    /**
+     * 必須在 transaction 內呼叫
+     */
+    private long insertAnalysis(RiskRecordEntity record, ApiResponse data) {
+        long id = db.riskRecordDao().insert(record);
+        db.riskRecordDetailDao().insertDetail(toDetail(id, data));
+        List<RiskRecordTagEntity> tags = toTags(id, data);
+        db.riskRecordDetailDao().insertTags(tags);
+        bumpStats(record, firstScamType(tags));
+        return id;
+    }
+
+    private static RiskRecordEntity urlRecord(String url, String verdictZh, int score, String summary, String extra) {
+        return new RiskRecordEntity(
+                "URL",
+                url,
+                verdictZh,
+                score,
+                summary == null ? "" : summary,
+                "",
+                extra,
+                System.currentTimeMillis()
+        );
+    }
+
+    /**
+     * 必須在 transaction 內呼叫
+     */
+    private long insertUrlCheck(RiskRecordEntity record, RiskResult rr) {
+        long id = db.riskRecordDao().insert(record);
+        db.riskRecordDetailDao().insertDetail(urlDetail(id, record.riskLevel, rr));
+        bumpStats(record, "");
+        return id;
+    }
+
+    private static RiskRecordDetailEntity urlDetail(long recordId, String verdictZh, RiskResult rr) {
+        RiskRecordDetailEntity d = new RiskRecordDetailEntity();
+        d.recordId = recordId;
+        d.risk = normalizeRiskLevel(verdictZh, false).toLowerCase(Locale.ROOT);
+        d.isScam = !"low".equals(d.risk);
+        d.source = "url";
+        d.payload = ResultCodec.encode(
+                rr == null ? null : rr.reasons,
+                rr == null || rr.advice.isEmpty() ? null : Collections.singletonList(rr.advice)
+        );
+        return d;
+    }
+
+    // ===============================
+    // 離線初判 / 補送（OfflineQueue 使用）
+    // ===============================
+
+    /**
+     * 連不上後端：本機初判先存成歷史（標記待補送），同一個 transaction 排進 pending_checks
+     * @param kind    PendingCheckEntity.KIND_TEXT / KIND_AUDIO
+     * @param payload 補送時要送的內容（完整文字 / 音檔 uri）
+     */
+    public long savePendingAnalysis(String type, String content, String detectedText,
+                                    ApiResponse provisional, int kind, String payload) {
+        RiskRecordEntity record = analysisRecord(type, content, detectedText, provisional,
+                RiskRecordEntity.EXTRA_PENDING);
+        return db.runInTransaction(() -> {
+            long id = insertAnalysis(record, provisional);
+            db.pendingCheckDao().insert(new PendingCheckEntity(id, kind, payload));
+            return id;
+        });
+    }
+
+    /**
+     * 離線的網址檢查：本機啟發式初判先存（不進網址信譽快取），排進 pending_checks
+     */
+    public long savePendingUrlCheck(String url, String verdictZh, int score, RiskResult rr, String summary) {
+        RiskRecordEntity record = urlRecord(url, verdictZh, score, summary, RiskRecordEntity.EXTRA_PENDING);
+        return db.runInTransaction(() -> {
+            long id = insertUrlCheck(record, rr);
+            db.pendingCheckDao().insert(new PendingCheckEntity(id, PendingCheckEntity.KIND_URL, url));
+            return id;
+        });
+    }
+
+    /**
+     * 補送結果回來：原地更新初判那筆（等級、分數、結構化結果、每日統計），移出佇列
+     */
+    public void resolvePending(PendingCheckEntity p, ApiResponse data) {
+        db.runInTransaction(() -> {
+            RiskRecordEntity r = db.riskRecordDao().getById(p.recordId);
+            if (r != null) {
+                RiskRecordDetailDao details = db.riskRecordDetailDao();
+                unbumpStats(r, firstScamType(details.getTags(r.id)));
+
+                r.riskLevel = normalizeRiskLevel(data.risk, data.is_scam);
+                r.riskCode = RiskRecordEntity.riskCodeOf(r.riskLevel);
+                r.score = scoreOf(r.riskLevel, data);
+                r.summary = "";
+                r.extra = "";
+                // 重新上傳的音檔：逐字稿這時才有（同錄音頁，保守截斷）
+                if (r.detectedText.isEmpty() && data.detected_text != null) {
+                    String t = data.detected_text.trim();
+                    r.detectedText = t.length() > 2000 ? t.substring(0, 2000) + "…" : t;
+                }
+                db.riskRecordDao().update(r);
+
+                details.insertDetail(toDetail(r.id, data));
+                details.deleteTags(r.id);
+                List<RiskRecordTagEntity> tags = toTags(r.id, data);
+                details.insertTags(tags);
+                bumpStats(r, firstScamType(tags));
+            }
+            db.pendingCheckDao().delete(p.id);
+        });
+        renderCache.remove(p.recordId);
+    }
+
+    /**
+     * 網址補檢查完成：原地更新初判那筆
+     */
+    public void resolvePendingUrl(PendingCheckEntity p, String verdictZh, int score, RiskResult rr, String summary) {
+        db.runInTransaction(() -> {
+            RiskRecordEntity r = db.riskRecordDao().getById(p.recordId);
+            if (r != null) {
+                unbumpStats(r, "");
+
+                r.riskLevel = verdictZh;
+                r.riskCode = RiskRecordEntity.riskCodeOf(verdictZh);
+                r.score = score;
+                r.summary = summary == null ? "" : summary;
+                r.extra = "";
+                db.riskRecordDao().update(r);
+
+                db.riskRecordDetailDao().insertDetail(urlDetail(r.id, verdictZh, rr));
+                bumpStats(r, "");
+                UrlReputationCache.remember(r.content, r.riskCode);
+            }
+            db.pendingCheckDao().delete(p.id);
+        });
+        renderCache.remove(p.recordId);
+    }
+
+    /**
+     * 補送一直失敗：放棄，保留本機初判當最終結果
+     */
+    public void abandonPending(PendingCheckEntity p) {
+        db.runInTransaction(() -> {
+            RiskRecordEntity r = db.riskRecordDao().getById(p.recordId);
+            if (r != null) {
+                r.extra = "";
+                db.riskRecordDao().update(r);
+            }
+            db.pendingCheckDao().delete(p.id);
+        });
+    }
+
+    /**
+     * 每日統計摘要 +1（必須在新增紀錄的同一個 transaction 內）
+     */
+    private void bumpStats(RiskRecordEntity r, String scamType) {
+        int day = RiskDailyStatEntity.dayOf(r.createdAt == null ? System.currentTimeMillis() : r.createdAt);
+        String source = r.type.trim().toUpperCase(Locale.ROOT);
+        String level = normalizeRiskLevel(r.riskLevel, false);
+
+        RiskStatsDao stats = db.riskStatsDao();
+        stats.ensureRow(day, source, level, scamType);
+        stats.increment(day, source, level, scamType);
+    }
+
+    /**
+     * bumpStats 的反向（紀錄原地更新前，先把舊的等級 / 類型移出）
+     */
+    private void unbumpStats(RiskRecordEntity r, String scamType) {
+        int day = RiskDailyStatEntity.dayOf(r.createdAt == null ? System.currentTimeMillis() : r.createdAt);
+        String source = r.type.trim().toUpperCase(Locale.ROOT);
+        db.riskStatsDao().decrement(day, source, normalizeRiskLevel(r.riskLevel, false), scamType);
+    }
+
+    private static String firstScamType(List<RiskRecordTagEntity> tags) {
+        for (RiskRecordTagEntity t : tags) {
+            if (t.kind == RiskRecordTagEntity.KIND_SCAM_TYPE && !t.label.startsWith("未明確分類")) {
+                return t.label;
+            }
+        }
+        return "";
+    }
+
+    // ===============================
+    // 讀取 / 重繪
+    // ===============================
+
+    /**
+     * 詳情頁顯示用文字
+     * - 舊資料 / 網址檢查：summary 有值就直接用
+     * - 新資料：由結構化欄位重組 ApiResponse 再 format（有快取）
+     */
+    public String render(RiskRecordEntity r) {
+        if (r == null) return "";
+        if (r.summary != null && !r.summary.trim().isEmpty()) return r.summary;
+
+        long id = r.id;
+        String cached = renderCache.get(id);
+        if (cached != null) return cached;
+
+        ApiResponse resp = loadResponse(id);
+        if (resp == null) return "";
+
+        String pretty = ResultFormatter.format(resp);
+        renderCache.put(id, pretty);
+        return pretty;
+    }
+
+    /**
+     * 由 details + tags 還原 ApiResponse（沒有結構化資料回 null）
+     */
+    public ApiResponse loadResponse(long recordId) {
+        RiskRecordDetailEntity d = db.riskRecordDetailDao().getDetail(recordId);
+        if (d == null) return null;
+        return toApiResponse(d, db.riskRecordDetailDao().getTags(recordId));
+    }
+
+    // ===============================
+    // 舊資料回填（Migration 4 → 5 使用）
+    // ===============================
+    static void backfillLegacy(SupportSQLiteDatabase sdb) {
+        try (Cursor c = sdb.query("SELECT id, riskLevel, summary FROM risk_records")) {
+            while (c.moveToNext()) {
+                long id = c.getLong(0);
+                String riskLevel = c.getString(1);
+                String summary = c.getString(2);
+
+                ApiResponse parsed = ResultFormatter.parse(summary);
+                if (parsed == null) {
+                    parsed = new ApiResponse();
+                    parsed.risk = normalizeRiskLevel(riskLevel, false).toLowerCase(Locale.ROOT);
+                    parsed.is_scam = !"low".equals(parsed.risk);
+                }
+
+                RiskRecordDetailEntity d = toDetail(id, parsed);
+                d.source = "legacy";
+
+                ContentValues cv = new ContentValues();
+                cv.put("recordId", d.recordId);
+                cv.put("isScam", d.isScam ? 1 : 0);
+                cv.put("risk", d.risk);
+                cv.put("source", d.source);
+                cv.put("ruleFloor", d.ruleFloor);
+                cv.put("model", d.model);
+                cv.put("asrBackend", d.asrBackend);
+                cv.put("requestId", d.requestId);
+                cv.put("payload", d.payload);
+                sdb.insert("risk_record_details", SQLiteDatabase.CONFLICT_IGNORE, cv);
+
+                for (RiskRecordTagEntity t : toTags(id, parsed)) {
+                    ContentValues tv = new ContentValues();
+                    tv.put("recordId", t.recordId);
+                    tv.put("kind", t.kind);
+                    tv.put("ord", t.ord);
+                    tv.put("code", t.code);
+                    tv.put("label", t.label);
+                    sdb.insert("risk_record_tags", SQLiteDatabase.CONFLICT_IGNORE, tv);
+                }
+            }
+        }
+    }
+
+    // ===============================
+    // ApiResponse <-> 結構化欄位
+    // ===============================
+    private static RiskRecordDetailEntity toDetail(long recordId, ApiResponse r) {
+        RiskRecordDetailEntity d = new RiskRecordDetailEntity();
+        d.recordId = recordId;
+        d.isScam = r.is_scam;
+        d.risk = normalizeRiskLevel(r.risk, r.is_scam).toLowerCase(Locale.ROOT);
+        d.source = safe(r.source);
+        if (r.meta != null) {
+            d.model = safe(r.meta.ollama_model);
+            d.asrBackend = safe(r.meta.asr_backend);
+            d.requestId = safe(r.meta.request_id);
+        }
+        JsonObject a = analysisOf(r);
+        if (a != null && a.has("rule_floor") && a.get("rule_floor").isJsonPrimitive()) {
+            d.ruleFloor = a.get("rule_floor").getAsString();
+        }
+        d.payload = ResultCodec.encode(r.reasons, r.advices);
+        return d;
+    }
+
+    private static List<RiskRecordTagEntity> toTags(long recordId, ApiResponse r) {
+        List<RiskRecordTagEntity> out = new ArrayList<>();
+
+        if (r.scam_type != null) {
+            int ord = 0;
+            for (String s : r.scam_type) {
+                if (s == null || s.trim().isEmpty()) continue;
+                String t = s.trim();
+                out.add(new RiskRecordTagEntity(recordId, RiskRecordTagEntity.KIND_SCAM_TYPE, ord++, t, t));
+            }
+        }
+
+        JsonObject a = analysisOf(r);
+        if (a != null) {
+            if (a.has("matched_categories") && a.get("matched_categories").isJsonArray()) {
+                int ord = 0;
+                for (JsonElement e : a.getAsJsonArray("matched_categories")) {
+                    if (!e.isJsonObject()) continue;
+                    JsonObject o = e.getAsJsonObject();
+                    String code = str(o, "code");
+                    String name = str(o, "name");
+                    if (code.isEmpty()) code = name;
+                    if (code.isEmpty()) continue;
+                    out.add(new RiskRecordTagEntity(recordId, RiskRecordTagEntity.KIND_CATEGORY, ord++,
+                            code, name.isEmpty() ? code : name));
+                }
+            }
+            if (a.has("actions_requested") && a.get("actions_requested").isJsonArray()) {
+                int ord = 0;
+                for (JsonElement e : a.getAsJsonArray("actions_requested")) {
+                    if (!e.isJsonPrimitive()) continue;
+                    String act = e.getAsString().trim();
+                    if (act.isEmpty()) continue;
+                    out.add(new RiskRecordTagEntity(recordId, RiskRecordTagEntity.KIND_ACTION, ord++, act, act));
+                }
+            }
+        }
+        return out;
+    }
+
+    private static ApiResponse toApiResponse(RiskRecordDetailEntity d, List<RiskRecordTagEntity> tags) {
+        ApiResponse r = new ApiResponse();
+        r.is_scam = d.isScam;
+        r.risk = d.risk;
+        r.source = d.source;
+
+        ResultCodec.Payload p = ResultCodec.decode(d.payload);
+        r.reasons = p.reasons;
+        r.advices = p.advices;
+
+        r.scam_type = new ArrayList<>();
+        JsonArray cats = new JsonArray();
+        JsonArray acts = new JsonArray();
+        for (RiskRecordTagEntity t : tags) {
+            switch (t.kind) {
+                case RiskRecordTagEntity.KIND_SCAM_TYPE:
+                    r.scam_type.add(t.label);
+                    break;
+                case RiskRecordTagEntity.KIND_CATEGORY:
+                    JsonObject c = new JsonObject();
+                    c.addProperty("code", t.code);
+                    c.addProperty("name", t.label);
+                    cats.add(c);
+                    break;
+                case RiskRecordTagEntity.KIND_ACTION:
+                    acts.add(t.label);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        JsonObject analysis = new JsonObject();
+        analysis.add("matched_categories", cats);
+        analysis.add("actions_requested", acts);
+        analysis.addProperty("rule_floor", d.ruleFloor);
+        r.analysis = analysis;
+
+        r.meta = new ApiResponse.Meta();
+        r.meta.ollama_model = d.model;
+        r.meta.asr_backend = d.asrBackend;
+        r.meta.request_id = d.requestId;
+        return r;
+    }
+
+    // ===============================
+    // 工具方法
+    // ===============================
+    public static String normalizeRiskLevel(String risk, boolean isScam) {
+        if (risk == null) return isScam ? "HIGH" : "LOW";
+
+        // 字樣規則與 riskCode / 遷移回填共用（RiskRecordEntity）
+        switch (RiskRecordEntity.riskCodeOrUnknown(risk)) {
+            case RiskRecordEntity.RISK_HIGH:   return "HIGH";
+            case RiskRecordEntity.RISK_MEDIUM: return "MEDIUM";
+            case RiskRecordEntity.RISK_LOW:    return "LOW";
+            default:                           return isScam ? "HIGH" : "LOW";
+        }
+    }
+
+    /**
+     * 分數：風險等級打底，每多命中一個規則類別 +5（上限 +15）
+     * 取代原本寫死的 90 / 65
+     */
+    private static int scoreOf(String riskLevel, ApiResponse r) {
+        int base;
+        switch (riskLevel) {
+            case "HIGH":   base = 80; break;
+            case "MEDIUM": base = 55; break;
+            default:       base = 20; break;
+        }
+
+        int cats = 0;
+        JsonObject a = analysisOf(r);
+        if (a != null && a.has("matched_categories") && a.get("matched_categories").isJsonArray()) {
+            cats = a.getAsJsonArray("matched_categories").size();
+        }
+        return base + Math.min(15, cats * 5);
+    }
+
+    private static JsonObject analysisOf(ApiResponse r) {
+        return (r != null && r.analysis != null && r.analysis.isJsonObject())
+                ? r.analysis.getAsJsonObject()
+                : null;
+    }
+
+    private static String str(JsonObject o, String key) {
+        return o.has(key) && o.get(key).isJsonPrimitive() ? o.get(key).getAsString().trim() : "";
+    }
+
+    private static String safe(String s) {
+        return s == null ? "" : s;
+    }
+}
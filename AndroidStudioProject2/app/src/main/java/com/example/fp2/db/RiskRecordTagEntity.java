@@ -0,0 +1,51 @@
+package com.example.fp2.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+
+/**
+ * risk_records 的標籤欄（一筆紀錄對多筆）
+ * scam_type / matched_categories / actions_requested 各存一列。
+ * 主鍵以 recordId 開頭，依紀錄查 / 刪不需要另外的 index；統計走 risk_daily_stats。
+ */
+@Entity(
+        tableName = "risk_record_tags",
+        primaryKeys = {"recordId", "kind", "ord"},
+        foreignKeys = @ForeignKey(
+                entity = RiskRecordEntity.class,
+                parentColumns = "id",
+                childColumns = "recordId",
+                onDelete = ForeignKey.CASCADE
+        )
+)
+public class RiskRecordTagEntity {
+
+    public static final int KIND_SCAM_TYPE = 0; // scam_type（顯示名稱）
+    public static final int KIND_CATEGORY  = 1; // analysis.matched_categories
+    public static final int KIND_ACTION    = 2; // analysis.actions_requested
+
+    public long recordId;
+
+    public int kind;
+
+    public int ord;             // 同 kind 內的順序（保留後端排序）
+
+    @NonNull
+    public String code = "";    // 類別代碼（scam_type 沒有代碼就放名稱）
+
+    @NonNull
+    public String label = "";   // 顯示名稱
+
+    public RiskRecordTagEntity() {}
+
+    @Ignore
+    public RiskRecordTagEntity(long recordId, int kind, int ord, @NonNull String code, @NonNull String label) {
+        this.recordId = recordId;
+        this.kind = kind;
+        this.ord = ord;
+        this.code = code;
+        this.label = label;
+    }
+}
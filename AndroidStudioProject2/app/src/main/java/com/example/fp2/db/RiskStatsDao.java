@@ -0,0 +1,94 @@
+package com.example.fp2.db;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * 統計查詢（全部在 SQL 端聚合，不把紀錄載進 Java）
+ */
+@Dao
+public interface RiskStatsDao {
+
+    // ===== 聚合結果 =====
+    class DayCount {
+        public int day;
+        public int count;
+    }
+
+    class LabelCount {
+        public String label;
+        public int count;
+    }
+
+    // ===============================
+    // 寫入：新增紀錄時遞增（由 RiskRecordRepository 呼叫）
+    // ===============================
+    @Query(
+            "INSERT OR IGNORE INTO risk_daily_stats (day, source, riskLevel, scamType, count) " +
+                    "VALUES (:day, :source, :riskLevel, :scamType, 0)"
+    )
+    void ensureRow(int day, String source, String riskLevel, String scamType);
+
+    @Query(
+            "UPDATE risk_daily_stats SET count = count + 1 " +
+                    "WHERE day = :day AND source = :source " +
+                    "AND riskLevel = :riskLevel AND scamType = :scamType"
+    )
+    void increment(int day, String source, String riskLevel, String scamType);
+
+    /**
+     * 離線初判被補送結果取代時，從原本的格子移走（再 increment 新的）
+     */
+    @Query(
+            "UPDATE risk_daily_stats SET count = count - 1 " +
+                    "WHERE day = :day AND source = :source " +
+                    "AND riskLevel = :riskLevel AND scamType = :scamType AND count > 0"
+    )
+    void decrement(int day, String source, String riskLevel, String scamType);
+
+    // ===============================
+    // 摘要表查詢（統計頁使用）
+    // ===============================
+
+    /**
+     * 每日中 / 高風險件數（由舊到新）
+     */
+    @Query(
+            "SELECT day, SUM(count) AS count FROM risk_daily_stats " +
+                    "WHERE day >= :sinceDay AND riskLevel IN ('MEDIUM', 'HIGH') " +
+                    "GROUP BY day ORDER BY day"
+    )
+    List<DayCount> scamsPerDay(int sinceDay);
+
+    /**
+     * 最常見詐騙類型
+     */
+    @Query(
+            "SELECT scamType AS label, SUM(count) AS count FROM risk_daily_stats " +
+                    "WHERE day >= :sinceDay AND scamType != '' " +
+                    "GROUP BY scamType ORDER BY count DESC LIMIT :limit"
+    )
+    List<LabelCount> topScamTypes(int sinceDay, int limit);
+
+    /**
+     * 來源分布（TEXT / URL / AUDIO / IMAGE）
+     */
+    @Query(
+            "SELECT source AS label, SUM(count) AS count FROM risk_daily_stats " +
+                    "WHERE day >= :sinceDay " +
+                    "GROUP BY source ORDER BY count DESC"
+    )
+    List<LabelCount> sourceMix(int sinceDay);
+
+    /**
+     * 風險等級分布
+     */
+    @Query(
+            "SELECT riskLevel AS label, SUM(count) AS count FROM risk_daily_stats " +
+                    "WHERE day >= :sinceDay " +
+                    "GROUP BY riskLevel"
+    )
+    List<LabelCount> riskMix(int sinceDay);
+}
@@ -0,0 +1,311 @@
+package com.example.fp2.guard;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Parcelable;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
+import android.service.notification.NotificationListenerService;
+import android.service.notification.StatusBarNotification;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+
+import com.example.fp2.R;
+import com.example.fp2.UrlCheckActivity;
+import com.example.fp2.db.RiskRecordEntity;
+import com.example.fp2.security.UrlExtractor;
+import com.example.fp2.security.UrlHeuristics;
+import com.example.fp2.security.UrlReputationCache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 連結守護：即時預篩通知（簡訊 / 聊天）裡的網址
+ * - 使用者在首頁開啟，並到系統設定授權「通知存取」才會動作
+ * - 只走本機：UrlExtractor 抽網址 → UrlReputationCache（歷史檢查結果）→ UrlHeuristics
+ * - 收到的通知先排隊，在背景 HandlerThread 批次處理（省電模式 / 低電量時拉長批次間隔）
+ * - 每則通知有 CPU 時間上限，超過就放棄剩下的網址
+ * 別的 App 的通知無法修改，所以是另發一則自己的警告通知，點了開網址檢查頁做完整檢查。
+ */
+public class LinkGuardService extends NotificationListenerService {
+
+    private static final String TAG = "LINK_GUARD";
+
+    private static final String PREFS = "link_guard";
+    private static final String KEY_ENABLED = "enabled";
+
+    private static final String CHANNEL_WARN = "link_guard";
+
+    private static final long BATCH_WINDOW_MS = 250;          // 一般情況：收集 250ms 內的通知一起處理
+    private static final long BATCH_WINDOW_SAVER_MS = 2000;   // 省電模式 / 低電量
+    private static final int LOW_BATTERY_PERCENT = 15;
+    private static final long CPU_BUDGET_MS = 15;             // 每則通知的 CPU 時間上限
+    private static final int MAX_TEXT_CHARS = 4000;
+    private static final int MAX_URLS = 5;
+    private static final int MAX_MESSAGES = 5;                // MessagingStyle 只看最後幾則
+    private static final long DEDUPE_MS = 10 * 60 * 1000L;    // 同一 App 同一網址 10 分鐘內只警告一次
+    private static final int DEDUPE_MAX = 256;
+
+    // ===============================
+    // 開關（首頁按鈕）
+    // ===============================
+    public static boolean isEnabled(Context context) {
+        return context.getSharedPreferences(PREFS, Context.MODE_PRIVATE).getBoolean(KEY_ENABLED, false);
+    }
+
+    public static void setEnabled(Context context, boolean enabled) {
+        context.getSharedPreferences(PREFS, Context.MODE_PRIVATE)
+                .edit()
+                .putBoolean(KEY_ENABLED, enabled)
+                .apply();
+    }
+
+    /**
+     * 使用者是否已在系統設定授權通知存取
+     */
+    public static boolean hasAccess(Context context) {
+        return NotificationManagerCompat.getEnabledListenerPackages(context)
+                .contains(context.getPackageName());
+    }
+
+    // ===============================
+    // 狀態（pending 由 binder 執行緒寫入，其餘只在 worker 執行緒使用）
+    // ===============================
+    private HandlerThread thread;
+    private Handler worker;
+    private final List<StatusBarNotification> pending = new ArrayList<>();
+    private final Map<String, Long> recentlyWarned = new LinkedHashMap<String, Long>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > DEDUPE_MAX;
+        }
+    };
+    private final Runnable flush = this::flushBatch;
+
+    @Override
+    public void onListenerConnected() {
+        if (thread != null) return;
+        thread = new HandlerThread("link-guard", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        worker = new Handler(thread.getLooper());
+        ensureChannel();
+    }
+
+    @Override
+    public void onListenerDisconnected() {
+        if (thread != null) thread.quitSafely();
+        thread = null;
+        worker = null;
+        synchronized (pending) {
+            pending.clear();
+        }
+    }
+
+    @Override
+    public void onNotificationPosted(StatusBarNotification sbn) {
+        // binder 執行緒：只做最便宜的過濾，其他丟給 worker
+        Handler h = worker;
+        if (h == null || sbn == null) return;
+        if (getPackageName().equals(sbn.getPackageName())) return;
+        Notification n = sbn.getNotification();
+        if (n == null || sbn.isOngoing()) return;
+        if ((n.flags & Notification.FLAG_GROUP_SUMMARY) != 0) return;
+        if (!isEnabled(this)) return;
+
+        boolean first;
+        synchronized (pending) {
+            first = pending.isEmpty();
+            pending.add(sbn);
+        }
+        if (first) h.postDelayed(flush, batchWindowMs());
+    }
+
+    // ===============================
+    // 批次處理（worker 執行緒）
+    // ===============================
+    private void flushBatch() {
+        List<StatusBarNotification> batch;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        UrlReputationCache reputation = UrlReputationCache.get(this);
+        long now = System.currentTimeMillis();
+        for (StatusBarNotification sbn : batch) {
+            try {
+                screen(sbn, reputation, now);
+            } catch (Exception e) {
+                Log.w(TAG, "screen failed: " + sbn.getKey(), e);
+            }
+        }
+    }
+
+    private void screen(StatusBarNotification sbn, UrlReputationCache reputation, long now) {
+        long cpuStart = SystemClock.currentThreadTimeMillis();
+
+        CharSequence text = textOf(sbn.getNotification());
+        if (text.length() == 0) return;
+        List<String> urls = UrlExtractor.extract(text, MAX_URLS);
+        if (urls.isEmpty()) return;
+
+        String pkg = sbn.getPackageName();
+        UrlHeuristics.Verdict worst = null;
+        int worstRisk = RiskRecordEntity.RISK_LOW;
+
+        for (String url : urls) {
+            if (SystemClock.currentThreadTimeMillis() - cpuStart > CPU_BUDGET_MS) {
+                Log.d(TAG, "cpu budget exceeded, skip rest: " + pkg);
+                break;
+            }
+            String key = pkg + '|' + url;
+            Long last = recentlyWarned.get(key);
+            if (last != null && now - last < DEDUPE_MS) continue;
+
+            // 同一個網址檢查過的結果優先；低風險但特徵極可疑的仍然警告
+            int known = reputation.lookupUrl(url);
+            UrlHeuristics.Verdict v = UrlHeuristics.score(url);
+            int risk;
+            if (known >= RiskRecordEntity.RISK_MEDIUM) {
+                risk = known;
+            } else if (known == RiskRecordEntity.RISK_LOW) {
+                risk = v.score >= UrlHeuristics.HIGH_SCORE ? RiskRecordEntity.RISK_MEDIUM : RiskRecordEntity.RISK_LOW;
+            } else {
+                if (v.score >= UrlHeuristics.HIGH_SCORE) risk = RiskRecordEntity.RISK_HIGH;
+                else risk = v.shouldWarn() ? RiskRecordEntity.RISK_MEDIUM : RiskRecordEntity.RISK_LOW;
+                // 同網域別的網址的結果只能往上加，不壓低啟發式判斷
+                risk = Math.max(risk, reputation.lookupHost(url));
+            }
+            if (risk == RiskRecordEntity.RISK_LOW) continue;
+
+            recentlyWarned.put(key, now);
+            if (worst == null || risk > worstRisk || (risk == worstRisk && v.score > worst.score)) {
+                worst = v;
+                worstRisk = risk;
+            }
+        }
+
+        if (worst != null) postWarning(sbn, worst, worstRisk);
+    }
+
+    /**
+     * 通知上可能有網址的文字（標題 / 內文 / 展開內文 / 收件匣行 / 最後幾則對話），截斷到 MAX_TEXT_CHARS
+     */
+    private static CharSequence textOf(Notification n) {
+        Bundle extras = n.extras;
+        if (extras == null) return "";
+        StringBuilder sb = new StringBuilder(256);
+        appendCapped(sb, extras.getCharSequence(Notification.EXTRA_TITLE));
+        CharSequence big = extras.getCharSequence(Notification.EXTRA_BIG_TEXT);
+        appendCapped(sb, TextUtils.isEmpty(big) ? extras.getCharSequence(Notification.EXTRA_TEXT) : big);
+
+        CharSequence[] lines = extras.getCharSequenceArray(Notification.EXTRA_TEXT_LINES);
+        if (lines != null) for (CharSequence l : lines) appendCapped(sb, l);
+
+        Parcelable[] messages = extras.getParcelableArray(Notification.EXTRA_MESSAGES);
+        if (messages != null) {
+            for (int i = Math.max(0, messages.length - MAX_MESSAGES); i < messages.length; i++) {
+                if (messages[i] instanceof Bundle) {
+                    appendCapped(sb, ((Bundle) messages[i]).getCharSequence("text"));
+                }
+            }
+        }
+        return sb;
+    }
+
+    private static void appendCapped(StringBuilder sb, CharSequence s) {
+        if (TextUtils.isEmpty(s) || sb.length() >= MAX_TEXT_CHARS) return;
+        int room = MAX_TEXT_CHARS - sb.length();
+        sb.append(s, 0, Math.min(s.length(), room)).append('\n');
+    }
+
+    // ===============================
+    // 省電
+    // ===============================
+    private long batchWindowMs() {
+        PowerManager pm = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        if (pm != null && pm.isPowerSaveMode()) return BATCH_WINDOW_SAVER_MS;
+
+        // sticky broadcast：不註冊 receiver，只讀目前電量
+        Intent battery = registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery != null) {
+            int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+            int plugged = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0);
+            if (plugged == 0 && level >= 0 && scale > 0 && level * 100 / scale <= LOW_BATTERY_PERCENT) {
+                return BATCH_WINDOW_SAVER_MS;
+            }
+        }
+        return BATCH_WINDOW_MS;
+    }
+
+    // ===============================
+    // 警告通知
+    // ===============================
+    private void ensureChannel() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return;
+        NotificationManager nm = getSystemService(NotificationManager.class);
+        nm.createNotificationChannel(new NotificationChannel(
+                CHANNEL_WARN, "可疑連結提醒", NotificationManager.IMPORTANCE_HIGH));
+    }
+
+    private void postWarning(StatusBarNotification sbn, UrlHeuristics.Verdict v, int risk) {
+        String title = (risk == RiskRecordEntity.RISK_HIGH ? "⚠️ 高風險連結：" : "可疑連結：")
+                + "來自「" + appLabel(sbn.getPackageName()) + "」";
+        StringBuilder body = new StringBuilder(v.url);
+        if (!v.reasons.isEmpty()) body.append('\n').append(TextUtils.join("、", v.reasons));
+        body.append("\n點此做完整檢查");
+
+        Intent open = new Intent(this, UrlCheckActivity.class)
+                .putExtra(UrlCheckActivity.EXTRA_URL, v.url)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        int id = sbn.getKey().hashCode();
+        PendingIntent pi = PendingIntent.getActivity(this, id, open,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        Notification n = new NotificationCompat.Builder(this, CHANNEL_WARN)
+                .setSmallIcon(R.drawable.ic_stat_shield)
+                .setContentTitle(title)
+                .setContentText(v.url)
+                .setStyle(new NotificationCompat.BigTextStyle().bigText(body))
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setCategory(NotificationCompat.CATEGORY_RECOMMENDATION)
+                .setContentIntent(pi)
+                .setAutoCancel(true)
+                .build();
+        try {
+            // 同一則來源通知更新時覆蓋同一則警告
+            NotificationManagerCompat.from(this).notify(sbn.getKey(), 0, n);
+        } catch (SecurityException e) {
+            Log.w(TAG, "no notification permission; warn: " + v.url);
+        }
+    }
+
+    private String appLabel(String pkg) {
+        try {
+            PackageManager pm = getPackageManager();
+            ApplicationInfo ai = pm.getApplicationInfo(pkg, 0);
+            return pm.getApplicationLabel(ai).toString();
+        } catch (PackageManager.NameNotFoundException e) {
+            return pkg;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.fp2.guard;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.fp2.CallRecordSettingActivity;
+import com.example.fp2.HistoryDetailActivity;
+import com.example.fp2.R;
+import com.example.fp2.audio.RollingWindowRecorder;
+import com.example.fp2.db.RiskRecordRepository;
+import com.example.fp2.model.ApiResponse;
+import com.example.fp2.net.BackendService;
+import com.example.fp2.net.TranscriptionPolicy;
+import com.example.fp2.rules.RuleEngine;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * 通話即時監聽（開擴音或使用者自己按開始）
+ * - RollingWindowRecorder 每 15～30 秒切一段 → TranscriptionPolicy 轉文字 + 判斷
+ * - 逐字稿累積起來（只留最後 MAX_TRANSCRIPT_CHARS 字），每段再用本機規則看「整通電話」
+ *   （跨段的話術，例如先冒充客服、後面才要求匯款，單段看不出來）
+ * - 單段或累積結果達到高風險（或連續兩段中風險）→ 跳出警示通知並存入歷史，一通電話只警示一次
+ * 部分機型通話中不允許其他 App 收音，這時只錄得到擴音從喇叭出來的聲音。
+ */
+public class LiveCallService extends Service implements RollingWindowRecorder.Listener {
+
+    private static final String TAG = "LIVE_CALL";
+
+    private static final String ACTION_STOP = "com.example.fp2.guard.LIVE_CALL_STOP";
+
+    private static final String CHANNEL_STATUS = "live_call";
+    private static final String CHANNEL_ALERT = "live_call_alert";
+    private static final int NOTIF_STATUS = 1101;
+    private static final int NOTIF_ALERT = 1102;
+
+    private static final int MAX_TRANSCRIPT_CHARS = 4000;
+    private static final long MAX_RUN_MS = 3 * 60 * 60 * 1000L;  // 忘記關也不會一直錄
+
+    private static final int LEVEL_LOW = 0;
+    private static final int LEVEL_MEDIUM = 1;
+    private static final int LEVEL_HIGH = 2;
+
+    /**
+     * 給畫面顯示的目前狀態
+     */
+    public static final class State {
+        public final boolean running;
+        public final String status;
+        public final String alert;   // 已警示時的內容，沒有為 null
+
+        State(boolean running, String status, String alert) {
+            this.running = running;
+            this.status = status;
+            this.alert = alert;
+        }
+    }
+
+    private static final MutableLiveData<State> STATE =
+            new MutableLiveData<>(new State(false, "未啟動", null));
+
+    public static LiveData<State> state() {
+        return STATE;
+    }
+
+    public static void start(Context context) {
+        ContextCompat.startForegroundService(context, new Intent(context, LiveCallService.class));
+    }
+
+    public static void stop(Context context) {
+        context.startService(new Intent(context, LiveCallService.class).setAction(ACTION_STOP));
+    }
+
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final StringBuilder transcript = new StringBuilder(MAX_TRANSCRIPT_CHARS + 512);
+    private volatile RollingWindowRecorder recorder;
+    private long startedAt;
+    private int windows;
+    private int mediumStreak;
+    private volatile String alert;
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            shutdown();
+            return START_NOT_STICKY;
+        }
+        if (recorder != null) return START_NOT_STICKY;
+
+        ensureChannels();
+        ServiceCompat.startForeground(this, NOTIF_STATUS, statusNotification("監聽中…"),
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                        ? ServiceInfo.FOREGROUND_SERVICE_TYPE_MICROPHONE : 0);
+
+        startedAt = SystemClock.elapsedRealtime();
+        recorder = new RollingWindowRecorder(getCacheDir(), this);
+        recorder.start();
+        main.postDelayed(this::shutdown, MAX_RUN_MS);
+        publish("監聽中，累積 15 秒後開始分析");
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        shutdown();
+        super.onDestroy();
+    }
+
+    private void shutdown() {
+        main.removeCallbacksAndMessages(null);
+        if (recorder != null) {
+            recorder.stop();
+            recorder = null;
+        }
+        STATE.postValue(new State(false, "已停止", alert));
+        ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+        stopSelf();
+    }
+
+    // ===============================
+    // 視窗分析
+    // ===============================
+    @Override
+    public void onWindow(File file, long startMs, long endMs) {
+        RollingWindowRecorder rec = recorder;
+        if (rec == null) return;
+        TranscriptionPolicy.get(this).transcribe(Uri.fromFile(file), new BackendService.Callback() {
+            @Override
+            public void onSuccess(ApiResponse data) {
+                try {
+                    onWindowResult(data);
+                } finally {
+                    rec.windowDone();
+                }
+            }
+
+            @Override
+            public void onError(String message) {
+                Log.w(TAG, "window " + startMs + "-" + endMs + " failed: " + message);
+                rec.windowDone();
+                publish("片段分析失敗，繼續監聽中");
+            }
+        });
+    }
+
+    @Override
+    public void onError(String message) {
+        Log.w(TAG, message);
+        main.post(() -> {
+            publish(message);
+            shutdown();
+        });
+    }
+
+    private synchronized void onWindowResult(ApiResponse data) {
+        windows++;
+        String text = data == null || data.detected_text == null ? "" : data.detected_text.trim();
+        if (!text.isEmpty()) {
+            transcript.append(text).append('\n');
+            int over = transcript.length() - MAX_TRANSCRIPT_CHARS;
+            if (over > 0) transcript.delete(0, over);
+        }
+
+        // 單段結果 vs 整通電話的本機規則結果，取嚴重的
+        ApiResponse worst = data;
+        int level = data == null ? LEVEL_LOW : levelOf(data);
+        RuleEngine rules = RuleEngine.get();
+        if (rules != null && transcript.length() > 0) {
+            RuleEngine.Verdict v = rules.check(transcript);
+            if (v.hasHits()) {
+                ApiResponse r = v.toApiResponse();
+                int l = levelOf(r);
+                if (l > level) {
+                    level = l;
+                    worst = r;
+                }
+            }
+        }
+        mediumStreak = level == LEVEL_MEDIUM ? mediumStreak + 1 : (level == LEVEL_HIGH ? mediumStreak : 0);
+
+        boolean crossed = level == LEVEL_HIGH || mediumStreak >= 2;
+        if (crossed && alert == null && worst != null) raiseAlert(worst, level);
+
+        publish("已分析 " + windows + " 段｜最新：" + levelZh(level));
+    }
+
+    private void raiseAlert(ApiResponse data, int level) {
+        StringBuilder body = new StringBuilder();
+        if (data.scam_type != null && !data.scam_type.isEmpty()) {
+            body.append("疑似：").append(TextUtils.join("、", data.scam_type)).append('\n');
+        }
+        if (data.reasons != null && !data.reasons.isEmpty()) {
+            body.append(data.reasons.get(0)).append('\n');
+        }
+        body.append("請勿依對方指示匯款或操作，可掛斷後撥 165 查證。");
+        alert = body.toString();
+
+        // 存一筆歷史（內容是目前為止的逐字稿）
+        long id = -1;
+        try {
+            String when = new SimpleDateFormat("yyyy/MM/dd HH:mm", Locale.getDefault()).format(new Date());
+            data.detected_text = transcript.toString().trim();
+            id = RiskRecordRepository.get(getApplicationContext())
+                    .saveAnalysis("AUDIO", "即時通話監聽 " + when, data.detected_text, data);
+        } catch (Exception e) {
+            Log.e(TAG, "save failed", e);
+        }
+
+        Intent open = id > 0
+                ? new Intent(this, HistoryDetailActivity.class).putExtra("record_id", id)
+                : new Intent(this, CallRecordSettingActivity.class);
+        open.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        PendingIntent pi = PendingIntent.getActivity(this, NOTIF_ALERT, open,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        Notification n = new NotificationCompat.Builder(this, CHANNEL_ALERT)
+                .setSmallIcon(R.drawable.ic_stat_shield)
+                .setContentTitle(level == LEVEL_HIGH ? "⚠️ 這通電話疑似詐騙" : "這通電話有可疑內容")
+                .setContentText(alert)
+                .setStyle(new NotificationCompat.BigTextStyle().bigText(alert))
+                .setPriority(NotificationCompat.PRIORITY_MAX)
+                .setCategory(NotificationCompat.CATEGORY_ALARM)
+                .setContentIntent(pi)
+                .setAutoCancel(true)
+                .build();
+        try {
+            NotificationManagerCompat.from(this).notify(NOTIF_ALERT, n);
+        } catch (SecurityException e) {
+            Log.w(TAG, "no notification permission; alert: " + alert);
+        }
+    }
+
+    // ===============================
+    // 狀態 / 通知
+    // ===============================
+    private void publish(String status) {
+        long sec = (SystemClock.elapsedRealtime() - startedAt) / 1000;
+        String s = String.format(Locale.getDefault(), "%02d:%02d｜%s", sec / 60, sec % 60, status);
+        STATE.postValue(new State(recorder != null, s, alert));
+        if (recorder == null) return;
+        try {
+            NotificationManagerCompat.from(this).notify(NOTIF_STATUS, statusNotification(s));
+        } catch (SecurityException ignored) {
+            // 沒有通知權限就只更新畫面
+        }
+    }
+
+    private void ensureChannels() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return;
+        NotificationManager nm = getSystemService(NotificationManager.class);
+        nm.createNotificationChannel(new NotificationChannel(
+                CHANNEL_STATUS, "通話監聽狀態", NotificationManager.IMPORTANCE_LOW));
+        NotificationChannel alertChannel = new NotificationChannel(
+                CHANNEL_ALERT, "通話詐騙警示", NotificationManager.IMPORTANCE_HIGH);
+        alertChannel.enableVibration(true);
+        nm.createNotificationChannel(alertChannel);
+    }
+
+    private Notification statusNotification(String text) {
+        PendingIntent open = PendingIntent.getActivity(this, 0,
+                new Intent(this, CallRecordSettingActivity.class),
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        PendingIntent stop = PendingIntent.getService(this, 1,
+                new Intent(this, LiveCallService.class).setAction(ACTION_STOP),
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, CHANNEL_STATUS)
+                .setSmallIcon(R.drawable.ic_stat_shield)
+                .setContentTitle("通話即時監聽")
+                .setContentText(text)
+                .setContentIntent(open)
+                .addAction(0, "停止", stop)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .build();
+    }
+
+    private static int levelOf(ApiResponse r) {
+        String level = RiskRecordRepository.normalizeRiskLevel(r.risk, r.is_scam);
+        if ("HIGH".equals(level)) return LEVEL_HIGH;
+        if ("MEDIUM".equals(level)) return LEVEL_MEDIUM;
+        return LEVEL_LOW;
+    }
+
+    private static String levelZh(int level) {
+        if (level == LEVEL_HIGH) return "高風險";
+        if (level == LEVEL_MEDIUM) return "中風險";
+        return "低風險";
+    }
+}
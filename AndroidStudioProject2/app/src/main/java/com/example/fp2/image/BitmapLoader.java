@@ -0,0 +1,262 @@
+package com.example.fp2.image;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageDecoder;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 圖片載入層（OCR / 預覽共用）
+ * 1) 先只讀尺寸，再用 inSampleSize 解到 OCR 需要的大小（長邊不超過 OCR_MAX_SIDE）
+ * 2) 解碼用的 bitmap 從 BitmapPool 借（inBitmap），用完 release 還回去
+ * 3) BitmapFactory 解不了的格式（例如 HEIF）在 API 28+ 改用 ImageDecoder 指定目標大小
+ * 4) 預覽縮圖在背景解、放 LruCache，不在主執行緒 setImageURI 整張原圖
+ * 5) EXIF 方向：OCR 回傳角度給 InputImage 自己轉；縮圖直接轉好
+ */
+public final class BitmapLoader {
+
+    private static final String TAG = "BITMAP";
+
+    // ML Kit 中文字至少要 16~24 px 高；2560 對手機截圖是原尺寸，對 12MP 相片是 1/2
+    public static final int OCR_MAX_SIDE = 2560;
+
+    private static final long POOL_BYTES = 32L * 1024 * 1024;
+    private static final int THUMB_CACHE_BYTES = 8 * 1024 * 1024;
+
+    private static volatile BitmapLoader INSTANCE;
+
+    public static BitmapLoader get(Context context) {
+        if (INSTANCE == null) {
+            synchronized (BitmapLoader.class) {
+                if (INSTANCE == null) INSTANCE = new BitmapLoader(context.getApplicationContext());
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 解出來的圖 + EXIF 角度（0 / 90 / 180 / 270）
+     */
+    public static final class Decoded {
+        public final Bitmap bitmap;
+        public final int rotation;
+
+        Decoded(Bitmap bitmap, int rotation) {
+            this.bitmap = bitmap;
+            this.rotation = rotation;
+        }
+    }
+
+    public interface Callback {
+        void onDecoded(Decoded decoded);
+
+        void onError(String message);
+    }
+
+    private final ContentResolver resolver;
+    private final BitmapPool pool = new BitmapPool(POOL_BYTES);
+    private final ExecutorService decoder = Executors.newFixedThreadPool(2);
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    private final LruCache<String, Bitmap> thumbs = new LruCache<String, Bitmap>(THUMB_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getAllocationByteCount();
+        }
+    };
+
+    private BitmapLoader(Context app) {
+        this.resolver = app.getContentResolver();
+    }
+
+    // ===============================
+    // OCR 用
+    // ===============================
+
+    /**
+     * 背景解碼，callback 回主執行緒；用完記得 release(decoded.bitmap)
+     */
+    public void decodeForOcrAsync(Uri uri, Callback cb) {
+        decoder.execute(() -> {
+            try {
+                Decoded d = decodeForOcr(uri);
+                main.post(() -> cb.onDecoded(d));
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "decode failed: " + uri, e);
+                main.post(() -> cb.onError(e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * 阻塞版（不可在主執行緒呼叫）
+     */
+    public Decoded decodeForOcr(Uri uri) throws IOException {
+        return new Decoded(decodeSampled(uri, OCR_MAX_SIDE, true), readRotation(uri));
+    }
+
+    /**
+     * 還回 pool 給下一張用（之後不可再碰這張 bitmap）
+     */
+    public void release(Bitmap bitmap) {
+        pool.put(bitmap);
+    }
+
+    /**
+     * 記憶體吃緊時清空 pool 與縮圖快取
+     */
+    public void trim() {
+        pool.clear();
+        thumbs.evictAll();
+    }
+
+    // ===============================
+    // 預覽縮圖
+    // ===============================
+
+    /**
+     * 背景解一張長邊 <= maxSide 的縮圖放進 ImageView；
+     * 同一個 view 之後又要別張圖時，舊結果回來會被丟掉
+     */
+    public void loadThumbnail(ImageView view, Uri uri, int maxSide) {
+        final String key = uri + "@" + maxSide;
+        view.setTag(key);
+
+        Bitmap cached = thumbs.get(key);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+        view.setImageDrawable(null);
+
+        decoder.execute(() -> {
+            Bitmap thumb;
+            try {
+                thumb = rotate(decodeSampled(uri, maxSide, false), readRotation(uri));
+                thumbs.put(key, thumb);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "thumbnail failed: " + uri, e);
+                thumb = null;
+            }
+            final Bitmap result = thumb;
+            main.post(() -> {
+                if (!key.equals(view.getTag())) return; // view 已經換別張
+                if (result != null) view.setImageBitmap(result);
+            });
+        });
+    }
+
+    // ===============================
+    // 解碼
+    // ===============================
+    private Bitmap decodeSampled(Uri uri, int maxSide, boolean pooled) throws IOException {
+        // 1) 只讀尺寸
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = open(uri)) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            // BitmapFactory 不認得的格式
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) return decodeWithImageDecoder(uri, maxSide);
+            throw new IOException("unsupported image");
+        }
+
+        // 2) 算 inSampleSize（2 的次方，讓長邊 <= maxSide）
+        int sample = 1;
+        int longSide = Math.max(bounds.outWidth, bounds.outHeight);
+        while (longSide / sample > maxSide) sample *= 2;
+
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inSampleSize = sample;
+        opts.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        if (pooled) {
+            // inBitmap 需要 mutable；大小用取樣後的估計值（實際可能略小）
+            int w = (bounds.outWidth + sample - 1) / sample;
+            int h = (bounds.outHeight + sample - 1) / sample;
+            opts.inMutable = true;
+            opts.inBitmap = pool.get(w, h, Bitmap.Config.ARGB_8888);
+        }
+
+        Bitmap bmp;
+        try (InputStream in = open(uri)) {
+            bmp = BitmapFactory.decodeStream(in, null, opts);
+        } catch (IllegalArgumentException e) {
+            // inBitmap 不合用：還回去、不借了再解一次
+            if (opts.inBitmap != null) pool.put(opts.inBitmap);
+            opts.inBitmap = null;
+            try (InputStream in = open(uri)) {
+                bmp = BitmapFactory.decodeStream(in, null, opts);
+            }
+        }
+        if (bmp == null) throw new IOException("decode failed");
+        return bmp;
+    }
+
+    private Bitmap decodeWithImageDecoder(Uri uri, int maxSide) throws IOException {
+        ImageDecoder.Source src = ImageDecoder.createSource(resolver, uri);
+        return ImageDecoder.decodeBitmap(src, (decoder, info, source) -> {
+            int w = info.getSize().getWidth();
+            int h = info.getSize().getHeight();
+            int longSide = Math.max(w, h);
+            if (longSide > maxSide) {
+                float scale = (float) maxSide / longSide;
+                decoder.setTargetSize(Math.max(1, Math.round(w * scale)), Math.max(1, Math.round(h * scale)));
+            }
+            // ML Kit 要讀像素，不能是 HARDWARE bitmap
+            decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+            decoder.setMutableRequired(true);
+        });
+    }
+
+    private int readRotation(Uri uri) {
+        try (InputStream in = open(uri)) {
+            int o = new ExifInterface(in).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            switch (o) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException | RuntimeException e) {
+            // 沒有 EXIF（PNG 截圖）就當 0 度
+            return 0;
+        }
+    }
+
+    private static Bitmap rotate(Bitmap src, int degrees) {
+        if (degrees == 0) return src;
+        Matrix m = new Matrix();
+        m.postRotate(degrees);
+        Bitmap out = Bitmap.createBitmap(src, 0, 0, src.getWidth(), src.getHeight(), m, true);
+        if (out != src) src.recycle();
+        return out;
+    }
+
+    private InputStream open(Uri uri) throws IOException {
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null) throw new IOException("cannot open " + uri);
+        return in;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.fp2.image;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * 可重複使用的 Bitmap 池（給 BitmapFactory.Options.inBitmap 用）
+ * 連續辨識多張截圖時不用每次都配一塊幾十 MB 的新記憶體。
+ * 超過 maxBytes 就丟掉最舊的。
+ */
+final class BitmapPool {
+
+    private final long maxBytes;
+    private final ArrayDeque<Bitmap> pool = new ArrayDeque<>();
+    private long bytes;
+
+    BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 找一張夠大、格式相同的 bitmap 給 inBitmap；沒有就回 null（由 decoder 自己配）
+     */
+    synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        long needed = (long) width * height * bytesPerPixel(config);
+        Iterator<Bitmap> it = pool.iterator();
+        while (it.hasNext()) {
+            Bitmap b = it.next();
+            if (b.getConfig() == config && b.getAllocationByteCount() >= needed) {
+                it.remove();
+                bytes -= b.getAllocationByteCount();
+                return b;
+            }
+        }
+        return null;
+    }
+
+    synchronized void put(Bitmap b) {
+        if (b == null || b.isRecycled() || !b.isMutable()) return;
+        int size = b.getAllocationByteCount();
+        if (size > maxBytes) {
+            b.recycle();
+            return;
+        }
+        pool.addLast(b);
+        bytes += size;
+        while (bytes > maxBytes) {
+            Bitmap old = pool.removeFirst();
+            bytes -= old.getAllocationByteCount();
+            old.recycle();
+        }
+    }
+
+    synchronized void clear() {
+        for (Bitmap b : pool) b.recycle();
+        pool.clear();
+        bytes = 0;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) return 2;
+        if (config == Bitmap.Config.ALPHA_8) return 1;
+        return 4;
+    }
+}
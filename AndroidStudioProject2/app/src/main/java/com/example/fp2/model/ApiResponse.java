@@ -14,6 +14,12 @@ public class ApiResponse {
     public String text;
     public Meta meta;
     public java.util.List<String> scam_type;
+    public java.util.List<TimelineEntry> timeline; // 語音：逐字稿每段在原始音檔的時間
+    public static class TimelineEntry{
+        public long start_ms;
+        public long end_ms;
+        public String text;
+    }
     public static class Meta{
         public String asr_backend;
         public String ollama_model;
@@ -2,36 +2,39 @@ package com.example.fp2.model;
 
 public class HistoryItem {
 
-    // 類型常數
+    // 類型常數（= risk_records.typeCode）
     public static final int TYPE_URL = 0;
     public static final int TYPE_AUDIO = 1;
     public static final int TYPE_IMAGE = 2;
     public static final int TYPE_TEXT  = 3;
 
-    private long id;            // ⭐ 對應 Room 的 primary key
-    private int type;           // 類型 (0=網址, 1=錄音, 2=圖片)
-    private String title;       // 標題
-    private String riskLevel;   // 風險 (高/中/低)
-    private String date;        // 日期 (顯示用)
-    private String content;     // 原始內容 (網址 / 文字 / 檔名)
-    private String resultDetail;// 詳細結果摘要
+    // 顯示用對照表（index = typeCode / riskCode），bind 時直接查表
+    private static final String[] TITLES = {
+            "網址檢查結果", "錄音判別結果", "圖片辨識結果", "文字判別結果"
+    };
+    private static final String[] RISK_TEXT = {"低", "中", "高"};
 
+    private final long id;            // ⭐ 對應 Room 的 primary key
+    private final int type;           // 類型 (0=網址, 1=錄音, 2=圖片, 3=文字)
+    private final int riskCode;       // 0=低, 1=中, 2=高
+    private final Long createdAt;     // 建立時間（毫秒，顯示時才格式化）
+    private final String content;     // 列表內容（偵測文字優先，DAO 已截好）
+    private final boolean pending;    // 離線初判，等恢復連線補送
 
-    // ✅ 新的建構子（從 Room 轉過來用）
+
+    // ✅ Room 直接投影到這裡（RiskRecordDao.observeHistory）
     public HistoryItem(long id,
                        int type,
-                       String title,
-                       String riskLevel,
-                       String date,
+                       int riskCode,
+                       Long createdAt,
                        String content,
-                       String resultDetail){
+                       boolean pending){
         this.id = id;
         this.type = type;
-        this.title = title;
-        this.riskLevel = riskLevel;
-        this.date = date;
+        this.riskCode = riskCode;
+        this.createdAt = createdAt;
         this.content = content;
-        this.resultDetail = resultDetail;
+        this.pending = pending;
     }
 
     // ===== Getter =====
@@ -43,23 +46,27 @@ public class HistoryItem {
         return type;
     }
 
-    public String getTitle() {
-        return title;
-    }
-
-    public String getRiskLevel() {
-        return riskLevel;
+    public int getRiskCode() {
+        return riskCode;
     }
 
-    public String getDate() {
-        return date;
+    public Long getCreatedAt() {
+        return createdAt;
     }
 
     public String getContent() {
         return content;
     }
 
-    public String getResultDetail() {
-        return resultDetail;
+    public boolean isPending() {
+        return pending;
+    }
+
+    public String getTitle() {
+        return (type >= 0 && type < TITLES.length) ? TITLES[type] : TITLES[TYPE_IMAGE];
+    }
+
+    public String getRiskLevel() {
+        return (riskCode >= 0 && riskCode < RISK_TEXT.length) ? RISK_TEXT[riskCode] : RISK_TEXT[0];
     }
 }
@@ -60,6 +60,70 @@ public final class ResultFormatter {
         return sb.toString().trim();
     }
 
+    // -------------------------
+    // 反向解析（舊資料只有 summary 時回填用）
+    // 支援 format() 與網址檢查兩種版面，解析不到回 null
+    // -------------------------
+    public static ApiResponse parse(String pretty){
+        if (pretty == null || pretty.trim().isEmpty()) return null;
+
+        ApiResponse r = new ApiResponse();
+        r.scam_type = new ArrayList<>();
+        r.advices = new ArrayList<>();
+        r.reasons = new ArrayList<>();
+
+        String[] lines = pretty.split("\n");
+        String section = "";
+        for (String raw : lines){
+            String line = raw.trim();
+            if (line.isEmpty()) continue;
+
+            if (line.contains("風險：")){
+                r.risk = riskFromWord(after(line, "風險："));
+                section = "";
+            } else if (line.contains("詐騙類型：")){
+                for (String t : after(line, "詐騙類型：").split("、")){
+                    String x = t.trim();
+                    if (!x.isEmpty() && !x.startsWith("未明確分類")) r.scam_type.add(x);
+                }
+                section = "";
+            } else if (line.contains("建議作為：")){
+                section = "advice";
+            } else if (line.contains("判別結果：")){
+                section = "verdict";
+            } else if (line.contains("摘要：")){
+                section = "summary";
+            } else if (line.contains("建議：")){
+                section = "advice";
+            } else if (line.contains("測試連結：")){
+                section = "";
+            } else if ("advice".equals(section)){
+                r.advices.add(line.startsWith("- ") ? line.substring(2).trim() : line);
+            } else if ("verdict".equals(section)){
+                r.risk = riskFromWord(line);
+                section = "";
+            } else if ("summary".equals(section)){
+                r.reasons.add(line);
+            }
+        }
+
+        if (r.risk == null && r.scam_type.isEmpty() && r.advices.isEmpty()) return null;
+        if (r.risk == null) r.risk = "low";
+        r.is_scam = !"low".equals(r.risk);
+        return r;
+    }
+
+    private static String after(String line, String key){
+        int i = line.indexOf(key);
+        return i < 0 ? "" : line.substring(i + key.length()).trim();
+    }
+
+    private static String riskFromWord(String w){
+        if (w.startsWith("高")) return "high";
+        if (w.startsWith("中")) return "medium";
+        return "low";
+    }
+
     // -------------------------
     // 詐騙類型（一定非空）
     // -------------------------
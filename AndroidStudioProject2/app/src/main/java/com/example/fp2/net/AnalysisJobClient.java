@@ -0,0 +1,379 @@
+package com.example.fp2.net;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.fp2.db.RiskRecordRepository;
+import com.example.fp2.model.ApiResponse;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * 後端背景工作（/jobs）：分析不再卡在一個最長 5 分鐘的同步請求裡
+ * - submitAudio / submitText：送出就拿到 job_id（音檔逐段 POST，後面的段帶同一個 job_id）
+ * - await：GET /jobs/{id}?wait=25&since=版本 長輪詢，階段有變就回報（uploaded → transcribing → llm → done）
+ * - cancel：本機停止等待 + DELETE /jobs/{id}
+ * - job_id 存在 SharedPreferences：程序被殺掉後 resumePending 接著等，結果照一般規則存進歷史
+ *
+ * 除了 cancel / resumePending，其他方法都是阻塞的，請在背景執行緒呼叫。
+ */
+public final class AnalysisJobClient {
+
+    private static final String TAG = "ANALYSIS_JOB";
+    private static final String PREFS = "analysis_jobs";
+
+    static final long DEADLINE_MS = 30 * 60 * 1000L;
+    private static final long RESUME_MAX_AGE_MS = 60 * 60 * 1000L; // 後端 JOB_TTL_S
+    private static final int WAIT_S = 25;            // 要小於 ApiClient 的 readTimeout
+    private static final long RETRY_MS = 2_000;
+    private static final int MAX_POLL_ERRORS = 5;
+
+    public static final String STAGE_UPLOADED = "uploaded";
+    public static final String STAGE_TRANSCRIBING = "transcribing";
+    public static final String STAGE_LLM = "llm";
+    public static final String STAGE_DONE = "done";
+
+    /**
+     * 進度（後端每次狀態變化回報一次）
+     */
+    public static final class Progress {
+        public final String jobId;
+        public final String stage;
+        public final float fraction;   // 0~1，目前階段內的進度
+
+        Progress(String jobId, String stage, float fraction) {
+            this.jobId = jobId;
+            this.stage = stage;
+            this.fraction = fraction;
+        }
+
+        /**
+         * 給 UI 顯示的文字，例如「語音辨識中（40%）」
+         */
+        public String label() {
+            String s;
+            switch (stage == null ? "" : stage) {
+                case "uploading": s = "上傳中"; break;
+                case STAGE_UPLOADED: s = "已上傳，排隊中"; break;
+                case STAGE_TRANSCRIBING: s = "語音辨識中"; break;
+                case STAGE_LLM: s = "AI 分析中"; break;
+                case STAGE_DONE: return "完成";
+                default: s = "分析中"; break;
+            }
+            return fraction > 0 && fraction < 1 ? s + "（" + Math.round(fraction * 100) + "%）" : s + "…";
+        }
+    }
+
+    /**
+     * 使用者取消（UI 收到 onError 時可用 isCancelled 分辨）
+     */
+    public static final String CANCELLED = "已取消分析";
+
+    private static volatile AnalysisJobClient INSTANCE;
+
+    public static AnalysisJobClient get(Context context) {
+        if (INSTANCE == null) {
+            synchronized (AnalysisJobClient.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new AnalysisJobClient(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 還沒建立（Application 還沒初始化）就回 null，呼叫端走同步請求
+     */
+    static AnalysisJobClient peek() {
+        return INSTANCE;
+    }
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final Set<String> cancelled = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Set<String> waiting = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private AnalysisJobClient(Context context) {
+        this.context = context;
+        this.prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    // ===============================
+    // 送出
+    // ===============================
+
+    /**
+     * @param partStartMs 每段在（壓縮後）音檔裡的起點，後端用來接回同一條時間軸
+     * @param segmentsJson 去靜音時間對照表，沒有就 null
+     * @param content 存歷史用（音檔 uri）
+     * @param lane 每一段上傳各排一次（段與段之間讓出額度）
+     * @return job_id
+     */
+    String submitAudio(List<File> parts, String mime, long[] partStartMs,
+                       String segmentsJson, long originalMs, String content,
+                       RequestScheduler.Lane lane, BackendService.Callback cb) throws Exception {
+        String jobId = null;
+        for (int i = 0; i < parts.size(); i++) {
+            MultipartBody.Builder form = new MultipartBody.Builder().setType(MultipartBody.FORM)
+                    .addFormDataPart("file", "part" + i + ".m4a",
+                            RequestBody.create(parts.get(i), MediaType.parse(mime)))
+                    .addFormDataPart("parts", String.valueOf(parts.size()))
+                    .addFormDataPart("part", String.valueOf(i))
+                    .addFormDataPart("part_offset_ms", String.valueOf(partStartMs[i]));
+            if (jobId != null) form.addFormDataPart("job_id", jobId);
+            if (i == 0 && segmentsJson != null) {
+                form.addFormDataPart("segments", segmentsJson);
+                form.addFormDataPart("original_ms", String.valueOf(originalMs));
+            }
+
+            Request.Builder rb = new Request.Builder()
+                    .url(BackendService.baseUrl() + "/jobs/audio")
+                    .post(form.build());
+            BackendService.addAdminIfAny(rb);
+
+            JsonObject job = RequestScheduler.get().call(lane, () -> {
+                try (Response resp = ApiClient.get().newCall(rb.build()).execute()) {
+                    return readJson(resp);
+                }
+            });
+            jobId = str(job, "job_id");
+            Log.d(TAG, "uploaded part " + (i + 1) + "/" + parts.size() + " job=" + jobId);
+            // 上傳到一半就被取消（cancel 已經通知後端）
+            if (cancelled.remove(jobId)) throw new IllegalStateException(CANCELLED);
+            cb.onProgress(new Progress(jobId, "uploading", (i + 1f) / parts.size()));
+        }
+        remember(jobId, "AUDIO", content);
+        return jobId;
+    }
+
+    /**
+     * @return job_id；後端還沒有 /jobs（舊版）回 null，呼叫端改走同步 /analyze_text
+     */
+    String submitText(String text, RequestScheduler.Lane lane) throws Exception {
+        JsonObject body = new JsonObject();
+        body.addProperty("text", text == null ? "" : text);
+
+        Request.Builder rb = new Request.Builder()
+                .url(BackendService.baseUrl() + "/jobs/text")
+                .post(RequestBody.create(body.toString(), MediaType.get("application/json; charset=utf-8")));
+        BackendService.addAdminIfAny(rb);
+
+        JsonObject job = RequestScheduler.get().call(lane, () -> {
+            try (Response resp = ApiClient.get().newCall(rb.build()).execute()) {
+                if (resp.code() == 404 || resp.code() == 405) return null;
+                return readJson(resp);
+            }
+        });
+        if (job == null) return null;
+
+        String jobId = str(job, "job_id");
+        // 歷史頁 TEXT 紀錄只存前 500 字（同 TextCheckActivity）
+        String content = text == null ? "" : text.trim();
+        if (content.length() > 500) content = content.substring(0, 500) + "…";
+        remember(jobId, "TEXT", content);
+        return jobId;
+    }
+
+    // ===============================
+    // 等結果 / 取消
+    // ===============================
+
+    /**
+     * 等到工作結束，回傳分析結果（格式同 /upload_audio、/analyze_text）；中途進度交給 cb.onProgress
+     * 在呼叫端的執行緒上輪詢，每一次長輪詢各排一次 lane（等待期間不佔額度）
+     */
+    ApiResponse await(String jobId, RequestScheduler.Lane lane, BackendService.Callback cb) throws Exception {
+        waiting.add(jobId);
+        try {
+            ApiResponse r = poll(jobId, lane, cb);
+            forget(jobId);
+            return r;
+        } catch (Exception e) {
+            // 網路斷太久 / 逾時：job_id 留著，下次開 App 再接著等；其他情況工作已經結束
+            if (!isRetryable(e)) forget(jobId);
+            throw e;
+        } finally {
+            waiting.remove(jobId);
+            cancelled.remove(jobId);
+        }
+    }
+
+    /**
+     * 不等了：本機立刻停止長輪詢（最多晚一輪），後端也請它停
+     */
+    public void cancel(String jobId) {
+        if (jobId == null) return;
+        cancelled.add(jobId);
+        forget(jobId);
+        new Thread(() -> {
+            Request.Builder rb = new Request.Builder()
+                    .url(BackendService.baseUrl() + "/jobs/" + jobId)
+                    .delete();
+            BackendService.addAdminIfAny(rb);
+            try (Response resp = ApiClient.get().newCall(rb.build()).execute()) {
+                Log.d(TAG, "cancel " + jobId + " → HTTP " + resp.code());
+            } catch (Exception e) {
+                Log.w(TAG, "cancel failed (backend will expire it)", e);
+            }
+        }).start();
+    }
+
+    public static boolean isCancelled(String message) {
+        return message != null && message.endsWith(CANCELLED);
+    }
+
+    private ApiResponse poll(String jobId, RequestScheduler.Lane lane, BackendService.Callback cb) throws Exception {
+        long deadline = System.currentTimeMillis() + DEADLINE_MS;
+        long since = -1;
+        int errors = 0;
+        while (System.currentTimeMillis() < deadline) {
+            if (cancelled.remove(jobId)) throw new IllegalStateException(CANCELLED);
+
+            Request.Builder rb = new Request.Builder()
+                    .url(BackendService.baseUrl() + "/jobs/" + jobId + "?wait=" + WAIT_S + "&since=" + since)
+                    .get();
+            BackendService.addAdminIfAny(rb);
+
+            JsonObject job;
+            try {
+                job = RequestScheduler.get().call(lane, () -> {
+                    try (Response resp = ApiClient.get().newCall(rb.build()).execute()) {
+                        return resp.code() == 404 ? null : readJson(resp);
+                    }
+                });
+                errors = 0;
+            } catch (Exception e) {
+                // 網路抖一下：工作還在後端跑，稍等再問
+                if (++errors > MAX_POLL_ERRORS) throw new RetryableException(e);
+                Log.w(TAG, "poll failed (" + errors + ")", e);
+                Thread.sleep(RETRY_MS);
+                continue;
+            }
+            // 工作不見了（後端重啟 / 過期）：重試也沒用
+            if (job == null) throw new IllegalStateException("分析工作已失效");
+
+            since = job.has("version") ? job.get("version").getAsLong() : since;
+            String status = str(job, "status");
+            String stage = str(job, "stage");
+            float fraction = job.has("progress") ? job.get("progress").getAsFloat() : 0f;
+            Log.d(TAG, jobId + " " + status + " " + stage + " " + fraction);
+
+            if ("done".equals(status)) {
+                JsonElement result = job.get("result");
+                if (result == null || !result.isJsonObject()) throw new IllegalStateException("工作沒有結果");
+                return BackendService.parseApiJson(result.toString());
+            }
+            if ("cancelled".equals(status)) throw new IllegalStateException(CANCELLED);
+            if ("error".equals(status)) {
+                String err = str(job, "error");
+                throw new IllegalStateException(err.isEmpty() ? "分析工作失敗" : err);
+            }
+            cb.onProgress(new Progress(jobId, stage, fraction));
+        }
+        throw new RetryableException(new IllegalStateException("分析逾時"));
+    }
+
+    // ===============================
+    // 程序重啟後接著等
+    // ===============================
+
+    /**
+     * App 啟動時呼叫：上次沒等完的工作繼續等，中 / 高風險結果存進歷史（原本的畫面已經不在了）
+     */
+    public void resumePending() {
+        Map<String, ?> all = prefs.getAll();
+        if (all.isEmpty()) return;
+        new Thread(() -> {
+            for (Map.Entry<String, ?> e : all.entrySet()) {
+                String jobId = e.getKey();
+                if (waiting.contains(jobId)) continue;
+                try {
+                    JsonObject saved = JsonParser.parseString(String.valueOf(e.getValue())).getAsJsonObject();
+                    if (System.currentTimeMillis() - saved.get("at").getAsLong() > RESUME_MAX_AGE_MS) {
+                        forget(jobId);
+                        continue;
+                    }
+                    ApiResponse data = await(jobId, RequestScheduler.Lane.BACKGROUND, new BackendService.Callback() {
+                        @Override
+                        public void onSuccess(ApiResponse d) {
+                        }
+
+                        @Override
+                        public void onError(String message) {
+                        }
+                    });
+                    saveIfRisky(str(saved, "kind"), str(saved, "content"), data);
+                    Log.d(TAG, "resumed " + jobId + " risk=" + data.risk);
+                } catch (Exception ex) {
+                    Log.w(TAG, "resume " + jobId + " failed", ex);
+                }
+            }
+        }).start();
+    }
+
+    private void saveIfRisky(String kind, String content, ApiResponse data) {
+        String level = RiskRecordRepository.normalizeRiskLevel(data.risk, data.is_scam);
+        if (!"MEDIUM".equals(level) && !"HIGH".equals(level)) return;
+        String detected = "AUDIO".equals(kind) && data.detected_text != null ? data.detected_text.trim() : "";
+        if (detected.length() > 2000) detected = detected.substring(0, 2000) + "…";
+        RiskRecordRepository.get(context).saveAnalysis(kind, content, detected, data);
+    }
+
+    private void remember(String jobId, String kind, String content) {
+        JsonObject o = new JsonObject();
+        o.addProperty("kind", kind);
+        o.addProperty("content", content == null ? "" : content);
+        o.addProperty("at", System.currentTimeMillis());
+        prefs.edit().putString(jobId, o.toString()).apply();
+    }
+
+    private void forget(String jobId) {
+        prefs.edit().remove(jobId).apply();
+    }
+
+    // ===============================
+    // 工具方法
+    // ===============================
+
+    /**
+     * 網路問題：工作可能還在後端跑，保留 job_id
+     */
+    private static final class RetryableException extends Exception {
+        RetryableException(Exception cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    private static boolean isRetryable(Exception e) {
+        return e instanceof RetryableException;
+    }
+
+    private static JsonObject readJson(Response resp) throws Exception {
+        if (!resp.isSuccessful()) throw new IllegalStateException("HTTP " + resp.code());
+        ResponseBody body = resp.body();
+        if (body == null) throw new IllegalStateException("回應無內容");
+        return JsonParser.parseString(body.string()).getAsJsonObject();
+    }
+
+    private static String str(JsonObject o, String key) {
+        JsonElement e = o.get(key);
+        return e == null || e.isJsonNull() ? "" : e.getAsString();
+    }
+}
@@ -3,17 +3,34 @@ package com.example.fp2.net;
 import android.content.Context;
 import android.net.Uri;
 import android.util.Log;
+import android.util.LruCache;
 
 import com.example.fp2.BuildConfig;
+import com.example.fp2.audio.AudioFingerprint;
+import com.example.fp2.audio.AudioFingerprinter;
+import com.example.fp2.audio.AudioTrimmer;
+import com.example.fp2.audio.FingerprintIndex;
+import com.example.fp2.db.RiskRecordRepository;
 import com.example.fp2.model.ApiResponse;
+import com.example.fp2.rules.TextNormalizer;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
@@ -22,18 +39,49 @@ import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.BufferedSource;
 
 public class BackendService {
 
     public interface Callback {
         void onSuccess(ApiResponse data);
         void onError(String message);
+
+        /**
+         * 後端背景工作的進度（上傳 / 辨識 / AI 分析）；同步請求不會呼叫
+         */
+        default void onProgress(AnalysisJobClient.Progress progress) {}
+
+        /**
+         * 串流分析的中間結果（目前已收到的段落，其餘欄位為 null）；只有 analyzeTextStream 會呼叫
+         */
+        default void onPartial(ApiResponse partial) {}
     }
 
+    /**
+     * 連不上後端（沒網路 / DNS 失敗 / 連線逾時）時錯誤訊息會帶這段；UI 用 isUnreachable 分辨，改存離線待補送
+     */
+    public static final String UNREACHABLE = "無法連線到伺服器";
+
     private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
     private static final Gson gson = new Gson();
 
-    private static String baseUrl() {
+    // analyzeText 結果快取（key = 正規化後的文字）
+    private static final int RESULT_CACHE_SIZE = 32;
+    private static final long RESULT_TTL_MS = 10 * 60 * 1000L;
+    private static final LruCache<String, CachedResult> resultCache = new LruCache<>(RESULT_CACHE_SIZE);
+    private static final Map<String, List<Callback>> inFlight = new HashMap<>();
+
+    private static final class CachedResult {
+        final ApiResponse data;
+        final long at = System.currentTimeMillis();
+
+        CachedResult(ApiResponse data) {
+            this.data = data;
+        }
+    }
+
+    static String baseUrl() {
         String u = BuildConfig.BASE_URL;
         Log.d("FP2_BASE_URL", "BuildConfig.BASE_URL = [" + u + "]");
         if (u.endsWith("/")) u = u.substring(0, u.length() - 1);
@@ -41,71 +89,345 @@ public class BackendService {
     }
 
     public void analyzeText(String transcript, Callback cb) {
+        analyzeText(transcript, RequestScheduler.Lane.INTERACTIVE, cb);
+    }
+
+    /**
+     * @param lane 排程優先順序：畫面上使用者在等的用 INTERACTIVE，其餘見 RequestScheduler
+     *             （只有每一次 HTTP 往返排進 lane，等背景工作結果的期間不佔額度）
+     */
+    public void analyzeText(String transcript, RequestScheduler.Lane lane, Callback cb) {
         new Thread(() -> {
+            // ✅ 同一段文字（簡繁 / 全形 / 空白不同也算）短時間內不重送：
+            //    有快取直接回；同內容正在送就排在那次請求後面一起拿結果
+            String key = TextNormalizer.key(transcript);
+            if (!key.isEmpty()) {
+                CachedResult hit = resultCache.get(key);
+                if (hit != null && System.currentTimeMillis() - hit.at < RESULT_TTL_MS) {
+                    cb.onSuccess(hit.data);
+                    return;
+                }
+                synchronized (inFlight) {
+                    List<Callback> waiting = inFlight.get(key);
+                    if (waiting != null) {
+                        waiting.add(cb);
+                        return;
+                    }
+                    waiting = new ArrayList<>();
+                    waiting.add(cb);
+                    inFlight.put(key, waiting);
+                }
+            }
+
+            ApiResponse data = null;
+            String error = null;
+            try {
+                // ✅ 先走背景工作（有進度、可取消、程序被殺掉也能接著等）；後端太舊沒有 /jobs 才同步等
+                AnalysisJobClient jobs = AnalysisJobClient.peek();
+                String jobId = jobs == null ? null : jobs.submitText(transcript, lane);
+                if (jobId != null) {
+                    data = jobs.await(jobId, lane, new Callback() {
+                        @Override
+                        public void onSuccess(ApiResponse d) {
+                        }
+
+                        @Override
+                        public void onError(String message) {
+                        }
+
+                        @Override
+                        public void onProgress(AnalysisJobClient.Progress p) {
+                            for (Callback c : waitingOn(key, cb)) c.onProgress(p);
+                        }
+                    });
+                } else {
+                    data = RequestScheduler.get().call(lane, () -> postText(transcript));
+                }
+                logMeta(data);
+            } catch (Exception e) {
+                error = failure("analyzeText", e);
+            }
+
+            List<Callback> callbacks;
+            if (key.isEmpty()) {
+                callbacks = Collections.singletonList(cb);
+            } else {
+                if (data != null) resultCache.put(key, new CachedResult(data));
+                synchronized (inFlight) {
+                    callbacks = inFlight.remove(key);
+                }
+            }
+            for (Callback c : callbacks) {
+                if (data != null) c.onSuccess(data);
+                else c.onError(error);
+            }
+        }).start();
+    }
+
+    /**
+     * 邊分析邊顯示（POST /analyze_text_stream，一行一個 JSON）：
+     * 規則結果馬上到，之後 LLM 每多生成一段（風險 / 類型 / 理由 / 建議）就 onPartial 一次，最後 onSuccess。
+     * 後端沒有串流端點（舊版）就在同一個排程工作裡改走同步 /analyze_text（不再另外佔一個 lane 額度）。
+     */
+    public void analyzeTextStream(String transcript, Callback cb) {
+        RequestScheduler.get().submit(RequestScheduler.Lane.INTERACTIVE, () -> {
+            String key = TextNormalizer.key(transcript);
+            CachedResult hit = key.isEmpty() ? null : resultCache.get(key);
+            if (hit != null && System.currentTimeMillis() - hit.at < RESULT_TTL_MS) {
+                cb.onSuccess(hit.data);
+                return;
+            }
+
+            ApiResponse data;
             try {
                 JsonObject body = new JsonObject();
                 body.addProperty("text", transcript == null ? "" : transcript);
 
-                RequestBody req = RequestBody.create(body.toString(), JSON);
                 Request.Builder rb = new Request.Builder()
-                        .url(baseUrl() + "/analyze_text")
-                        .post(req);
+                        .url(baseUrl() + "/analyze_text_stream")
+                        .post(RequestBody.create(body.toString(), JSON));
 
                 addAdminIfAny(rb);
 
-                OkHttpClient client = ApiClient.get();
-                try (Response resp = client.newCall(rb.build()).execute()) {
-                    ApiResponse data = parseApiResponse(resp);
-                    logMeta(data);
-                    cb.onSuccess(data);
+                boolean unsupported;
+                try (Response resp = ApiClient.get().newCall(rb.build()).execute()) {
+                    unsupported = resp.code() == 404 || resp.code() == 405;
+                    data = unsupported ? null : readStream(resp, cb);
                 }
+                if (unsupported) data = postText(transcript);
+                logMeta(data);
             } catch (Exception e) {
-                cb.onError("analyzeText 失敗：" + e.getMessage());
+                cb.onError(failure("analyzeText", e));
+                return;
             }
-        }).start();
+
+            if (!key.isEmpty()) resultCache.put(key, new CachedResult(data));
+            cb.onSuccess(data);
+        });
+    }
+
+    /**
+     * 逐行讀：rules / partial 合併成目前的結果交給 onPartial，讀到 final 才回傳
+     */
+    private static ApiResponse readStream(Response resp, Callback cb) throws Exception {
+        if (!resp.isSuccessful()) throw new IllegalStateException("HTTP " + resp.code());
+        ResponseBody rb = resp.body();
+        if (rb == null) throw new IllegalStateException("回應無內容");
+
+        BufferedSource source = rb.source();
+        JsonObject merged = new JsonObject();
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (line.trim().isEmpty()) continue;
+            JsonObject ev = JsonParser.parseString(line).getAsJsonObject();
+            boolean isFinal = ev.has("type") && ev.get("type").isJsonPrimitive()
+                    && "final".equals(ev.get("type").getAsString());
+            if (isFinal && ev.has("result")) {
+                return parseApiJson(ev.get("result").toString());
+            }
+            for (Map.Entry<String, JsonElement> e : ev.entrySet()) {
+                if (!"type".equals(e.getKey())) merged.add(e.getKey(), e.getValue());
+            }
+            cb.onPartial(gson.fromJson(merged, ApiResponse.class));
+        }
+        throw new IllegalStateException("串流中斷");
+    }
+
+    /**
+     * 同一段文字排隊等結果的所有 callback（進度要每個都通知）
+     */
+    private static List<Callback> waitingOn(String key, Callback cb) {
+        if (key.isEmpty()) return Collections.singletonList(cb);
+        synchronized (inFlight) {
+            List<Callback> waiting = inFlight.get(key);
+            return waiting == null ? Collections.emptyList() : new ArrayList<>(waiting);
+        }
+    }
+
+    private ApiResponse postText(String transcript) throws Exception {
+        JsonObject body = new JsonObject();
+        body.addProperty("text", transcript == null ? "" : transcript);
+
+        RequestBody req = RequestBody.create(body.toString(), JSON);
+        Request.Builder rb = new Request.Builder()
+                .url(baseUrl() + "/analyze_text")
+                .post(req);
+
+        addAdminIfAny(rb);
+
+        OkHttpClient client = ApiClient.get();
+        try (Response resp = client.newCall(rb.build()).execute()) {
+            return parseApiResponse(resp);
+        }
+    }
+
+    /**
+     * 離線補送用（阻塞，請在背景執行緒呼叫）：POST /analyze_batch，多筆文字一次往返
+     * @param lane 批次請求排一次；改逐筆時每筆各排一次
+     * @return 與 texts 同順序；單筆分析失敗為 null。後端太舊沒有批次端點就逐筆走 /analyze_text
+     */
+    public List<ApiResponse> analyzeBatch(List<String> texts, RequestScheduler.Lane lane) throws Exception {
+        JsonArray items = new JsonArray();
+        for (int i = 0; i < texts.size(); i++) {
+            JsonObject item = new JsonObject();
+            item.addProperty("id", String.valueOf(i));
+            item.addProperty("text", texts.get(i) == null ? "" : texts.get(i));
+            items.add(item);
+        }
+        JsonObject body = new JsonObject();
+        body.add("items", items);
+
+        Request.Builder rb = new Request.Builder()
+                .url(baseUrl() + "/analyze_batch")
+                .post(RequestBody.create(body.toString(), JSON));
+
+        addAdminIfAny(rb);
+
+        List<ApiResponse> out = new ArrayList<>(Collections.nCopies(texts.size(), (ApiResponse) null));
+        String json = RequestScheduler.get().call(lane, () -> {
+            try (Response resp = ApiClient.get().newCall(rb.build()).execute()) {
+                if (resp.code() == 404 || resp.code() == 405) return null;
+                if (!resp.isSuccessful()) throw new IllegalStateException("HTTP " + resp.code());
+                ResponseBody b = resp.body();
+                if (b == null) throw new IllegalStateException("回應無內容");
+                return b.string();
+            }
+        });
+        if (json == null) {
+            for (int i = 0; i < texts.size(); i++) {
+                String text = texts.get(i);
+                out.set(i, RequestScheduler.get().call(lane, () -> postText(text)));
+            }
+            return out;
+        }
+
+        JsonArray results = JsonParser.parseString(json).getAsJsonObject().getAsJsonArray("results");
+        for (JsonElement e : results) {
+            JsonObject r = e.getAsJsonObject();
+            int i = Integer.parseInt(r.get("id").getAsString());
+            if (i < 0 || i >= texts.size()) continue;
+            if (r.has("ok") && r.get("ok").getAsBoolean() && r.has("result")) {
+                ApiResponse data = parseApiJson(r.get("result").toString());
+                logMeta(data);
+                out.set(i, data);
+            } else {
+                Log.w("FP2", "batch item " + i + " failed: " + r.get("error"));
+            }
+        }
+        return out;
     }
 
     public void uploadAudio(Context ctx, Uri uri, Callback cb) {
+        uploadAudio(ctx, uri, RequestScheduler.Lane.INTERACTIVE, cb);
+    }
+
+    /**
+     * 解碼 / 去靜音 / 指紋 / 壓縮在自己的執行緒跑；只有上傳、送出工作、每次輪詢排進 lane
+     */
+    public void uploadAudio(Context ctx, Uri uri, RequestScheduler.Lane lane, Callback cb) {
         new Thread(() -> {
             File tmp = null;
+            AudioTrimmer.Result trimmed = null;
             try {
-                tmp = new File(ctx.getCacheDir(), "upload_" + System.currentTimeMillis());
-
-                try (InputStream in = ctx.getContentResolver().openInputStream(uri);
-                     OutputStream out = new FileOutputStream(tmp)) {
-                    byte[] buf = new byte[8192];
-                    int n;
-                    while ((n = in.read(buf)) > 0) out.write(buf, 0, n);
+                // ✅ 先看長度 / 大小 / 位元率：短的照舊同步上傳；大的先壓縮，很長的再切段，走後端背景工作
+                UploadPreflight.Plan plan = UploadPreflight.plan(ctx, uri);
+                boolean direct = plan.mode == UploadPreflight.Mode.DIRECT;
+
+                // ✅ 先去掉靜音段（只上傳語音 + 時間對照表）；處理失敗或省不了多少就傳原檔
+                //    同一次解碼順便算語音指紋
+                AudioFingerprinter fingerprinter = new AudioFingerprinter(AudioTrimmer.SAMPLE_RATE);
+                File cacheDir = ctx.getCacheDir();
+                if (direct) {
+                    trimmed = AudioTrimmer.trim(ctx, uri, cacheDir, fingerprinter::accept);
+                } else {
+                    long partMs = plan.mode == UploadPreflight.Mode.SEGMENTED ? UploadPreflight.PART_MS : Long.MAX_VALUE;
+                    trimmed = AudioTrimmer.compress(ctx, uri, cacheDir, partMs, fingerprinter::accept);
                 }
 
-                String mime = ctx.getContentResolver().getType(uri);
-                if (mime == null || mime.trim().isEmpty()) mime = "audio/mp4";
-
-                RequestBody fileBody = RequestBody.create(tmp, MediaType.parse(mime));
-                MultipartBody reqBody = new MultipartBody.Builder().setType(MultipartBody.FORM)
-                        .addFormDataPart("file", "audio", fileBody)
-                        .build();
-
-                Request.Builder rb = new Request.Builder()
-                        .url(baseUrl() + "/upload_audio")
-                        .post(reqBody);
+                // ✅ 跟已知詐騙錄音（重複播放的語音詐騙）一樣：直接回當時的結果，不上傳
+                AudioFingerprint fingerprint = fingerprinter.finish();
+                FingerprintIndex fingerprints = FingerprintIndex.get(ctx);
+                FingerprintIndex.Match match = fingerprints.match(fingerprint);
+                if (match != null) {
+                    cb.onSuccess(match.response);
+                    return;
+                }
 
-                addAdminIfAny(rb);
+                String mime;
+                String fileName;
+                if (trimmed != null) {
+                    mime = "audio/mp4";
+                    fileName = "audio.m4a";
+                } else {
+                    tmp = new File(cacheDir, "upload_" + System.currentTimeMillis());
+
+                    try (InputStream in = ctx.getContentResolver().openInputStream(uri);
+                         OutputStream out = new FileOutputStream(tmp)) {
+                        byte[] buf = new byte[8192];
+                        int n;
+                        while ((n = in.read(buf)) > 0) out.write(buf, 0, n);
+                    }
+
+                    mime = ctx.getContentResolver().getType(uri);
+                    if (mime == null || mime.trim().isEmpty()) mime = "audio/mp4";
+                    fileName = "audio";
+                }
 
-                OkHttpClient client = ApiClient.get();
-                try (Response resp = client.newCall(rb.build()).execute()) {
-                    ApiResponse data = parseApiResponse(resp);
-                    logMeta(data);
-                    cb.onSuccess(data);
+                ApiResponse data;
+                if (direct) {
+                    File file = trimmed != null ? trimmed.file : tmp;
+                    String fileMime = mime;
+                    AudioTrimmer.Result segments = trimmed;
+                    data = RequestScheduler.get().call(lane, () -> postAudio(file, fileName, fileMime, segments));
+                } else {
+                    // 背景工作：上傳完就放掉連線，長輪詢等結果（不受單一請求逾時限制）
+                    AnalysisJobClient jobs = AnalysisJobClient.get(ctx);
+                    String content = uri.toString();
+                    String jobId = trimmed != null
+                            ? jobs.submitAudio(trimmed.parts, mime, trimmed.partStartMs,
+                                    trimmed.segmentsJson(), trimmed.originalMs, content, lane, cb)
+                            : jobs.submitAudio(Collections.singletonList(tmp), mime, new long[]{0}, null, 0, content, lane, cb);
+                    data = jobs.await(jobId, lane, cb);
                 }
+                logMeta(data);
+                // 後端判定高風險：記住指紋，下次同一段錄音直接命中
+                if ("HIGH".equals(RiskRecordRepository.normalizeRiskLevel(data.risk, data.is_scam))) {
+                    fingerprints.add(fingerprint, data);
+                }
+                cb.onSuccess(data);
             } catch (Exception e) {
-                cb.onError("uploadAudio 失敗：" + e.getMessage());
+                cb.onError(failure("uploadAudio", e));
             } finally {
                 if (tmp != null) tmp.delete();
+                if (trimmed != null) trimmed.delete();
             }
         }).start();
     }
 
+    /**
+     * 同步上傳（短音檔）：一個請求等到分析完
+     */
+    private ApiResponse postAudio(File file, String fileName, String mime, AudioTrimmer.Result trimmed) throws Exception {
+        RequestBody fileBody = RequestBody.create(file, MediaType.parse(mime));
+        MultipartBody.Builder form = new MultipartBody.Builder().setType(MultipartBody.FORM)
+                .addFormDataPart("file", fileName, fileBody);
+        if (trimmed != null) {
+            form.addFormDataPart("segments", trimmed.segmentsJson());
+            form.addFormDataPart("original_ms", String.valueOf(trimmed.originalMs));
+        }
+
+        Request.Builder rb = new Request.Builder()
+                .url(baseUrl() + "/upload_audio")
+                .post(form.build());
+
+        addAdminIfAny(rb);
+
+        OkHttpClient client = ApiClient.get();
+        try (Response resp = client.newCall(rb.build()).execute()) {
+            return parseApiResponse(resp);
+        }
+    }
+
     /**
      * ✅ 核心解析：
      * - 印出原始 JSON（截斷）
@@ -119,8 +441,13 @@ public class BackendService {
         ResponseBody rb = resp.body();
         if (rb == null) throw new IllegalStateException("回應無內容");
 
-        String s = rb.string();
+        return parseApiJson(rb.string());
+    }
 
+    /**
+     * 同步回應與背景工作結果共用的解析
+     */
+    static ApiResponse parseApiJson(String s) {
         // ✅ 印出 raw JSON（避免太長，截斷）
         Log.d("FP2_RAW_JSON", truncate(s, 1200));
 
@@ -154,7 +481,25 @@ public class BackendService {
         return r;
     }
 
-    private static void addAdminIfAny(Request.Builder rb) {
+    public static boolean isUnreachable(String message) {
+        return message != null && message.contains(UNREACHABLE);
+    }
+
+    /**
+     * 錯誤訊息：網路層的失敗（可能包在背景工作的例外裡）加上 UNREACHABLE
+     */
+    static String failure(String what, Exception e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof UnknownHostException
+                    || t instanceof SocketException
+                    || t instanceof InterruptedIOException) {
+                return what + " 失敗：" + UNREACHABLE + "（" + t.getMessage() + "）";
+            }
+        }
+        return what + " 失敗：" + e.getMessage();
+    }
+
+    static void addAdminIfAny(Request.Builder rb) {
         String k = getAdminKeySafe();
         if (k != null && !k.isEmpty()) rb.addHeader("X-Admin-Key", k);
     }
@@ -0,0 +1,262 @@
+package com.example.fp2.net;
+
+import android.content.Context;
+import android.content.Intent;
+import android.media.AudioFormat;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.speech.RecognitionListener;
+import android.speech.RecognizerIntent;
+import android.speech.SpeechRecognizer;
+import android.util.Log;
+
+import com.example.fp2.audio.PcmDecoder;
+import com.example.fp2.model.ApiResponse;
+import com.example.fp2.rules.RuleEngine;
+import com.google.gson.JsonObject;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 裝置端語音辨識（Android 13+ 的 on-device SpeechRecognizer，CPU 上跑，不用網路）
+ * - 音檔在背景解碼成 16kHz 單聲道 PCM，從 pipe 餵給辨識器（segmented session，長音檔也能整段轉完）
+ * - 轉好的文字：有網路就送 /analyze_text；離線就用本機規則（RuleEngine）先給結果
+ * 回傳格式跟 RemoteTranscriptionEngine 一樣（detected_text / text / source）。
+ */
+public class LocalTranscriptionEngine implements TranscriptionEngine {
+
+    private static final String TAG = "LOCAL_ASR";
+
+    private static final int SAMPLE_RATE = 16_000;
+    private static final int FRAME_SAMPLES = 1_600; // 100ms
+    private static final String LANGUAGE = "zh-TW";
+    private static final int MIN_TEXT_LEN = 6;      // 同後端：太短就不分析
+    private static final long TIMEOUT_FIXED_MS = 30_000;
+
+    private final BackendService backend = new BackendService();
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    @Override
+    public String name() {
+        return "local";
+    }
+
+    @Override
+    public boolean isAvailable(Context context) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && SpeechRecognizer.isOnDeviceRecognitionAvailable(context);
+    }
+
+    @Override
+    public void transcribe(Context context, Uri audio, RequestScheduler.Lane lane, BackendService.Callback cb) {
+        if (!isAvailable(context)) {
+            cb.onError("此裝置不支援離線語音辨識");
+            return;
+        }
+        Context app = context.getApplicationContext();
+        ParcelFileDescriptor[] pipe;
+        try {
+            pipe = ParcelFileDescriptor.createPipe();
+        } catch (IOException e) {
+            cb.onError("離線辨識失敗：" + e.getMessage());
+            return;
+        }
+        main.post(() -> new Session(app, audio, pipe, lane, cb).start());
+    }
+
+    // ===============================
+    // 一次辨識（辨識器只能在主執行緒操作）
+    // ===============================
+    private final class Session implements RecognitionListener {
+        private final Context context;
+        private final Uri audio;
+        private final ParcelFileDescriptor[] pipe;
+        private final RequestScheduler.Lane lane;
+        private final BackendService.Callback cb;
+        private final List<String> parts = Collections.synchronizedList(new ArrayList<>());
+        private final Runnable timeout = () -> finish(null);
+        private SpeechRecognizer recognizer;
+        private boolean done;
+
+        Session(Context context, Uri audio, ParcelFileDescriptor[] pipe,
+                RequestScheduler.Lane lane, BackendService.Callback cb) {
+            this.context = context;
+            this.audio = audio;
+            this.pipe = pipe;
+            this.lane = lane;
+            this.cb = cb;
+        }
+
+        void start() {
+            recognizer = SpeechRecognizer.createOnDeviceSpeechRecognizer(context);
+            recognizer.setRecognitionListener(this);
+
+            Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH)
+                    .putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM)
+                    .putExtra(RecognizerIntent.EXTRA_LANGUAGE, LANGUAGE)
+                    .putExtra(RecognizerIntent.EXTRA_PREFER_OFFLINE, true)
+                    .putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE, pipe[0])
+                    .putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_CHANNEL_COUNT, 1)
+                    .putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_ENCODING, AudioFormat.ENCODING_PCM_16BIT)
+                    .putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_SAMPLING_RATE, SAMPLE_RATE)
+                    .putExtra(RecognizerIntent.EXTRA_SEGMENTED_SESSION, RecognizerIntent.EXTRA_AUDIO_SOURCE);
+            recognizer.startListening(intent);
+
+            // 背景把音檔解碼後寫進 pipe；寫完關掉 = 音訊結束
+            new Thread(this::feed).start();
+        }
+
+        private void feed() {
+            long durationUs = -1;
+            byte[] bytes = new byte[FRAME_SAMPLES * 2];
+            try (OutputStream out = new FileOutputStream(pipe[1].getFileDescriptor())) {
+                durationUs = new PcmDecoder(SAMPLE_RATE, FRAME_SAMPLES).decode(context, audio, (frame, n) -> {
+                    for (int i = 0; i < n; i++) {
+                        bytes[2 * i] = (byte) frame[i];
+                        bytes[2 * i + 1] = (byte) (frame[i] >> 8);
+                    }
+                    out.write(bytes, 0, n * 2);
+                });
+            } catch (IOException e) {
+                Log.w(TAG, "feed failed", e);
+            } finally {
+                closeQuietly(pipe[1]);
+            }
+            // 辨識器處理速度不一定：給音檔長度 + 固定緩衝時間
+            long budget = TIMEOUT_FIXED_MS + Math.max(0, durationUs / 1000);
+            main.postDelayed(timeout, budget);
+        }
+
+        private void finish(String error) {
+            if (done) return;
+            done = true;
+            main.removeCallbacks(timeout);
+            if (recognizer != null) recognizer.destroy();
+            closeQuietly(pipe[0]);
+
+            String transcript;
+            synchronized (parts) {
+                transcript = String.join("", parts).trim();
+            }
+            if (transcript.isEmpty() && error != null) {
+                cb.onError(error);
+                return;
+            }
+            new Thread(() -> analyze(context, transcript, lane, cb)).start();
+        }
+
+        @Override
+        public void onSegmentResults(Bundle segmentResults) {
+            addTop(segmentResults);
+        }
+
+        @Override
+        public void onEndOfSegmentedSession() {
+            finish(null);
+        }
+
+        @Override
+        public void onResults(Bundle results) {
+            addTop(results);
+            finish(null);
+        }
+
+        @Override
+        public void onError(int error) {
+            // 沒聽到話 / 逾時：當作結束，有多少文字就用多少
+            boolean benign = error == SpeechRecognizer.ERROR_NO_MATCH
+                    || error == SpeechRecognizer.ERROR_SPEECH_TIMEOUT;
+            finish(benign ? null : "離線辨識失敗（錯誤碼 " + error + "）");
+        }
+
+        private void addTop(Bundle b) {
+            ArrayList<String> r = b == null ? null : b.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+            if (r != null && !r.isEmpty() && r.get(0) != null) parts.add(r.get(0));
+        }
+
+        @Override public void onReadyForSpeech(Bundle params) {}
+        @Override public void onBeginningOfSpeech() {}
+        @Override public void onRmsChanged(float rmsdB) {}
+        @Override public void onBufferReceived(byte[] buffer) {}
+        @Override public void onEndOfSpeech() {}
+        @Override public void onPartialResults(Bundle partialResults) {}
+        @Override public void onEvent(int eventType, Bundle params) {}
+    }
+
+    // ===============================
+    // 逐字稿 → 風險判斷
+    // ===============================
+    private void analyze(Context context, String transcript, RequestScheduler.Lane lane, BackendService.Callback cb) {
+        if (transcript.length() < MIN_TEXT_LEN) {
+            ApiResponse r = new ApiResponse();
+            r.risk = "low";
+            r.is_scam = false;
+            r.scam_type = Collections.singletonList("未明確分類（需更多資訊）");
+            r.advices = Collections.singletonList("請提供更清晰或更長的音檔");
+            r.reasons = Collections.singletonList("辨識文字過短或空白");
+            cb.onSuccess(fill(r, transcript));
+            return;
+        }
+        if (!NetworkState.isOnline(context)) {
+            cb.onSuccess(fill(offlineVerdict(transcript), transcript));
+            return;
+        }
+        backend.analyzeText(transcript, lane, new BackendService.Callback() {
+            @Override
+            public void onSuccess(ApiResponse data) {
+                cb.onSuccess(fill(data, transcript));
+            }
+
+            @Override
+            public void onError(String message) {
+                if (AnalysisJobClient.isCancelled(message)) {
+                    cb.onError(message);
+                    return;
+                }
+                // 連得上但後端失敗：至少把逐字稿 + 本機規則結果給使用者
+                cb.onSuccess(fill(offlineVerdict(transcript), transcript));
+            }
+
+            @Override
+            public void onProgress(AnalysisJobClient.Progress progress) {
+                cb.onProgress(progress);
+            }
+        });
+    }
+
+    private static ApiResponse offlineVerdict(String transcript) {
+        RuleEngine engine = RuleEngine.get();
+        if (engine != null) return engine.check(transcript).toApiResponse();
+        ApiResponse r = new ApiResponse();
+        r.risk = "low";
+        r.is_scam = false;
+        r.reasons = Collections.singletonList("離線：已轉成文字，尚未做完整分析");
+        JsonObject analysis = new JsonObject();
+        analysis.addProperty("provisional", true);   // 同 RuleEngine：呼叫端可排進離線待補送
+        r.analysis = analysis;
+        return r;
+    }
+
+    private static ApiResponse fill(ApiResponse r, String transcript) {
+        r.detected_text = transcript;
+        r.text = transcript;
+        r.source = "asr";
+        return r;
+    }
+
+    private static void closeQuietly(ParcelFileDescriptor fd) {
+        try {
+            fd.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
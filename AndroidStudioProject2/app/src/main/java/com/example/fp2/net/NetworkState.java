@@ -0,0 +1,43 @@
+package com.example.fp2.net;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+
+/**
+ * 目前網路狀態（給 TranscriptionPolicy 等決策用）
+ */
+public final class NetworkState {
+
+    private NetworkState() {}
+
+    public static boolean isOnline(Context context) {
+        NetworkCapabilities caps = capabilities(context);
+        return caps != null
+                && caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                && caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+    }
+
+    /**
+     * 預估上行頻寬（kbps）；系統不知道回 -1
+     */
+    public static int upstreamKbps(Context context) {
+        NetworkCapabilities caps = capabilities(context);
+        if (caps == null) return -1;
+        int kbps = caps.getLinkUpstreamBandwidthKbps();
+        return kbps > 0 ? kbps : -1;
+    }
+
+    public static boolean isMetered(Context context) {
+        ConnectivityManager cm = context.getSystemService(ConnectivityManager.class);
+        return cm != null && cm.isActiveNetworkMetered();
+    }
+
+    private static NetworkCapabilities capabilities(Context context) {
+        ConnectivityManager cm = context.getSystemService(ConnectivityManager.class);
+        if (cm == null) return null;
+        Network n = cm.getActiveNetwork();
+        return n == null ? null : cm.getNetworkCapabilities(n);
+    }
+}
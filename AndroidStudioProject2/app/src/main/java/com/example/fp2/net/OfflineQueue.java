@@ -0,0 +1,415 @@
+package com.example.fp2.net;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import com.example.fp2.db.AppDatabase;
+import com.example.fp2.db.PendingCheckDao;
+import com.example.fp2.db.PendingCheckEntity;
+import com.example.fp2.db.RiskRecordRepository;
+import com.example.fp2.model.ApiResponse;
+import com.example.fp2.model.ResultFormatter;
+import com.example.fp2.rules.RuleEngine;
+import com.example.fp2.security.UrlChecker;
+import com.example.fp2.work.OfflineReplayWorker;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 離線待補送（store-and-forward）
+ * - 連不上後端時：本機初判（RuleEngine / UrlHeuristics）先存成歷史紀錄，補送內容存進 pending_checks
+ * - 恢復連線後 OfflineReplayWorker 呼叫 replay()：文字整批送 /analyze_batch，音檔重新上傳，網址重跑 UrlChecker
+ * - 結果回來直接更新原本那筆歷史紀錄（不會多一筆）
+ *
+ * 後端回錯誤的項目各自指數退避，失敗 MAX_ATTEMPTS 次就放棄、保留初判；
+ * 連不上不算失敗次數，交給 WorkManager 等網路 + 退避。
+ * enqueue / replay 都是阻塞呼叫（寫 DB / 等網路），請在背景執行緒使用。
+ */
+public final class OfflineQueue {
+
+    private static final String TAG = "OFFLINE_QUEUE";
+
+    static final int BATCH_SIZE = 10;                         // 後端 BATCH_MAX 是 20
+    static final int MAX_ATTEMPTS = 8;
+    static final long BASE_BACKOFF_MS = 30_000;
+    static final long MAX_BACKOFF_MS = 6 * 60 * 60 * 1000L;
+
+    private static final int MAX_CONTENT = 500;               // 同 TextCheckActivity：歷史只存前 500 字
+    private static final int MAX_DETECTED = 2000;             // 同錄音頁：逐字稿截斷
+    private static final String OFFLINE_REASON = "離線初判：恢復連線後會自動補做完整分析並更新此紀錄";
+    private static final String AUDIO_DIR = "offline_audio";  // 待補送音檔的複本（filesDir，不會被系統清掉）
+
+    /**
+     * 一次 replay 的結果（給 worker 決定 retry / 之後再排）
+     */
+    public static final class Report {
+        public int resolved;
+        public int failed;
+        public boolean unreachable;    // 中途連不上，剩下的等下次
+        public long nextAttemptAt;     // 還有待補送時最早的時間；0 = 清空了
+
+        @Override
+        public String toString() {
+            return "resolved=" + resolved + " failed=" + failed
+                    + " unreachable=" + unreachable + " nextAttemptAt=" + nextAttemptAt;
+        }
+    }
+
+    private static volatile OfflineQueue INSTANCE;
+
+    public static OfflineQueue get(Context context) {
+        if (INSTANCE == null) {
+            synchronized (OfflineQueue.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new OfflineQueue(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private final Context context;
+    private final PendingCheckDao dao;
+    private final RiskRecordRepository records;
+    private final BackendService backend = new BackendService();
+    private final Object replayLock = new Object();   // worker 被 REPLACE 時舊的可能還沒停，不重複送
+
+    private OfflineQueue(Context context) {
+        this.context = context;
+        this.dao = AppDatabase.getInstance(context).pendingCheckDao();
+        this.records = RiskRecordRepository.get(context);
+    }
+
+    /**
+     * 這個錯誤要不要改存離線待補送（使用者取消的不算）
+     */
+    public static boolean shouldQueue(Context context, String error) {
+        if (AnalysisJobClient.isCancelled(error)) return false;
+        return BackendService.isUnreachable(error) || !NetworkState.isOnline(context);
+    }
+
+    /**
+     * 本機規則的結果（RuleEngine 的 analysis.provisional）：例如離線語音辨識沒送到後端
+     */
+    public static boolean isProvisional(ApiResponse r) {
+        if (r == null || r.analysis == null || !r.analysis.isJsonObject()) return false;
+        JsonObject a = r.analysis.getAsJsonObject();
+        return a.has("provisional") && a.get("provisional").isJsonPrimitive() && a.get("provisional").getAsBoolean();
+    }
+
+    /**
+     * 存入待補送後給 UI 顯示的文字
+     */
+    public static String notice(ApiResponse provisional) {
+        return "目前無法連線，已存入歷史紀錄，恢復連線後會自動補做完整分析\n\n（以下為本機初判）\n\n"
+                + ResultFormatter.format(provisional);
+    }
+
+    // ===============================
+    // 存入（回傳要顯示的初判）
+    // ===============================
+
+    /**
+     * 文字檢查
+     */
+    public ApiResponse enqueueText(String text) {
+        String content = text.trim();
+        if (content.length() > MAX_CONTENT) content = content.substring(0, MAX_CONTENT) + "…";
+        return enqueue("TEXT", content, "", PendingCheckEntity.KIND_TEXT, text, textVerdict(text));
+    }
+
+    /**
+     * 截圖：content 存圖片 uri，補送 OCR 文字
+     */
+    public ApiResponse enqueueOcrText(Uri image, String ocrText) {
+        return enqueue("IMAGE", image == null ? "" : image.toString(), ocrText,
+                PendingCheckEntity.KIND_TEXT, ocrText, textVerdict(ocrText));
+    }
+
+    /**
+     * 錄音：已經在裝置上轉好文字就只補送逐字稿，沒有才重新上傳音檔
+     * 分享 / 選檔給的 uri 只有暫時的讀取權限（服務 / 畫面結束就失效），所以先複製一份到 App 目錄，補送上傳那份
+     * @return null = 音檔複製不了，沒有存入待補送
+     */
+    public ApiResponse enqueueAudio(Uri audio, String transcript) {
+        String t = transcript == null ? "" : transcript.trim();
+        if (!t.isEmpty()) {
+            String detected = t.length() > MAX_DETECTED ? t.substring(0, MAX_DETECTED) + "…" : t;
+            return enqueue("AUDIO", audio.toString(), detected, PendingCheckEntity.KIND_TEXT, t, textVerdict(t));
+        }
+        ApiResponse r = new ApiResponse();
+        r.risk = "low";
+        r.is_scam = false;
+        r.scam_type = Collections.singletonList("未明確分類（需更多資訊）");
+        r.reasons = Collections.singletonList("錄音尚未辨識");
+
+        File copy = copyAudio(audio);
+        if (copy == null) return null;
+        return enqueue("AUDIO", audio.toString(), "", PendingCheckEntity.KIND_AUDIO, Uri.fromFile(copy).toString(), r);
+    }
+
+    private File copyAudio(Uri audio) {
+        File dir = new File(context.getFilesDir(), AUDIO_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) return null;
+        File copy = new File(dir, "pending_" + System.currentTimeMillis());
+        try (InputStream in = context.getContentResolver().openInputStream(audio);
+             OutputStream out = new FileOutputStream(copy)) {
+            if (in == null) throw new IllegalStateException("無法開啟音檔");
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) out.write(buf, 0, n);
+            return copy;
+        } catch (Exception e) {
+            Log.w(TAG, "copy audio failed: " + audio, e);
+            copy.delete();
+            return null;
+        }
+    }
+
+    /**
+     * 網址：回傳本機啟發式初判（畫面直接顯示 pretty()）
+     */
+    public UrlChecker.Outcome enqueueUrl(String url) {
+        UrlChecker.Outcome o = UrlChecker.offline(url);
+        records.savePendingUrlCheck(o.orig, o.verdictZh, o.rr.score, o.rr, o.pretty());
+        OfflineReplayWorker.schedule(context);
+        return o;
+    }
+
+    private ApiResponse enqueue(String type, String content, String detectedText,
+                                int kind, String payload, ApiResponse provisional) {
+        List<String> reasons = new ArrayList<>();
+        reasons.add(OFFLINE_REASON);
+        if (provisional.reasons != null) reasons.addAll(provisional.reasons);
+        provisional.reasons = reasons;
+
+        long id = records.savePendingAnalysis(type, content, detectedText, provisional, kind, payload);
+        Log.d(TAG, "queued " + type + " record=" + id);
+        OfflineReplayWorker.schedule(context);
+        return provisional;
+    }
+
+    private static ApiResponse textVerdict(String text) {
+        ApiResponse r = RuleEngine.provisional(text);
+        if (r != null) return r;
+        r = new ApiResponse();
+        r.risk = "low";
+        r.is_scam = false;
+        r.scam_type = Collections.singletonList("未明確分類（需更多資訊）");
+        r.reasons = Collections.singletonList("本機規則未命中");
+        r.source = RuleEngine.SOURCE;
+        return r;
+    }
+
+    /**
+     * App 啟動時呼叫：上次還有沒送完的就排 worker（worker 本身會等網路）
+     */
+    public void resumeIfPending() {
+        new Thread(() -> {
+            int n = dao.count();
+            if (n > 0) {
+                Log.d(TAG, n + " pending, schedule replay");
+                OfflineReplayWorker.schedule(context);
+            }
+        }).start();
+    }
+
+    // ===============================
+    // 補送（OfflineReplayWorker 使用）
+    // ===============================
+
+    public Report replay(BooleanSupplier stopped) {
+        synchronized (replayLock) {
+            Report report = new Report();
+            try {
+                while (!stopped.getAsBoolean()) {
+                    if (!NetworkState.isOnline(context)) throw new UnreachableException();
+
+                    List<PendingCheckEntity> due = dao.due(System.currentTimeMillis(), BATCH_SIZE);
+                    if (due.isEmpty()) break;
+
+                    List<PendingCheckEntity> texts = new ArrayList<>();
+                    for (PendingCheckEntity p : due) {
+                        if (p.kind == PendingCheckEntity.KIND_TEXT) texts.add(p);
+                    }
+                    if (!texts.isEmpty()) replayTexts(texts, report);
+
+                    for (PendingCheckEntity p : due) {
+                        if (stopped.getAsBoolean()) break;
+                        switch (p.kind) {
+                            case PendingCheckEntity.KIND_TEXT:
+                                break;
+                            case PendingCheckEntity.KIND_AUDIO:
+                                replayAudio(p, report);
+                                break;
+                            case PendingCheckEntity.KIND_URL:
+                                replayUrl(p, report);
+                                break;
+                            default:
+                                abandon(p);
+                                break;
+                        }
+                    }
+                }
+            } catch (UnreachableException e) {
+                report.unreachable = true;
+            }
+            Long next = dao.nextAttemptAt();
+            report.nextAttemptAt = next == null ? 0 : next;
+            return report;
+        }
+    }
+
+    /**
+     * 一批文字一次往返（後端逐筆分析，單筆失敗不影響其他筆）
+     */
+    private void replayTexts(List<PendingCheckEntity> texts, Report report) throws UnreachableException {
+        List<String> payloads = new ArrayList<>(texts.size());
+        for (PendingCheckEntity p : texts) payloads.add(p.payload);
+
+        List<ApiResponse> results;
+        try {
+            results = backend.analyzeBatch(payloads, RequestScheduler.Lane.BACKGROUND);
+        } catch (Exception e) {
+            String error = BackendService.failure("analyzeBatch", e);
+            if (BackendService.isUnreachable(error)) throw new UnreachableException();
+            for (PendingCheckEntity p : texts) fail(p, error, report);
+            return;
+        }
+
+        for (int i = 0; i < texts.size(); i++) {
+            ApiResponse data = results.get(i);
+            if (data == null) {
+                fail(texts.get(i), "後端分析失敗", report);
+            } else {
+                records.resolvePending(texts.get(i), data);
+                report.resolved++;
+            }
+        }
+    }
+
+    private void replayAudio(PendingCheckEntity p, Report report) throws UnreachableException {
+        // 音檔讀不到（舊版排進來的 content:// 權限已失效 / 複本被刪）：重試也沒用
+        if (!readable(Uri.parse(p.payload))) {
+            Log.w(TAG, "pending audio unreadable: " + p.payload);
+            report.failed++;
+            abandon(p);
+            return;
+        }
+
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<ApiResponse> result = new AtomicReference<>();
+        AtomicReference<String> error = new AtomicReference<>();
+        backend.uploadAudio(context, Uri.parse(p.payload), RequestScheduler.Lane.BACKGROUND,
+                new BackendService.Callback() {
+                    @Override
+                    public void onSuccess(ApiResponse data) {
+                        result.set(data);
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onError(String message) {
+                        error.set(message);
+                        done.countDown();
+                    }
+                });
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnreachableException();
+        }
+
+        if (result.get() != null) {
+            records.resolvePending(p, result.get());
+            deleteAudioCopy(p);
+            report.resolved++;
+        } else if (BackendService.isUnreachable(error.get())) {
+            throw new UnreachableException();
+        } else {
+            fail(p, error.get(), report);
+        }
+    }
+
+    private void replayUrl(PendingCheckEntity p, Report report) throws UnreachableException {
+        UrlChecker.Outcome o;
+        try {
+            o = new UrlChecker().check(p.payload);
+        } catch (Exception e) {
+            fail(p, String.valueOf(e.getMessage()), report);
+            return;
+        }
+        // check() 途中斷線會把網址判成「不存在」：這種結果不能用
+        if (!NetworkState.isOnline(context)) throw new UnreachableException();
+
+        records.resolvePendingUrl(p, o.verdictZh, o.score(), o.rr, o.pretty());
+        report.resolved++;
+    }
+
+    /**
+     * 後端回錯誤：指數退避（30 秒起跳，最多 6 小時），太多次就放棄、保留初判
+     */
+    private void fail(PendingCheckEntity p, String error, Report report) {
+        report.failed++;
+        int attempts = p.attempts + 1;
+        if (attempts >= MAX_ATTEMPTS) {
+            Log.w(TAG, "give up pending " + p.id + ": " + error);
+            abandon(p);
+            return;
+        }
+        dao.reschedule(p.id, attempts, System.currentTimeMillis() + backoffMs(attempts),
+                error == null ? "" : error);
+    }
+
+    static long backoffMs(int attempts) {
+        long ms = BASE_BACKOFF_MS << Math.min(attempts - 1, 20);
+        return Math.min(ms, MAX_BACKOFF_MS);
+    }
+
+    // ===============================
+    // 工具方法
+    // ===============================
+
+    /**
+     * 放棄補送：保留初判，刪掉音檔複本
+     */
+    private void abandon(PendingCheckEntity p) {
+        records.abandonPending(p);
+        deleteAudioCopy(p);
+    }
+
+    private void deleteAudioCopy(PendingCheckEntity p) {
+        if (p.kind != PendingCheckEntity.KIND_AUDIO) return;
+        Uri u = Uri.parse(p.payload);
+        if (!"file".equals(u.getScheme()) || u.getPath() == null) return;
+        File f = new File(u.getPath());
+        File dir = f.getParentFile();
+        if (dir != null && AUDIO_DIR.equals(dir.getName())) f.delete();
+    }
+
+    private boolean readable(Uri uri) {
+        try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+            return in != null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 連不上：這一輪停下來，剩下的不算失敗次數
+     */
+    private static final class UnreachableException extends Exception {
+    }
+}
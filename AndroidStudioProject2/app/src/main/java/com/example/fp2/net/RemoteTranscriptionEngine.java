@@ -0,0 +1,27 @@
+package com.example.fp2.net;
+
+import android.content.Context;
+import android.net.Uri;
+
+/**
+ * 後端 Whisper（/upload_audio）：上傳 → 轉文字 → 規則 + LLM 判斷一次完成
+ */
+public class RemoteTranscriptionEngine implements TranscriptionEngine {
+
+    private final BackendService backend = new BackendService();
+
+    @Override
+    public String name() {
+        return "remote";
+    }
+
+    @Override
+    public boolean isAvailable(Context context) {
+        return NetworkState.isOnline(context);
+    }
+
+    @Override
+    public void transcribe(Context context, Uri audio, RequestScheduler.Lane lane, BackendService.Callback cb) {
+        backend.uploadAudio(context.getApplicationContext(), audio, lane, cb);
+    }
+}
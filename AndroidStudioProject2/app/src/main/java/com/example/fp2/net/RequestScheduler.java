@@ -0,0 +1,176 @@
+package com.example.fp2.net;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 後端請求排程：使用者正在等的檢查不排在背景工作後面
+ * - INTERACTIVE：畫面上使用者按下的檢查（文字 / 截圖 / 錄音 / 網址）
+ * - PREFETCH：預先做、結果可能用不到的（多張截圖的中間版本）
+ * - BACKGROUND：分享選單、離線補送這類沒人盯著看的
+ *
+ * 每條 lane 有自己的同時請求上限；有 INTERACTIVE 在跑或在排隊時，BACKGROUND 先不開始
+ * （等太久 MAX_DEFER_MS 還是會放行，避免一直被餓死），PREFETCH 最多只跑一個。
+ * 已經開始的請求不會被中斷，所以每個工作應該只包一次後端往返：
+ * 本機前處理（解碼 / 壓縮）和長輪詢的迴圈在呼叫端的執行緒跑，只有每一次 HTTP 用 call() 排進來。
+ * 只管打自家後端的請求；網址檢查（UrlChecker）連第三方，不排進來。
+ */
+public final class RequestScheduler {
+
+    private static final String TAG = "REQ_SCHED";
+
+    public enum Lane {
+        INTERACTIVE(4),
+        PREFETCH(2),
+        BACKGROUND(1);
+
+        final int maxConcurrent;
+
+        Lane(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+    }
+
+    static final long MAX_DEFER_MS = 2 * 60 * 1000L;
+
+    private static final RequestScheduler INSTANCE = new RequestScheduler();
+
+    public static RequestScheduler get() {
+        return INSTANCE;
+    }
+
+    private static final class Task {
+        final Lane lane;
+        final Runnable body;
+        final long queuedAt = System.currentTimeMillis();
+
+        Task(Lane lane, Runnable body) {
+            this.lane = lane;
+            this.body = body;
+        }
+    }
+
+    private final EnumMap<Lane, ArrayDeque<Task>> queues = new EnumMap<>(Lane.class);
+    private final EnumMap<Lane, Integer> running = new EnumMap<>(Lane.class);
+    private ScheduledExecutorService ticker;   // 被延後的背景工作到期時再排一次
+    private boolean tickPending;
+
+    private RequestScheduler() {
+        for (Lane lane : Lane.values()) {
+            queues.put(lane, new ArrayDeque<>());
+            running.put(lane, 0);
+        }
+    }
+
+    /**
+     * 排進對應的 lane，輪到時在新的執行緒上跑（不阻塞呼叫端）
+     */
+    public void submit(Lane lane, Runnable body) {
+        synchronized (this) {
+            queues.get(lane).add(new Task(lane, body));
+        }
+        pump();
+    }
+
+    /**
+     * 阻塞版 submit：排進 lane，等這一次往返做完把結果（或例外）帶回呼叫端的執行緒
+     * 不可在同一條 lane 的工作裡再呼叫（額度滿了會互等）
+     */
+    public <T> T call(Lane lane, Callable<T> body) throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<T> result = new AtomicReference<>();
+        AtomicReference<Exception> error = new AtomicReference<>();
+        submit(lane, () -> {
+            try {
+                result.set(body.call());
+            } catch (Exception e) {
+                error.set(e);
+            } finally {
+                done.countDown();
+            }
+        });
+        done.await();
+        if (error.get() != null) throw error.get();
+        return result.get();
+    }
+
+    /**
+     * 目前有沒有使用者正在等的請求（排隊中也算）
+     */
+    public synchronized boolean interactiveBusy() {
+        return running.get(Lane.INTERACTIVE) > 0 || !queues.get(Lane.INTERACTIVE).isEmpty();
+    }
+
+    private void pump() {
+        List<Task> start = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            // 依優先順序：INTERACTIVE → PREFETCH → BACKGROUND
+            for (Lane lane : Lane.values()) {
+                ArrayDeque<Task> q = queues.get(lane);
+                while (!q.isEmpty() && canStart(q.peek(), now)) {
+                    Task t = q.poll();
+                    running.put(lane, running.get(lane) + 1);
+                    start.add(t);
+                }
+            }
+            scheduleTickIfDeferred(now);
+        }
+        for (Task t : start) {
+            new Thread(() -> run(t), "req-" + t.lane.name().toLowerCase()).start();
+        }
+    }
+
+    /**
+     * 呼叫時需持有 this
+     */
+    private boolean canStart(Task t, long now) {
+        int n = running.get(t.lane);
+        if (n >= t.lane.maxConcurrent) return false;
+        if (t.lane == Lane.INTERACTIVE || !interactiveBusy()) return true;
+        if (t.lane == Lane.PREFETCH) return n == 0;
+        return now - t.queuedAt >= MAX_DEFER_MS;
+    }
+
+    private void run(Task t) {
+        long waited = System.currentTimeMillis() - t.queuedAt;
+        if (waited > 1000) Log.d(TAG, t.lane + " waited " + waited + "ms");
+        try {
+            t.body.run();
+        } catch (RuntimeException e) {
+            Log.e(TAG, t.lane + " task crashed", e);
+        } finally {
+            synchronized (this) {
+                running.put(t.lane, running.get(t.lane) - 1);
+            }
+            pump();
+        }
+    }
+
+    /**
+     * 呼叫時需持有 this：背景工作被延後時，最久的那個到期要再檢查一次（期間可能沒有任何請求結束）
+     */
+    private void scheduleTickIfDeferred(long now) {
+        Task head = queues.get(Lane.BACKGROUND).peek();
+        if (head == null || tickPending || running.get(Lane.BACKGROUND) >= Lane.BACKGROUND.maxConcurrent) return;
+        if (ticker == null) ticker = Executors.newSingleThreadScheduledExecutor();
+        tickPending = true;
+        long delay = Math.max(0, head.queuedAt + MAX_DEFER_MS - now);
+        ticker.schedule(() -> {
+            synchronized (this) {
+                tickPending = false;
+            }
+            pump();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+}
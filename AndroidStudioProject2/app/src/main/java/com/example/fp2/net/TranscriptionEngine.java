@@ -0,0 +1,27 @@
+package com.example.fp2.net;
+
+import android.content.Context;
+import android.net.Uri;
+
+/**
+ * 語音 → 文字 → 風險判斷 的引擎
+ * 不論哪一種實作，回傳的 ApiResponse 都要：
+ * - detected_text / text 放逐字稿（繁體、去頭尾空白）
+ * - source = "asr"
+ *
+ * callback 在背景執行緒呼叫。
+ */
+public interface TranscriptionEngine {
+
+    String name();
+
+    /**
+     * 這台裝置 / 目前狀態能不能用
+     */
+    boolean isAvailable(Context context);
+
+    /**
+     * @param lane 要用到後端時排哪條 lane（見 RequestScheduler）
+     */
+    void transcribe(Context context, Uri audio, RequestScheduler.Lane lane, BackendService.Callback cb);
+}
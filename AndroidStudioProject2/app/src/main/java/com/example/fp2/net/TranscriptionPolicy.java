@@ -0,0 +1,163 @@
+package com.example.fp2.net;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.fp2.model.ApiResponse;
+
+/**
+ * 語音辨識要走哪個引擎（本機 / 後端）
+ * 依：音檔長度、目前網路（離線 / 計費 / 上行頻寬）、兩邊實測的處理速度（每秒音檔花幾毫秒，EWMA）
+ * - 離線：有本機引擎就用本機
+ * - 音檔太長：一律後端（本機辨識器是照播放速度吃音訊，長檔太慢）
+ * - 其他：預估時間較短的那邊；計費網路 / 上行很慢時偏向本機
+ * 本機失敗且有網路 → 自動改走後端。
+ */
+public final class TranscriptionPolicy {
+
+    private static final String TAG = "ASR_POLICY";
+    private static final String PREFS = "transcription_policy";
+
+    private static final long LOCAL_MAX_MS = 5 * 60 * 1000L;
+    private static final int SLOW_UPLINK_KBPS = 256;
+    private static final double EWMA_ALPHA = 0.3;
+
+    // 還沒有實測值時的預設（每秒音檔的處理毫秒數）
+    private static final float DEFAULT_REMOTE_MS_PER_S = 600f;
+    private static final float DEFAULT_LOCAL_MS_PER_S = 1000f;
+
+    private static volatile TranscriptionPolicy INSTANCE;
+
+    public static TranscriptionPolicy get(Context context) {
+        if (INSTANCE == null) {
+            synchronized (TranscriptionPolicy.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new TranscriptionPolicy(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final TranscriptionEngine remote = new RemoteTranscriptionEngine();
+    private final TranscriptionEngine local = new LocalTranscriptionEngine();
+
+    private TranscriptionPolicy(Context context) {
+        this.context = context;
+        this.prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * callback 在背景執行緒呼叫
+     */
+    public void transcribe(Uri audio, BackendService.Callback cb) {
+        transcribe(audio, RequestScheduler.Lane.INTERACTIVE, cb);
+    }
+
+    /**
+     * @param lane 走後端時的優先順序（分享選單等沒人盯著看的用 BACKGROUND）
+     */
+    public void transcribe(Uri audio, RequestScheduler.Lane lane, BackendService.Callback cb) {
+        new Thread(() -> {
+            long durationMs = probeDurationMs(audio);
+            TranscriptionEngine first = choose(durationMs);
+            TranscriptionEngine second = first == local ? remote : null;
+            Log.d(TAG, "duration=" + durationMs + "ms, engine=" + first.name());
+            run(first, second, audio, durationMs, lane, cb);
+        }).start();
+    }
+
+    TranscriptionEngine choose(long durationMs) {
+        boolean localOk = durationMs > 0 && durationMs <= LOCAL_MAX_MS && local.isAvailable(context);
+        if (!localOk) return remote;
+        if (!remote.isAvailable(context)) return local;
+
+        int kbps = NetworkState.upstreamKbps(context);
+        if (NetworkState.isMetered(context) || (kbps > 0 && kbps < SLOW_UPLINK_KBPS)) return local;
+
+        return msPerSecond(local) < msPerSecond(remote) ? local : remote;
+    }
+
+    private void run(TranscriptionEngine engine,
+                     TranscriptionEngine fallback,
+                     Uri audio,
+                     long durationMs,
+                     RequestScheduler.Lane lane,
+                     BackendService.Callback cb) {
+        long start = SystemClock.elapsedRealtime();
+        engine.transcribe(context, audio, lane, new BackendService.Callback() {
+            @Override
+            public void onSuccess(ApiResponse data) {
+                record(engine, SystemClock.elapsedRealtime() - start, durationMs);
+                cb.onSuccess(normalize(data));
+            }
+
+            @Override
+            public void onError(String message) {
+                if (fallback != null && !AnalysisJobClient.isCancelled(message) && fallback.isAvailable(context)) {
+                    Log.w(TAG, engine.name() + " failed, fallback to " + fallback.name() + "：" + message);
+                    run(fallback, null, audio, durationMs, lane, cb);
+                } else {
+                    cb.onError(message);
+                }
+            }
+
+            @Override
+            public void onProgress(AnalysisJobClient.Progress progress) {
+                cb.onProgress(progress);
+            }
+        });
+    }
+
+    /**
+     * 兩個引擎的輸出統一：detected_text 沒有就用 text，去頭尾空白，兩欄一致
+     */
+    private static ApiResponse normalize(ApiResponse r) {
+        if (r == null) return null;
+        String t = r.detected_text;
+        if (t == null || t.trim().isEmpty()) t = r.text;
+        t = t == null ? "" : t.trim();
+        r.detected_text = t;
+        r.text = t;
+        r.source = "asr";
+        if (r.risk == null && !r.is_scam) r.risk = "low";
+        return r;
+    }
+
+    // ===============================
+    // 實測速度（EWMA，存 SharedPreferences）
+    // ===============================
+    private float msPerSecond(TranscriptionEngine engine) {
+        float def = engine == local ? DEFAULT_LOCAL_MS_PER_S : DEFAULT_REMOTE_MS_PER_S;
+        return prefs.getFloat(engine.name() + "_ms_per_s", def);
+    }
+
+    private void record(TranscriptionEngine engine, long elapsedMs, long durationMs) {
+        if (durationMs <= 0) return;
+        double sample = elapsedMs / (durationMs / 1000.0);
+        double next = EWMA_ALPHA * sample + (1 - EWMA_ALPHA) * msPerSecond(engine);
+        prefs.edit().putFloat(engine.name() + "_ms_per_s", (float) next).apply();
+    }
+
+    private long probeDurationMs(Uri audio) {
+        MediaMetadataRetriever mmr = new MediaMetadataRetriever();
+        try {
+            mmr.setDataSource(context, audio);
+            String d = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            return d == null ? -1 : Long.parseLong(d);
+        } catch (Exception e) {
+            return -1;
+        } finally {
+            try {
+                mmr.release();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+}
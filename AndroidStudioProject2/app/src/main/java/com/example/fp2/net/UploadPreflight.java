@@ -0,0 +1,108 @@
+package com.example.fp2.net;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import java.io.File;
+
+/**
+ * 上傳前先看一下音檔（不解碼）：長度、大小、位元率 → 決定怎麼傳
+ * - DIRECT：短又小，照舊同步上傳 /upload_audio（去靜音後）
+ * - COMPRESSED：太大或位元率太高（例如 WAV / 高品質錄音），先重新編碼成 32kbps AAC 再走背景工作
+ * - SEGMENTED：很長的錄音，壓縮後每 10 分鐘切一段分開上傳，後端收齊再一起分析
+ */
+public final class UploadPreflight {
+
+    private static final String TAG = "UPLOAD_PREFLIGHT";
+
+    public enum Mode { DIRECT, COMPRESSED, SEGMENTED }
+
+    static final long DIRECT_MAX_MS = 5 * 60 * 1000L;
+    static final long DIRECT_MAX_BYTES = 20L * 1024 * 1024;
+    static final long HIGH_BITRATE = 192_000;  // 超過就值得先壓（通話錄音 32kbps 就夠）
+    static final long SEGMENT_OVER_MS = 30 * 60 * 1000L;
+    public static final long PART_MS = 10 * 60 * 1000L;
+
+    public static final class Plan {
+        public final Mode mode;
+        public final long durationMs;  // 未知 = -1
+        public final long bytes;       // 未知 = -1
+        public final long bitrate;     // bps，未知 = -1
+
+        Plan(Mode mode, long durationMs, long bytes, long bitrate) {
+            this.mode = mode;
+            this.durationMs = durationMs;
+            this.bytes = bytes;
+            this.bitrate = bitrate;
+        }
+
+        @Override
+        public String toString() {
+            return mode + " duration=" + durationMs + "ms bytes=" + bytes + " bitrate=" + bitrate;
+        }
+    }
+
+    private UploadPreflight() {}
+
+    /**
+     * 阻塞（讀 metadata），請在背景執行緒呼叫
+     */
+    public static Plan plan(Context ctx, Uri uri) {
+        long duration = -1;
+        long bitrate = -1;
+        MediaMetadataRetriever mmr = new MediaMetadataRetriever();
+        try {
+            mmr.setDataSource(ctx, uri);
+            duration = parse(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
+            bitrate = parse(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_BITRATE));
+        } catch (Exception e) {
+            Log.w(TAG, "metadata failed", e);
+        } finally {
+            try {
+                mmr.release();
+            } catch (Exception ignore) {
+            }
+        }
+
+        long bytes = sizeOf(ctx, uri);
+        if (bitrate <= 0 && bytes > 0 && duration > 0) bitrate = bytes * 8 * 1000 / duration;
+
+        Plan p = new Plan(choose(duration, bytes, bitrate), duration, bytes, bitrate);
+        Log.d(TAG, p.toString());
+        return p;
+    }
+
+    static Mode choose(long durationMs, long bytes, long bitrate) {
+        if (durationMs > SEGMENT_OVER_MS) return Mode.SEGMENTED;
+        // 長度不明：不冒險同步上傳，壓縮後走背景工作
+        if (durationMs > 0 && durationMs <= DIRECT_MAX_MS
+                && bytes >= 0 && bytes <= DIRECT_MAX_BYTES
+                && bitrate <= HIGH_BITRATE) return Mode.DIRECT;
+        return Mode.COMPRESSED;
+    }
+
+    private static long sizeOf(Context ctx, Uri uri) {
+        try (Cursor c = ctx.getContentResolver().query(uri, new String[]{OpenableColumns.SIZE},
+                null, null, null)) {
+            if (c != null && c.moveToFirst() && !c.isNull(0)) return c.getLong(0);
+        } catch (Exception ignore) {
+            // file:// 之類沒有 provider
+        }
+        if ("file".equals(uri.getScheme()) && uri.getPath() != null) {
+            return new File(uri.getPath()).length();
+        }
+        return -1;
+    }
+
+    private static long parse(String s) {
+        try {
+            return s == null ? -1 : Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.fp2.ocr;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * OCR 結果的磁碟快取（cacheDir/ocr_cache）
+ * key = 圖片檔案內容的 SHA-256（串流計算，不把整張圖讀進記憶體）
+ * 值  = OCR 文字 + 辨識的區塊框（原圖座標）
+ *
+ * 同一張截圖重新上傳 / 再檢查一次就不用再跑 ML Kit。
+ * 超過 MAX_FILES 或 MAX_BYTES 時刪掉最久沒用到的；超過 MAX_AGE_MS 沒用到的也刪
+ * （截圖文字可能有帳號 / 驗證碼，HistoryRetention 另外依歷史保留天數 expire）。
+ * 所有方法都是阻塞 IO，不可在主執行緒呼叫。
+ */
+public final class OcrCache {
+
+    private static final String TAG = "OCR_CACHE";
+
+    // OCR 流程（區塊偵測 / 合併規則）改了就加版本，舊快取自然失效
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int MAX_FILES = 200;
+    private static final long MAX_BYTES = 4L * 1024 * 1024;
+    public static final long MAX_AGE_MS = 7L * 24 * 60 * 60 * 1000;
+
+    private static volatile OcrCache INSTANCE;
+
+    public static OcrCache get(Context context) {
+        if (INSTANCE == null) {
+            synchronized (OcrCache.class) {
+                if (INSTANCE == null) INSTANCE = new OcrCache(context.getApplicationContext());
+            }
+        }
+        return INSTANCE;
+    }
+
+    public static final class Entry {
+        public final String text;
+        public final List<Rect> regions;
+
+        public Entry(String text, List<Rect> regions) {
+            this.text = text == null ? "" : text;
+            this.regions = regions == null ? Collections.emptyList() : regions;
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final File dir;
+
+    private OcrCache(Context app) {
+        this.resolver = app.getContentResolver();
+        this.dir = new File(app.getCacheDir(), "ocr_cache");
+    }
+
+    /**
+     * 串流算圖片內容的 SHA-256（hex）
+     */
+    public String hash(Uri uri) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        InputStream raw = resolver.openInputStream(uri);
+        if (raw == null) throw new IOException("cannot open " + uri);
+        try (DigestInputStream in = new DigestInputStream(raw, md)) {
+            byte[] buf = new byte[64 * 1024];
+            while (in.read(buf) != -1) { /* digest 邊讀邊算 */ }
+        }
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : md.digest()) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    public synchronized Entry lookup(String hash) {
+        File f = fileOf(hash);
+        if (!f.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            if (in.readInt() != FORMAT_VERSION) return null;
+            byte[] textBytes = new byte[in.readInt()];
+            in.readFully(textBytes);
+            int n = in.readInt();
+            List<Rect> regions = new ArrayList<>(Math.max(0, Math.min(n, 32)));
+            for (int i = 0; i < n; i++) {
+                regions.add(new Rect(in.readInt(), in.readInt(), in.readInt(), in.readInt()));
+            }
+            f.setLastModified(System.currentTimeMillis()); // LRU：用到就更新時間
+            return new Entry(new String(textBytes, StandardCharsets.UTF_8), regions);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "bad cache entry, drop: " + hash, e);
+            f.delete();
+            return null;
+        }
+    }
+
+    public synchronized void put(String hash, Entry entry) {
+        if (!dir.exists() && !dir.mkdirs()) return;
+        File tmp = new File(dir, hash + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            byte[] textBytes = entry.text.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(textBytes.length);
+            out.write(textBytes);
+            out.writeInt(entry.regions.size());
+            for (Rect r : entry.regions) {
+                out.writeInt(r.left);
+                out.writeInt(r.top);
+                out.writeInt(r.right);
+                out.writeInt(r.bottom);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "write failed: " + hash, e);
+            tmp.delete();
+            return;
+        }
+        // 先寫暫存檔再改名，寫到一半被殺也不會留下壞檔
+        if (!tmp.renameTo(fileOf(hash))) tmp.delete();
+        trim();
+    }
+
+    /**
+     * 刪掉超過 maxAgeMs 沒用到的項目
+     * @return 刪掉幾個
+     */
+    public synchronized int expire(long maxAgeMs) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".bin"));
+        if (files == null) return 0;
+        long cutoff = System.currentTimeMillis() - maxAgeMs;
+        int n = 0;
+        for (File f : files) {
+            if (f.lastModified() < cutoff && f.delete()) n++;
+        }
+        return n;
+    }
+
+    private void trim() {
+        expire(MAX_AGE_MS);
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".bin"));
+        if (files == null) return;
+        long total = 0;
+        for (File f : files) total += f.length();
+        if (files.length <= MAX_FILES && total <= MAX_BYTES) return;
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        int count = files.length;
+        for (File f : files) {
+            if (count <= MAX_FILES && total <= MAX_BYTES) break;
+            total -= f.length();
+            count--;
+            f.delete();
+        }
+    }
+
+    private File fileOf(String hash) {
+        return new File(dir, hash + ".bin");
+    }
+}
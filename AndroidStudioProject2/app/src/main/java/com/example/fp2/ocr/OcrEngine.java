@@ -0,0 +1,404 @@
+package com.example.fp2.ocr;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.Text;
+import com.google.mlkit.vision.text.TextRecognition;
+import com.google.mlkit.vision.text.TextRecognizer;
+import com.google.mlkit.vision.text.chinese.ChineseTextRecognizerOptions;
+import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * OCR 引擎（全 App 共用一組 recognizer）
+ * 1) 中文 / 英文 recognizer 各只建一次，用完不關，下次直接用
+ * 2) warmUp()：背景先跑一張空白圖，把模型載好（進截圖頁時呼叫）
+ * 3) release()：記憶體吃緊時（onTrimMemory）關掉，下次用到再建；還有辨識在跑就等跑完再關
+ * 4) 記錄冷啟動 / 熱啟動的辨識耗時
+ * 5) 兩種模式：SEQUENTIAL（中文沒字才跑英文）/ PARALLEL（同時跑、依框合併）
+ *
+ * recognize() 的 callback 跑在主執行緒（ML Kit Task 預設）。
+ */
+public final class OcrEngine {
+
+    private static final String TAG = "OCR";
+
+    public enum Mode {
+        SEQUENTIAL,
+        PARALLEL
+    }
+
+    public interface Callback {
+        /** text 可能是空字串（兩種語言都沒辨識到字） */
+        void onSuccess(String text);
+
+        void onError(String message);
+
+        /**
+         * 這張圖所有 recognizer 都跑完了（提早回傳時會比 onSuccess 晚），
+         * 之後才可以回收 / 重用圖片的 bitmap
+         */
+        default void onFinished() {}
+
+        /**
+         * 只 OCR 了這些區塊（原圖座標，RegionOcr / 快取命中時才會呼叫）
+         */
+        default void onRegions(List<Rect> regions) {}
+    }
+
+    /**
+     * 耗時統計（cold = 這次用到的 recognizer 還沒跑過任何一張圖）
+     */
+    public static final class Metrics {
+        public int coldRuns;
+        public int warmRuns;
+        public long coldTotalMs;
+        public long warmTotalMs;
+        public long warmUpMs;     // 最近一次 warmUp 花的時間
+        public long lastMs;
+        public boolean lastCold;
+
+        public long avgColdMs() {
+            return coldRuns == 0 ? 0 : coldTotalMs / coldRuns;
+        }
+
+        public long avgWarmMs() {
+            return warmRuns == 0 ? 0 : warmTotalMs / warmRuns;
+        }
+
+        Metrics copy() {
+            Metrics m = new Metrics();
+            m.coldRuns = coldRuns;
+            m.warmRuns = warmRuns;
+            m.coldTotalMs = coldTotalMs;
+            m.warmTotalMs = warmTotalMs;
+            m.warmUpMs = warmUpMs;
+            m.lastMs = lastMs;
+            m.lastCold = lastCold;
+            return m;
+        }
+
+        @Override
+        public String toString() {
+            return "last=" + lastMs + "ms(" + (lastCold ? "cold" : "warm") + ")"
+                    + ", cold=" + coldRuns + "x avg " + avgColdMs() + "ms"
+                    + ", warm=" + warmRuns + "x avg " + avgWarmMs() + "ms"
+                    + ", warmUp=" + warmUpMs + "ms";
+        }
+    }
+
+    private static volatile OcrEngine INSTANCE;
+
+    public static OcrEngine get() {
+        if (INSTANCE == null) {
+            synchronized (OcrEngine.class) {
+                if (INSTANCE == null) INSTANCE = new OcrEngine();
+            }
+        }
+        return INSTANCE;
+    }
+
+    private TextRecognizer zh;
+    private TextRecognizer en;
+    private boolean zhWarm;
+    private boolean enWarm;
+    private boolean warming;
+    private int inFlight;            // 還沒回來的 process() 數
+    private boolean releasePending;  // release() 時剛好有辨識在跑：最後一個回來再關
+
+    private final Metrics metrics = new Metrics();
+
+    private OcrEngine() {}
+
+    // ===============================
+    // 預熱
+    // ===============================
+
+    /**
+     * 背景載入兩個模型；已經熱了或正在熱就直接返回
+     */
+    public void warmUp() {
+        synchronized (this) {
+            if (warming || (zhWarm && enWarm)) return;
+            warming = true;
+        }
+        new Thread(() -> {
+            long t0 = SystemClock.elapsedRealtime();
+            try {
+                // 空白小圖就夠讓 ML Kit 把模型載入
+                InputImage blank = InputImage.fromBitmap(
+                        Bitmap.createBitmap(32, 32, Bitmap.Config.ARGB_8888), 0);
+                try {
+                    Tasks.await(process(true, blank));
+                } finally {
+                    endProcess();
+                }
+                markWarm(true);
+                try {
+                    Tasks.await(process(false, blank));
+                } finally {
+                    endProcess();
+                }
+                markWarm(false);
+            } catch (Exception e) {
+                Log.w(TAG, "warm up failed", e);
+            } finally {
+                synchronized (this) {
+                    warming = false;
+                    metrics.warmUpMs = SystemClock.elapsedRealtime() - t0;
+                }
+                Log.d(TAG, "warm up done in " + metrics().warmUpMs + "ms");
+            }
+        }).start();
+    }
+
+    // ===============================
+    // 辨識
+    // ===============================
+    public void recognize(InputImage image, Callback cb) {
+        recognize(image, Mode.PARALLEL, cb);
+    }
+
+    public void recognize(InputImage image, Mode mode, Callback cb) {
+        if (mode == Mode.PARALLEL) recognizeParallel(image, cb);
+        else recognizeSequential(image, cb);
+    }
+
+    /**
+     * 中文優先，沒字 / 失敗再英文
+     */
+    private void recognizeSequential(InputImage image, Callback cb) {
+        final long t0 = SystemClock.elapsedRealtime();
+        final boolean cold = !isWarm(true);
+
+        process(true, image)
+                .addOnSuccessListener(t -> {
+                    markWarm(true);
+                    String text = t.getText();
+                    if (!TextUtils.isEmpty(text)) {
+                        record(t0, cold);
+                        cb.onSuccess(text);
+                        cb.onFinished();
+                    } else {
+                        recognizeLatin(image, t0, cold, cb);
+                    }
+                })
+                .addOnFailureListener(e -> recognizeLatin(image, t0, cold, cb))
+                .addOnCompleteListener(t -> endProcess());
+    }
+
+    /**
+     * 兩個 recognizer 同時跑同一張圖：
+     * - 先回來的那邊若是高信心，直接回傳（不等另一邊）
+     * - 否則兩邊都回來後依框重疊 / 信心合併
+     * 兩個 listener 都在主執行緒，ParallelRun 不需要鎖。
+     */
+    private void recognizeParallel(InputImage image, Callback cb) {
+        final ParallelRun run = new ParallelRun(cb, SystemClock.elapsedRealtime(),
+                !isWarm(true) || !isWarm(false));
+
+        process(true, image)
+                .addOnSuccessListener(t -> {
+                    markWarm(true);
+                    run.onLines(true, OcrMerger.linesOf(t));
+                })
+                .addOnFailureListener(e -> run.onFailed(true, e))
+                .addOnCompleteListener(t -> endProcess());
+
+        process(false, image)
+                .addOnSuccessListener(t -> {
+                    markWarm(false);
+                    run.onLines(false, OcrMerger.linesOf(t));
+                })
+                .addOnFailureListener(e -> run.onFailed(false, e))
+                .addOnCompleteListener(t -> endProcess());
+    }
+
+    private final class ParallelRun {
+        private final Callback cb;
+        private final long t0;
+        private final boolean cold;
+
+        private List<OcrMerger.Line> zhLines;
+        private List<OcrMerger.Line> enLines;
+        private boolean zhDone;
+        private boolean enDone;
+        private boolean delivered;
+        private String lastError;
+
+        ParallelRun(Callback cb, long t0, boolean cold) {
+            this.cb = cb;
+            this.t0 = t0;
+            this.cold = cold;
+        }
+
+        void onLines(boolean chinese, List<OcrMerger.Line> lines) {
+            if (chinese) {
+                zhLines = lines;
+                zhDone = true;
+            } else {
+                enLines = lines;
+                enDone = true;
+            }
+
+            // ✅ 提早回傳：先完成的一邊已經很有把握
+            if (!delivered && !(zhDone && enDone) && OcrMerger.isHighConfidence(lines)) {
+                deliver(OcrMerger.join(OcrMerger.merge(lines, Collections.emptyList())));
+            }
+            if (zhDone && enDone) finish();
+        }
+
+        void onFailed(boolean chinese, Exception e) {
+            if (chinese) zhDone = true;
+            else enDone = true;
+            lastError = e.getMessage();
+            if (zhDone && enDone) finish();
+        }
+
+        private void finish() {
+            if (!delivered) {
+                if (zhLines == null && enLines == null) {
+                    delivered = true;
+                    record(t0, cold);
+                    cb.onError(lastError);
+                } else {
+                    List<OcrMerger.Line> zh = zhLines == null ? Collections.emptyList() : zhLines;
+                    List<OcrMerger.Line> en = enLines == null ? Collections.emptyList() : enLines;
+                    deliver(OcrMerger.join(OcrMerger.merge(zh, en)));
+                }
+            }
+            cb.onFinished();
+        }
+
+        private void deliver(String text) {
+            delivered = true;
+            record(t0, cold);
+            cb.onSuccess(text);
+        }
+    }
+
+    private void recognizeLatin(InputImage image, long t0, boolean coldSoFar, Callback cb) {
+        final boolean cold = coldSoFar || !isWarm(false);
+
+        process(false, image)
+                .addOnSuccessListener(t -> {
+                    markWarm(false);
+                    record(t0, cold);
+                    String text = t.getText();
+                    cb.onSuccess(text == null ? "" : text);
+                    cb.onFinished();
+                })
+                .addOnFailureListener(e -> {
+                    record(t0, cold);
+                    cb.onError(e.getMessage());
+                    cb.onFinished();
+                })
+                .addOnCompleteListener(t -> endProcess());
+    }
+
+    // ===============================
+    // 釋放
+    // ===============================
+
+    /**
+     * 關掉兩個 recognizer（釋放 native 資源），下次 recognize 會重建（冷啟動）
+     * 分享 / 批次截圖常在背景跑 OCR（剛好是 TRIM_MEMORY_BACKGROUND 的時候）：有辨識在跑就延到最後一個回來再關
+     */
+    public synchronized void release() {
+        if (inFlight > 0) {
+            releasePending = true;
+            Log.d(TAG, "release deferred, in flight=" + inFlight);
+            return;
+        }
+        close();
+    }
+
+    private synchronized void close() {
+        releasePending = false;
+        if (zh != null) {
+            zh.close();
+            zh = null;
+        }
+        if (en != null) {
+            en.close();
+            en = null;
+        }
+        zhWarm = false;
+        enWarm = false;
+        Log.d(TAG, "recognizers released");
+    }
+
+    public synchronized Metrics metrics() {
+        return metrics.copy();
+    }
+
+    // ===============================
+    // 工具方法
+    // ===============================
+    /**
+     * 開始一次辨識（計入 inFlight）；呼叫端在所有 listener 之後接 endProcess()
+     */
+    private synchronized Task<Text> process(boolean chinese, InputImage image) {
+        Task<Text> task = (chinese ? zh() : en()).process(image);
+        inFlight++;
+        return task;
+    }
+
+    private synchronized void endProcess() {
+        inFlight--;
+        if (inFlight == 0 && releasePending) close();
+    }
+
+    private synchronized TextRecognizer zh() {
+        if (zh == null) {
+            zh = TextRecognition.getClient(new ChineseTextRecognizerOptions.Builder().build());
+        }
+        return zh;
+    }
+
+    private synchronized TextRecognizer en() {
+        if (en == null) {
+            en = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
+        }
+        return en;
+    }
+
+    private synchronized boolean isWarm(boolean chinese) {
+        return chinese ? zhWarm : enWarm;
+    }
+
+    private synchronized void markWarm(boolean chinese) {
+        if (chinese) {
+            if (zh != null) zhWarm = true;
+        } else {
+            if (en != null) enWarm = true;
+        }
+    }
+
+    private void record(long t0, boolean cold) {
+        long ms = SystemClock.elapsedRealtime() - t0;
+        String summary;
+        synchronized (this) {
+            if (cold) {
+                metrics.coldRuns++;
+                metrics.coldTotalMs += ms;
+            } else {
+                metrics.warmRuns++;
+                metrics.warmTotalMs += ms;
+            }
+            metrics.lastMs = ms;
+            metrics.lastCold = cold;
+            summary = metrics.toString();
+        }
+        Log.d(TAG, summary);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.fp2.ocr;
+
+import android.graphics.Rect;
+
+import com.google.mlkit.vision.text.Text;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 合併中文 / 英文 recognizer 的結果（以「行」為單位）
+ * 1) 兩邊框重疊（IoU 夠高）視為同一行，留信心分數高的那個
+ *    （英文模型看不懂中文，同一行若只有中文版含中文字，一律留中文版）
+ * 2) 只有一邊辨識到的行直接補進來（例如中文模型漏掉的網址）
+ * 3) 依閱讀順序（上 → 下、左 → 右）排好再接成字串
+ */
+final class OcrMerger {
+
+    private static final float SAME_LINE_IOU = 0.5f;
+
+    // 「高信心」：每一行都 >= LINE_MIN，平均 >= MEAN_MIN
+    private static final float HIGH_CONF_LINE_MIN = 0.8f;
+    private static final float HIGH_CONF_MEAN_MIN = 0.9f;
+
+    private OcrMerger() {}
+
+    static final class Line {
+        final String text;
+        final Rect box;          // 可能是 null
+        final float confidence;
+
+        Line(String text, Rect box, float confidence) {
+            this.text = text;
+            this.box = box;
+            this.confidence = confidence;
+        }
+    }
+
+    static List<Line> linesOf(Text result) {
+        if (result == null) return Collections.emptyList();
+        List<Line> out = new ArrayList<>();
+        for (Text.TextBlock block : result.getTextBlocks()) {
+            for (Text.Line line : block.getLines()) {
+                String t = line.getText();
+                if (t == null || t.trim().isEmpty()) continue;
+                out.add(new Line(t, line.getBoundingBox(), line.getConfidence()));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 只有一邊結果時可不可以直接用（不等另一邊）
+     */
+    static boolean isHighConfidence(List<Line> lines) {
+        if (lines.isEmpty()) return false;
+        float sum = 0f;
+        for (Line l : lines) {
+            if (l.confidence < HIGH_CONF_LINE_MIN) return false;
+            sum += l.confidence;
+        }
+        return sum / lines.size() >= HIGH_CONF_MEAN_MIN;
+    }
+
+    static List<Line> merge(List<Line> zh, List<Line> en) {
+        List<Line> out = new ArrayList<>(zh);
+        boolean[] replaced = new boolean[zh.size()];
+
+        for (Line e : en) {
+            int best = -1;
+            float bestIou = 0f;
+            for (int i = 0; i < zh.size(); i++) {
+                float iou = iou(zh.get(i).box, e.box);
+                if (iou > bestIou) {
+                    bestIou = iou;
+                    best = i;
+                }
+            }
+
+            if (best < 0 || bestIou < SAME_LINE_IOU) {
+                out.add(e);               // 中文模型漏掉的行
+                continue;
+            }
+            if (replaced[best]) continue; // 同一行已經換過一次
+
+            Line z = zh.get(best);
+            boolean zhHasCjk = hasCjk(z.text) && !hasCjk(e.text);
+            if (!zhHasCjk && e.confidence > z.confidence) {
+                out.set(best, e);
+                replaced[best] = true;
+            }
+        }
+
+        sortReadingOrder(out);
+        return out;
+    }
+
+    static String join(List<Line> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (Line l : lines) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(l.text);
+        }
+        return sb.toString();
+    }
+
+    // ===============================
+    // 工具方法
+    // ===============================
+    private static float iou(Rect a, Rect b) {
+        if (a == null || b == null) return 0f;
+        int w = Math.min(a.right, b.right) - Math.max(a.left, b.left);
+        int h = Math.min(a.bottom, b.bottom) - Math.max(a.top, b.top);
+        if (w <= 0 || h <= 0) return 0f;
+        long inter = (long) w * h;
+        long union = (long) a.width() * a.height() + (long) b.width() * b.height() - inter;
+        return union <= 0 ? 0f : (float) inter / union;
+    }
+
+    /**
+     * 先依 top 排，再把垂直中心差不到半個行高的併成同一列、列內依 left 排；
+     * 沒有框的排最後（分兩步排，避免比較器不具遞移性）
+     */
+    private static void sortReadingOrder(List<Line> lines) {
+        List<Line> boxed = new ArrayList<>(lines.size());
+        List<Line> unboxed = new ArrayList<>();
+        for (Line l : lines) {
+            if (l.box == null) unboxed.add(l);
+            else boxed.add(l);
+        }
+        Collections.sort(boxed, (a, b) -> Integer.compare(a.box.top, b.box.top));
+
+        lines.clear();
+        int i = 0;
+        while (i < boxed.size()) {
+            Rect head = boxed.get(i).box;
+            int half = Math.max(1, head.height() / 2);
+            int j = i + 1;
+            while (j < boxed.size() && Math.abs(boxed.get(j).box.centerY() - head.centerY()) < half) j++;
+
+            List<Line> row = boxed.subList(i, j);
+            Collections.sort(row, (a, b) -> Integer.compare(a.box.left, b.box.left));
+            lines.addAll(row);
+            i = j;
+        }
+        lines.addAll(unboxed);
+    }
+
+    private static boolean hasCjk(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            Character.UnicodeBlock ub = Character.UnicodeBlock.of(s.charAt(i));
+            if (ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
+                    || ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A
+                    || ub == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
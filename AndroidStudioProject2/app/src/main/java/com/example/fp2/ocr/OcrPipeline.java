@@ -0,0 +1,101 @@
+package com.example.fp2.ocr;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.fp2.image.BitmapLoader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一張圖片 → OCR 文字的完整流程
+ *   內容雜湊 → 快取命中就直接回傳
+ *   沒命中 → 縮圖解碼（BitmapLoader）→ 區塊 OCR（RegionOcr）→ 寫回快取
+ *
+ * callback 跑在主執行緒；onFinished 一定在 onSuccess / onError 之後呼叫。
+ */
+public final class OcrPipeline {
+
+    private static final String TAG = "OCR";
+
+    private OcrPipeline() {}
+
+    public static void recognize(Context context, Uri uri, OcrEngine.Callback cb) {
+        Context app = context.getApplicationContext();
+        Handler main = new Handler(Looper.getMainLooper());
+        OcrCache cache = OcrCache.get(app);
+
+        new Thread(() -> {
+            String hash = null;
+            try {
+                hash = cache.hash(uri);
+                OcrCache.Entry hit = cache.lookup(hash);
+                if (hit != null) {
+                    Log.d(TAG, "cache hit " + hash.substring(0, 12));
+                    main.post(() -> {
+                        if (!hit.regions.isEmpty()) cb.onRegions(hit.regions);
+                        cb.onSuccess(hit.text);
+                        cb.onFinished();
+                    });
+                    return;
+                }
+            } catch (Exception e) {
+                // 讀不到就當沒快取，交給解碼那一步回報錯誤
+                Log.w(TAG, "hash failed: " + uri, e);
+            }
+
+            final String key = hash;
+            main.post(() -> runOcr(app, uri, key, cb));
+        }).start();
+    }
+
+    private static void runOcr(Context app, Uri uri, String hash, OcrEngine.Callback cb) {
+        BitmapLoader loader = BitmapLoader.get(app);
+        loader.decodeForOcrAsync(uri, new BitmapLoader.Callback() {
+            @Override
+            public void onDecoded(BitmapLoader.Decoded decoded) {
+                final List<Rect> regions = new ArrayList<>();
+
+                RegionOcr.recognize(decoded.bitmap, decoded.rotation, new OcrEngine.Callback() {
+                    @Override
+                    public void onRegions(List<Rect> r) {
+                        regions.addAll(r);
+                        cb.onRegions(r);
+                    }
+
+                    @Override
+                    public void onSuccess(String text) {
+                        if (hash != null) {
+                            OcrCache.Entry entry = new OcrCache.Entry(text, new ArrayList<>(regions));
+                            new Thread(() -> OcrCache.get(app).put(hash, entry)).start();
+                        }
+                        cb.onSuccess(text);
+                    }
+
+                    @Override
+                    public void onError(String message) {
+                        cb.onError(message);
+                    }
+
+                    @Override
+                    public void onFinished() {
+                        // 所有 recognizer 都不再讀這張圖了才還回 pool
+                        loader.release(decoded.bitmap);
+                        cb.onFinished();
+                    }
+                });
+            }
+
+            @Override
+            public void onError(String message) {
+                cb.onError("讀取圖片失敗");
+                cb.onFinished();
+            }
+        });
+    }
+}
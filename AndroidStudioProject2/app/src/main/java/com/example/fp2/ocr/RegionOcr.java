@@ -0,0 +1,110 @@
+package com.example.fp2.ocr;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.google.mlkit.vision.common.InputImage;
+
+import java.util.List;
+
+/**
+ * 先找文字區塊（TextRegionDetector）再只 OCR 那些裁切，
+ * 狀態列 / 鍵盤 / 頭像不會進到送後端的文字裡。
+ *
+ * 找不到區塊、或圖有 EXIF 旋轉（相機照片，不是截圖）時，退回整張圖 OCR。
+ * callback 跑在主執行緒；onFinished 之後 src 才可以回收。
+ */
+public final class RegionOcr {
+
+    private static final String TAG = "OCR";
+
+    private RegionOcr() {}
+
+    public static void recognize(Bitmap src, int rotation, OcrEngine.Callback cb) {
+        Handler main = new Handler(Looper.getMainLooper());
+
+        if (rotation != 0) {
+            OcrEngine.get().recognize(InputImage.fromBitmap(src, rotation), cb);
+            return;
+        }
+
+        new Thread(() -> {
+            List<Rect> regions;
+            try {
+                regions = TextRegionDetector.detect(src);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "region detect failed, use whole image", e);
+                regions = null;
+            }
+
+            if (regions == null || regions.isEmpty()) {
+                main.post(() -> OcrEngine.get().recognize(InputImage.fromBitmap(src, 0), cb));
+                return;
+            }
+
+            Bitmap[] crops = new Bitmap[regions.size()];
+            for (int i = 0; i < crops.length; i++) {
+                Rect r = regions.get(i);
+                crops[i] = Bitmap.createBitmap(src, r.left, r.top, r.width(), r.height());
+            }
+            Log.d(TAG, "regions=" + crops.length);
+
+            final List<Rect> found = regions;
+            main.post(() -> {
+                cb.onRegions(found);
+                recognizeCrops(src, crops, cb);
+            });
+        }).start();
+    }
+
+    /**
+     * 每個裁切各自送 OcrEngine（同時跑），全部回來後照區塊順序（上 → 下）接起來
+     */
+    private static void recognizeCrops(Bitmap src, Bitmap[] crops, OcrEngine.Callback cb) {
+        final String[] texts = new String[crops.length];
+        final int[] pending = {crops.length};      // 還沒 onSuccess / onError 的
+        final int[] running = {crops.length};      // 還沒 onFinished 的
+        final String[] lastError = {null};
+
+        for (int i = 0; i < crops.length; i++) {
+            final int idx = i;
+            OcrEngine.get().recognize(InputImage.fromBitmap(crops[i], 0), new OcrEngine.Callback() {
+                @Override
+                public void onSuccess(String text) {
+                    texts[idx] = text;
+                    if (--pending[0] == 0) deliver(texts, lastError[0], cb);
+                }
+
+                @Override
+                public void onError(String message) {
+                    lastError[0] = message;
+                    if (--pending[0] == 0) deliver(texts, lastError[0], cb);
+                }
+
+                @Override
+                public void onFinished() {
+                    if (crops[idx] != src) crops[idx].recycle(); // 裁切等於原圖時不能回收
+                    if (--running[0] == 0) cb.onFinished();
+                }
+            });
+        }
+    }
+
+    private static void deliver(String[] texts, String lastError, OcrEngine.Callback cb) {
+        StringBuilder sb = new StringBuilder();
+        boolean any = false;
+        for (String t : texts) {
+            if (t == null) continue;
+            any = true;
+            if (TextUtils.isEmpty(t.trim())) continue;
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(t.trim());
+        }
+        if (!any) cb.onError(lastError);
+        else cb.onSuccess(sb.toString());
+    }
+}
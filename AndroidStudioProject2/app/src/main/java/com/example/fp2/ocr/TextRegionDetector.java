@@ -0,0 +1,206 @@
+package com.example.fp2.ocr;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 找出截圖裡「字很密」的區塊（聊天泡泡 / 簡訊內文），OCR 只跑這些區塊
+ *
+ * 做法（全部在縮到 ANALYSIS_WIDTH 寬的灰階圖上）：
+ * 1) 水平亮度差 > EDGE_DIFF 當作筆畫邊緣
+ * 2) 每一列邊緣夠多就是「有字的列」，連續的列併成一行（band）
+ * 3) 行距近、左右有重疊的行再併成一塊（泡泡）
+ * 4) 丟掉：最上面的狀態列、貼底的整排滿寬區塊（鍵盤）、靠邊的小方塊（頭像）
+ *
+ * 回傳原圖座標的 Rect；找不到、或區塊幾乎蓋滿整張圖時回空清單（= 整張圖直接 OCR）。
+ * 阻塞執行，不可在主執行緒呼叫。
+ */
+final class TextRegionDetector {
+
+    private static final int ANALYSIS_WIDTH = 360;
+    private static final int EDGE_DIFF = 40;
+    private static final float ROW_DENSITY = 0.02f;  // 一列至少 2% 的像素是邊緣
+    private static final int ROW_GAP = 2;            // 行內允許的空白列
+    private static final int MIN_BAND_HEIGHT = 4;
+    private static final int PAD = 6;                // 分析座標的外擴量
+    private static final int MIN_CROP = 32;          // ML Kit 最小輸入尺寸
+    private static final int MAX_REGIONS = 12;
+    private static final float MAX_COVERAGE = 0.8f;
+
+    private TextRegionDetector() {}
+
+    static List<Rect> detect(Bitmap src) {
+        List<Rect> none = new ArrayList<>();
+        int sw = src.getWidth();
+        int sh = src.getHeight();
+        if (sw < ANALYSIS_WIDTH || sh < ANALYSIS_WIDTH) return none; // 小圖直接整張跑
+
+        float scale = (float) sw / ANALYSIS_WIDTH;
+        int w = ANALYSIS_WIDTH;
+        int h = Math.max(1, Math.round(sh / scale));
+
+        Bitmap small = Bitmap.createScaledBitmap(src, w, h, true);
+        int[] px = new int[w * h];
+        small.getPixels(px, 0, w, 0, 0, w, h);
+        if (small != src) small.recycle();
+
+        // ===== 1) 邊緣圖 + 每列密度 =====
+        boolean[] edge = new boolean[w * h];
+        int[] rowCount = new int[h];
+        for (int y = 0; y < h; y++) {
+            int prev = luma(px[y * w]);
+            for (int x = 1; x < w; x++) {
+                int cur = luma(px[y * w + x]);
+                if (Math.abs(cur - prev) > EDGE_DIFF) {
+                    edge[y * w + x] = true;
+                    rowCount[y]++;
+                }
+                prev = cur;
+            }
+        }
+
+        // ===== 2) 行（band）=====
+        int minRow = Math.max(1, Math.round(w * ROW_DENSITY));
+        List<Rect> bands = new ArrayList<>();
+        int start = -1, lastText = -1;
+        for (int y = 0; y <= h; y++) {
+            boolean texty = y < h && rowCount[y] >= minRow;
+            if (texty) {
+                if (start < 0) start = y;
+                lastText = y;
+            } else if (start >= 0 && (y == h || y - lastText > ROW_GAP)) {
+                if (lastText - start + 1 >= MIN_BAND_HEIGHT) {
+                    bands.add(bandBox(edge, w, start, lastText));
+                }
+                start = -1;
+            }
+        }
+        if (bands.isEmpty()) return none;
+
+        // ===== 3) 併成區塊 =====
+        List<Rect> blocks = new ArrayList<>();
+        Rect cur = new Rect(bands.get(0));
+        int lineH = cur.height();
+        for (int i = 1; i < bands.size(); i++) {
+            Rect b = bands.get(i);
+            int gap = b.top - cur.bottom;
+            if (gap <= Math.round(lineH * 1.2f) && overlapRatio(cur, b) > 0.5f) {
+                cur.union(b);
+            } else {
+                blocks.add(cur);
+                cur = new Rect(b);
+            }
+            lineH = b.height();
+        }
+        blocks.add(cur);
+
+        // ===== 4) 過濾 =====
+        boolean tall = h >= w * 1.6f; // 手機截圖才有狀態列 / 鍵盤
+        if (tall) {
+            dropStatusBar(blocks, h);
+            dropKeyboard(blocks, w, h);
+        }
+        dropAvatars(blocks, w);
+
+        if (blocks.isEmpty() || blocks.size() > MAX_REGIONS) return none;
+
+        // ===== 5) 回原圖座標 =====
+        List<Rect> out = new ArrayList<>(blocks.size());
+        long area = 0;
+        for (Rect b : blocks) {
+            Rect r = new Rect(
+                    Math.round((b.left - PAD) * scale),
+                    Math.round((b.top - PAD) * scale),
+                    Math.round((b.right + PAD) * scale),
+                    Math.round((b.bottom + PAD) * scale));
+            ensureMin(r, sw, sh);
+            area += (long) r.width() * r.height();
+            out.add(r);
+        }
+        if (area >= (long) sw * sh * MAX_COVERAGE) return none;
+        return out;
+    }
+
+    // ===============================
+    // 過濾
+    // ===============================
+
+    /** 完全落在最上面 4.5% 的區塊（時間 / 電量 / 訊號） */
+    private static void dropStatusBar(List<Rect> blocks, int h) {
+        int limit = Math.round(h * 0.045f);
+        for (int i = blocks.size() - 1; i >= 0; i--) {
+            if (blocks.get(i).bottom <= limit) blocks.remove(i);
+        }
+    }
+
+    /**
+     * 鍵盤：從最底下往上、幾乎滿寬、貼到底、位在下半部、
+     * 而且佔高度 >= 22% 的一段區塊
+     */
+    private static void dropKeyboard(List<Rect> blocks, int w, int h) {
+        if (blocks.isEmpty()) return;
+        Rect last = blocks.get(blocks.size() - 1);
+        if (last.bottom < h * 0.93f) return;
+
+        int first = blocks.size();
+        for (int i = blocks.size() - 1; i >= 0; i--) {
+            Rect b = blocks.get(i);
+            if (b.width() < w * 0.85f || b.top < h * 0.5f) break;
+            first = i;
+        }
+        if (first == blocks.size()) return;
+        int top = blocks.get(first).top;
+        if (h - top < h * 0.22f) return;
+
+        while (blocks.size() > first) blocks.remove(blocks.size() - 1);
+    }
+
+    /** 靠左右邊緣、接近正方形的小區塊 */
+    private static void dropAvatars(List<Rect> blocks, int w) {
+        int maxSide = Math.round(w * 0.14f);
+        for (int i = blocks.size() - 1; i >= 0; i--) {
+            Rect b = blocks.get(i);
+            if (b.width() > maxSide || b.height() > maxSide * 1.3f) continue;
+            float aspect = (float) b.width() / Math.max(1, b.height());
+            boolean nearEdge = b.left < w * 0.2f || b.right > w * 0.8f;
+            if (nearEdge && aspect > 0.7f && aspect < 1.4f) blocks.remove(i);
+        }
+    }
+
+    // ===============================
+    // 工具方法
+    // ===============================
+    private static Rect bandBox(boolean[] edge, int w, int top, int bottom) {
+        int left = w, right = -1;
+        for (int y = top; y <= bottom; y++) {
+            for (int x = 0; x < w; x++) {
+                if (!edge[y * w + x]) continue;
+                if (x < left) left = x;
+                if (x > right) right = x;
+            }
+        }
+        return new Rect(Math.min(left, right), top, right + 1, bottom + 1);
+    }
+
+    private static float overlapRatio(Rect a, Rect b) {
+        int o = Math.min(a.right, b.right) - Math.max(a.left, b.left);
+        if (o <= 0) return 0f;
+        return (float) o / Math.max(1, Math.min(a.width(), b.width()));
+    }
+
+    private static void ensureMin(Rect r, int sw, int sh) {
+        if (r.width() < MIN_CROP) r.inset(-(MIN_CROP - r.width() + 1) / 2, 0);
+        if (r.height() < MIN_CROP) r.inset(0, -(MIN_CROP - r.height() + 1) / 2);
+        r.intersect(0, 0, sw, sh);
+    }
+
+    private static int luma(int c) {
+        int r = (c >> 16) & 0xFF;
+        int g = (c >> 8) & 0xFF;
+        int b = c & 0xFF;
+        return (r * 299 + g * 587 + b * 114) / 1000;
+    }
+}
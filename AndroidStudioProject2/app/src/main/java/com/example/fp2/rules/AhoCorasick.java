@@ -0,0 +1,146 @@
+package com.example.fp2.rules;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho–Corasick 多關鍵字比對（一次掃過全文，跟關鍵字數量無關）
+ * - 轉移表用 open addressing（key = state << 16 | char），不用 boxing
+ * - 每個狀態的輸出已合併 fail 鏈上的輸出，比對時不用再走 fail 找輸出
+ *
+ * 建好之後唯讀，可以多執行緒共用。
+ */
+final class AhoCorasick {
+
+    interface Sink {
+        void onMatch(int pattern, int start, int end); // [start, end)
+    }
+
+    private final int[] patternLength;
+    private final int[] fail;
+    private final int[][] output;
+
+    // 轉移表
+    private final long[] keys;
+    private final int[] values;
+    private final int mask;
+
+    private AhoCorasick(int[] patternLength, int[] fail, int[][] output, long[] keys, int[] values) {
+        this.patternLength = patternLength;
+        this.fail = fail;
+        this.output = output;
+        this.keys = keys;
+        this.values = values;
+        this.mask = keys.length - 1;
+    }
+
+    static AhoCorasick build(List<String> patterns) {
+        // ===== 1) trie =====
+        List<Map<Character, Integer>> next = new ArrayList<>();
+        List<List<Integer>> out = new ArrayList<>();
+        next.add(new HashMap<>());
+        out.add(new ArrayList<>());
+
+        int[] lengths = new int[patterns.size()];
+        for (int p = 0; p < patterns.size(); p++) {
+            String s = patterns.get(p);
+            lengths[p] = s.length();
+            int state = 0;
+            for (int i = 0; i < s.length(); i++) {
+                Integer to = next.get(state).get(s.charAt(i));
+                if (to == null) {
+                    to = next.size();
+                    next.add(new HashMap<>());
+                    out.add(new ArrayList<>());
+                    next.get(state).put(s.charAt(i), to);
+                }
+                state = to;
+            }
+            if (!s.isEmpty()) out.get(state).add(p);
+        }
+
+        // ===== 2) fail（BFS）=====
+        int n = next.size();
+        int[] fail = new int[n];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : next.get(0).values()) queue.add(child);
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (Map.Entry<Character, Integer> e : next.get(s).entrySet()) {
+                char c = e.getKey();
+                int child = e.getValue();
+                int f = fail[s];
+                while (f != 0 && !next.get(f).containsKey(c)) f = fail[f];
+                Integer to = next.get(f).get(c);
+                fail[child] = (to == null || to == child) ? 0 : to;
+                // BFS 保證 fail[child] 比較淺、輸出已合併好
+                out.get(child).addAll(out.get(fail[child]));
+                queue.add(child);
+            }
+        }
+
+        int[][] output = new int[n][];
+        for (int s = 0; s < n; s++) {
+            List<Integer> o = out.get(s);
+            output[s] = new int[o.size()];
+            for (int i = 0; i < o.size(); i++) output[s][i] = o.get(i);
+        }
+
+        // ===== 3) 轉移表壓平 =====
+        int edges = 0;
+        for (Map<Character, Integer> m : next) edges += m.size();
+        int cap = Integer.highestOneBit(Math.max(4, edges * 2 - 1)) << 1; // 負載 <= 0.5
+        long[] keys = new long[cap];
+        int[] values = new int[cap];
+        Arrays.fill(keys, -1L);
+        for (int s = 0; s < n; s++) {
+            for (Map.Entry<Character, Integer> e : next.get(s).entrySet()) {
+                long key = ((long) s << 16) | e.getKey();
+                int i = slot(key, cap - 1);
+                while (keys[i] != -1L) i = (i + 1) & (cap - 1);
+                keys[i] = key;
+                values[i] = e.getValue();
+            }
+        }
+        return new AhoCorasick(lengths, fail, output, keys, values);
+    }
+
+    /**
+     * 掃描 text[0, len)，每個命中（依結束位置順序）呼叫 sink
+     */
+    void scan(char[] text, int len, Sink sink) {
+        int state = 0;
+        for (int i = 0; i < len; i++) {
+            char c = text[i];
+            int to;
+            while ((to = step(state, c)) < 0 && state != 0) state = fail[state];
+            state = to < 0 ? 0 : to;
+            int[] o = output[state];
+            for (int p : o) sink.onMatch(p, i + 1 - patternLength[p], i + 1);
+        }
+    }
+
+    int stateCount() {
+        return fail.length;
+    }
+
+    private int step(int state, char c) {
+        long key = ((long) state << 16) | c;
+        int i = slot(key, mask);
+        while (true) {
+            long k = keys[i];
+            if (k == key) return values[i];
+            if (k == -1L) return -1;
+            i = (i + 1) & mask;
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+}
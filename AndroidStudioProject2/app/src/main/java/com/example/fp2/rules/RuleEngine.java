@@ -0,0 +1,350 @@
+package com.example.fp2.rules;
+
+import com.example.fp2.model.ApiResponse;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本機規則引擎（對應後端 rule_check）
+ * - 規則放在 assets/rules/scam_rules.json（有版本號），關鍵字編成一台 Aho–Corasick，一次掃完全文
+ * - 比對前用 TextNormalizer 統一：簡體 → 繁體、全形 → 半形、英文小寫、去掉空白
+ * - 結果包成 ApiResponse（analysis 帶 provisional=true），後端結果回來前先顯示
+ *
+ * 純 Java（不碰 android.*），可以直接在 JVM 單元測試裡跑。
+ */
+public final class RuleEngine {
+
+    public static final String ASSET = "rules/scam_rules.json";
+    public static final String SOURCE = "local_rules";
+
+    private static final int LOW = 0;
+    private static final int MEDIUM = 1;
+    private static final int HIGH = 2;
+    private static final String[] LEVEL = {"low", "medium", "high"};
+
+    private static volatile RuleEngine INSTANCE;
+
+    /**
+     * App 啟動時在背景載入後呼叫
+     */
+    public static void install(RuleEngine engine) {
+        INSTANCE = engine;
+    }
+
+    /**
+     * @return 還沒載入完回 null
+     */
+    public static RuleEngine get() {
+        return INSTANCE;
+    }
+
+    /**
+     * 用已安裝的規則產生暫時結果；規則還沒載入或什麼都沒命中就回 null
+     */
+    public static ApiResponse provisional(String text) {
+        RuleEngine e = INSTANCE;
+        if (e == null || text == null || text.isEmpty()) return null;
+        Verdict v = e.check(text);
+        return v.hasHits() ? v.toApiResponse() : null;
+    }
+
+    // ===============================
+    // 規則
+    // ===============================
+    private static final class Rule {
+        final String code;   // 類別 code（動作規則為 null）
+        final String name;   // 顯示名稱 / 動作標籤
+        final int floor;
+        final boolean action;
+
+        Rule(String code, String name, int floor, boolean action) {
+            this.code = code;
+            this.name = name;
+            this.floor = floor;
+            this.action = action;
+        }
+    }
+
+    private final int version;
+    private final int shortTextLen;
+    private final Rule[] rules;
+    private final int[] clauseRule;    // clause → rule
+    private final int[] clauseSteps;   // clause 要依序命中幾組
+    private final int[][] targets;     // pattern → (clause << 8 | step)
+    private final int[][] escalate;    // 同時命中就升 high 的類別 rule index 組合
+    private final AhoCorasick automaton;
+
+    private RuleEngine(int version, int shortTextLen, Rule[] rules, int[] clauseRule, int[] clauseSteps,
+                       int[][] targets, int[][] escalate, AhoCorasick automaton) {
+        this.version = version;
+        this.shortTextLen = shortTextLen;
+        this.rules = rules;
+        this.clauseRule = clauseRule;
+        this.clauseSteps = clauseSteps;
+        this.targets = targets;
+        this.escalate = escalate;
+        this.automaton = automaton;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    // ===============================
+    // 載入
+    // ===============================
+    public static RuleEngine load(InputStream in) throws IOException {
+        try (Reader r = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return parse(JsonParser.parseReader(r).getAsJsonObject());
+        } catch (IllegalStateException | com.google.gson.JsonParseException e) {
+            throw new IOException("bad rule file: " + e.getMessage(), e);
+        }
+    }
+
+    private static RuleEngine parse(JsonObject root) {
+        List<Rule> rules = new ArrayList<>();
+        List<Integer> clauseRule = new ArrayList<>();
+        List<Integer> clauseSteps = new ArrayList<>();
+        Map<String, Integer> patternIds = new HashMap<>();
+        List<String> patterns = new ArrayList<>();
+        List<List<Integer>> targets = new ArrayList<>();
+        Map<String, Integer> ruleByCode = new HashMap<>();
+
+        JsonArray cats = root.getAsJsonArray("categories");
+        JsonArray acts = root.getAsJsonArray("actions");
+        List<JsonObject> all = new ArrayList<>();
+        if (cats != null) for (JsonElement e : cats) all.add(e.getAsJsonObject());
+        int categoryCount = all.size();
+        if (acts != null) for (JsonElement e : acts) all.add(e.getAsJsonObject());
+
+        for (int i = 0; i < all.size(); i++) {
+            JsonObject o = all.get(i);
+            boolean action = i >= categoryCount;
+            Rule rule = action
+                    ? new Rule(null, str(o, "label"), LOW, true)
+                    : new Rule(str(o, "code"), str(o, "name"), levelOf(str(o, "floor")), false);
+            int ruleIdx = rules.size();
+            rules.add(rule);
+            if (!action) ruleByCode.put(rule.code, ruleIdx);
+
+            // any：單一步驟，任何一個關鍵字就算
+            if (o.has("any")) {
+                List<List<String>> steps = Collections.singletonList(strings(o.getAsJsonArray("any")));
+                addClause(steps, ruleIdx, clauseRule, clauseSteps, patternIds, patterns, targets);
+            }
+            // seq：每組依序至少命中一個
+            if (o.has("seq")) {
+                for (JsonElement seq : o.getAsJsonArray("seq")) {
+                    List<List<String>> steps = new ArrayList<>();
+                    for (JsonElement group : seq.getAsJsonArray()) steps.add(strings(group.getAsJsonArray()));
+                    addClause(steps, ruleIdx, clauseRule, clauseSteps, patternIds, patterns, targets);
+                }
+            }
+        }
+
+        List<int[]> escalate = new ArrayList<>();
+        if (root.has("escalate_high")) {
+            for (JsonElement combo : root.getAsJsonArray("escalate_high")) {
+                List<String> codes = strings(combo.getAsJsonArray());
+                int[] idx = new int[codes.size()];
+                boolean ok = !codes.isEmpty();
+                for (int i = 0; i < idx.length; i++) {
+                    Integer r = ruleByCode.get(codes.get(i));
+                    if (r == null) ok = false;
+                    else idx[i] = r;
+                }
+                if (ok) escalate.add(idx);
+            }
+        }
+
+        int[][] targetArr = new int[targets.size()][];
+        for (int p = 0; p < targets.size(); p++) {
+            List<Integer> t = targets.get(p);
+            targetArr[p] = new int[t.size()];
+            for (int i = 0; i < t.size(); i++) targetArr[p][i] = t.get(i);
+        }
+
+        return new RuleEngine(
+                root.has("version") ? root.get("version").getAsInt() : 0,
+                root.has("short_text_len") ? root.get("short_text_len").getAsInt() : 0,
+                rules.toArray(new Rule[0]),
+                toIntArray(clauseRule),
+                toIntArray(clauseSteps),
+                targetArr,
+                escalate.toArray(new int[0][]),
+                AhoCorasick.build(patterns)
+        );
+    }
+
+    private static void addClause(List<List<String>> steps, int ruleIdx,
+                                  List<Integer> clauseRule, List<Integer> clauseSteps,
+                                  Map<String, Integer> patternIds, List<String> patterns,
+                                  List<List<Integer>> targets) {
+        if (steps.isEmpty() || steps.size() > 0xFF) return;
+        int clause = clauseRule.size();
+        clauseRule.add(ruleIdx);
+        clauseSteps.add(steps.size());
+        for (int step = 0; step < steps.size(); step++) {
+            for (String kw : steps.get(step)) {
+                String norm = TextNormalizer.key(kw);
+                if (norm.isEmpty()) continue;
+                Integer id = patternIds.get(norm);
+                if (id == null) {
+                    id = patterns.size();
+                    patternIds.put(norm, id);
+                    patterns.add(norm);
+                    targets.add(new ArrayList<>());
+                }
+                int t = (clause << 8) | step;
+                if (!targets.get(id).contains(t)) targets.get(id).add(t);
+            }
+        }
+    }
+
+    // ===============================
+    // 比對
+    // ===============================
+    public Verdict check(CharSequence text) {
+        TextNormalizer normalizer = TextNormalizer.local();
+        int len = normalizer.normalize(text);
+        char[] buf = normalizer.buffer();
+
+        int[] progress = new int[clauseRule.length];
+        int[] lastEnd = new int[clauseRule.length];
+        boolean[] hit = new boolean[rules.length];
+
+        automaton.scan(buf, len, (pattern, start, end) -> {
+            for (int t : targets[pattern]) {
+                int clause = t >>> 8;
+                int step = t & 0xFF;
+                if (hit[clauseRule[clause]]) continue;
+                // 依序：這組要接在上一組命中之後（取最早結束的，貪婪即最佳）
+                if (step != progress[clause] || start < lastEnd[clause]) continue;
+                progress[clause]++;
+                lastEnd[clause] = end;
+                if (progress[clause] == clauseSteps[clause]) hit[clauseRule[clause]] = true;
+            }
+        });
+
+        List<String> codes = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> actions = new ArrayList<>();
+        int floor = LOW;
+        int highHits = 0;
+        for (int r = 0; r < rules.length; r++) {
+            if (!hit[r]) continue;
+            Rule rule = rules[r];
+            if (rule.action) {
+                actions.add(rule.name);
+            } else {
+                codes.add(rule.code);
+                names.add(rule.name);
+                floor = Math.max(floor, rule.floor);
+                if (rule.floor == HIGH) highHits++;
+            }
+        }
+
+        // 組合升級（同後端）：例如「轉帳 + 安全帳戶」、「假檢警 + OTP」
+        for (int[] combo : escalate) {
+            boolean all = true;
+            for (int r : combo) all &= hit[r];
+            if (all) floor = HIGH;
+        }
+        if (highHits >= 2) floor = HIGH;
+
+        // 很短但有命中 → 至少 medium
+        if (len < shortTextLen && (!codes.isEmpty() || !actions.isEmpty()) && floor == LOW) floor = MEDIUM;
+
+        return new Verdict(LEVEL[floor], codes, names, actions, version);
+    }
+
+    public static final class Verdict {
+        public final String risk;              // low / medium / high
+        public final List<String> categories;  // 類別 code
+        public final List<String> names;       // 類別顯示名稱
+        public final List<String> actions;     // 被要求的動作
+        public final int rulesVersion;
+
+        Verdict(String risk, List<String> categories, List<String> names, List<String> actions, int rulesVersion) {
+            this.risk = risk;
+            this.categories = categories;
+            this.names = names;
+            this.actions = actions;
+            this.rulesVersion = rulesVersion;
+        }
+
+        public boolean hasHits() {
+            return !categories.isEmpty() || !actions.isEmpty();
+        }
+
+        /**
+         * 跟後端 /analyze_text 同形狀，ResultFormatter 可以直接用
+         */
+        public ApiResponse toApiResponse() {
+            ApiResponse r = new ApiResponse();
+            r.risk = risk;
+            r.is_scam = !"low".equals(risk);
+            r.scam_type = new ArrayList<>(names);
+            r.reasons = new ArrayList<>();
+            if (!names.isEmpty()) r.reasons.add("本機規則命中：" + String.join("、", names));
+            if (!actions.isEmpty()) r.reasons.add("對方要求：" + String.join("、", actions));
+            r.source = SOURCE;
+
+            JsonObject analysis = new JsonObject();
+            JsonArray matched = new JsonArray();
+            for (int i = 0; i < categories.size(); i++) {
+                JsonObject c = new JsonObject();
+                c.addProperty("code", categories.get(i));
+                c.addProperty("name", names.get(i));
+                matched.add(c);
+            }
+            JsonArray acts = new JsonArray();
+            for (String a : actions) acts.add(a);
+            analysis.add("matched_categories", matched);
+            analysis.add("actions_requested", acts);
+            analysis.addProperty("rule_floor", risk);
+            analysis.addProperty("rules_version", rulesVersion);
+            analysis.addProperty("provisional", true);
+            r.analysis = analysis;
+            return r;
+        }
+    }
+
+    // ===============================
+    // 工具方法
+    // ===============================
+    private static int levelOf(String floor) {
+        if ("high".equalsIgnoreCase(floor)) return HIGH;
+        if ("medium".equalsIgnoreCase(floor)) return MEDIUM;
+        return LOW;
+    }
+
+    private static String str(JsonObject o, String key) {
+        return o.has(key) && !o.get(key).isJsonNull() ? o.get(key).getAsString() : "";
+    }
+
+    private static List<String> strings(JsonArray a) {
+        List<String> out = new ArrayList<>(a.size());
+        for (JsonElement e : a) out.add(e.getAsString());
+        return out;
+    }
+
+    private static int[] toIntArray(List<Integer> xs) {
+        int[] out = new int[xs.size()];
+        for (int i = 0; i < out.length; i++) out[i] = xs.get(i);
+        return out;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.fp2.rules;
+
+/**
+ * 文字正規化（對應後端 to_trad + _norm），查表一次一個字元：
+ * - 簡體 → 繁體（詐騙訊息常見用字）
+ * - 全形 ASCII → 半形、英文小寫
+ * - 空白（含全形空白、NBSP）與零寬字元直接去掉
+ *
+ * 用途：規則比對、analyzeText 快取 key、OCR 行比對去重。
+ * 每個執行緒一個實例（local()），輸出寫在可重用的 char[]，穩定後不配置記憶體。
+ */
+public final class TextNormalizer {
+
+    private static final char DROP = 0;
+
+    // 成對：簡體字, 繁體字
+    private static final String S2T =
+            "验驗证證码碼读讀机機柜櫃转轉账帳帐帳远遠协協连連线線监監号號专專户戶单單钱錢资資异異"
+                    + "冻凍结結锁鎖将將汇匯现現银銀该該链鏈维維扫掃录錄挂掛断斷话話别別员員级級诉訴装裝应應"
+                    + "载載开開启啟权權关關税稅检檢缉緝侦偵办辦飙飆带帶组組获獲报報虚虛拟擬货貨币幣恋戀爱愛"
+                    + "网網费費帮幫复複订訂赔賠额額测測试試说說输輸发發写寫缴繳内內诈詐骗騙点點击擊动動态態"
+                    + "简簡讯訊临臨领領处處马馬时時务務违違传傳们們这這个個请請为為认認确確会會让讓给給还還"
+                    + "对對过過进進与與从從后後长長门門问問间間难難头頭见見买買卖賣实實经經电電视視频頻库庫"
+                    + "样樣紧緊严嚴罚罰卫衛区區华華国國际際邮郵递遞绑綁册冊诚誠优優众眾积積压壓";
+
+    private static final char[] TABLE = buildTable();
+
+    private static char[] buildTable() {
+        char[] t = new char[Character.MAX_VALUE + 1];
+        for (int c = 0; c < t.length; c++) {
+            t[c] = Character.isWhitespace((char) c) ? DROP : (char) c;
+        }
+        t[0x00A0] = DROP; // NBSP（isWhitespace 不算）
+        t[0x200B] = DROP; // 零寬空白 / 連接字元：常被拿來拆關鍵字
+        t[0x200C] = DROP;
+        t[0x200D] = DROP;
+        t[0xFEFF] = DROP;
+        for (int c = 'A'; c <= 'Z'; c++) t[c] = (char) (c + ('a' - 'A'));
+        // 全形 ASCII（！～）→ 半形，再轉小寫
+        for (int c = 0xFF01; c <= 0xFF5E; c++) t[c] = t[c - 0xFEE0];
+        for (int i = 0; i + 1 < S2T.length(); i += 2) t[S2T.charAt(i)] = S2T.charAt(i + 1);
+        return t;
+    }
+
+    private static final ThreadLocal<TextNormalizer> LOCAL = new ThreadLocal<TextNormalizer>() {
+        @Override
+        protected TextNormalizer initialValue() {
+            return new TextNormalizer();
+        }
+    };
+
+    /**
+     * 目前執行緒的實例（buffer 跟著執行緒重用）
+     */
+    public static TextNormalizer local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * 單一字元的正規化結果；0 代表要丟掉
+     */
+    public static char fold(char c) {
+        return TABLE[c];
+    }
+
+    /**
+     * 一次性的正規化字串（快取 key / 去重 key 用）
+     */
+    public static String key(CharSequence s) {
+        TextNormalizer n = local();
+        int len = n.normalize(s);
+        return new String(n.buf, 0, len);
+    }
+
+    private char[] buf = new char[256];
+
+    /**
+     * 正規化到內部 buffer，回傳長度；結果用 buffer() 讀，下次呼叫前有效
+     */
+    public int normalize(CharSequence s) {
+        if (s == null) return 0;
+        int n = s.length();
+        if (buf.length < n) buf = new char[Math.max(n, buf.length * 2)];
+        char[] out = buf;
+        int len = 0;
+        for (int i = 0; i < n; i++) {
+            char c = TABLE[s.charAt(i)];
+            if (c != DROP) out[len++] = c;
+        }
+        return len;
+    }
+
+    public char[] buffer() {
+        return buf;
+    }
+}
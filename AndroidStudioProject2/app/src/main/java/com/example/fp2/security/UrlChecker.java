@@ -0,0 +1,260 @@
+package com.example.fp2.security;
+
+import com.example.fp2.BuildConfig;
+import com.example.fp2.net.Unshortener;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 單一網址的完整檢查流程（UrlCheckActivity / 分享入口共用）
+ *   展開短網址 → 可達性檢查 → urlscan → 判別等級 + 摘要 + 建議
+ *
+ * check() 是阻塞呼叫，不可在主執行緒執行。
+ * 連的都是第三方（短網址服務 / 目標網站 / urlscan），不走 RequestScheduler 的後端 lane：
+ * urlscan 輪詢可以等到二十幾秒，包進 lane 會一直佔住額度、把背景分析往後擠。
+ */
+public class UrlChecker {
+
+    // ========= 可達性檢查 =========
+    private static final OkHttpClient reachClient = new OkHttpClient.Builder()
+            .followRedirects(true)
+            .followSslRedirects(true)
+            .callTimeout(10, TimeUnit.SECONDS)
+            .build();
+
+    enum UrlReachState { EXISTS, UNREACHABLE, INVALID }
+
+    static class UrlReachCheckResult {
+        UrlReachState state;
+        String finalUrl;
+    }
+
+    /**
+     * 一個網址的檢查結果
+     */
+    public static class Outcome {
+        public final String orig;       // 使用者給的網址（已補 https://）
+        public final String finalUrl;   // 展開 / 轉址後的網址
+        public final RiskResult rr;
+        public final String verdictZh;  // 網址不存在 / 高風險 / 中風險 / 低風險
+        public final String summary;
+        public final String advice;
+
+        Outcome(String orig, String finalUrl, RiskResult rr, String verdictZh, String summary, String advice) {
+            this.orig = orig;
+            this.finalUrl = finalUrl;
+            this.rr = rr;
+            this.verdictZh = verdictZh;
+            this.summary = summary;
+            this.advice = advice;
+        }
+
+        /** 歷史紀錄：只存中 / 高風險 */
+        public boolean shouldSave() {
+            return verdictZh.equals("高風險") || verdictZh.equals("中風險");
+        }
+
+        public int score() {
+            return rr.score > 0 ? rr.score : 60;
+        }
+
+        /** 結果頁 / 歷史紀錄用的完整文字 */
+        public String pretty() {
+            StringBuilder sb = new StringBuilder();
+
+            sb.append("🔗 測試連結：\n")
+                    .append(orig);
+            if (!orig.equals(finalUrl)) sb.append(" → ").append(finalUrl);
+            sb.append("\n\n");
+
+            sb.append("📌 判別結果：\n")
+                    .append(verdictZh)
+                    .append("\n\n");
+
+            sb.append("📝 摘要：\n")
+                    .append(summary)
+                    .append("\n\n");
+
+            sb.append("⚠️ 建議：\n")
+                    .append(advice)
+                    .append("\n\n");
+            return sb.toString();
+        }
+    }
+
+    private final UrlScanClient scanClient = new UrlScanClient(BuildConfig.URLSCAN_API_KEY);
+
+    // ===============================
+    // 主流程
+    // ===============================
+    public Outcome check(String rawUrl) {
+        final String orig = normalizeUrl(rawUrl);
+
+        // 1️⃣ 展開短網址
+        String target = orig;
+        try {
+            Unshortener.Result ex = new Unshortener().expand(orig);
+            if (ex != null) target = ex.finalUrl;
+        } catch (Exception ignore) {}
+
+        // 2️⃣ 可達性檢查
+        UrlReachCheckResult reach = checkUrlState(target);
+
+        // ❌ 網址不存在
+        if (reach.state == UrlReachState.INVALID) {
+            RiskResult rr = buildSimpleResult(
+                    reach.finalUrl,
+                    "INVALID",
+                    "此網址不存在或可能為拼寫錯誤。"
+            );
+            return classify(orig, reach.finalUrl, rr);
+        }
+
+        // ⚠️ 無法建立連線
+        if (reach.state == UrlReachState.UNREACHABLE) {
+            RiskResult rr = buildSimpleResult(
+                    reach.finalUrl,
+                    "MEDIUM",
+                    "此網址存在，但目前無法建立安全連線。"
+            );
+            return classify(orig, reach.finalUrl, rr);
+        }
+
+        // 3️⃣ urlscan
+        RiskResult rr;
+        try {
+            rr = scanClient.evaluateBlocking(reach.finalUrl);
+        } catch (Exception e) {
+            rr = buildSimpleResult(reach.finalUrl, "MEDIUM", "查詢失敗：" + e.getMessage());
+        }
+        return classify(orig, reach.finalUrl, rr);
+    }
+
+    /**
+     * 離線時的初判：只看網址本身（UrlHeuristics），不展開、不連線
+     * 離線做可達性檢查會把每個網址都判成「不存在」，所以不走 check()
+     */
+    public static Outcome offline(String rawUrl) {
+        String orig = normalizeUrl(rawUrl);
+        UrlHeuristics.Verdict h = UrlHeuristics.score(orig);
+
+        String verdictZh;
+        if (h.score >= UrlHeuristics.HIGH_SCORE) verdictZh = "高風險";
+        else if (h.shouldWarn()) verdictZh = "中風險";
+        else verdictZh = "低風險";
+
+        String summary = "目前無法連線，以下為本機初判（只看網址本身）"
+                + (h.reasons.isEmpty() ? "，未發現明顯異常。" : "：" + String.join("、", h.reasons) + "。")
+                + "\n恢復連線後會自動完成檢查並更新此紀錄。";
+        String advice = "完整檢查完成前，請先不要開啟此連結或輸入任何個人資料。";
+
+        RiskResult rr = new RiskResult(orig, verdictZh, h.score, h.reasons, summary, advice);
+        return new Outcome(orig, orig, rr, verdictZh, summary, advice);
+    }
+
+    // ===============================
+    // ⭐ 判別等級（含釣魚語意判斷）
+    // ===============================
+    private Outcome classify(String orig, String finalUrl, RiskResult rr) {
+        String verdictZh;
+        String summary;
+        String advice;
+
+        String v = rr.verdict == null ? "" : rr.verdict.toUpperCase(Locale.ROOT);
+
+        String content = "";
+        if (rr.summary != null) content += rr.summary;
+        if (rr.reasons != null) {
+            for (String r : rr.reasons) {
+                if (r != null) content += r;
+            }
+        }
+        content = content.toLowerCase();
+
+        if (
+                v.contains("INVALID")
+        ) {
+            verdictZh = "網址不存在";
+            summary = "此網址不存在或可能為拼寫錯誤。";
+            advice =
+                    "請確認網址是否輸入正確，" +
+                            "不要點擊或相信來源不明的連結，" +
+                            "避免提供任何個人資料。";
+
+        } else if (
+                v.contains("HIGH") ||
+                        content.contains("phishing") ||
+                        content.contains("credential") ||
+                        content.contains("social engineering") ||
+                        content.contains("釣魚")
+        ) {
+            verdictZh = "高風險";
+            summary = "判定為高風險，疑似釣魚或詐騙網站。";
+            advice =
+                    "請勿開啟或互動，立即關閉頁面。" +
+                            "不要登入、不輸入個資或一次性驗證碼，" +
+                            "不要下載檔案、不掃描 QR Code，" +
+                            "可透過官方網站或 165 反詐騙專線查證。";
+
+        } else if (
+                v.contains("MEDIUM") ||
+                        content.contains("suspicious") ||
+                        content.contains("可疑")
+        ) {
+            verdictZh = "中風險";
+            summary = "判定為中風險，存在可疑行為，需提高警覺。";
+            advice =
+                    "建議提高警覺，避免登入或輸入個資，" +
+                            "確認網址來源是否可信後再操作。";
+
+        } else {
+            verdictZh = "低風險";
+            summary = "目前未發現明顯異常。";
+            advice =
+                    "風險較低，但仍建議保持警覺，" +
+                            "不要輕易相信或點擊外來連結，" +
+                            "避免提供任何個人資料。";
+        }
+
+        return new Outcome(orig, finalUrl, rr, verdictZh, summary, advice);
+    }
+
+    // ===============================
+    // 工具方法
+    // ===============================
+    private UrlReachCheckResult checkUrlState(String url) {
+        UrlReachCheckResult r = new UrlReachCheckResult();
+        r.finalUrl = url;
+
+        try {
+            Request req = new Request.Builder().url(url).get().build();
+            try (Response res = reachClient.newCall(req).execute()) {
+                r.state = (res.code() >= 200 && res.code() < 400)
+                        ? UrlReachState.EXISTS
+                        : UrlReachState.UNREACHABLE;
+            }
+        } catch (UnknownHostException e) {
+            r.state = UrlReachState.INVALID;
+        } catch (Exception e) {
+            r.state = UrlReachState.UNREACHABLE;
+        }
+        return r;
+    }
+
+    public static String normalizeUrl(String in) {
+        return in.matches("(?i)^https?://.+") ? in : "https://" + in;
+    }
+
+    private RiskResult buildSimpleResult(String url, String verdict, String msg) {
+        ArrayList<String> reasons = new ArrayList<>();
+        reasons.add(msg);
+        return new RiskResult(url, verdict, 0, reasons);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.fp2.security;
+
+import android.util.Patterns;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * 從文字抓網址（Patterns.WEB_URL，去重、保留出現順序）
+ * 網址檢查頁 / 分享入口 / 通知連結守護共用同一套規則。
+ */
+public final class UrlExtractor {
+
+    private UrlExtractor() {}
+
+    public static List<String> extract(CharSequence text) {
+        return extract(text, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 最多取 max 個（通知掃描用，限制每則通知的工作量）
+     */
+    public static List<String> extract(CharSequence text, int max) {
+        LinkedHashSet<String> set = new LinkedHashSet<>();
+        if (text == null) return new ArrayList<>();
+        Matcher m = Patterns.WEB_URL.matcher(text);
+        while (set.size() < max && m.find()) set.add(m.group());
+        return new ArrayList<>(set);
+    }
+}
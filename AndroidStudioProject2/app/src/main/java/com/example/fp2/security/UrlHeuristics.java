@@ -0,0 +1,242 @@
+package com.example.fp2.security;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 純本機的網址風險評分（不連網，微秒等級）
+ * 通知連結守護先用這個篩，分數高才發警告；真正的判定仍要到網址檢查頁跑 urlscan。
+ */
+public final class UrlHeuristics {
+
+    public static final int WARN_SCORE = 50;
+    public static final int HIGH_SCORE = 75;
+
+    private static final Set<String> SHORTENERS = new HashSet<>(Arrays.asList(
+            "bit.ly", "reurl.cc", "tinyurl.com", "t.co", "goo.gl", "is.gd", "ppt.cc",
+            "lihi.cc", "lihi1.com", "lihi.one", "pse.is", "s.id", "cutt.ly",
+            "rebrand.ly", "shorturl.at", "t.ly", "tiny.cc", "ow.ly"
+    ));
+
+    // 很多人共用的網域（免費架站 / 雲端文件 / 表單）：一個子網址有問題不代表整個網域
+    private static final Set<String> SHARED_HOSTS = new HashSet<>(Arrays.asList(
+            "github.io", "gitlab.io", "blogspot.com", "wordpress.com", "wixsite.com", "weebly.com",
+            "web.app", "firebaseapp.com", "netlify.app", "vercel.app", "herokuapp.com", "pages.dev",
+            "workers.dev", "glitch.me", "000webhostapp.com", "notion.site", "google.com", "forms.gle",
+            "dropbox.com", "line.me", "lin.ee", "facebook.com", "fb.me", "medium.com", "linktr.ee"
+    ));
+
+    private static final Set<String> RISKY_TLDS = new HashSet<>(Arrays.asList(
+            "top", "xyz", "icu", "cyou", "vip", "shop", "club", "buzz", "tk", "ml",
+            "ga", "cf", "gq", "work", "rest", "sbs", "monster", "click", "link", "live"
+    ));
+
+    // 常被冒用的機關 / 品牌字樣 → 官方網域（gov 另外看 imitatesGovTw，外國的 gov.uk / cdc.gov 不算）
+    private static final String[][] BRANDS = {
+            {"post", "post.gov.tw"},
+            {"etag", "fetc.net.tw"},
+            {"fetc", "fetc.net.tw"},
+            {"ctbc", "ctbcbank.com"},
+            {"cathay", "cathaybk.com.tw"},
+            {"esun", "esunbank.com"},
+            {"fubon", "fubon.com"},
+            {"line", "line.me"},
+            {"apple", "apple.com"},
+            {"icloud", "icloud.com"},
+            {"shopee", "shopee.tw"},
+            {"momo", "momoshop.com.tw"},
+            {"pchome", "pchome.com.tw"},
+            {"paypal", "paypal.com"},
+            {"amazon", "amazon.com"},
+            {"netflix", "netflix.com"},
+    };
+
+    private static final String[] LURE_WORDS = {
+            "login", "verify", "secure", "account", "update", "refund", "unlock",
+            "confirm", "wallet", "otp", "bonus", "claim", "prize", "gift"
+    };
+
+    private static final Set<String> SECOND_LEVEL = new HashSet<>(Arrays.asList(
+            "com", "net", "org", "gov", "edu", "idv", "co"
+    ));
+
+    private UrlHeuristics() {}
+
+    public static final class Verdict {
+        public final String url;
+        public final int score;            // 0 ~ 100
+        public final List<String> reasons;
+
+        Verdict(String url, int score, List<String> reasons) {
+            this.url = url;
+            this.score = score;
+            this.reasons = reasons;
+        }
+
+        public boolean shouldWarn() {
+            return score >= WARN_SCORE;
+        }
+    }
+
+    public static Verdict score(String rawUrl) {
+        List<String> reasons = new ArrayList<>();
+        String url = rawUrl == null ? "" : rawUrl.trim();
+        String lower = url.toLowerCase(Locale.ROOT);
+
+        boolean https = lower.startsWith("https://");
+        String rest = lower.replaceFirst("^[a-z]+://", "");
+        int slash = indexOfAny(rest, "/?#");
+        String authority = slash < 0 ? rest : rest.substring(0, slash);
+        String path = slash < 0 ? "" : rest.substring(slash);
+
+        int score = 0;
+
+        if (authority.contains("@")) {
+            score += 30;
+            reasons.add("網址含 @，真正的網站在 @ 後面");
+            authority = authority.substring(authority.lastIndexOf('@') + 1);
+        }
+        String host = authority.replaceFirst(":\\d+$", "");
+        if (host.startsWith("www.")) host = host.substring(4);
+
+        if (host.matches("\\d{1,3}(\\.\\d{1,3}){3}")) {
+            score += 35;
+            reasons.add("直接用 IP 位址，不是正常網域");
+        }
+        if (host.contains("xn--")) {
+            score += 30;
+            reasons.add("使用特殊字元網域（可能偽裝成知名網站）");
+        }
+        if (SHORTENERS.contains(host)) {
+            score += 25;
+            reasons.add("短網址，看不到真正的目的地");
+        }
+
+        String[] labels = host.split("\\.");
+        String tld = labels.length > 0 ? labels[labels.length - 1] : "";
+        if (RISKY_TLDS.contains(tld)) {
+            score += 20;
+            reasons.add("網域結尾 ." + tld + " 常見於詐騙網站");
+        }
+
+        String registrable = registrableDomain(labels);
+        boolean impersonated = imitatesGovTw(host);
+        if (impersonated) {
+            score += 30;
+            reasons.add("網址冒用「gov.tw」字樣，但不是政府網域");
+        }
+        for (String[] b : BRANDS) {
+            if (impersonated) break;
+            if (hasToken(host, b[0]) && !registrable.equals(b[1]) && !host.endsWith("." + b[1])) {
+                score += 30;
+                reasons.add("網址冒用「" + b[0] + "」字樣，但不是官方網域");
+                impersonated = true;
+            }
+        }
+
+        // 網域看整段字（otp / gift 不可命中 hotpot / swiftgift），路徑照舊看子字串
+        for (String w : LURE_WORDS) {
+            if (path.contains(w) || hasToken(host, w)) {
+                score += 10;
+                reasons.add("網址含「" + w + "」等誘導字詞");
+                break;
+            }
+        }
+
+        if (labels.length > 4) {
+            score += 10;
+            reasons.add("子網域層數過多");
+        }
+        if (countChar(host, '-') >= 3) {
+            score += 10;
+            reasons.add("網域有很多連字號");
+        }
+        if (countDigits(host) >= 5) {
+            score += 10;
+            reasons.add("網域夾雜大量數字");
+        }
+        if (!https) score += 5;
+        if (url.length() > 120) score += 5;
+
+        return new Verdict(url, Math.min(100, score), reasons);
+    }
+
+    // ===============================
+    // 工具方法
+    // ===============================
+
+    /**
+     * 短網址或共用網域（含子網域）：不能用網域判斷個別網址
+     */
+    public static boolean isSharedHost(String host) {
+        String h = host == null ? "" : host.toLowerCase(Locale.ROOT);
+        if (h.startsWith("www.")) h = h.substring(4);
+        if (SHORTENERS.contains(h)) return true;
+        for (String d : SHARED_HOSTS) {
+            if (h.equals(d) || h.endsWith("." + d)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 簡化版「可註冊網域」：example.com / example.com.tw
+     */
+    static String registrableDomain(String[] labels) {
+        int n = labels.length;
+        if (n <= 2) return String.join(".", labels);
+        boolean ccSecond = labels[n - 1].length() == 2 && SECOND_LEVEL.contains(labels[n - 2]);
+        int take = ccSecond ? 3 : 2;
+        return String.join(".", Arrays.copyOfRange(labels, n - take, n));
+    }
+
+    /**
+     * 網域裡有 gov + tw 的片段（gov-tw.top、gov.tw.example.com、govtw.xyz），但不是真的 .gov.tw
+     */
+    static boolean imitatesGovTw(String host) {
+        if (host.equals("gov.tw") || host.endsWith(".gov.tw")) return false;
+        boolean gov = false;
+        boolean tw = false;
+        for (String token : host.split("[.\\-_]")) {
+            if (token.equals("govtw")) return true;
+            if (token.equals("gov")) gov = true;
+            if (token.equals("tw")) tw = true;
+        }
+        return gov && tw;
+    }
+
+    /**
+     * 以 . - _ 切開的片段等於該字（或該字 + 數字）；長的字（品牌名）允許被包在片段裡。
+     * 避免 online / airline 之類被當成 line、hotpot 被當成 otp。
+     */
+    private static boolean hasToken(String host, String brand) {
+        for (String token : host.split("[.\\-_]")) {
+            if (token.equals(brand)) return true;
+            if (brand.length() >= 5 && token.contains(brand)) return true;
+            if (token.startsWith(brand) && token.substring(brand.length()).matches("\\d+")) return true;
+        }
+        return false;
+    }
+
+    private static int indexOfAny(String s, String chars) {
+        for (int i = 0; i < s.length(); i++) {
+            if (chars.indexOf(s.charAt(i)) >= 0) return i;
+        }
+        return -1;
+    }
+
+    private static int countChar(String s, char c) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) if (s.charAt(i) == c) n++;
+        return n;
+    }
+
+    private static int countDigits(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) if (Character.isDigit(s.charAt(i))) n++;
+        return n;
+    }
+}
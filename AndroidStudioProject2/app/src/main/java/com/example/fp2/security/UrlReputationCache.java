@@ -0,0 +1,124 @@
+package com.example.fp2.security;
+
+import android.content.Context;
+import android.util.LruCache;
+
+import com.example.fp2.db.AppDatabase;
+import com.example.fp2.db.RiskRecordDao;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 本機網址信譽快取（不連網）
+ * 來源：歷史紀錄裡檢查過的網址（riskCode），以及之後每次存檔的網址檢查結果。
+ * 同時以「完整網址」與「網域」兩種 key 記住（短網址 / 共用網域不記網域，見 UrlHeuristics.isSharedHost）。
+ * 網域層級只能把警告往上加，不能壓低本機啟發式的判斷（呼叫端用 lookupUrl / lookupHost 分開處理）。
+ *
+ * 第一次 lookup 會讀一次 DB（阻塞），之後都是記憶體查表。
+ */
+public final class UrlReputationCache {
+
+    public static final int UNKNOWN = -1;
+
+    private static final int MAX_ENTRIES = 1024;
+    private static final int LOAD_LIMIT = 500;
+
+    private static volatile UrlReputationCache INSTANCE;
+
+    public static UrlReputationCache get(Context context) {
+        if (INSTANCE == null) {
+            synchronized (UrlReputationCache.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new UrlReputationCache(AppDatabase.getInstance(context));
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 網址檢查存檔時呼叫；快取還沒建立就略過（之後載入 DB 時會讀到）
+     */
+    public static void remember(String url, int riskCode) {
+        UrlReputationCache c = INSTANCE;
+        if (c != null) c.put(url, riskCode);
+    }
+
+    private final AppDatabase db;
+    private final LruCache<String, Integer> byUrl = new LruCache<>(MAX_ENTRIES);
+    private final LruCache<String, Integer> byHost = new LruCache<>(MAX_ENTRIES);
+    private volatile boolean loaded;
+
+    private UrlReputationCache(AppDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * 同一個網址檢查過的結果
+     * @return RiskRecordEntity.RISK_*，沒看過回 UNKNOWN（不可在主執行緒第一次呼叫）
+     */
+    public int lookupUrl(String url) {
+        ensureLoaded();
+        Integer r = byUrl.get(normalize(url));
+        return r == null ? UNKNOWN : r;
+    }
+
+    /**
+     * 同網域其他網址最嚴重的結果（短網址 / 共用網域一律 UNKNOWN）
+     */
+    public int lookupHost(String url) {
+        ensureLoaded();
+        String host = hostOf(url);
+        if (UrlHeuristics.isSharedHost(host)) return UNKNOWN;
+        Integer r = byHost.get(host);
+        return r == null ? UNKNOWN : r;
+    }
+
+    public void put(String url, int riskCode) {
+        byUrl.put(normalize(url), riskCode);
+        String host = hostOf(url);
+        if (UrlHeuristics.isSharedHost(host)) return;
+        // 網域只記「最嚴重」的，一個網址被標高風險，整個網域都警告
+        Integer old = byHost.get(host);
+        if (old == null || riskCode > old) byHost.put(host, riskCode);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        synchronized (this) {
+            if (loaded) return;
+            List<RiskRecordDao.UrlRisk> rows = db.riskRecordDao().urlRisks(LOAD_LIMIT);
+            // 新的在前：舊紀錄不覆蓋新結果（倒著放，最後放的是最新的）
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                RiskRecordDao.UrlRisk row = rows.get(i);
+                if (row.url != null) put(row.url, row.riskCode);
+            }
+            loaded = true;
+        }
+    }
+
+    // ===============================
+    // 工具方法
+    // ===============================
+    static String normalize(String url) {
+        String u = url == null ? "" : url.trim().toLowerCase(Locale.ROOT);
+        u = u.replaceFirst("^[a-z]+://", "");
+        if (u.startsWith("www.")) u = u.substring(4);
+        while (u.endsWith("/")) u = u.substring(0, u.length() - 1);
+        return u;
+    }
+
+    static String hostOf(String url) {
+        String u = normalize(url);
+        int cut = u.length();
+        for (int i = 0; i < u.length(); i++) {
+            char c = u.charAt(i);
+            if (c == '/' || c == '?' || c == '#' || c == ':') {
+                cut = i;
+                break;
+            }
+        }
+        return u.substring(0, cut);
+    }
+}
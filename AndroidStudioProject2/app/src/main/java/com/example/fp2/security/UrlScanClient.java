@@ -54,7 +54,10 @@ public class UrlScanClient {
         }).start();
     }
 
-    private RiskResult evaluateBlocking(String targetUrl) throws Exception {
+    /**
+     * 阻塞版（已經在背景執行緒時用，例如 UrlChecker）
+     */
+    public RiskResult evaluateBlocking(String targetUrl) throws Exception {
         JSONObject resultJson = fetchLatestResult(targetUrl);
 
         // 只信任 overall，因此 strong 也只看 overall
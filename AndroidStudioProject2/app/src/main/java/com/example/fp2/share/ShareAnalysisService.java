@@ -0,0 +1,478 @@
+package com.example.fp2.share;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+
+import com.example.fp2.HistoryDetailActivity;
+import com.example.fp2.MainActivity;
+import com.example.fp2.R;
+import com.example.fp2.batch.ScreenshotBatchJob;
+import com.example.fp2.db.RiskRecordRepository;
+import com.example.fp2.model.ApiResponse;
+import com.example.fp2.net.BackendService;
+import com.example.fp2.net.NetworkState;
+import com.example.fp2.net.OfflineQueue;
+import com.example.fp2.net.RequestScheduler;
+import com.example.fp2.net.TranscriptionPolicy;
+import com.example.fp2.ocr.OcrEngine;
+import com.example.fp2.ocr.OcrPipeline;
+import com.example.fp2.security.UrlChecker;
+import com.example.fp2.security.UrlExtractor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分享進來的內容在背景分析（前景服務，App 不在前面也會跑完）
+ * - 文字：送 /analyze_text；內文有網址就「同時」展開短網址 + 檢查，不等文字分析
+ * - 截圖：OcrPipeline → /analyze_text（多張走 ScreenshotBatchJob）
+ * - 錄音：/upload_audio
+ * 結果發通知（點了開歷史詳情；低風險沒存檔就開首頁），中 / 高風險照常寫入歷史。
+ * 所有工作都完成才 stopSelf。
+ */
+public class ShareAnalysisService extends Service {
+
+    private static final String TAG = "SHARE";
+
+    public static final String EXTRA_KIND = "kind";
+    public static final String EXTRA_TEXT = "text";
+    public static final String EXTRA_URIS = "uris";
+
+    public static final int KIND_TEXT = 0;
+    public static final int KIND_IMAGE = 1;
+    public static final int KIND_IMAGES = 2;
+    public static final int KIND_AUDIO = 3;
+
+    private static final String CHANNEL_PROGRESS = "share_progress";
+    private static final String CHANNEL_RESULT = "share_result";
+    private static final int NOTIF_PROGRESS = 1001;
+    private static final AtomicInteger NEXT_RESULT_ID = new AtomicInteger(2000);
+
+    // 風險排序（通知標題取最嚴重的）
+    private static final int LEVEL_NONE = -1;
+    private static final int LEVEL_LOW = 0;
+    private static final int LEVEL_MEDIUM = 1;
+    private static final int LEVEL_HIGH = 2;
+
+    private final BackendService backend = new BackendService();
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private int active; // 進行中的分享工作數（只在主執行緒改）
+
+    public static void start(Context context, Intent job) {
+        Intent i = new Intent(job).setClass(context, ShareAnalysisService.class);
+        ContextCompat.startForegroundService(context, i);
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        ensureChannels();
+        ServiceCompat.startForeground(this, NOTIF_PROGRESS, progressNotification(),
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                        ? ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC : 0);
+
+        if (intent == null) {
+            stopIfIdle();
+            return START_NOT_STICKY;
+        }
+
+        active++;
+        int kind = intent.getIntExtra(EXTRA_KIND, KIND_TEXT);
+        ArrayList<String> uriStrs = intent.getStringArrayListExtra(EXTRA_URIS);
+        List<Uri> uris = new ArrayList<>();
+        if (uriStrs != null) for (String u : uriStrs) uris.add(Uri.parse(u));
+
+        switch (kind) {
+            case KIND_IMAGE:
+                if (uris.isEmpty()) finishJob();
+                else analyzeImage(uris.get(0));
+                break;
+            case KIND_IMAGES:
+                if (uris.isEmpty()) finishJob();
+                else analyzeImages(uris);
+                break;
+            case KIND_AUDIO:
+                if (uris.isEmpty()) finishJob();
+                else analyzeAudio(uris.get(0));
+                break;
+            default:
+                String text = intent.getStringExtra(EXTRA_TEXT);
+                if (TextUtils.isEmpty(text)) finishJob();
+                else new TextJob("TEXT", text, text).start();
+                break;
+        }
+        return START_NOT_STICKY;
+    }
+
+    // ===============================
+    // 文字（含網址）
+    // ===============================
+
+    /**
+     * 文字分析 + 內文網址檢查同時進行，全部回來後發一則通知
+     */
+    private final class TextJob {
+        private final String type;      // TEXT / IMAGE
+        private final String content;   // 存歷史用（TEXT：原文；IMAGE：圖片 uri）
+        private final String text;
+
+        private final AtomicInteger pending = new AtomicInteger();
+        private final List<String> lines = new ArrayList<>();
+        private int worst = LEVEL_NONE;
+        private long recordId = -1;
+
+        TextJob(String type, String content, String text) {
+            this.type = type;
+            this.content = content;
+            this.text = text;
+        }
+
+        void start() {
+            List<String> urls = UrlExtractor.extract(text);
+            // 只分享了一個網址：不用再送文字分析
+            boolean urlOnly = urls.size() == 1 && text.trim().equals(urls.get(0));
+
+            pending.set(urls.size() + (urlOnly ? 0 : 1));
+
+            // ✅ 網址一收到就開始展開 + 檢查（不等文字分析）
+            //    沒網路就存本機初判 + 待補送（離線做可達性檢查會全部判成「不存在」）
+            boolean offline = !NetworkState.isOnline(getApplicationContext());
+            for (String u : urls) {
+                if (offline) {
+                    new Thread(() -> onUrl(OfflineQueue.get(getApplicationContext()).enqueueUrl(u), false)).start();
+                    continue;
+                }
+                new Thread(() -> onUrl(new UrlChecker().check(u), true)).start();
+            }
+
+            if (!urlOnly) {
+                backend.analyzeText(text, RequestScheduler.Lane.BACKGROUND, new BackendService.Callback() {
+                    @Override
+                    public void onSuccess(ApiResponse data) {
+                        onText(data, null);
+                    }
+
+                    @Override
+                    public void onError(String message) {
+                        onText(null, message);
+                    }
+                });
+            }
+        }
+
+        private void onText(ApiResponse data, String error) {
+            if (data == null && OfflineQueue.shouldQueue(getApplicationContext(), error)) {
+                OfflineQueue queue = OfflineQueue.get(getApplicationContext());
+                ApiResponse p = "IMAGE".equals(type)
+                        ? queue.enqueueOcrText(Uri.parse(content), text)
+                        : queue.enqueueText(text);
+                String level = RiskRecordRepository.normalizeRiskLevel(p.risk, p.is_scam);
+                add(levelOf(level), "內容（離線初判，恢復連線後自動補分析）：" + levelZh(level), -1);
+            } else if (data == null) {
+                add(LEVEL_NONE, "內容分析失敗：" + error, -1);
+            } else {
+                String level = RiskRecordRepository.normalizeRiskLevel(data.risk, data.is_scam);
+                long id = saveIfNeeded(type, content, text, data, level);
+                add(levelOf(level), "內容：" + levelZh(level) + scamTypeSuffix(data), id);
+            }
+            done();
+        }
+
+        private void onUrl(UrlChecker.Outcome o, boolean save) {
+            long id = -1;
+            if (save && o.shouldSave()) {
+                try {
+                    id = RiskRecordRepository.get(getApplicationContext())
+                            .saveUrlCheck(o.orig, o.verdictZh, o.score(), o.rr, o.pretty());
+                } catch (Exception e) {
+                    Log.e(TAG, "url save failed", e);
+                }
+            }
+            int level = "高風險".equals(o.verdictZh) ? LEVEL_HIGH
+                    : "中風險".equals(o.verdictZh) ? LEVEL_MEDIUM : LEVEL_LOW;
+            add(level, "🔗 " + o.orig + "：" + o.verdictZh, id);
+            done();
+        }
+
+        private synchronized void add(int level, String line, long id) {
+            lines.add(line);
+            if (level > worst) worst = level;
+            if (recordId < 0 && id > 0) recordId = id;
+        }
+
+        private void done() {
+            if (pending.decrementAndGet() > 0) return;
+            synchronized (this) {
+                postResult(worst, String.join("\n", lines), recordId);
+            }
+            main.post(ShareAnalysisService.this::finishJob);
+        }
+    }
+
+    // ===============================
+    // 截圖
+    // ===============================
+    private void analyzeImage(Uri uri) {
+        OcrPipeline.recognize(this, uri, new OcrEngine.Callback() {
+            @Override
+            public void onSuccess(String text) {
+                if (TextUtils.isEmpty(text) || text.trim().isEmpty()) {
+                    postResult(LEVEL_NONE, "截圖裡沒有偵測到文字", -1);
+                    finishJob();
+                    return;
+                }
+                new TextJob("IMAGE", uri.toString(), text.trim()).start();
+            }
+
+            @Override
+            public void onError(String message) {
+                postResult(LEVEL_NONE, "截圖辨識失敗：" + message, -1);
+                finishJob();
+            }
+        });
+    }
+
+    private void analyzeImages(List<Uri> uris) {
+        new ScreenshotBatchJob(this, uris, RequestScheduler.Lane.BACKGROUND, new ScreenshotBatchJob.Listener() {
+            @Override
+            public void onImageState(int index, int state, int addedLines) {
+                updateProgress("截圖辨識中（" + (index + 1) + "/" + uris.size() + "）…");
+            }
+
+            @Override
+            public void onConversation(String conversation) {}
+
+            @Override
+            public void onProvisional(ApiResponse data) {}
+
+            @Override
+            public void onComplete(ApiResponse data, String conversation) {
+                new Thread(() -> {
+                    String level = RiskRecordRepository.normalizeRiskLevel(data.risk, data.is_scam);
+                    long id = saveIfNeeded("IMAGE", uris.get(0).toString(), conversation, data, level);
+                    postResult(levelOf(level), uris.size() + " 張截圖：" + levelZh(level) + scamTypeSuffix(data), id);
+                    main.post(ShareAnalysisService.this::finishJob);
+                }).start();
+            }
+
+            @Override
+            public void onError(String message) {
+                postResult(LEVEL_NONE, "截圖分析失敗：" + message, -1);
+                finishJob();
+            }
+        }).start();
+    }
+
+    // ===============================
+    // 錄音
+    // ===============================
+    private void analyzeAudio(Uri uri) {
+        TranscriptionPolicy.get(this).transcribe(uri, RequestScheduler.Lane.BACKGROUND, new BackendService.Callback() {
+            @Override
+            public void onSuccess(ApiResponse data) {
+                String detected = "";
+                if (data != null) {
+                    if (!TextUtils.isEmpty(data.detected_text)) detected = data.detected_text.trim();
+                    else if (!TextUtils.isEmpty(data.text)) detected = data.text.trim();
+                }
+                String level = data == null ? "LOW" : RiskRecordRepository.normalizeRiskLevel(data.risk, data.is_scam);
+                // 離線語音辨識只跑了本機規則：逐字稿排進待補送
+                if (OfflineQueue.isProvisional(data) && !detected.isEmpty()) {
+                    queueAudio(uri, detected);
+                    return;
+                }
+                long id = data == null ? -1 : saveIfNeeded("AUDIO", uri.toString(), detected, data, level);
+                postResult(levelOf(level), "錄音：" + levelZh(level) + scamTypeSuffix(data), id);
+                main.post(ShareAnalysisService.this::finishJob);
+            }
+
+            @Override
+            public void onError(String message) {
+                if (OfflineQueue.shouldQueue(getApplicationContext(), message)) {
+                    queueAudio(uri, null);
+                    return;
+                }
+                postResult(LEVEL_NONE, "錄音分析失敗：" + message, -1);
+                main.post(ShareAnalysisService.this::finishJob);
+            }
+        });
+    }
+
+    /**
+     * 連不上後端：存歷史（本機初判）+ 待補送，恢復連線後自動更新同一筆
+     */
+    private void queueAudio(Uri uri, String transcript) {
+        new Thread(() -> {
+            ApiResponse p = OfflineQueue.get(getApplicationContext()).enqueueAudio(uri, transcript);
+            if (p == null) {
+                // 分享的讀取權限在服務結束後就失效，音檔留不下來只能請使用者再分享一次
+                postResult(LEVEL_NONE, "錄音分析失敗：目前無法連線，請恢復連線後再分享一次", -1);
+                main.post(ShareAnalysisService.this::finishJob);
+                return;
+            }
+            String level = RiskRecordRepository.normalizeRiskLevel(p.risk, p.is_scam);
+            postResult(levelOf(level), "錄音（離線初判，恢復連線後自動補分析）：" + levelZh(level), -1);
+            main.post(ShareAnalysisService.this::finishJob);
+        }).start();
+    }
+
+    // ===============================
+    // 存歷史（中 / 高才存，與各頁面一致）
+    // ===============================
+    private long saveIfNeeded(String type, String content, String detected, ApiResponse data, String level) {
+        if (!"MEDIUM".equals(level) && !"HIGH".equals(level)) return -1;
+
+        String c = content == null ? "" : content.trim();
+        if (c.length() > 500) c = c.substring(0, 500) + "…";
+        String d = detected == null ? "" : detected.trim();
+        if (d.length() > 2000) d = d.substring(0, 2000) + "…";
+
+        try {
+            return RiskRecordRepository.get(getApplicationContext()).saveAnalysis(type, c, d, data);
+        } catch (Exception e) {
+            Log.e(TAG, type + " save failed", e);
+            return -1;
+        }
+    }
+
+    // ===============================
+    // 通知
+    // ===============================
+    private void ensureChannels() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return;
+        NotificationManager nm = getSystemService(NotificationManager.class);
+        nm.createNotificationChannel(new NotificationChannel(
+                CHANNEL_PROGRESS, "背景分析進度", NotificationManager.IMPORTANCE_LOW));
+        nm.createNotificationChannel(new NotificationChannel(
+                CHANNEL_RESULT, "分析結果", NotificationManager.IMPORTANCE_HIGH));
+    }
+
+    private Notification progressNotification() {
+        return progressNotification("分析分享的內容中…");
+    }
+
+    private Notification progressNotification(String text) {
+        return new NotificationCompat.Builder(this, CHANNEL_PROGRESS)
+                .setSmallIcon(R.drawable.ic_stat_shield)
+                .setContentTitle("詐騙檢查")
+                .setContentText(text)
+                .setProgress(0, 0, true)
+                .setOngoing(true)
+                .build();
+    }
+
+    private void updateProgress(String text) {
+        try {
+            NotificationManagerCompat.from(this).notify(NOTIF_PROGRESS, progressNotification(text));
+        } catch (SecurityException ignored) {
+            // 沒有通知權限（Android 13+ 使用者拒絕）就算了
+        }
+    }
+
+    private void postResult(int level, String body, long recordId) {
+        String title;
+        switch (level) {
+            case LEVEL_HIGH:
+                title = "⚠️ 高風險：請勿依指示操作";
+                break;
+            case LEVEL_MEDIUM:
+                title = "中風險：請提高警覺";
+                break;
+            case LEVEL_LOW:
+                title = "低風險：目前未發現明顯異常";
+                break;
+            default:
+                title = "分析未完成";
+                break;
+        }
+
+        Intent open;
+        if (recordId > 0) {
+            open = new Intent(this, HistoryDetailActivity.class).putExtra("record_id", recordId);
+        } else {
+            open = new Intent(this, MainActivity.class);
+        }
+        open.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+
+        int id = NEXT_RESULT_ID.getAndIncrement();
+        PendingIntent pi = PendingIntent.getActivity(this, id, open,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        Notification n = new NotificationCompat.Builder(this, CHANNEL_RESULT)
+                .setSmallIcon(R.drawable.ic_stat_shield)
+                .setContentTitle(title)
+                .setContentText(body)
+                .setStyle(new NotificationCompat.BigTextStyle().bigText(body))
+                .setPriority(level >= LEVEL_MEDIUM
+                        ? NotificationCompat.PRIORITY_HIGH : NotificationCompat.PRIORITY_DEFAULT)
+                .setContentIntent(pi)
+                .setAutoCancel(true)
+                .build();
+        try {
+            NotificationManagerCompat.from(this).notify(id, n);
+        } catch (SecurityException e) {
+            Log.w(TAG, "no notification permission; result: " + title + " / " + body);
+        }
+    }
+
+    // ===============================
+    // 生命週期
+    // ===============================
+    private void finishJob() {
+        active--;
+        stopIfIdle();
+    }
+
+    private void stopIfIdle() {
+        if (active > 0) return;
+        ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+        stopSelf();
+    }
+
+    // ===============================
+    // 工具方法
+    // ===============================
+    private static int levelOf(String level) {
+        if ("HIGH".equals(level)) return LEVEL_HIGH;
+        if ("MEDIUM".equals(level)) return LEVEL_MEDIUM;
+        return LEVEL_LOW;
+    }
+
+    private static String levelZh(String level) {
+        if ("HIGH".equals(level)) return "高風險";
+        if ("MEDIUM".equals(level)) return "中風險";
+        return "低風險";
+    }
+
+    private static String scamTypeSuffix(ApiResponse data) {
+        if (data == null || data.scam_type == null || data.scam_type.isEmpty()) return "";
+        List<String> names = new ArrayList<>();
+        for (String t : data.scam_type) if (!TextUtils.isEmpty(t)) names.add(t);
+        return names.isEmpty() ? "" : "（" + TextUtils.join("、", names) + "）";
+    }
+}
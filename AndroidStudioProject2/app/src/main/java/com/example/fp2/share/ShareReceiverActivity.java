@@ -0,0 +1,110 @@
+package com.example.fp2.share;
+
+import android.app.Activity;
+import android.content.ClipData;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.text.TextUtils;
+import android.widget.Toast;
+
+import androidx.core.content.IntentCompat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分享選單 / 文字選取選單的入口（不顯示畫面）
+ * 收到內容就丟給 ShareAnalysisService 在背景分析，自己馬上關掉，
+ * 使用者不用先開 App、選模式、再貼上。
+ *
+ * 支援：
+ * - ACTION_SEND text/*       → 文字（內含網址會同時檢查網址）
+ * - ACTION_SEND image/*      → 截圖 OCR
+ * - ACTION_SEND_MULTIPLE image/* → 多張截圖接成一段對話
+ * - ACTION_SEND audio/*      → 錄音
+ * - ACTION_PROCESS_TEXT      → 在其他 App 選取文字後「檢查詐騙」
+ */
+public class ShareReceiverActivity extends Activity {
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        Intent job = buildJob(getIntent());
+        if (job == null) {
+            Toast.makeText(this, "不支援的分享內容", Toast.LENGTH_SHORT).show();
+        } else {
+            ShareAnalysisService.start(this, job);
+            Toast.makeText(this, "已開始背景分析，完成後會通知你", Toast.LENGTH_SHORT).show();
+        }
+        finish();
+    }
+
+    private Intent buildJob(Intent in) {
+        if (in == null || in.getAction() == null) return null;
+        String action = in.getAction();
+        String type = in.getType() == null ? "" : in.getType();
+
+        // ===== 選取文字 =====
+        if (Intent.ACTION_PROCESS_TEXT.equals(action)) {
+            CharSequence t = in.getCharSequenceExtra(Intent.EXTRA_PROCESS_TEXT);
+            return textJob(t == null ? null : t.toString());
+        }
+
+        // ===== 多張截圖 =====
+        if (Intent.ACTION_SEND_MULTIPLE.equals(action)) {
+            if (!type.startsWith("image/")) return null;
+            ArrayList<Uri> uris = IntentCompat.getParcelableArrayListExtra(in, Intent.EXTRA_STREAM, Uri.class);
+            if (uris == null || uris.isEmpty()) return null;
+            return uriJob(uris.size() == 1 ? ShareAnalysisService.KIND_IMAGE : ShareAnalysisService.KIND_IMAGES, uris);
+        }
+
+        if (!Intent.ACTION_SEND.equals(action)) return null;
+
+        // ===== 單一檔案 =====
+        Uri stream = IntentCompat.getParcelableExtra(in, Intent.EXTRA_STREAM, Uri.class);
+        if (stream != null && type.startsWith("image/")) {
+            return uriJob(ShareAnalysisService.KIND_IMAGE, listOf(stream));
+        }
+        if (stream != null && type.startsWith("audio/")) {
+            return uriJob(ShareAnalysisService.KIND_AUDIO, listOf(stream));
+        }
+
+        // ===== 文字 / 網址 =====
+        CharSequence text = in.getCharSequenceExtra(Intent.EXTRA_TEXT);
+        return textJob(text == null ? null : text.toString());
+    }
+
+    private Intent textJob(String text) {
+        if (TextUtils.isEmpty(text) || text.trim().isEmpty()) return null;
+        return new Intent()
+                .putExtra(ShareAnalysisService.EXTRA_KIND, ShareAnalysisService.KIND_TEXT)
+                .putExtra(ShareAnalysisService.EXTRA_TEXT, text.trim());
+    }
+
+    /**
+     * 把讀取權限一起轉給 service（ClipData + FLAG_GRANT_READ_URI_PERMISSION）
+     */
+    private Intent uriJob(int kind, List<Uri> uris) {
+        ArrayList<String> strs = new ArrayList<>(uris.size());
+        ClipData clip = null;
+        for (Uri u : uris) {
+            strs.add(u.toString());
+            if (clip == null) clip = ClipData.newRawUri("shared", u);
+            else clip.addItem(new ClipData.Item(u));
+        }
+        Intent job = new Intent()
+                .putExtra(ShareAnalysisService.EXTRA_KIND, kind)
+                .putStringArrayListExtra(ShareAnalysisService.EXTRA_URIS, strs);
+        job.setClipData(clip);
+        job.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        return job;
+    }
+
+    private static List<Uri> listOf(Uri u) {
+        List<Uri> l = new ArrayList<>(1);
+        l.add(u);
+        return l;
+    }
+}
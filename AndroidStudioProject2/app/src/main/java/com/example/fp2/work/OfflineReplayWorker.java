@@ -0,0 +1,75 @@
+package com.example.fp2.work;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.fp2.net.OfflineQueue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 離線待補送：有網路時把 pending_checks 補送出去（OfflineQueue.replay）
+ * 連不上就 retry（WorkManager 指數退避 + 等網路）；還有沒到時間的項目就排下一次。
+ */
+public class OfflineReplayWorker extends Worker {
+
+    private static final String TAG = "OFFLINE_REPLAY";
+    private static final String UNIQUE_NAME = "offline_replay";
+    private static final long BACKOFF_S = 30;
+
+    public OfflineReplayWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * 有新的待補送時呼叫；REPLACE 讓排在很久之後的下一輪改成一有網路就跑
+     */
+    public static void schedule(Context context) {
+        enqueue(context, 0, ExistingWorkPolicy.REPLACE);
+    }
+
+    private static void enqueue(Context context, long delayMs, ExistingWorkPolicy policy) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+
+        OneTimeWorkRequest req = new OneTimeWorkRequest.Builder(OfflineReplayWorker.class)
+                .setConstraints(constraints)
+                .setInitialDelay(delayMs, TimeUnit.MILLISECONDS)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_S, TimeUnit.SECONDS)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniqueWork(UNIQUE_NAME, policy, req);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context ctx = getApplicationContext();
+        try {
+            OfflineQueue.Report r = OfflineQueue.get(ctx).replay(this::isStopped);
+            Log.d(TAG, "replay done: " + r);
+            if (r.unreachable) return Result.retry();
+
+            // 後端回錯誤的項目各自退避中：排在最早那筆到期時（接在這一輪後面）
+            if (r.nextAttemptAt > 0) {
+                long delay = Math.max(0, r.nextAttemptAt - System.currentTimeMillis());
+                enqueue(ctx, delay, ExistingWorkPolicy.APPEND_OR_REPLACE);
+            }
+            return Result.success();
+        } catch (Exception e) {
+            Log.e(TAG, "replay failed", e);
+            return Result.retry();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.fp2.work;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.fp2.db.HistoryRetention;
+import com.example.fp2.db.RetentionPolicy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每天一次的歷史紀錄清理（電量不低、儲存空間不低時才跑）
+ */
+public class RetentionWorker extends Worker {
+
+    private static final String TAG = "RETENTION";
+    private static final String UNIQUE_NAME = "history_retention";
+
+    public RetentionWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * App 啟動時呼叫；KEEP 讓已排程的工作不被重置
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .setRequiresStorageNotLow(true)
+                .build();
+
+        PeriodicWorkRequest req = new PeriodicWorkRequest.Builder(
+                RetentionWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                UNIQUE_NAME,
+                ExistingPeriodicWorkPolicy.KEEP,
+                req
+        );
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            Context ctx = getApplicationContext();
+            HistoryRetention.Report r = new HistoryRetention(ctx).run(
+                    RetentionPolicy.load(ctx),
+                    this::isStopped,
+                    isCharging(ctx)   // 整個 VACUUM 比較重，只在充電時做
+            );
+            Log.d(TAG, "retention done: " + r);
+            return Result.success();
+        } catch (Exception e) {
+            Log.e(TAG, "retention failed", e);
+            return Result.retry();
+        }
+    }
+
+    private static boolean isCharging(Context ctx) {
+        Intent battery = ctx.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) return false;
+        int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        return status == BatteryManager.BATTERY_STATUS_CHARGING
+                || status == BatteryManager.BATTERY_STATUS_FULL;
+    }
+}
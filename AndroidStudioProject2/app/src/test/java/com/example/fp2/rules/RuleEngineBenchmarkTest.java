@@ -0,0 +1,122 @@
+package com.example.fp2.rules;
+
+import com.example.fp2.model.ApiResponse;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 本機規則引擎：正確性（JVM 上跑，不需要裝置）
+ * 延遲靠 wall-clock 量，共用 / 慢的 CI 上會不穩，不放在會擋建置的測試裡。
+ */
+public class RuleEngineBenchmarkTest {
+
+    // Gradle 單元測試的工作目錄是 app/
+    private static final String RULES = "src/main/assets/" + RuleEngine.ASSET;
+
+    private static final String[] CORPUS = {
+            "您好，這裡是客服，您的訂單因系統錯誤設定成分期付款，請到 ATM 操作解除分期",
+            "您好，这里是客服，您的订单因系统错误设定成分期付款，请到ＡＴＭ操作解除分期",
+            "我是台北地檢署檢察官，你的帳戶涉嫌洗錢，即將凍結，請將存款轉入安全帳戶配合調查",
+            "【物流通知】您的包裹因地址不全暫扣，請於 24 小時內點連結補繳關稅 https://reurl.cc/abc",
+            "親愛的，我在國外急用錢，可以先幫我周轉一下嗎？之後馬上還你",
+            "老師帶單保證獲利，加入群組立即入金 USDT，名額有限",
+            "請提供您收到的簡訊驗證碼，以完成身分確認",
+            "請下載 AnyDesk 讓專員遠端協助您處理退款",
+            "加LINE ID：abc123 由專人為你服務",
+            "今天晚上要不要一起吃飯？我訂好餐廳了",
+            "明天早上九點開會，記得帶筆電",
+            "媽，我到家了，晚點打給你",
+            "會議記錄已上傳到共用雲端，請大家有空看一下",
+            "恭喜您獲得抽獎資格，請掃碼登入領取獎品",
+    };
+
+    private static RuleEngine engine;
+
+    @BeforeClass
+    public static void loadRules() throws Exception {
+        try (InputStream in = new FileInputStream(RULES)) {
+            engine = RuleEngine.load(in);
+        }
+    }
+
+    // ===============================
+    // 正確性
+    // ===============================
+    @Test
+    public void atmInstallmentScript_isHigh() {
+        RuleEngine.Verdict v = engine.check(CORPUS[0]);
+        assertEquals("high", v.risk);
+        assertTrue(v.categories.contains("atm_operation"));
+        assertTrue(v.actions.contains("要求操作ATM"));
+    }
+
+    @Test
+    public void simplifiedAndFullWidth_matchSameAsTraditional() {
+        RuleEngine.Verdict trad = engine.check(CORPUS[0]);
+        RuleEngine.Verdict simp = engine.check(CORPUS[1]);
+        assertEquals(trad.risk, simp.risk);
+        assertEquals(trad.categories, simp.categories);
+        assertEquals(trad.actions, simp.actions);
+    }
+
+    @Test
+    public void fakeProsecutor_escalatesToHigh() {
+        RuleEngine.Verdict v = engine.check(CORPUS[2]);
+        assertEquals("high", v.risk);
+        assertTrue(v.categories.containsAll(Arrays.asList("money_laundering", "supervisor_account")));
+    }
+
+    @Test
+    public void sequenceRule_needsOrder() {
+        assertTrue(engine.check("請提供身分證影本").categories.contains("payment_personal_info"));
+        assertFalse(engine.check("身分證請妥善保管，勿提供").categories.contains("payment_personal_info"));
+    }
+
+    @Test
+    public void spacedOutKeywords_stillMatch() {
+        assertTrue(engine.check("請 提 供 驗 證 碼").categories.contains("otp_harvest"));
+    }
+
+    @Test
+    public void benignMessages_haveNoHits() {
+        for (int i = 9; i <= 12; i++) {
+            RuleEngine.Verdict v = engine.check(CORPUS[i]);
+            assertFalse(CORPUS[i], v.hasHits());
+            assertEquals("low", v.risk);
+        }
+    }
+
+    @Test
+    public void provisional_isApiResponseShaped() {
+        RuleEngine.install(engine);
+        ApiResponse r = RuleEngine.provisional(CORPUS[0]);
+        assertNotNull(r);
+        assertEquals("high", r.risk);
+        assertTrue(r.is_scam);
+        assertEquals(RuleEngine.SOURCE, r.source);
+        assertFalse(r.scam_type.isEmpty());
+        assertTrue(r.analysis.getAsJsonObject().get("provisional").getAsBoolean());
+        assertNull(RuleEngine.provisional(CORPUS[10]));
+    }
+
+    @Test
+    public void longChat_keepsEveryHit() {
+        // 多張截圖接起來的對話（約 3000 字）：每則的命中都要在
+        StringBuilder chat = new StringBuilder();
+        while (chat.length() < 3000) for (String m : CORPUS) chat.append(m).append('\n');
+        RuleEngine.Verdict v = engine.check(chat.toString());
+        assertEquals("high", v.risk);
+        for (String m : CORPUS) assertTrue(v.categories.containsAll(engine.check(m).categories));
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.fp2.rules;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * TextNormalizer：結果要跟「String.replace 一路串下去」的寫法一樣
+ * （配置量 / 耗時的量測跟 JVM、機器有關，不放在會擋建置的測試裡）
+ */
+public class TextNormalizerBenchmarkTest {
+
+    private static final String[] CORPUS = {
+            "您好，这里是客服，您的订单因系统错误设定成分期付款，请到ＡＴＭ操作解除分期",
+            "我是檢察官，你的帳戶涉嫌洗錢，請將存款轉入安全帳戶",
+            "【物流通知】您的包裹暂扣，请于 24 小时内点击链接补缴关税　https://reurl.cc/ABC",
+            "老師帶單保證獲利，加入群組立即入金ＵＳＤＴ，名額有限",
+            "今天晚上要不要一起吃飯？我訂好餐廳了",
+            "請​提​供 驗 證 碼",
+    };
+
+    // 對照組：跟 TextNormalizer 同一張簡繁表，但每一項都 String.replace 一次
+    private static final String[][] PAIRS = pairs();
+
+    private static String[][] pairs() {
+        List<String[]> out = new ArrayList<>();
+        for (char c = 0x4E00; c <= 0x9FFF; c++) {
+            char t = TextNormalizer.fold(c);
+            if (t != c) out.add(new String[]{String.valueOf(c), String.valueOf(t)});
+        }
+        return out.toArray(new String[0][]);
+    }
+
+    private static String naive(String s) {
+        String r = s.replaceAll("[\\s\\u3000\\u00A0\\u200B\\u200C\\u200D\\uFEFF]", "");
+        for (char c = 0xFF01; c <= 0xFF5E; c++) {
+            r = r.replace(c, (char) (c - 0xFEE0));
+        }
+        r = r.toLowerCase(Locale.ROOT);
+        for (String[] p : PAIRS) r = r.replace(p[0], p[1]);
+        return r;
+    }
+
+    @Test
+    public void foldsSimplifiedFullWidthAndWhitespace() {
+        assertEquals("請到atm操作解除分期", TextNormalizer.key("请到 ＡＴＭ 操作解除分期"));
+        assertEquals("請提供驗證碼", TextNormalizer.key(CORPUS[5]));
+        assertEquals(TextNormalizer.key("我是檢察官"), TextNormalizer.key("我是检察官"));
+        assertEquals("", TextNormalizer.key(null));
+    }
+
+    @Test
+    public void matchesNaiveChain() {
+        for (String s : CORPUS) assertEquals(s, naive(s), TextNormalizer.key(s));
+    }
+
+    @Test
+    public void matchesNaiveChain_wholeTable() {
+        // 整張簡繁表 + 全形 ASCII 都走一遍
+        StringBuilder sb = new StringBuilder();
+        for (String[] p : PAIRS) sb.append(p[0]);
+        for (char c = 0xFF01; c <= 0xFF5E; c++) sb.append(c);
+        String all = sb.toString();
+        assertEquals(naive(all), TextNormalizer.key(all));
+    }
+}
@@ -1,10 +1,10 @@
-import os, re, uuid, json, tempfile, unicodedata, subprocess, shutil, requests, time
+import os, re, uuid, json, tempfile, unicodedata, subprocess, shutil, requests, time, threading
 
 from typing import List, Dict, Optional
 
 
 
-from flask import Flask, request, jsonify
+from flask import Flask, request, jsonify, Response, stream_with_context
 
 from flask_cors import CORS
 
@@ -575,7 +575,9 @@ def to_wav_16k(in_path: str) -> str:
 
 _whisper = None
 
-def transcribe(filepath: str) -> str:
+def transcribe_segments(filepath: str):
+
+    """回傳 [(start_s, end_s, text), ...]（時間以送進來的音檔為準）"""
 
     global _whisper
 
@@ -587,13 +589,93 @@ def transcribe(filepath: str) -> str:
 
     segs, _ = _whisper.transcribe(filepath, language=None, vad_filter=True, beam_size=1, condition_on_previous_text=False)
 
-    text = "".join(s.text for s in segs).strip()
+    return [(s.start, s.end, s.text) for s in segs]
+
+
+
+def transcribe(filepath: str) -> str:
+
+    return "".join(t for _, _, t in transcribe_segments(filepath)).strip()
+
+
+
+def _parse_segment_map(raw: Optional[str]):
+
+    """
+
+    App 端去掉靜音後上傳的時間對照表：[[原始起點ms, 原始終點ms, 壓縮後起點ms], ...]
+
+    格式不對就當沒有（照一般音檔處理）
+
+    """
+
+    if not raw:
+
+        return None
+
+    try:
+
+        rows = json.loads(raw)
+
+        out = [(int(r[0]), int(r[1]), int(r[2])) for r in rows]
+
+        return sorted(out, key=lambda r: r[2]) or None
+
+    except Exception:
+
+        return None
+
+
+
+def _to_original_ms(t_s: float, seg_map) -> int:
+
+    """壓縮後串流的時間（秒）→ 原始音檔時間（ms）"""
+
+    t = int(t_s * 1000)
+
+    chosen = seg_map[0]
 
+    for row in seg_map:
 
+        if row[2] <= t:
 
+            chosen = row
 
+        else:
+
+            break
+
+    start, end, compact_start = chosen
+
+    return min(end, start + max(0, t - compact_start))
+
+
+
+def _timeline(segs, seg_map):
+
+    """逐字稿每段對回原始時間軸"""
+
+    out = []
+
+    for st, en, txt in segs:
+
+        txt = (txt or "").strip()
+
+        if not txt:
+
+            continue
+
+        if seg_map:
+
+            st_ms, en_ms = _to_original_ms(st, seg_map), _to_original_ms(en, seg_map)
 
-    return text
+        else:
+
+            st_ms, en_ms = int(st * 1000), int(en * 1000)
+
+        out.append({"start_ms": st_ms, "end_ms": en_ms, "text": to_trad(txt)})
+
+    return out
 
 
 
@@ -629,20 +711,19 @@ PROMPT = (
 
 
 
-def call_llm(text: str) -> dict:
+def _llm_payload(text: str, stream: bool) -> dict:
 
     text = (text or "").strip()
 
 
 
-
     if len(text) > LLM_MAX_CHARS:
 
         text = text[:LLM_MAX_CHARS]
 
 
 
-    payload = {
+    return {
 
         "model": SCAM_MODEL,
 
@@ -664,27 +745,13 @@ def call_llm(text: str) -> dict:
 
         },
 
-        "stream": False
+        "stream": stream
 
     }
 
 
 
-    r = requests.post(
-
-        f"{OLLAMA_HOST}/api/generate",
-
-        json=payload,
-
-        timeout=(OLLAMA_CONNECT_TIMEOUT, OLLAMA_READ_TIMEOUT)
-
-    )
-
-    r.raise_for_status()
-
-    raw = r.json().get("response", "")
-
-
+def _parse_llm_json(raw: str) -> dict:
 
     try:
 
@@ -724,6 +791,132 @@ def call_llm(text: str) -> dict:
 
 
 
+def call_llm(text: str) -> dict:
+
+    r = requests.post(
+
+        f"{OLLAMA_HOST}/api/generate",
+
+        json=_llm_payload(text, False),
+
+        timeout=(OLLAMA_CONNECT_TIMEOUT, OLLAMA_READ_TIMEOUT)
+
+    )
+
+    r.raise_for_status()
+
+    return _parse_llm_json(r.json().get("response", ""))
+
+
+
+_JSON_STR = r'"((?:[^"\\]|\\.)*)"'
+
+
+
+def _partial_llm_json(buf: str) -> dict:
+
+    """
+
+    還沒生成完的 JSON 先抓已經完整的欄位：is_scam、risk、reasons / advices 裡已經收尾的字串
+
+    例：{"is_scam":true,"risk":"high","reasons":["要求匯款", → {"is_scam": True, "risk": "high", "reasons": ["要求匯款"]}
+
+    """
+
+    obj = {}
+
+    m = re.search(r'"is_scam"\s*:\s*(true|false)', buf)
+
+    if m:
+
+        obj["is_scam"] = m.group(1) == "true"
+
+    m = re.search(r'"risk"\s*:\s*' + _JSON_STR, buf)
+
+    if m:
+
+        obj["risk"] = m.group(1).strip().lower()
+
+    for key in ("reasons", "advices"):
+
+        m = re.search(r'"' + key + r'"\s*:\s*\[', buf)
+
+        if not m:
+
+            continue
+
+        items = []
+
+        for it in re.finditer(r'\s*' + _JSON_STR + r'\s*([,\]])', buf[m.end():]):
+
+            try:
+
+                items.append(json.loads('"' + it.group(1) + '"'))
+
+            except Exception:
+
+                break
+
+            if it.group(2) == "]":
+
+                break
+
+        obj[key] = items
+
+    return obj
+
+
+
+def call_llm_stream(text: str):
+
+    """同 call_llm，但用 Ollama 串流：每多一個完整欄位就 yield 目前的部分結果，最後 yield 完整結果"""
+
+    with requests.post(
+
+        f"{OLLAMA_HOST}/api/generate",
+
+        json=_llm_payload(text, True),
+
+        timeout=(OLLAMA_CONNECT_TIMEOUT, OLLAMA_READ_TIMEOUT),
+
+        stream=True
+
+    ) as r:
+
+        r.raise_for_status()
+
+        buf = ""
+
+        last = None
+
+        for line in r.iter_lines():
+
+            if not line:
+
+                continue
+
+            chunk = json.loads(line)
+
+            buf += chunk.get("response", "")
+
+            partial = _partial_llm_json(buf)
+
+            if partial != last:
+
+                last = partial
+
+                yield partial
+
+            if chunk.get("done"):
+
+                break
+
+
+
+    yield _parse_llm_json(buf)
+
+
+
 # -------------------------
 
 # Fuse rules + model
@@ -928,6 +1121,68 @@ def fuse(
 
 
 
+def _rules_only_llm(floor: str) -> dict:
+
+    return {
+
+        "is_scam": (floor != "low"),
+
+        "risk": floor,
+
+        "reasons": [],
+
+        "advices": []
+
+    }
+
+
+
+def _finish_decision(text, t0, cats, acts, floor, llm_obj, model_used, model_error, t_model_ms):
+
+    if not model_used:
+
+        llm_obj = _rules_only_llm(floor)
+
+
+
+    result = fuse(text, llm_obj, cats, acts, floor, model_used, model_error, t_model_ms)
+
+    result["meta"]["total_time_ms"] = int((time.time() - t0) * 1000)
+
+
+
+    # ===== 儲存統計資料（不含任何個資）=====
+
+    try:
+
+        insert_stat(
+
+            source="text",
+
+            risk=result["risk"],
+
+            is_scam=result["is_scam"],
+
+            categories=[c["code"] for c in result["analysis"]["matched_categories"]],
+
+            actions=result["analysis"]["actions_requested"],
+
+            model_used=result["meta"]["model_used"],
+
+            total_time_ms=result["meta"]["total_time_ms"]
+
+        )
+
+    except Exception as e:
+
+        print("DB insert failed:", e)
+
+
+
+    return result
+
+
+
 def decide(text: str):
 
     t0 = time.time()
@@ -972,57 +1227,85 @@ def decide(text: str):
 
 
 
-    if not model_used:
+    return _finish_decision(text, t0, cats, acts, floor, llm_obj, model_used, model_error, t_model_ms)
 
-        llm_obj = {
 
-            "is_scam": (floor != "low"),
 
-            "risk": floor,
+STREAM_SECTIONS = ("risk", "is_scam", "scam_type", "reasons", "advices")
 
-            "reasons": [],
 
-            "advices": []
 
-        }
+def decide_stream(text: str):
 
+    """
 
+    同 decide，但邊算邊回：
 
-    result = fuse(text, llm_obj, cats, acts, floor, model_used, model_error, t_model_ms)
+    {"type": "rules", ...}   規則判斷完馬上送（風險 / 類型 / 建議都有）
 
-    result["meta"]["total_time_ms"] = int((time.time() - t0) * 1000)
+    {"type": "partial", ...} LLM 每多生成一個欄位，只送有變的段落（已和規則結果融合）
 
+    {"type": "final", "result": {...}} 與 decide 相同的完整結果
 
+    """
 
-    # ===== 儲存統計資料（不含任何個資）=====
+    t0 = time.time()
 
-    try:
+    text = (text or "").strip()
 
-        insert_stat(
 
-            source="text",
 
-            risk=result["risk"],
+    cats, acts, floor = rule_check(text)
 
-            is_scam=result["is_scam"],
 
-            categories=[c["code"] for c in result["analysis"]["matched_categories"]],
 
-            actions=result["analysis"]["actions_requested"],
+    sent = {k: v for k, v in fuse(text, _rules_only_llm(floor), cats, acts, floor, False, None, None).items() if k in STREAM_SECTIONS}
 
-            model_used=result["meta"]["model_used"],
+    yield dict(sent, type="rules")
 
-            total_time_ms=result["meta"]["total_time_ms"]
 
-        )
 
-    except Exception as e:
+    llm_obj = {"is_scam": False, "risk": "low", "reasons": [], "advices": []}
 
-        print("DB insert failed:", e)
+    model_used = False
+
+    model_error = None
 
+    t_model_ms = None
 
 
-    return result
+
+    if floor != "high":
+
+        try:
+
+            t1 = time.time()
+
+            for partial in call_llm_stream(text):
+
+                llm_obj = partial
+
+                fused = fuse(text, dict(_rules_only_llm(floor), **partial), cats, acts, floor, True, None, None)
+
+                changed = {k: fused[k] for k in STREAM_SECTIONS if fused[k] != sent.get(k)}
+
+                if changed:
+
+                    sent.update(changed)
+
+                    yield dict(changed, type="partial")
+
+            model_used = True
+
+            t_model_ms = int((time.time() - t1) * 1000)
+
+        except Exception as e:
+
+            model_error = str(e)
+
+
+
+    yield {"type": "final", "result": _finish_decision(text, t0, cats, acts, floor, llm_obj, model_used, model_error, t_model_ms)}
 
 
 
@@ -1088,9 +1371,273 @@ def analyze_text():
 
 
 
-@app.post("/upload_audio")
+def _short_audio_response(text_out: str):
 
-def upload_audio():
+    return {
+
+        "text": text_out,
+
+        "detected_text": text_out,
+
+        "risk": "low",
+
+        "scam_type": ["未明確分類（需更多資訊）"],
+
+        "advices": ["請提供更清晰或更長的音檔"],
+
+        "is_scam": False,
+
+        "reasons": ["辨識文字過短或空白"],
+
+        "source": "asr",
+
+        "analysis": {"matched_categories": [], "actions_requested": [], "rule_floor": "low"},
+
+        "meta": {"asr_backend": "whisper", "asr_model": ASR_MODEL, "ollama_model": SCAM_MODEL, "model_used": False}
+
+    }
+
+
+
+def _audio_error_response(text: str, e: Exception):
+
+    text_out = to_trad(text or "")
+
+    return {
+
+        "text": text_out,
+
+        "detected_text": text_out,
+
+        "risk": "medium",
+
+        "scam_type": ["未明確分類（需更多資訊）"],
+
+        "advices": ["請先保留音檔與來電資訊", "建議撥打 165 反詐騙諮詢", "若可行，改用文字貼上再分析以取得更完整結果"],
+
+        "is_scam": True,
+
+        "reasons": [f"語音流程異常（轉檔/辨識/模型）：{str(e)}"],
+
+        "source": "asr",
+
+        "analysis": {"matched_categories": [], "actions_requested": [], "rule_floor": "medium"},
+
+        "meta": {"error_stage": "ASR_or_LLM", "asr_backend": "whisper", "asr_model": ASR_MODEL, "ollama_model": SCAM_MODEL, "model_used": False}
+
+    }
+
+
+
+class JobCancelled(Exception):
+
+    pass
+
+
+
+def _analyze_audio_parts(parts, seg_map, original_ms=None, progress=None):
+
+    """
+
+    parts: [(音檔路徑, 該段在壓縮後串流的起點ms), ...]
+
+    依序辨識、接回同一條時間軸後只判斷一次；progress(stage, 比例) 給背景工作回報進度（取消時丟 JobCancelled）
+
+    結束後刪掉所有音檔
+
+    """
+
+    text = ""
+
+    wav_paths = []
+
+    try:
+
+        segs = []
+
+        for i, (raw_path, offset_ms) in enumerate(parts):
+
+            if progress:
+
+                progress("transcribing", i / len(parts))
+
+            wav_path = to_wav_16k(raw_path)
+
+            wav_paths.append(wav_path)
+
+            off = offset_ms / 1000.0
+
+            segs.extend((st + off, en + off, t) for st, en, t in transcribe_segments(wav_path))
+
+            text = "".join(t for _, _, t in segs).strip()
+
+
+
+        if not text or len(text) < 6:
+
+            return _short_audio_response(to_trad(text or ""))
+
+
+
+        if progress:
+
+            progress("llm", 0.0)
+
+        out = decide(text)
+
+        out["source"] = "asr"
+
+        out["timeline"] = _timeline(segs, seg_map)
+
+        if seg_map:
+
+            out["meta"] = dict(out.get("meta") or {}, speech_segments=len(seg_map), original_ms=original_ms)
+
+        if len(parts) > 1:
+
+            out["meta"] = dict(out.get("meta") or {}, parts=len(parts))
+
+        return out
+
+    except JobCancelled:
+
+        raise
+
+    except Exception as e:
+
+        return _audio_error_response(text, e)
+
+    finally:
+
+        for p in [raw for raw, _ in parts] + wav_paths:
+
+            try:
+
+                if p and os.path.exists(p):
+
+                    os.remove(p)
+
+            except Exception:
+
+                pass
+
+
+
+def _save_upload(f) -> str:
+
+    ext = os.path.splitext(f.filename)[1] or ".wav"
+
+    raw_path = os.path.join(UPLOAD_DIR, f"{uuid.uuid4()}{ext}")
+
+    f.save(raw_path)
+
+    return raw_path
+
+
+
+@app.post("/analyze_text_stream")
+
+def analyze_text_stream():
+
+    """一行一個 JSON（application/x-ndjson），格式見 decide_stream"""
+
+    data = request.get_json(force=True, silent=True) or {}
+
+    text = (data.get("text") or "").strip()
+
+    if not text:
+
+        return jsonify({"error": "text required"}), 400
+
+
+
+    def gen():
+
+        for ev in decide_stream(text):
+
+            if ev["type"] == "final":
+
+                ev["result"]["source"] = "ocr"
+
+            yield json.dumps(ev, ensure_ascii=False) + "\n"
+
+
+
+    return Response(stream_with_context(gen()), mimetype="application/x-ndjson", headers={"X-Accel-Buffering": "no"})
+
+
+
+BATCH_MAX = int(os.getenv("BATCH_MAX", "20"))
+
+
+
+@app.post("/analyze_batch")
+
+def analyze_batch():
+
+    """
+
+    離線補送：{"items": [{"id": "...", "text": "..."}]} → {"results": [{"id", "ok", "result" | "error"}]}
+
+    一次往返依序分析整批（同一批內相同文字只分析一次）；單筆失敗不影響其他筆
+
+    """
+
+    data = request.get_json(force=True, silent=True) or {}
+
+    items = data.get("items")
+
+    if not isinstance(items, list) or not items:
+
+        return jsonify({"error": "items required"}), 400
+
+    if len(items) > BATCH_MAX:
+
+        return jsonify({"error": f"too many items (max {BATCH_MAX})"}), 413
+
+
+
+    results = []
+
+    done = {}
+
+    for item in items:
+
+        item = item if isinstance(item, dict) else {}
+
+        item_id = str(item.get("id", ""))
+
+        text = (item.get("text") or "").strip()
+
+        if not text:
+
+            results.append({"id": item_id, "ok": False, "error": "text required"})
+
+            continue
+
+        try:
+
+            if text not in done:
+
+                out = decide(text)
+
+                out["source"] = "ocr"
+
+                done[text] = out
+
+            results.append({"id": item_id, "ok": True, "result": done[text]})
+
+        except Exception as e:
+
+            results.append({"id": item_id, "ok": False, "error": str(e)})
+
+    return jsonify({"results": results}), 200
+
+
+
+@app.post("/upload_audio")
+
+def upload_audio():
 
     f = request.files.get("file")
 
@@ -1122,110 +1669,111 @@ def upload_audio():
 
 
 
-    ext = os.path.splitext(f.filename)[1] or ".wav"
+    raw_path = _save_upload(f)
 
-    raw_path = os.path.join(UPLOAD_DIR, f"{uuid.uuid4()}{ext}")
+    seg_map = _parse_segment_map(request.form.get("segments"))
 
-    f.save(raw_path)
+    out = _analyze_audio_parts([(raw_path, 0)], seg_map, request.form.get("original_ms"))
 
+    return jsonify(out), 200
 
 
-    wav_path = None
 
-    text = ""
+# -------------------------
 
+# 背景工作（上傳完 / 送出就先回 202，App 再長輪詢 /jobs/<id>，可 DELETE 取消）
 
+# 階段：uploading → uploaded → transcribing → llm → done
 
-    try:
+# -------------------------
 
-        wav_path = to_wav_16k(raw_path)
+JOB_TTL_S = int(os.getenv("JOB_TTL_S", "3600"))
 
-        text = transcribe(wav_path)
+JOB_WORKERS = int(os.getenv("JOB_WORKERS", "1"))
 
+JOB_MAX_WAIT_S = 30
 
 
-        if not text or len(text) < 6:
 
+_jobs = {}
 
-            text_out = to_trad(text or "")
+_jobs_cv = threading.Condition()
 
-            return jsonify({
+_job_slots = threading.Semaphore(JOB_WORKERS)
 
-                "text": text_out,
 
-                "detected_text": text_out,
 
-                "risk": "low",
+def _job_view(job):
 
-                "scam_type": ["未明確分類（需更多資訊）"],
+    view = {k: job[k] for k in ("job_id", "kind", "status", "stage", "progress", "version", "parts_total")}
 
-                "advices": ["請提供更清晰或更長的音檔"],
+    view["parts_received"] = len(job["parts"])
 
-                "is_scam": False,
+    if job["status"] == "done":
 
-                "reasons": ["辨識文字過短或空白"],
+        view["result"] = job["result"]
 
-                "source": "asr",
+    if job["status"] == "error":
 
-                "analysis": {"matched_categories": [], "actions_requested": [], "rule_floor": "low"},
+        view["error"] = job["error"]
 
-                "meta": {"asr_backend": "whisper", "asr_model": ASR_MODEL, "ollama_model": SCAM_MODEL, "model_used": False}
+    return view
 
-            }), 200
 
 
+def _touch_job(job):
 
-        out = decide(text)
+    """呼叫時需持有 _jobs_cv"""
 
-        out["source"] = "asr"
+    job["version"] += 1
 
-        return jsonify(out), 200
+    job["updated"] = time.time()
 
+    _jobs_cv.notify_all()
 
 
-    except Exception as e:
 
+def _update_job(job_id, **fields) -> bool:
 
+    """已取消 / 已清掉的工作不再更新，回 False"""
 
-        text_out = to_trad(text or "")
+    with _jobs_cv:
 
-        return jsonify({
+        job = _jobs.get(job_id)
 
-            "text": text_out,
+        if job is None or job["status"] == "cancelled":
 
-            "detected_text": text_out,
+            return False
 
-            "risk": "medium",
+        job.update(fields)
 
-            "scam_type": ["未明確分類（需更多資訊）"],
+        _touch_job(job)
 
-            "advices": ["請先保留音檔與來電資訊", "建議撥打 165 反詐騙諮詢", "若可行，改用文字貼上再分析以取得更完整結果"],
+        return True
 
-            "is_scam": True,
 
-            "reasons": [f"語音流程異常（轉檔/辨識/模型）：{str(e)}"],
 
-            "source": "asr",
+def _job_progress(job_id):
 
-            "analysis": {"matched_categories": [], "actions_requested": [], "rule_floor": "medium"},
+    def report(stage, p):
 
-            "meta": {"error_stage": "ASR_or_LLM", "asr_backend": "whisper", "asr_model": ASR_MODEL, "ollama_model": SCAM_MODEL, "model_used": False}
+        if not _update_job(job_id, stage=stage, progress=round(p, 2)):
 
-        }), 200
+            raise JobCancelled()
 
+    return report
 
 
-    finally:
 
-        try:
+def _remove_files(paths):
 
-            if os.path.exists(raw_path):
+    for path in paths:
 
-                os.remove(raw_path)
+        try:
 
-            if wav_path and os.path.exists(wav_path):
+            if path and os.path.exists(path):
 
-                os.remove(wav_path)
+                os.remove(path)
 
         except Exception:
 
@@ -1233,6 +1781,298 @@ def upload_audio():
 
 
 
+def _expire_jobs():
+
+    """呼叫時需持有 _jobs_cv；跑到一半的工作不清"""
+
+    now = time.time()
+
+    for job_id, job in list(_jobs.items()):
+
+        if job["status"] in ("queued", "running") or now - job["updated"] <= JOB_TTL_S:
+
+            continue
+
+        del _jobs[job_id]
+
+        _remove_files(path for path, _ in job["parts"].values())
+
+
+
+def _run_audio_job(job_id):
+
+    with _jobs_cv:
+
+        job = _jobs[job_id]
+
+        parts = [job["parts"][i] for i in sorted(job["parts"])]
+
+        seg_map, original_ms = job["seg_map"], job["original_ms"]
+
+
+
+    with _job_slots:
+
+        # 排隊時就被取消：檔案自己清
+
+        if not _update_job(job_id, status="running", stage="transcribing", progress=0.0):
+
+            _remove_files(path for path, _ in parts)
+
+            return
+
+        try:
+
+            out = _analyze_audio_parts(parts, seg_map, original_ms, progress=_job_progress(job_id))
+
+            _update_job(job_id, status="done", stage="done", progress=1.0, result=out)
+
+        except JobCancelled:
+
+            pass
+
+        except Exception as e:
+
+            _update_job(job_id, status="error", stage="done", error=str(e))
+
+
+
+def _run_text_job(job_id, text):
+
+    # 文字很快，不跟長音檔搶同一個 slot
+
+    if not _update_job(job_id, status="running", stage="llm", progress=0.0):
+
+        return
+
+    try:
+
+        out = decide(text)
+
+        out["source"] = "ocr"
+
+        _update_job(job_id, status="done", stage="done", progress=1.0, result=out)
+
+    except Exception as e:
+
+        _update_job(job_id, status="error", stage="done", error=str(e))
+
+
+
+def _new_job(kind, parts_total=0):
+
+    """呼叫時需持有 _jobs_cv"""
+
+    job_id = uuid.uuid4().hex
+
+    _jobs[job_id] = {
+
+        "job_id": job_id, "kind": kind, "status": "receiving", "stage": "uploading",
+
+        "progress": 0.0, "version": 0, "parts_total": parts_total, "parts": {},
+
+        "seg_map": None, "original_ms": None, "result": None, "error": None, "updated": time.time()
+
+    }
+
+    return _jobs[job_id]
+
+
+
+@app.post("/jobs/audio")
+
+def create_audio_job():
+
+    f = request.files.get("file")
+
+    if not f or not f.filename:
+
+        return jsonify({"error": "請用 multipart/form-data，欄位名為 file"}), 400
+
+    try:
+
+        total = max(1, int(request.form.get("parts") or 1))
+
+        index = int(request.form.get("part") or 0)
+
+        offset_ms = max(0, int(request.form.get("part_offset_ms") or 0))
+
+    except ValueError:
+
+        return jsonify({"error": "parts / part / part_offset_ms 需為整數"}), 400
+
+    if not 0 <= index < total:
+
+        return jsonify({"error": "part 超出範圍"}), 400
+
+
+
+    raw_path = _save_upload(f)
+
+    job_id = request.form.get("job_id")
+
+    with _jobs_cv:
+
+        _expire_jobs()
+
+        if job_id:
+
+            job = _jobs.get(job_id)
+
+            if job is None or job["status"] != "receiving":
+
+                os.remove(raw_path)
+
+                return jsonify({"error": "job not found"}), 404
+
+        else:
+
+            job = _new_job("audio", total)
+
+            job_id = job["job_id"]
+
+
+
+        old = job["parts"].get(index)
+
+        if old and old[0] != raw_path and os.path.exists(old[0]):
+
+            os.remove(old[0])
+
+        job["parts"][index] = (raw_path, offset_ms)
+
+        if request.form.get("segments"):
+
+            job["seg_map"] = _parse_segment_map(request.form.get("segments"))
+
+            job["original_ms"] = request.form.get("original_ms")
+
+
+
+        ready = len(job["parts"]) >= job["parts_total"]
+
+        job["progress"] = round(len(job["parts"]) / job["parts_total"], 2)
+
+        if ready:
+
+            job["status"], job["stage"] = "queued", "uploaded"
+
+        _touch_job(job)
+
+        view = _job_view(job)
+
+
+
+    if ready:
+
+        threading.Thread(target=_run_audio_job, args=(job_id,), daemon=True).start()
+
+    return jsonify(view), 202
+
+
+
+@app.post("/jobs/text")
+
+def create_text_job():
+
+    data = request.get_json(force=True, silent=True) or {}
+
+    text = (data.get("text") or "").strip()
+
+    if not text:
+
+        return jsonify({"error": "text required"}), 400
+
+
+
+    with _jobs_cv:
+
+        _expire_jobs()
+
+        job = _new_job("text")
+
+        job["status"], job["stage"], job["progress"] = "queued", "uploaded", 1.0
+
+        _touch_job(job)
+
+        view = _job_view(job)
+
+
+
+    threading.Thread(target=_run_text_job, args=(job["job_id"], text), daemon=True).start()
+
+    return jsonify(view), 202
+
+
+
+@app.delete("/jobs/<job_id>")
+
+def cancel_job(job_id):
+
+    """取消：還在收檔就把收到的段刪掉；跑到一半的會在下一個進度點停下"""
+
+    with _jobs_cv:
+
+        job = _jobs.get(job_id)
+
+        if job is None:
+
+            return jsonify({"error": "job not found"}), 404
+
+        if job["status"] not in ("done", "error", "cancelled"):
+
+            if job["status"] == "receiving":
+
+                _remove_files(path for path, _ in job["parts"].values())
+
+            job["status"], job["stage"] = "cancelled", "done"
+
+            _touch_job(job)
+
+        return jsonify(_job_view(job)), 200
+
+
+
+@app.get("/jobs/<job_id>")
+
+def get_job(job_id):
+
+    """?wait=秒數（最多 30）&since=上次看到的 version：狀態沒變就掛著等，變了或逾時才回"""
+
+    try:
+
+        wait = min(float(JOB_MAX_WAIT_S), max(0.0, float(request.args.get("wait") or 0)))
+
+        since = int(request.args.get("since") or -1)
+
+    except ValueError:
+
+        wait, since = 0.0, -1
+
+
+
+    deadline = time.time() + wait
+
+    with _jobs_cv:
+
+        while True:
+
+            job = _jobs.get(job_id)
+
+            if job is None:
+
+                return jsonify({"error": "job not found"}), 404
+
+            left = deadline - time.time()
+
+            if job["version"] > since or job["status"] in ("done", "error", "cancelled") or left <= 0:
+
+                return jsonify(_job_view(job)), 200
+
+            _jobs_cv.wait(left)
+
+
+
 # -------------------------
 
 # Main